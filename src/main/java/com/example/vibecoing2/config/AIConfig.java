@@ -19,4 +19,9 @@ public class AIConfig {
     private Integer maxRetries;
     private Long retryDelay;
     private Integer maxImageSize;
+
+    /**
+     * 同时进行的 AI 上游调用数上限（所有请求共享），超出时排队等待
+     */
+    private Integer maxConcurrency = 4;
 }
@@ -1,11 +1,15 @@
 package com.example.vibecoing2.config;
 
+import com.example.vibecoing2.util.InlineImageSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "app")
@@ -14,18 +18,29 @@ public class AppConfig {
     private ProcessedConfig processed = new ProcessedConfig();
     private ImageConfig image = new ImageConfig();
     private LayoutConfig layout = new LayoutConfig();
+    private AssetConfig assets = new AssetConfig();
+    private IncrementalConfig incremental = new IncrementalConfig();
+    private NearDuplicateConfig nearDuplicate = new NearDuplicateConfig();
+    private BatchConfig batch = new BatchConfig();
+    private SchedulerConfig scheduler = new SchedulerConfig();
 
     /**
      * 配置 ObjectMapper Bean（用于 JSON 序列化/反序列化）
+     * 注册 InlineImage 流式序列化，保存历史记录时图片同样从原始字节直接写出
      */
     @Bean
     public ObjectMapper objectMapper() {
-        return new ObjectMapper();
+        return new ObjectMapper().registerModule(InlineImageSerializer.module());
     }
 
     @Data
     public static class UploadConfig {
         private String dir;
+
+        /**
+         * 单张图片上传的大小上限（字节）。multipart 全局上限为批量分析的压缩包放宽，单张图片接口各自按此校验
+         */
+        private Long maxImageBytes = 10L * 1024 * 1024;
     }
 
     @Data
@@ -37,11 +52,138 @@ public class AppConfig {
     public static class ImageConfig {
         private Integer standardWidth;
         private Double quality;
+
+        /**
+         * 组件裁剪图编码并行度，未配置或 <= 0 时取 CPU 核数
+         */
+        private Integer encodeParallelism = 0;
+
+        /**
+         * 单张图片编码后的字节预算，超出时逐级降低质量：组件裁剪图 / 整页背景图
+         */
+        private Long cropByteBudget = 200L * 1024;
+        private Long backgroundByteBudget = 2L * 1024 * 1024;
     }
 
     @Data
     public static class LayoutConfig {
         private Double iouThreshold;
         private Double confidenceThreshold;
+
+        /**
+         * AI 与 CV 组件的融合方式：greedy（按 AI 组件顺序逐个取最佳匹配）
+         * 或 global（全局最大 IoU 匹配，结果与输入顺序无关）
+         */
+        private String fusionMode = "greedy";
+    }
+
+    @Data
+    public static class AssetConfig {
+        /**
+         * assets=url 模式下资源的存活时间（秒）
+         */
+        private Long ttlSeconds = 600L;
+
+        /**
+         * 缓存条目数与总字节数上限，超出后按最近最少使用淘汰
+         */
+        private Integer maxEntries = 4096;
+        private Long maxBytes = 256L * 1024 * 1024;
+    }
+
+    @Data
+    public static class IncrementalConfig {
+        /**
+         * 分块差异的方块边长（像素）、像素差值阈值与方块内变化像素数下限
+         */
+        private Integer tileSize = 32;
+        private Integer pixelThreshold = 24;
+        private Integer minChangedPixels = 4;
+
+        /**
+         * 变化方块占比超过该值时直接整页重新分析
+         */
+        private Double maxChangedRatio = 0.5;
+
+        /**
+         * 变化区域数量上限，超过时合并为一个外接区域（每个区域调用一次 AI）
+         */
+        private Integer maxRegions = 8;
+
+        /**
+         * 区域分析时向外扩展的像素，给检测与识别留出上下文
+         */
+        private Integer regionMargin = 16;
+    }
+
+    @Data
+    public static class NearDuplicateConfig {
+        /**
+         * 未指定 baseHistoryId 时，是否自动以最相似的历史记录作为增量分析基准。
+         * 默认关闭：沿用的组件来自另一次上传的历史记录，由部署方按需开启
+         */
+        private Boolean autoReuse = false;
+
+        /**
+         * 视为近似重复的感知哈希汉明距离上限（64 位）
+         */
+        private Integer maxDistance = 6;
+    }
+
+    @Data
+    public static class BatchConfig {
+        /**
+         * 同时在途的图片数上限（所有批量请求共享），<= 0 时取 CPU 核数的 2 倍
+         */
+        private Integer maxInFlight = 8;
+
+        /**
+         * 单次批量请求的图片数上限与单个条目的字节数上限
+         */
+        private Integer maxEntries = 500;
+        private Long maxEntryBytes = 10L * 1024 * 1024;
+    }
+
+    @Data
+    public static class SchedulerConfig {
+        /**
+         * 设计稿分析与图片生成各自的执行名额
+         */
+        private WorkloadConfig analysis = new WorkloadConfig();
+        private WorkloadConfig generation = new WorkloadConfig();
+
+        /**
+         * 批量任务最多占用的 AI 上游调用名额（总数为 app.ai.max-concurrency），其余为交互请求预留
+         */
+        private Integer aiBatchMaxConcurrency = 2;
+
+        /**
+         * 每个优先级的排队数上限，超过时直接拒绝（503）
+         */
+        private Integer maxQueued = 256;
+
+        /**
+         * 最长排队时间（毫秒），<= 0 不限制；批量任务的排队数已由 app.batch.max-in-flight 限制
+         */
+        private Long interactiveMaxQueueMs = 120000L;
+        private Long batchMaxQueueMs = 0L;
+
+        /**
+         * 客户端权重（客户端 ID -> 权重，默认 1），同一优先级内按权重分配名额
+         */
+        private Map<String, Double> clientWeights = new HashMap<>();
+    }
+
+    @Data
+    public static class WorkloadConfig {
+        /**
+         * 同时执行的任务数上限
+         */
+        private Integer maxConcurrency = 4;
+
+        /**
+         * 批量任务最多占用的名额，其余名额为交互请求预留
+         */
+        private Integer batchMaxConcurrency = 2;
     }
 }
@@ -11,4 +11,39 @@ public class OCRConfig {
     private String tessdataPath;
     private String language;
     private Integer pageSegmentationMode;
+
+    /**
+     * Tesseract 引擎池大小，未配置或 <= 0 时取 CPU 核数
+     */
+    private Integer poolSize;
+
+    /**
+     * 借用引擎的最长等待时间（毫秒）
+     */
+    private Long borrowTimeoutMs = 30000L;
+
+    /**
+     * 启动时是否预热引擎（提前加载本地库与语言包）
+     */
+    private Boolean warmUp = true;
+
+    /**
+     * 识别前是否做 Otsu 二值化
+     */
+    private Boolean binarize = false;
+
+    /**
+     * 是否只对候选文字区域做 OCR（false 时整页识别）
+     */
+    private Boolean regionTargeted = true;
+
+    /**
+     * 候选文字区域识别使用的页面分割模式（6 = 单个文本块）
+     */
+    private Integer regionPageSegmentationMode = 6;
+
+    /**
+     * 候选区域总面积超过该比例时退回整页识别
+     */
+    private Double maxRegionCoverage = 0.6;
 }
@@ -7,6 +7,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import jakarta.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Slf4j
 @Data
@@ -18,6 +20,40 @@ public class OpenCVConfig {
     private Double buttonAspectRatioMin;
     private Double buttonAspectRatioMax;
 
+    /**
+     * 检测器并行度，未配置或 <= 0 时取 CPU 核数
+     */
+    private Integer detectorParallelism = 0;
+
+    /**
+     * 检测器默认时间预算（毫秒），超时的检测器结果被丢弃
+     */
+    private Long detectorTimeBudgetMs = 5000L;
+
+    /**
+     * 按检测器名称配置的开关与时间预算，例如 app.opencv.detectors.button.enabled=false
+     */
+    private Map<String, DetectorProperties> detectors = new LinkedHashMap<>();
+
+    /**
+     * 取检测器配置，未配置的检测器默认启用
+     */
+    public DetectorProperties getDetector(String name) {
+        return detectors.getOrDefault(name, DetectorProperties.DEFAULT);
+    }
+
+    @Data
+    public static class DetectorProperties {
+        private static final DetectorProperties DEFAULT = new DetectorProperties();
+
+        private Boolean enabled = true;
+
+        /**
+         * 时间预算（毫秒），未配置时使用 detectorTimeBudgetMs
+         */
+        private Long timeBudgetMs;
+    }
+
     @PostConstruct
     public void init() {
         try {
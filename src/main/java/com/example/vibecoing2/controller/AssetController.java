@@ -0,0 +1,59 @@
+package com.example.vibecoing2.controller;
+
+import com.example.vibecoing2.service.AssetCacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 短期资源控制器
+ * 输出 assets=url 模式下分析结果引用的裁剪图与背景图
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/assets")
+@RequiredArgsConstructor
+public class AssetController {
+
+    private final AssetCacheService assetCacheService;
+
+    /**
+     * 获取资源
+     *
+     * @param id          资源 ID（内容哈希）
+     * @param ifNoneMatch 协商缓存头
+     * @return 资源内容；不存在或已过期返回 404
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<byte[]> getAsset(
+            @PathVariable String id,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        AssetCacheService.Asset asset = assetCacheService.get(id);
+        if (asset == null) {
+            log.debug("资源不存在或已过期: id={}", id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        // 资源 ID 即内容哈希，内容不会变化，可在有效期内直接使用浏览器缓存
+        String etag = "\"" + asset.getId() + "\"";
+        long maxAge = Math.max(0, asset.getExpiresAt() - System.currentTimeMillis()) / 1000;
+        CacheControl cacheControl = CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePrivate().immutable();
+
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(asset.getContentType()))
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(asset.getData());
+    }
+}
@@ -1,5 +1,13 @@
 package com.example.vibecoing2.controller;
 
+import com.example.vibecoing2.dto.ApiResponse;
+import com.example.vibecoing2.service.AssetCacheService;
+import com.example.vibecoing2.service.NearDuplicateService;
+import com.example.vibecoing2.service.TesseractPool;
+import com.example.vibecoing2.service.WorkloadScheduler;
+import com.example.vibecoing2.util.FairScheduler;
+import com.example.vibecoing2.util.MatScope;
+import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -9,14 +17,33 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/health")
+@RequiredArgsConstructor
 public class HealthController {
 
+    private final TesseractPool tesseractPool;
+    private final AssetCacheService assetCacheService;
+    private final NearDuplicateService nearDuplicateService;
+    private final WorkloadScheduler workloadScheduler;
+
     @GetMapping
     public Map<String, Object> health() {
         Map<String, Object> response = new HashMap<>();
         response.put("status", "UP");
         response.put("service", "Vibecoing-2");
         response.put("timestamp", System.currentTimeMillis());
+        response.put("ocrPool", tesseractPool.getStats());
+        response.put("nativeMemory", MatScope.getStats());
+        response.put("assetCache", assetCacheService.getStats());
+        response.put("nearDuplicateIndex", nearDuplicateService.getStats());
+        response.put("scheduler", workloadScheduler.getStats());
         return response;
     }
+
+    /**
+     * 调度器状态：各优先级的排队数、执行数、拒绝数、最近排队时间分位数与活跃客户端数（不包含客户端 ID）
+     */
+    @GetMapping("/scheduler")
+    public ApiResponse<Map<String, FairScheduler.Stats>> scheduler() {
+        return ApiResponse.success(workloadScheduler.getStats());
+    }
 }
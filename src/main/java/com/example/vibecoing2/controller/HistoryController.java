@@ -1,22 +1,27 @@
 package com.example.vibecoing2.controller;
 
+import com.example.vibecoing2.config.AppConfig;
 import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.example.vibecoing2.dto.AnalysisSearchHit;
 import com.example.vibecoing2.dto.ApiResponse;
 import com.example.vibecoing2.dto.HistoryRecord;
+import com.example.vibecoing2.dto.NearDuplicateHit;
+import com.example.vibecoing2.service.HistorySearchService;
 import com.example.vibecoing2.service.HistoryService;
+import com.example.vibecoing2.service.NearDuplicateService;
+import com.example.vibecoing2.util.FieldProjection;
+import com.example.vibecoing2.util.ImageResourceResponder;
+import com.example.vibecoing2.util.ResponseBodyWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
@@ -30,7 +35,16 @@ import java.util.List;
 @RequiredArgsConstructor
 public class HistoryController {
 
+    // 感知哈希为 64 位，汉明距离上限
+    private static final int MAX_HASH_DISTANCE = 64;
+    // 检索每页数量上限
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    private final AppConfig appConfig;
     private final HistoryService historyService;
+    private final ImageResourceResponder imageResourceResponder;
+    private final ResponseBodyWriter responseBodyWriter;
+    private final NearDuplicateService nearDuplicateService;
 
     /**
      * 获取历史记录列表
@@ -121,42 +135,25 @@ public class HistoryController {
      *
      * @param historyId 历史记录 ID
      * @param filename  图片文件名
-     * @return 图片文件
+     * @param request   HTTP 请求（读取 If-None-Match / Range 等条件头）
+     * @param response  HTTP 响应（直接写出文件内容）
      */
     @GetMapping("/image/{historyId}/{filename}")
-    public ResponseEntity<Resource> getImage(
+    public void getImage(
             @PathVariable String historyId,
-            @PathVariable String filename
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
         try {
-            // 构建图片路径
-            Path imagePath = Paths.get("history", "images", historyId, filename);
-            File imageFile = imagePath.toFile();
-
-            if (!imageFile.exists()) {
-                log.warn("图片文件不存在: {}", imagePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            // 读取文件
-            Resource resource = new FileSystemResource(imageFile);
-
-            // 确定 MIME 类型
-            String contentType = Files.probeContentType(imagePath);
-            if (contentType == null) {
-                contentType = "image/png";
-            }
-
-            log.debug("返回图片文件: {}", imagePath);
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
+            // 构建图片路径（历史图片按 UUID 目录存放、写入后不再修改，可长期缓存）
+            Path baseDir = Paths.get("history", "images");
+            imageResourceResponder.serve(baseDir, baseDir.resolve(historyId).resolve(filename), filename,
+                    request, response);
 
         } catch (Exception e) {
             log.error("获取图片文件失败: historyId={}, filename={}", historyId, filename, e);
-            return ResponseEntity.internalServerError().build();
+            sendServerError(response);
         }
     }
 
@@ -228,14 +225,88 @@ public class HistoryController {
         }
     }
 
+    /**
+     * 检索设计稿解析历史记录（文字内容、组件类型、颜色，条件之间为 AND 关系）
+     *
+     * @param q     文字内容，如 "立即购买"（可选）
+     * @param type  组件类型：text / button / image（可选）
+     * @param color 颜色，如 #FF6B6B（可选）
+     * @param page  页码（默认 1）
+     * @param size  每页数量（默认 10）
+     * @return 按相关度排序的命中结果
+     */
+    @GetMapping("/analysis/search")
+    public ApiResponse<AnalysisSearchResponse> searchAnalysisHistory(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String color,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        try {
+            log.info("检索设计稿解析历史记录: q={}, type={}, color={}, page={}, size={}", q, type, color, page, size);
+
+            if (isBlank(q) && isBlank(type) && isBlank(color)) {
+                return ApiResponse.error(400, "检索条件不能为空（q、type、color 至少提供一个）");
+            }
+            if (page < 1) {
+                return ApiResponse.error(400, "page 必须大于等于 1");
+            }
+            if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+                return ApiResponse.error(400, "size 必须在 1 到 " + MAX_SEARCH_PAGE_SIZE + " 之间");
+            }
+
+            long startTime = System.currentTimeMillis();
+            HistorySearchService.SearchResult result = historyService.searchAnalysisHistory(
+                    q, type, isBlank(color) ? null : color.trim(), page, size);
+
+            AnalysisSearchResponse response = new AnalysisSearchResponse(
+                    result.getHits(),
+                    result.getTotal(),
+                    page,
+                    size,
+                    (int) ((result.getTotal() + size - 1) / size),
+                    System.currentTimeMillis() - startTime
+            );
+
+            return ApiResponse.success(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("检索参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, "参数错误: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("检索设计稿解析历史记录失败", e);
+            return ApiResponse.error(500, "检索失败: " + e.getMessage());
+        }
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
     /**
      * 获取设计稿解析历史记录详情
+     * 记录中包含内嵌图片，流式写出响应；按 Accept 输出 JSON（可 gzip / deflate 压缩）、CBOR 或 Smile
      *
-     * @param id 历史记录 ID
-     * @return 历史记录详情
+     * @param id     历史记录 ID
+     * @param fields 只返回的模板字段（可选，语法同 /api/analyze）
      */
     @GetMapping("/analysis/{id}")
-    public ApiResponse<AnalysisHistoryRecord> getAnalysisHistoryDetail(@PathVariable String id) {
+    public void getAnalysisHistoryDetail(@PathVariable String id,
+                                         @RequestParam(required = false) String fields,
+                                         HttpServletRequest request,
+                                         HttpServletResponse response) throws IOException {
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            responseBodyWriter.write(request, response, ApiResponse.error(400, e.getMessage()));
+            return;
+        }
+        responseBodyWriter.write(request, response, analysisHistoryDetail(id), projection);
+    }
+
+    private ApiResponse<AnalysisHistoryRecord> analysisHistoryDetail(String id) {
         try {
             log.info("查询设计稿解析历史记录详情: id={}", id);
 
@@ -252,6 +323,75 @@ public class HistoryController {
         }
     }
 
+    /**
+     * 查找与指定历史记录原图近似重复的历史记录（不含自身）
+     *
+     * @param id          历史记录 ID
+     * @param maxDistance 感知哈希汉明距离上限（默认 app.near-duplicate.max-distance）
+     * @return 按距离升序的历史记录
+     */
+    @GetMapping("/analysis/{id}/similar")
+    public ApiResponse<List<NearDuplicateHit>> findSimilarAnalysisHistory(
+            @PathVariable String id,
+            @RequestParam(required = false) Integer maxDistance
+    ) {
+        try {
+            log.info("查找近似重复的设计稿解析历史记录: id={}, maxDistance={}", id, maxDistance);
+
+            Long hash = historyService.getAnalysisPerceptualHash(id);
+            if (hash == null) {
+                return ApiResponse.error(404, "历史记录不存在或感知哈希尚未计算");
+            }
+
+            return ApiResponse.success(historyService.findSimilarAnalysisHistory(hash, resolveMaxDistance(maxDistance), id));
+
+        } catch (Exception e) {
+            log.error("查找近似重复的设计稿解析历史记录失败: id={}", id, e);
+            return ApiResponse.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查找与上传图片近似重复的历史记录（只计算感知哈希，不做分析）
+     *
+     * @param image       图片文件
+     * @param maxDistance 感知哈希汉明距离上限（默认 app.near-duplicate.max-distance）
+     * @return 按距离升序的历史记录
+     */
+    @PostMapping("/analysis/similar")
+    public ApiResponse<List<NearDuplicateHit>> findSimilarToImage(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam(required = false) Integer maxDistance
+    ) {
+        try {
+            if (image.isEmpty()) {
+                return ApiResponse.error(400, "请上传图片文件");
+            }
+            long maxImageBytes = appConfig.getUpload().getMaxImageBytes();
+            if (image.getSize() > maxImageBytes) {
+                return ApiResponse.error(400, "文件大小不能超过 " + maxImageBytes / 1024 / 1024 + "MB");
+            }
+            log.info("按上传图片查找近似重复的设计稿解析历史记录: {}, maxDistance={}", image.getOriginalFilename(), maxDistance);
+
+            long hash = nearDuplicateService.hashImage(image.getBytes());
+            return ApiResponse.success(historyService.findSimilarAnalysisHistory(hash, resolveMaxDistance(maxDistance), null));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("近似重复查询参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, "参数错误: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("按上传图片查找近似重复的设计稿解析历史记录失败", e);
+            return ApiResponse.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+
+    private int resolveMaxDistance(Integer maxDistance) {
+        if (maxDistance == null) {
+            return nearDuplicateService.getDefaultMaxDistance();
+        }
+        return Math.max(0, Math.min(MAX_HASH_DISTANCE, maxDistance));
+    }
+
     /**
      * 删除设计稿解析历史记录
      *
@@ -281,42 +421,35 @@ public class HistoryController {
      *
      * @param historyId 历史记录 ID
      * @param filename  图片文件名
-     * @return 图片文件
+     * @param request   HTTP 请求（读取 If-None-Match / Range 等条件头）
+     * @param response  HTTP 响应（直接写出文件内容）
      */
     @GetMapping("/analysis/image/{historyId}/{filename}")
-    public ResponseEntity<Resource> getAnalysisImage(
+    public void getAnalysisImage(
             @PathVariable String historyId,
-            @PathVariable String filename
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
         try {
             // 构建图片路径
-            Path imagePath = Paths.get("history", "analysis", historyId, filename);
-            File imageFile = imagePath.toFile();
-
-            if (!imageFile.exists()) {
-                log.warn("设计稿解析图片文件不存在: {}", imagePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            // 读取文件
-            Resource resource = new FileSystemResource(imageFile);
-
-            // 确定 MIME 类型
-            String contentType = Files.probeContentType(imagePath);
-            if (contentType == null) {
-                contentType = "image/png";
-            }
-
-            log.debug("返回设计稿解析图片文件: {}", imagePath);
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
+            Path baseDir = Paths.get("history", "analysis");
+            imageResourceResponder.serve(baseDir, baseDir.resolve(historyId).resolve(filename), filename,
+                    request, response);
 
         } catch (Exception e) {
             log.error("获取设计稿解析图片文件失败: historyId={}, filename={}", historyId, filename, e);
-            return ResponseEntity.internalServerError().build();
+            sendServerError(response);
+        }
+    }
+
+    private void sendServerError(HttpServletResponse response) {
+        if (!response.isCommitted()) {
+            try {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (IOException ignored) {
+                // 客户端已断开
+            }
         }
     }
 
@@ -351,4 +484,41 @@ public class HistoryController {
          */
         private Integer totalPages;
     }
+
+    /**
+     * 设计稿解析历史检索响应
+     */
+    @Data
+    @AllArgsConstructor
+    public static class AnalysisSearchResponse {
+        /**
+         * 命中结果
+         */
+        private List<AnalysisSearchHit> hits;
+
+        /**
+         * 命中总数
+         */
+        private Long total;
+
+        /**
+         * 当前页码
+         */
+        private Integer page;
+
+        /**
+         * 每页数量
+         */
+        private Integer size;
+
+        /**
+         * 总页数
+         */
+        private Integer totalPages;
+
+        /**
+         * 检索耗时（毫秒）
+         */
+        private Long tookMs;
+    }
 }
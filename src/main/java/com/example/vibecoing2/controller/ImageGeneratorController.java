@@ -5,10 +5,15 @@ import com.example.vibecoing2.dto.ApiResponse;
 import com.example.vibecoing2.dto.GenerateImageRequest;
 import com.example.vibecoing2.dto.GenerateImageResponse;
 import com.example.vibecoing2.service.ImageGeneratorService;
+import com.example.vibecoing2.service.WorkloadScheduler;
+import com.example.vibecoing2.util.FairScheduler;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * 图片生成控制器
  */
@@ -20,13 +25,16 @@ public class ImageGeneratorController {
 
     private final ImageGeneratorService imageGeneratorService;
     private final AIImageGenConfig aiImageGenConfig;
+    private final WorkloadScheduler workloadScheduler;
 
     /**
      * 生成图片（接收 JSON 格式数据）
+     * 按交互优先级排队（请求头 X-Workload-Class: batch 可降为批量优先级）
      */
     @PostMapping("/image")
     public ApiResponse<GenerateImageResponse> generateImage(
-            @RequestBody GenerateImageRequest request
+            @RequestBody GenerateImageRequest request,
+            HttpServletRequest httpRequest
     ) {
         try {
             log.info("收到图片生成请求: title={}, style={}, count={}, model={}, hasBackgroundImage={}",
@@ -51,12 +59,18 @@ public class ImageGeneratorController {
             }
 
             // 生成图片
-            GenerateImageResponse response = imageGeneratorService.generateImages(request);
+            GenerateImageResponse response = workloadScheduler.generation().execute(
+                    workloadScheduler.priority(httpRequest, FairScheduler.Priority.INTERACTIVE),
+                    workloadScheduler.clientId(httpRequest),
+                    () -> imageGeneratorService.generateImages(request));
 
             return ApiResponse.success(response);
         } catch (IllegalArgumentException e) {
             log.warn("请求参数错误: {}", e.getMessage());
             return ApiResponse.error(400, "参数错误: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            log.warn("图片生成请求被拒绝: {}", e.getMessage());
+            return ApiResponse.error(503, "服务繁忙，请稍后重试: " + e.getMessage());
         } catch (Exception e) {
             log.error("图片生成失败", e);
             return ApiResponse.error(500, "图片生成失败: " + e.getMessage());
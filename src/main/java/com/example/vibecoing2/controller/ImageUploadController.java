@@ -1,28 +1,130 @@
 package com.example.vibecoing2.controller;
 
+import com.example.vibecoing2.config.AppConfig;
 import com.example.vibecoing2.dto.ApiResponse;
+import com.example.vibecoing2.dto.BatchAnalysisSummary;
 import com.example.vibecoing2.dto.TemplateResponse;
+import com.example.vibecoing2.service.BatchAnalysisService;
+import com.example.vibecoing2.service.HistoryService;
 import com.example.vibecoing2.service.ImageAnalysisService;
+import com.example.vibecoing2.service.WorkloadScheduler;
+import com.example.vibecoing2.util.FairScheduler;
+import com.example.vibecoing2.util.FieldProjection;
+import com.example.vibecoing2.util.ResponseBodyWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/analyze")
 @RequiredArgsConstructor
 public class ImageUploadController {
 
+    // 历史记录 ID 为 UUID，只允许字母、数字与连字符，避免拼接文件路径时越出历史目录
+    private static final Pattern HISTORY_ID_PATTERN = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final AppConfig appConfig;
     private final ImageAnalysisService imageAnalysisService;
+    private final ResponseBodyWriter responseBodyWriter;
+    private final BatchAnalysisService batchAnalysisService;
+    private final WorkloadScheduler workloadScheduler;
+    private final HistoryService historyService;
 
+    /**
+     * 分析结果包含多张内嵌图片，直接流式写出响应，不经过消息转换器整体序列化。
+     * 按 Accept 输出 JSON（可 gzip / deflate 压缩）、CBOR 或 Smile；
+     * fields 参数指定只返回的模板字段，未请求的图片与容器树不会计算；
+     * baseHistoryId 指定修订前的历史记录时，只重新分析与其原图相比发生变化的区域；
+     * 分析按交互优先级排队（请求头 X-Workload-Class: batch 可降为批量优先级）
+     */
     @PostMapping
-    public ApiResponse<TemplateResponse> analyzeImage(
+    public void analyzeImage(
             @RequestParam("image") MultipartFile image,
             @RequestParam(value = "enableAI", defaultValue = "true") Boolean enableAI,
             @RequestParam(value = "enableOCR", defaultValue = "false") Boolean enableOCR,
-            @RequestParam(value = "enableCV", defaultValue = "true") Boolean enableCV
-    ) {
+            @RequestParam(value = "enableCV", defaultValue = "true") Boolean enableCV,
+            @RequestParam(value = "assets", defaultValue = ImageAnalysisService.ASSETS_INLINE) String assets,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "baseHistoryId", required = false) String baseHistoryId,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            responseBodyWriter.write(request, response, ApiResponse.error(400, e.getMessage()));
+            return;
+        }
+        responseBodyWriter.write(request, response,
+                analyze(image, enableAI, enableOCR, enableCV, assets, projection, baseHistoryId, request), projection);
+    }
+
+    /**
+     * 批量分析：上传 ZIP（按条目流式读取）或多张图片，每张图片的结果完成后立即以 NDJSON 写出一行，
+     * 最后一行为 {"summary": ...} 汇总。参数校验失败时返回普通 JSON 错误响应
+     */
+    @PostMapping("/batch")
+    public void analyzeBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "enableAI", defaultValue = "true") Boolean enableAI,
+            @RequestParam(value = "enableOCR", defaultValue = "false") Boolean enableOCR,
+            @RequestParam(value = "enableCV", defaultValue = "true") Boolean enableCV,
+            @RequestParam(value = "assets", defaultValue = ImageAnalysisService.ASSETS_INLINE) String assets,
+            @RequestParam(value = "fields", required = false) String fields,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            responseBodyWriter.write(request, response, ApiResponse.error(400, e.getMessage()));
+            return;
+        }
+        if (files == null || files.isEmpty()) {
+            responseBodyWriter.write(request, response, ApiResponse.error(400, "请上传 ZIP 或图片文件"));
+            return;
+        }
+        if (!ImageAnalysisService.ASSETS_INLINE.equals(assets) && !ImageAnalysisService.ASSETS_URL.equals(assets)) {
+            responseBodyWriter.write(request, response, ApiResponse.error(400, "assets 参数仅支持 inline, url"));
+            return;
+        }
+
+        log.info("收到批量分析请求: 文件数={}", files.size());
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(APPLICATION_NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+
+        BatchAnalysisSummary summary = batchAnalysisService.analyze(files,
+                new BatchAnalysisService.Options(enableAI, enableOCR, enableCV, assets, projection,
+                        workloadScheduler.clientId(request)),
+                item -> responseBodyWriter.writeJsonLine(out, item, projection));
+        try {
+            responseBodyWriter.writeJsonLine(out, Collections.singletonMap("summary", summary), FieldProjection.ALL);
+        } catch (IOException e) {
+            log.warn("写出批量分析汇总失败（客户端可能已断开）: {}", e.getMessage());
+        }
+    }
+
+    private ApiResponse<TemplateResponse> analyze(MultipartFile image, Boolean enableAI, Boolean enableOCR,
+                                                  Boolean enableCV, String assets, FieldProjection projection,
+                                                  String baseHistoryId, HttpServletRequest request) {
         log.info("收到图片分析请求: filename={}, size={}", image.getOriginalFilename(), image.getSize());
 
         if (image.isEmpty()) {
@@ -34,18 +136,38 @@ public class ImageUploadController {
             return ApiResponse.error(400, "不支持的文件格式，仅支持 jpg, jpeg, png, bmp");
         }
 
-        if (image.getSize() > 10 * 1024 * 1024) {
-            return ApiResponse.error(400, "文件大小不能超过 10MB");
+        long maxImageBytes = appConfig.getUpload().getMaxImageBytes();
+        if (image.getSize() > maxImageBytes) {
+            return ApiResponse.error(400, "文件大小不能超过 " + maxImageBytes / 1024 / 1024 + "MB");
+        }
+
+        if (!ImageAnalysisService.ASSETS_INLINE.equals(assets) && !ImageAnalysisService.ASSETS_URL.equals(assets)) {
+            return ApiResponse.error(400, "assets 参数仅支持 inline, url");
+        }
+
+        if (baseHistoryId != null && !HISTORY_ID_PATTERN.matcher(baseHistoryId).matches()) {
+            return ApiResponse.error(400, "baseHistoryId 格式不正确");
+        }
+
+        if (baseHistoryId != null && !historyService.existsAnalysisHistory(baseHistoryId)) {
+            return ApiResponse.error(404, "基准历史记录不存在");
         }
 
         try {
-            TemplateResponse result = imageAnalysisService.analyzeImage(image, enableAI, enableOCR, enableCV);
+            TemplateResponse result = workloadScheduler.analysis().execute(
+                    workloadScheduler.priority(request, FairScheduler.Priority.INTERACTIVE),
+                    workloadScheduler.clientId(request),
+                    () -> imageAnalysisService.analyzeImage(image, enableAI, enableOCR, enableCV, assets,
+                            projection, baseHistoryId));
 
             if (result.getSuccess()) {
                 return ApiResponse.success("分析成功", result);
             } else {
                 return ApiResponse.error(500, result.getMessage());
             }
+        } catch (RejectedExecutionException e) {
+            log.warn("图片分析请求被拒绝: {}", e.getMessage());
+            return ApiResponse.error(503, "服务繁忙，请稍后重试: " + e.getMessage());
         } catch (Exception e) {
             log.error("图片分析失败", e);
             return ApiResponse.error(500, "图片分析失败: " + e.getMessage());
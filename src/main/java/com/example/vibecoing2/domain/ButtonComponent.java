@@ -13,7 +13,7 @@ public class ButtonComponent extends Component {
     private String text;
     private Map<String, Object> style;
     private Map<String, Object> interaction;
-    private String backgroundImage; // base64编码的背景图片
+    private InlineImage backgroundImage; // 背景图片（序列化为 data URL 或资源 URL）
 
     public ButtonComponent() {
         super("button");
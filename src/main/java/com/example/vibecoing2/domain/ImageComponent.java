@@ -16,7 +16,7 @@ public class ImageComponent extends Component {
     private static final String IMAGE_TYPE_CONTENT = "content";
 
     private Map<String, Object> style;
-    private Map<String, String> placeholder;
+    private Map<String, Object> placeholder;
     private String imageType;
 
     public ImageComponent() {
@@ -42,6 +42,13 @@ public class ImageComponent extends Component {
         this.placeholder.put("url", url);
     }
 
+    /**
+     * 设置裁剪得到的图片，序列化为 placeholder.url
+     */
+    public void setPlaceholderImage(InlineImage image) {
+        this.placeholder.put("url", image);
+    }
+
     public void setPlaceholderAlt(String alt) {
         this.placeholder.put("alt", alt);
     }
@@ -0,0 +1,98 @@
+package com.example.vibecoing2.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Base64;
+
+/**
+ * 模板中的图片数据
+ * 保存编码后的原始字节与 MIME 类型，序列化时输出 data URL；assets=url 模式下只保存资源 URL。
+ * 流式输出时由 {@link com.example.vibecoing2.util.InlineImageSerializer} 直接从原始字节写出 base64，
+ * 不生成中间字符串；CBOR / Smile 响应中直接输出原始字节串；
+ * 其它序列化路径通过 {@link JsonValue} 退化为完整的 data URL 字符串
+ */
+@Getter
+@EqualsAndHashCode
+public final class InlineImage {
+
+    private static final String DATA_URL_PREFIX = "data:";
+    private static final String BASE64_MARKER = ";base64,";
+
+    private final byte[] data;
+    private final String mimeType;
+    private final String url;
+
+    private InlineImage(byte[] data, String mimeType, String url) {
+        this.data = data;
+        this.mimeType = mimeType;
+        this.url = url;
+    }
+
+    public static InlineImage of(byte[] data, String mimeType) {
+        return new InlineImage(data, mimeType, null);
+    }
+
+    public static InlineImage ofUrl(String url) {
+        return new InlineImage(null, null, url);
+    }
+
+    /**
+     * 反序列化（历史记录、AI 返回）：base64 data URL 还原为原始字节，其它字符串视为 URL
+     */
+    @JsonCreator
+    public static InlineImage parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        int marker = value.indexOf(BASE64_MARKER);
+        if (value.startsWith(DATA_URL_PREFIX) && marker > 0) {
+            String mimeType = value.substring(DATA_URL_PREFIX.length(), marker);
+            return of(Base64.getDecoder().decode(value.substring(marker + BASE64_MARKER.length())), mimeType);
+        }
+        return ofUrl(value);
+    }
+
+    /**
+     * 按文件头识别图片 MIME 类型（二进制格式响应中图片不携带 MIME 类型），无法识别时返回 application/octet-stream
+     */
+    public static String detectMimeType(byte[] data) {
+        if (data == null || data.length < 12) {
+            return "application/octet-stream";
+        }
+        if ((data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            return "image/png";
+        }
+        if ((data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8 && (data[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F'
+                && data[8] == 'W' && data[9] == 'E' && data[10] == 'B' && data[11] == 'P') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    public boolean isInline() {
+        return data != null;
+    }
+
+    /**
+     * data URL 前缀，如 data:image/webp;base64,
+     */
+    public String dataUrlPrefix() {
+        return DATA_URL_PREFIX + mimeType + BASE64_MARKER;
+    }
+
+    @JsonValue
+    public String toDataUrl() {
+        return isInline() ? dataUrlPrefix() + Base64.getEncoder().encodeToString(data) : url;
+    }
+
+    @Override
+    public String toString() {
+        return isInline() ? dataUrlPrefix() + "<" + data.length + " bytes>" : url;
+    }
+}
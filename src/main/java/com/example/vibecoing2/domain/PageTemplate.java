@@ -32,7 +32,7 @@ public class PageTemplate {
         private Integer width;
         private Integer height;
         private String backgroundColor = "#FFFFFF";
-        private String backgroundImage; // Base64编码的背景图片
+        private InlineImage backgroundImage; // 背景图片（序列化为 data URL 或资源 URL）
         private Map<String, Object> metadata;
 
         public PageInfo() {
@@ -54,6 +54,97 @@ public class PageTemplate {
         private String direction = "vertical";
         private Integer gap = 20;
         private List<Section> sections = new ArrayList<>();
+
+        // XY-cut 生成的容器树
+        private LayoutNode root;
+    }
+
+    /**
+     * 布局容器树节点
+     * type: page / column（纵向排列）/ row（横向排列）/ list（相似子项重复排列）/ grid（重复条目的网格）/
+     * card（容器组件包含其它组件）/ stack（无法切分的重叠组件）/ leaf（单个组件）
+     */
+    @Data
+    @NoArgsConstructor
+    public static class LayoutNode {
+        private String type;
+        private String direction;
+        private Integer x;
+        private Integer y;
+        private Integer width;
+        private Integer height;
+        private Integer gap;
+
+        // card 节点的容器组件 ID
+        private String containerId;
+
+        // 直接归属于该节点的组件 ID（leaf / stack / page 背景）
+        private List<String> components = new ArrayList<>();
+        private List<LayoutNode> children = new ArrayList<>();
+
+        // 重复结构（list / grid）：共享的条目模板 + 每个条目按槽位顺序排列的组件 ID。
+        // 条目内的组件仍保留在 PageTemplate.components 中（前端渲染、历史检索与增量分析都按 ID 读取该列表）；
+        // 所有条目在同一槽位的裁剪图完全相同时，内嵌响应中该图只放在 Slot.image，条目组件不再重复携带
+        private ItemTemplate itemTemplate;
+        private List<RepeatItem> items;
+
+        // grid 每行的条目数
+        private Integer columns;
+
+        public LayoutNode(String type, int x, int y, int width, int height) {
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * 重复条目的共享模板
+     * slots 为条目内各组件相对条目左上角的位置，各条目按 slots 顺序给出对应组件即可复用同一模板渲染
+     */
+    @Data
+    @NoArgsConstructor
+    public static class ItemTemplate {
+        private Integer width;
+        private Integer height;
+        private List<Slot> slots = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Slot {
+        private String type;
+        private Integer x;
+        private Integer y;
+        private Integer width;
+        private Integer height;
+
+        // 所有条目共用的裁剪图（仅内嵌图片的响应），对应的条目组件不再携带该图片
+        private InlineImage image;
+
+        public Slot(String type, int x, int y, int width, int height) {
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class RepeatItem {
+        private Integer x;
+        private Integer y;
+        private List<String> components = new ArrayList<>();
+
+        public RepeatItem(int x, int y, List<String> components) {
+            this.x = x;
+            this.y = y;
+            this.components = components;
+        }
     }
 
     @Data
@@ -0,0 +1,66 @@
+package com.example.vibecoing2.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 设计稿解析历史检索命中结果 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisSearchHit {
+    /**
+     * 历史记录 ID
+     */
+    private String historyId;
+
+    /**
+     * 创建时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime timestamp;
+
+    /**
+     * 相关度得分（越高越相关）
+     */
+    private Double score;
+
+    /**
+     * 原始上传图片的相对路径
+     */
+    private String originalImagePath;
+
+    /**
+     * 组件总数
+     */
+    private Integer componentCount;
+
+    /**
+     * 使用的分析引擎
+     */
+    private String analysisEngine;
+
+    /**
+     * 命中的组件列表
+     */
+    private List<MatchedComponent> matches;
+
+    /**
+     * 命中的组件
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MatchedComponent {
+        private String componentId;
+        private String type;
+        private String text;
+        private List<String> colors;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.vibecoing2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量分析中单张图片的结果（NDJSON 的一行）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAnalysisItem {
+    /**
+     * 条目序号（按读取顺序，从 0 开始）；结果按完成顺序输出
+     */
+    private Integer index;
+
+    /**
+     * 条目名称（压缩包内路径或上传文件名）
+     */
+    private String name;
+
+    /**
+     * 是否分析成功
+     */
+    private Boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    /**
+     * 排队时间（毫秒）：等待在途名额与调度名额
+     */
+    private Long queueMs;
+
+    /**
+     * 分析耗时（毫秒）
+     */
+    private Long elapsedMs;
+
+    /**
+     * 分析结果，结构与 /api/analyze 响应的 data 相同
+     */
+    private TemplateResponse data;
+}
@@ -0,0 +1,31 @@
+package com.example.vibecoing2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量分析汇总（NDJSON 的最后一行，字段名为 summary）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAnalysisSummary {
+    /**
+     * 读取到的图片条目数、成功数、失败数
+     */
+    private Integer total;
+    private Integer succeeded;
+    private Integer failed;
+
+    /**
+     * 是否因条目数超过上限而未读取剩余条目
+     */
+    private Boolean truncated;
+
+    /**
+     * 总耗时（毫秒）与吞吐量（张/分钟）
+     */
+    private Long elapsedMs;
+    private Double imagesPerMinute;
+}
@@ -0,0 +1,38 @@
+package com.example.vibecoing2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个 OpenCV 检测器的执行指标
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DetectorMetric {
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_TIMEOUT = "timeout";
+    public static final String STATUS_ERROR = "error";
+
+    /**
+     * 检测器名称
+     */
+    private String name;
+
+    /**
+     * 执行状态：ok / timeout / error
+     */
+    private String status;
+
+    /**
+     * 耗时（毫秒），超时时为时间预算
+     */
+    private Long latencyMs;
+
+    /**
+     * 检测到的组件数
+     */
+    private Integer count;
+}
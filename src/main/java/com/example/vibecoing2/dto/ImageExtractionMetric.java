@@ -0,0 +1,34 @@
+package com.example.vibecoing2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 组件图片裁剪编码的执行指标
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageExtractionMetric {
+
+    /**
+     * 提取的图片组件数
+     */
+    private Integer images;
+
+    /**
+     * 提取到背景图的按钮数（纯色按钮不计）
+     */
+    private Integer buttonImages;
+
+    /**
+     * 像素相同而复用已有编码结果的裁剪数
+     */
+    private Integer reused;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private Long elapsedMs;
+}
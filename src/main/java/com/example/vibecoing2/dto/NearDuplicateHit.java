@@ -0,0 +1,47 @@
+package com.example.vibecoing2.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 近似重复的设计稿解析历史记录 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearDuplicateHit {
+    /**
+     * 历史记录 ID
+     */
+    private String historyId;
+
+    /**
+     * 感知哈希汉明距离（0 ~ 64，越小越相似）
+     */
+    private Integer distance;
+
+    /**
+     * 创建时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime timestamp;
+
+    /**
+     * 原始上传图片的相对路径
+     */
+    private String originalImagePath;
+
+    /**
+     * 组件总数
+     */
+    private Integer componentCount;
+
+    /**
+     * 使用的分析引擎
+     */
+    private String analysisEngine;
+}
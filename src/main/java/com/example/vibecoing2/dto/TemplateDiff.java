@@ -0,0 +1,78 @@
+package com.example.vibecoing2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量分析结果：与基准历史记录相比的变化
+ */
+@Data
+@NoArgsConstructor
+public class TemplateDiff {
+
+    /**
+     * 基准历史记录 ID
+     */
+    private String baseHistoryId;
+
+    /**
+     * 基准由近似重复检索自动选出时，与本次上传的感知哈希汉明距离
+     */
+    private Integer hashDistance;
+
+    /**
+     * 是否按变化区域增量分析；false 表示退回整页分析（原因见 reason）
+     */
+    private Boolean incremental;
+
+    /**
+     * 退回整页分析的原因
+     */
+    private String reason;
+
+    /**
+     * 分块方块边长（像素）、方块总数与变化方块数
+     */
+    private Integer tileSize;
+    private Integer totalTiles;
+    private Integer changedTiles;
+
+    /**
+     * 重新分析的区域（已按组件边界扩展）
+     */
+    private List<Region> regions = new ArrayList<>();
+
+    /**
+     * 新增、删除、变化（与旧组件同类型且位置重叠，沿用旧 ID）的组件 ID
+     */
+    private List<String> added = new ArrayList<>();
+    private List<String> removed = new ArrayList<>();
+    private List<String> modified = new ArrayList<>();
+
+    /**
+     * 沿用基准模板、未重新分析的组件数
+     */
+    private Integer unchanged;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Region {
+        private Integer x;
+        private Integer y;
+        private Integer width;
+        private Integer height;
+    }
+
+    public static TemplateDiff fullReanalysis(String baseHistoryId, String reason) {
+        TemplateDiff diff = new TemplateDiff();
+        diff.setBaseHistoryId(baseHistoryId);
+        diff.setIncremental(false);
+        diff.setReason(reason);
+        return diff;
+    }
+}
@@ -5,6 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -14,6 +17,9 @@ public class TemplateResponse {
     private PageTemplate template;
     private AnalysisMetadata metadata;
 
+    // 指定 baseHistoryId 重新分析时与基准记录的差异，其它情况为 null
+    private TemplateDiff diff;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -26,13 +32,23 @@ public class TemplateResponse {
         private Boolean aiUsed;
         private Boolean ocrUsed;
         private Boolean cvUsed;
+        private List<DetectorMetric> detectorMetrics;
+
+        // 各处理阶段耗时（毫秒），如 preprocess / ai / ocr / cv / layout / imageExtraction
+        private Map<String, Long> stageTimings;
+
+        // 组件图片裁剪编码的统计（提取数、复用编码数、耗时），未提取图片时为 null
+        private ImageExtractionMetric imageExtraction;
+
+        // 模板中的组件是否都带有裁剪图片（图片组件与按钮背景图）；近似重复复用时据此判断基准记录能否沿用图片
+        private Boolean componentImages;
     }
 
     public static TemplateResponse success(PageTemplate template, AnalysisMetadata metadata) {
-        return new TemplateResponse(true, "分析成功", template, metadata);
+        return new TemplateResponse(true, "分析成功", template, metadata, null);
     }
 
     public static TemplateResponse error(String message) {
-        return new TemplateResponse(false, message, null, null);
+        return new TemplateResponse(false, message, null, null, null);
     }
 }
@@ -0,0 +1,142 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.domain.InlineImage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 短期资源缓存
+ * assets=url 模式下，裁剪图与整页背景图以二进制形式放入内存缓存，响应中只返回
+ * /api/assets/{id} 地址，由浏览器并行加载。
+ * 资源 ID 为内容哈希（相同内容只存一份），按 TTL 过期，并按条目数 / 总字节数做 LRU 淘汰
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AssetCacheService {
+
+    public static final String URL_PREFIX = "/api/assets/";
+
+    private final AppConfig appConfig;
+
+    // 访问顺序的 LinkedHashMap 即 LRU 链表，所有访问在 this 上同步
+    private final LinkedHashMap<String, Asset> assets = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * 缓存中的资源
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Asset {
+        private String id;
+        private String contentType;
+        private byte[] data;
+        private long expiresAt;
+    }
+
+    /**
+     * 放入资源，返回资源 URL
+     */
+    public String put(byte[] data, String contentType) {
+        String id = contentId(data, contentType);
+        long expiresAt = System.currentTimeMillis() + appConfig.getAssets().getTtlSeconds() * 1000L;
+
+        synchronized (this) {
+            Asset existing = assets.get(id);
+            if (existing != null) {
+                existing.setExpiresAt(expiresAt);
+            } else {
+                assets.put(id, new Asset(id, contentType, data, expiresAt));
+                totalBytes += data.length;
+                evict(id);
+            }
+        }
+        return URL_PREFIX + id;
+    }
+
+    /**
+     * 把内嵌图片放入缓存并返回指向资源 URL 的图片；已是 URL 的图片原样返回
+     */
+    public InlineImage toAssetUrl(InlineImage image) {
+        if (image == null || !image.isInline()) {
+            return image;
+        }
+        return InlineImage.ofUrl(put(image.getData(), image.getMimeType()));
+    }
+
+    /**
+     * 取资源，不存在或已过期返回 null
+     */
+    public synchronized Asset get(String id) {
+        Asset asset = assets.get(id);
+        if (asset == null) {
+            return null;
+        }
+        if (asset.getExpiresAt() < System.currentTimeMillis()) {
+            remove(id);
+            return null;
+        }
+        return asset;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", assets.size());
+        stats.put("bytes", totalBytes);
+        return stats;
+    }
+
+    /**
+     * 从最久未访问的一端淘汰过期资源以及超出条目数 / 字节数上限的资源（刚放入的资源不淘汰）
+     */
+    private void evict(String keepId) {
+        AppConfig.AssetConfig config = appConfig.getAssets();
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, Asset>> iterator = assets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Asset asset = iterator.next().getValue();
+            if (asset.getId().equals(keepId)) {
+                continue;
+            }
+            boolean overLimit = assets.size() > config.getMaxEntries() || totalBytes > config.getMaxBytes();
+            if (!overLimit && asset.getExpiresAt() >= now) {
+                // 过期时间随放入时间递增，LRU 顺序与过期顺序基本一致，遇到未过期的条目即可停止（其余过期条目在读取时清理）
+                break;
+            }
+            iterator.remove();
+            totalBytes -= asset.getData().length;
+        }
+    }
+
+    private void remove(String id) {
+        Asset removed = assets.remove(id);
+        if (removed != null) {
+            totalBytes -= removed.getData().length;
+        }
+    }
+
+    private String contentId(byte[] data, String contentType) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contentType.getBytes(StandardCharsets.UTF_8));
+            digest.update(data);
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
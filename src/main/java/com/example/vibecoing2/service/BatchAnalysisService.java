@@ -0,0 +1,307 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.dto.BatchAnalysisItem;
+import com.example.vibecoing2.dto.BatchAnalysisSummary;
+import com.example.vibecoing2.dto.TemplateResponse;
+import com.example.vibecoing2.util.FairScheduler;
+import com.example.vibecoing2.util.FieldProjection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 批量设计稿分析
+ * 上传的 ZIP 按条目顺序流式读取（一次只解压一个条目到内存，不落盘），普通图片文件直接读取；
+ * 每张图片读取后立即提交分析，同时在途的图片数受全局名额限制（所有批量请求共享），名额用完时暂停读取。
+ * 每张图片以批量优先级经 {@link WorkloadScheduler} 排队，不占用为交互请求预留的名额：
+ * 分析名额只在解码、OCR / CV 与生成模板期间占用，等待 AI 响应时交还；
+ * AI 调用同样以批量优先级在 AI 调度器上排队，最多占用 app.scheduler.ai-batch-max-concurrency 个上游名额。
+ * 因此第 N 张等待 AI 响应时第 N+1 张已在解码、检测，同时在途的图片数由 app.batch.max-in-flight 决定，
+ * 吞吐量取决于批量 AI 名额而不是分析名额或单次请求的串行耗时。
+ * 结果按完成顺序逐条回调，回调在同一把锁内串行执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchAnalysisService {
+
+    private static final String ZIP_EXTENSION = "zip";
+
+    private final AppConfig appConfig;
+    private final ImageAnalysisService imageAnalysisService;
+    private final WorkloadScheduler workloadScheduler;
+
+    // 在途图片名额（所有批量请求共享）
+    private Semaphore inFlightPermits;
+    private ExecutorService pool;
+
+    /**
+     * 结果回调（写出 NDJSON 行）；抛出 IOException 表示客户端已断开，停止读取后续条目
+     */
+    @FunctionalInterface
+    public interface ItemSink {
+        void accept(BatchAnalysisItem item) throws IOException;
+    }
+
+    /**
+     * 分析选项（与单张分析接口相同）
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Options {
+        private Boolean enableAI;
+        private Boolean enableOCR;
+        private Boolean enableCV;
+        private String assetsMode;
+        private FieldProjection projection;
+
+        /**
+         * 调度使用的客户端 ID
+         */
+        private String clientId;
+    }
+
+    @PostConstruct
+    public void init() {
+        Integer configured = appConfig.getBatch().getMaxInFlight();
+        int maxInFlight = configured != null && configured > 0
+                ? configured
+                : Runtime.getRuntime().availableProcessors() * 2;
+        inFlightPermits = new Semaphore(maxInFlight, true);
+
+        // 并发由名额控制，线程池本身不限制线程数
+        AtomicInteger threadIndex = new AtomicInteger();
+        pool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "batch-analysis-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("批量分析初始化完成: 在途上限={}", maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 分析上传的 ZIP 与图片文件，阻塞到所有已提交的图片分析完成
+     *
+     * @param files   ZIP 或图片文件
+     * @param options 分析选项
+     * @param sink    单张图片结果回调
+     * @return 汇总
+     */
+    public BatchAnalysisSummary analyze(List<MultipartFile> files, Options options, ItemSink sink) throws IOException {
+        AppConfig.BatchConfig config = appConfig.getBatch();
+        Run run = new Run(options, sink, config.getMaxEntries());
+        log.info("开始批量分析: 文件数={}", files.size());
+
+        try {
+            for (MultipartFile file : files) {
+                if (run.isStopped()) {
+                    break;
+                }
+                String name = file.getOriginalFilename() != null ? file.getOriginalFilename() : "";
+                String extension = extensionOf(name);
+
+                if (ZIP_EXTENSION.equals(extension)) {
+                    try (ZipInputStream zip = new ZipInputStream(file.getInputStream(), StandardCharsets.UTF_8)) {
+                        ZipEntry entry;
+                        while (!run.isStopped() && (entry = zip.getNextEntry()) != null) {
+                            if (entry.isDirectory() || !isImageEntry(entry.getName())) {
+                                continue;
+                            }
+                            // 多读一个字节用于判断是否超过上限，条目剩余内容由 getNextEntry 跳过
+                            byte[] data = zip.readNBytes((int) Math.min(Integer.MAX_VALUE - 1, config.getMaxEntryBytes()) + 1);
+                            run.submit(entry.getName(), data.length > config.getMaxEntryBytes() ? null : data);
+                        }
+                    }
+                } else if (isImageExtension(extension)) {
+                    run.submit(name, file.getSize() > config.getMaxEntryBytes() ? null : file.getBytes());
+                } else {
+                    run.reject(name, "不支持的文件格式，仅支持 zip, jpg, jpeg, png, bmp");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("批量分析被中断，停止读取后续条目");
+        }
+
+        return run.finish();
+    }
+
+    /**
+     * 一次批量请求的状态
+     */
+    private class Run {
+        private final Options options;
+        private final ItemSink sink;
+        private final int maxEntries;
+        private final long startTime = System.currentTimeMillis();
+
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Object sinkLock = new Object();
+        private int submitted;
+        private boolean truncated;
+        private volatile boolean aborted;
+
+        Run(Options options, ItemSink sink, int maxEntries) {
+            this.options = options;
+            this.sink = sink;
+            this.maxEntries = maxEntries;
+        }
+
+        boolean isStopped() {
+            return aborted || truncated;
+        }
+
+        /**
+         * 占用一个在途名额后提交分析；data 为 null 表示条目超过大小上限
+         */
+        void submit(String name, byte[] data) throws InterruptedException {
+            if (submitted >= maxEntries) {
+                truncated = true;
+                log.warn("批量分析条目数超过上限 {}，忽略剩余条目", maxEntries);
+                return;
+            }
+            int index = submitted++;
+            if (data == null) {
+                failed.incrementAndGet();
+                emit(new BatchAnalysisItem(index, name, false,
+                        "超过单个条目大小上限 " + appConfig.getBatch().getMaxEntryBytes() + " 字节", 0L, 0L, null));
+                return;
+            }
+
+            long queueStart = System.currentTimeMillis();
+            inFlightPermits.acquire();
+            long queueMs = System.currentTimeMillis() - queueStart;
+
+            try {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        analyzeEntry(index, name, data, queueMs);
+                    } finally {
+                        inFlightPermits.release();
+                    }
+                }, pool));
+            } catch (RuntimeException e) {
+                inFlightPermits.release();
+                throw e;
+            }
+        }
+
+        void reject(String name, String message) {
+            if (submitted >= maxEntries) {
+                truncated = true;
+                return;
+            }
+            failed.incrementAndGet();
+            emit(new BatchAnalysisItem(submitted++, name, false, message, 0L, 0L, null));
+        }
+
+        private void analyzeEntry(int index, String name, byte[] data, long inFlightQueueMs) {
+            long submittedAt = System.currentTimeMillis();
+            long[] startedAt = {submittedAt};
+            TemplateResponse result;
+            try {
+                result = workloadScheduler.analysis().execute(FairScheduler.Priority.BATCH, options.getClientId(), () -> {
+                    startedAt[0] = System.currentTimeMillis();
+                    return imageAnalysisService.analyzeImage(data, options.getEnableAI(), options.getEnableOCR(),
+                            options.getEnableCV(), options.getAssetsMode(), options.getProjection(), null);
+                });
+            } catch (Exception e) {
+                log.error("批量分析条目失败: {}", name, e);
+                result = TemplateResponse.error("图片分析失败: " + e.getMessage());
+            }
+            long end = System.currentTimeMillis();
+            // 排队时间包括等待在途名额与等待调度名额
+            long queueMs = inFlightQueueMs + (startedAt[0] - submittedAt);
+            long elapsedMs = end - startedAt[0];
+
+            boolean success = Boolean.TRUE.equals(result.getSuccess());
+            if (success) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            emit(new BatchAnalysisItem(index, name, success, success ? null : result.getMessage(),
+                    queueMs, elapsedMs, result));
+        }
+
+        private void emit(BatchAnalysisItem item) {
+            synchronized (sinkLock) {
+                if (aborted) {
+                    return;
+                }
+                try {
+                    sink.accept(item);
+                } catch (IOException e) {
+                    aborted = true;
+                    log.warn("写出批量分析结果失败（客户端可能已断开），停止读取后续条目: {}", e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 等待已提交的分析全部完成
+         */
+        BatchAnalysisSummary finish() {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            long elapsedMs = System.currentTimeMillis() - startTime;
+            int total = succeeded.get() + failed.get();
+            double imagesPerMinute = elapsedMs > 0 ? total * 60000.0 / elapsedMs : 0;
+            log.info("批量分析完成: 总数={}, 成功={}, 失败={}, 耗时={}ms, 吞吐={} 张/分钟",
+                    total, succeeded.get(), failed.get(), elapsedMs, String.format("%.1f", imagesPerMinute));
+
+            return new BatchAnalysisSummary(total, succeeded.get(), failed.get(), truncated, elapsedMs,
+                    Math.round(imagesPerMinute * 10) / 10.0);
+        }
+    }
+
+    /**
+     * 压缩包内的图片条目（跳过 macOS 资源目录与隐藏文件）
+     */
+    private static boolean isImageEntry(String entryName) {
+        if (entryName.startsWith("__MACOSX/")) {
+            return false;
+        }
+        String baseName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        return !baseName.startsWith(".") && isImageExtension(extensionOf(baseName));
+    }
+
+    private static boolean isImageExtension(String extension) {
+        return extension.equals("jpg") || extension.equals("jpeg") ||
+               extension.equals("png") || extension.equals("bmp");
+    }
+
+    private static String extensionOf(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? "" : filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
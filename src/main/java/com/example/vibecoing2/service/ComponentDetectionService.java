@@ -1,19 +1,38 @@
 package com.example.vibecoing2.service;
 
 import com.example.vibecoing2.config.OpenCVConfig;
-import com.example.vibecoing2.domain.*;
-import com.example.vibecoing2.util.ColorExtractor;
-import com.example.vibecoing2.util.CoordinateConverter;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.dto.DetectorMetric;
+import com.example.vibecoing2.service.detector.ComponentDetector;
+import com.example.vibecoing2.service.detector.FeatureMaps;
 import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.opencv.core.*;
-import org.opencv.imgproc.Imgproc;
+import org.opencv.core.Mat;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OpenCV 组件检测
+ * 所有实现 {@link ComponentDetector} 的 Spring Bean 自动注册为检测器，可按名称通过
+ * app.opencv.detectors.&lt;name&gt;.enabled / time-budget-ms 单独开关和设置时间预算。
+ * 每次请求构建一份 {@link FeatureMaps}，启用的检测器在 ForkJoin 线程池上并行执行并共享特征图，
+ * 超出时间预算的检测器结果被丢弃；每个检测器的耗时与组件数写入响应元数据
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -21,133 +40,138 @@ public class ComponentDetectionService {
 
     private final OpenCVConfig openCVConfig;
     private final ImageProcessor imageProcessor;
-    private final ColorExtractor colorExtractor;
-    private final CoordinateConverter coordinateConverter;
-
-    public List<Component> detectComponents(String imagePath) {
-        List<Component> components = new ArrayList<>();
-
-        Mat image = imageProcessor.loadImage(imagePath);
-
-        List<ButtonComponent> buttons = detectButtons(image);
-        components.addAll(buttons);
-
-        List<ImageComponent> images = detectImageRegions(image);
-        components.addAll(images);
-
-        log.info("OpenCV 检测完成：{} 个按钮，{} 个图片区域", buttons.size(), images.size());
-
-        return components;
+    private final List<ComponentDetector> detectors;
+
+    private ForkJoinPool pool;
+
+    /**
+     * 检测结果：组件与各检测器的执行指标
+     */
+    @Data
+    @AllArgsConstructor
+    public static class DetectionResult {
+        private List<Component> components;
+        private List<DetectorMetric> metrics;
     }
 
-    private List<ButtonComponent> detectButtons(Mat image) {
-        List<ButtonComponent> buttons = new ArrayList<>();
-
-        Mat gray = imageProcessor.convertToGray(image);
-        Mat edges = imageProcessor.detectEdges(gray);
-
-        List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierarchy = new Mat();
-        Imgproc.findContours(edges, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
-
-        for (MatOfPoint contour : contours) {
-            Rect rect = Imgproc.boundingRect(contour);
-
-            if (isButtonShape(rect)) {
-                ButtonComponent button = createButtonComponent(image, rect);
-                buttons.add(button);
-            }
+    @PostConstruct
+    public void init() {
+        int parallelism = openCVConfig.getDetectorParallelism() != null && openCVConfig.getDetectorParallelism() > 0
+                ? openCVConfig.getDetectorParallelism()
+                : Runtime.getRuntime().availableProcessors();
+
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("cv-detector-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        List<String> enabled = new ArrayList<>();
+        List<String> disabled = new ArrayList<>();
+        for (ComponentDetector detector : detectors) {
+            (isEnabled(detector) ? enabled : disabled).add(detector.getName());
         }
-
-        log.info("检测到 {} 个按钮", buttons.size());
-
-        return buttons;
+        log.info("OpenCV 检测器注册完成: 启用={}, 停用={}, 并行度={}", enabled, disabled, parallelism);
     }
 
-    private boolean isButtonShape(Rect rect) {
-        double aspectRatio = (double) rect.width / rect.height;
-
-        boolean widthOk = rect.width >= openCVConfig.getMinButtonWidth();
-        boolean heightOk = rect.height >= openCVConfig.getMinButtonHeight();
-        boolean aspectRatioOk = aspectRatio >= openCVConfig.getButtonAspectRatioMin()
-                && aspectRatio <= openCVConfig.getButtonAspectRatioMax();
-
-        return widthOk && heightOk && aspectRatioOk;
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
     }
 
-    private ButtonComponent createButtonComponent(Mat image, Rect rect) {
-        ButtonComponent button = new ButtonComponent();
-        button.setId("button-cv-" + System.nanoTime());
-        button.setText("按钮");
-        button.setPosition(coordinateConverter.toPosition(rect));
-        button.setSize(coordinateConverter.toSize(rect));
-        button.setConfidence(0.7);
-
-        Mat buttonRegion = imageProcessor.extractRegion(image, rect);
-        String backgroundColor = colorExtractor.extractDominantColor(buttonRegion);
-        String textColor = colorExtractor.getContrastColor(backgroundColor);
-
-        button.setBackgroundColor(backgroundColor);
-        button.setTextColor(textColor);
-        button.setBorderRadius(estimateBorderRadius(rect));
-
-        return button;
+    public List<Component> detectComponents(String imagePath) {
+        try (MatScope scope = new MatScope()) {
+            Mat image = scope.track(imageProcessor.loadImage(imagePath));
+            return detectComponents(image);
+        }
     }
 
-    private int estimateBorderRadius(Rect rect) {
-        return Math.min(rect.height / 2, 25);
+    public List<Component> detectComponents(Mat image) {
+        return detect(image).getComponents();
     }
 
-    private List<ImageComponent> detectImageRegions(Mat image) {
-        List<ImageComponent> imageComponents = new ArrayList<>();
-
-        Mat gray = imageProcessor.convertToGray(image);
-
-        Mat binary = imageProcessor.threshold(gray);
-
-        List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierarchy = new Mat();
-        Imgproc.findContours(binary, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+    /**
+     * 直接检测内存中的图像（BGR），不再从磁盘重新读取
+     */
+    public DetectionResult detect(Mat image) {
+        List<Component> components = new ArrayList<>();
+        List<DetectorMetric> metrics = new ArrayList<>();
+
+        List<ComponentDetector> active = detectors.stream().filter(this::isEnabled).toList();
+        List<ForkJoinTask<TimedResult>> tasks = new ArrayList<>(active.size());
+        List<AtomicBoolean> abandonedFlags = new ArrayList<>(active.size());
+
+        try (FeatureMaps featureMaps = new FeatureMaps(image, imageProcessor)) {
+            long startTime = System.nanoTime();
+            for (ComponentDetector detector : active) {
+                // 每个任务持有一份特征图引用，超时后仍在运行的检测器结束时才真正释放；
+                // 超时的任务不取消（未开始的任务取消后不会执行 close），而是标记放弃，开始执行时直接返回
+                FeatureMaps retained = featureMaps.retain();
+                AtomicBoolean abandoned = new AtomicBoolean(false);
+                abandonedFlags.add(abandoned);
+                tasks.add(pool.submit(() -> {
+                    try (retained) {
+                        if (abandoned.get()) {
+                            return new TimedResult(List.of(), 0);
+                        }
+                        long detectorStart = System.nanoTime();
+                        List<? extends Component> detected = detector.detect(retained);
+                        return new TimedResult(detected, System.nanoTime() - detectorStart);
+                    }
+                }));
+            }
 
-        for (MatOfPoint contour : contours) {
-            Rect rect = Imgproc.boundingRect(contour);
+            boolean interrupted = false;
+            for (int i = 0; i < active.size(); i++) {
+                ComponentDetector detector = active.get(i);
+                long budgetMs = getTimeBudgetMs(detector);
+                long remainingNanos = startTime + TimeUnit.MILLISECONDS.toNanos(budgetMs) - System.nanoTime();
+
+                try {
+                    TimedResult result = tasks.get(i).get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+                    components.addAll(result.components);
+                    metrics.add(new DetectorMetric(detector.getName(), DetectorMetric.STATUS_OK,
+                            TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos), result.components.size()));
+                } catch (TimeoutException e) {
+                    abandonedFlags.get(i).set(true);
+                    metrics.add(new DetectorMetric(detector.getName(), DetectorMetric.STATUS_TIMEOUT, budgetMs, 0));
+                    log.warn("检测器 {} 超出时间预算 {}ms，结果已丢弃", detector.getName(), budgetMs);
+                } catch (ExecutionException e) {
+                    metrics.add(new DetectorMetric(detector.getName(), DetectorMetric.STATUS_ERROR,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), 0));
+                    log.error("检测器 {} 执行失败", detector.getName(), e.getCause());
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    abandonedFlags.get(i).set(true);
+                    metrics.add(new DetectorMetric(detector.getName(), DetectorMetric.STATUS_ERROR,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), 0));
+                }
+            }
 
-            if (isImageRegion(rect, image.size())) {
-                ImageComponent imageComponent = createImageComponent(image, rect);
-                imageComponents.add(imageComponent);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
 
-        log.info("检测到 {} 个图片区域", imageComponents.size());
+        log.info("OpenCV 检测完成：{} 个检测器，{} 个组件，{}", active.size(), components.size(), metrics);
 
-        return imageComponents;
+        return new DetectionResult(components, metrics);
     }
 
-    private boolean isImageRegion(Rect rect, org.opencv.core.Size imageSize) {
-        double areaRatio = (double) rect.area() / (imageSize.width * imageSize.height);
-
-        boolean largeEnough = rect.width > 100 && rect.height > 100;
-        boolean notTooLarge = areaRatio < 0.8;
-        boolean aspectRatioOk = (double) rect.width / rect.height > 0.5 && (double) rect.width / rect.height < 3.0;
-
-        return largeEnough && notTooLarge && aspectRatioOk;
+    private boolean isEnabled(ComponentDetector detector) {
+        return !Boolean.FALSE.equals(openCVConfig.getDetector(detector.getName()).getEnabled());
     }
 
-    private ImageComponent createImageComponent(Mat image, Rect rect) {
-        ImageComponent imageComponent = new ImageComponent();
-        imageComponent.setId("image-cv-" + System.nanoTime());
-        imageComponent.setPosition(coordinateConverter.toPosition(rect));
-        imageComponent.setSize(coordinateConverter.toSize(rect));
-        imageComponent.setConfidence(0.7);
-
-        Mat imageRegion = imageProcessor.extractRegion(image, rect);
-        String dominantColor = colorExtractor.extractDominantColor(imageRegion);
-
-        imageComponent.setPlaceholderUrl("https://placehold.co/" + rect.width + "x" + rect.height);
-        imageComponent.setPlaceholderAlt("图片占位符");
-        imageComponent.setDominantColor(dominantColor);
-        imageComponent.setObjectFit("cover");
+    private long getTimeBudgetMs(ComponentDetector detector) {
+        Long budget = openCVConfig.getDetector(detector.getName()).getTimeBudgetMs();
+        return budget != null && budget > 0 ? budget : openCVConfig.getDetectorTimeBudgetMs();
+    }
 
-        return imageComponent;
+    @AllArgsConstructor
+    private static class TimedResult {
+        private final List<? extends Component> components;
+        private final long elapsedNanos;
     }
 }
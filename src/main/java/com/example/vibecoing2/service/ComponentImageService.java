@@ -0,0 +1,255 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.InlineImage;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.dto.ImageExtractionMetric;
+import com.example.vibecoing2.util.ImageCodecSelector;
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 组件图片提取
+ * 图片组件与非纯色按钮的裁剪、缩放、编码（格式由 {@link ImageCodecSelector} 按内容选择）
+ * 在有界线程池上并行执行（队列满时由提交线程自己执行，限制同时在途的裁剪数量）。
+ * 结果按组件顺序回填，输出与串行执行一致；像素完全相同的裁剪只编码一次。
+ * 组件中只保存编码后的原始字节，base64 在输出响应时流式生成
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ComponentImageService {
+
+    // 不同图片类型的压缩尺寸
+    private static final int MAX_SIZE_BACKGROUND = 1920;
+    private static final int MAX_SIZE_DECORATION = 800;
+    private static final int MAX_SIZE_CONTENT = 600;
+    private static final int MAX_SIZE_BUTTON = 600;
+
+    private final AppConfig appConfig;
+    private final ImageProcessor imageProcessor;
+    private final ImageCodecSelector codecSelector;
+
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    public void init() {
+        Integer configured = appConfig.getImage().getEncodeParallelism();
+        int parallelism = configured != null && configured > 0
+                ? configured
+                : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        pool = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "crop-encoder-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        log.info("组件图片编码线程池初始化完成: 并行度={}", parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 提取所有组件的图片数据
+     */
+    public ImageExtractionMetric extractComponentImages(Mat processedImage, PageTemplate template) {
+        return extractComponentImages(processedImage, template, true, true);
+    }
+
+    /**
+     * 提取组件图片数据，未请求的组件类型不裁剪、不编码
+     *
+     * @param imageComponents  是否提取图片组件（placeholder.url）
+     * @param buttonComponents 是否提取按钮背景图（backgroundImage）
+     */
+    public ImageExtractionMetric extractComponentImages(Mat processedImage, PageTemplate template,
+                                                  boolean imageComponents, boolean buttonComponents) {
+        return extractComponentImages(processedImage, template.getComponents(), imageComponents, buttonComponents);
+    }
+
+    /**
+     * 只提取指定组件的图片数据（增量分析时其余组件沿用已有图片）
+     */
+    public ImageExtractionMetric extractComponentImages(Mat processedImage, List<Component> components,
+                                                  boolean imageComponents, boolean buttonComponents) {
+        log.info("开始提取组件图片数据...");
+        long startTime = System.nanoTime();
+
+        // 像素摘要 + 压缩尺寸 -> 编码结果；先登记的任务负责编码，其余任务等待同一个结果
+        ConcurrentMap<String, CompletableFuture<InlineImage>> encodedCrops = new ConcurrentHashMap<>();
+        AtomicInteger reused = new AtomicInteger();
+
+        List<Future<InlineImage>> futures = new ArrayList<>(components.size());
+        for (Component component : components) {
+            if ((imageComponents && component instanceof ImageComponent)
+                    || (buttonComponents && component instanceof ButtonComponent)) {
+                futures.add(pool.submit(() -> extract(processedImage, component, encodedCrops, reused)));
+            } else {
+                futures.add(null);
+            }
+        }
+
+        // 按组件顺序回填
+        int imageExtracted = 0;
+        int buttonImageExtracted = 0;
+        boolean interrupted = false;
+        for (int i = 0; i < components.size(); i++) {
+            Future<InlineImage> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            Component component = components.get(i);
+
+            InlineImage encoded;
+            try {
+                encoded = future.get();
+            } catch (ExecutionException e) {
+                log.warn("提取组件图片失败: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                continue;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                break;
+            }
+
+            if (component instanceof ImageComponent) {
+                if (encoded != null) {
+                    ((ImageComponent) component).setPlaceholderImage(encoded);
+                }
+                imageExtracted++;
+            } else if (encoded != null) {
+                ((ButtonComponent) component).setBackgroundImage(encoded);
+                buttonImageExtracted++;
+            }
+        }
+
+        if (interrupted) {
+            futures.stream().filter(f -> f != null).forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        log.info("图片提取完成: ImageComponent={}, ButtonComponent={}, 复用编码={}, 耗时={}ms",
+                imageExtracted, buttonImageExtracted, reused.get(), elapsedMs);
+
+        return new ImageExtractionMetric(imageExtracted, buttonImageExtracted, reused.get(), elapsedMs);
+    }
+
+    /**
+     * 在线程池中执行：裁剪并编码单个组件，返回编码后的图片（无需提取时返回 null）
+     */
+    private InlineImage extract(Mat image, Component component,
+                           ConcurrentMap<String, CompletableFuture<InlineImage>> encodedCrops, AtomicInteger reused) {
+        int x = component.getPosition().getX();
+        int y = component.getPosition().getY();
+        int width = component.getSize().getWidth();
+        int height = component.getSize().getHeight();
+
+        try (MatScope scope = new MatScope()) {
+            // 裁剪区域（共享原图数据的子矩阵，只读访问）
+            Mat region = scope.track(imageProcessor.cropImageRegion(image, x, y, width, height));
+
+            // 检查裁剪是否成功
+            if (region.empty()) {
+                log.warn("组件区域裁剪失败: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
+                return null;
+            }
+
+            int maxSize;
+            if (component instanceof ImageComponent) {
+                // 根据图片类型选择压缩尺寸（提高清晰度）
+                String imageType = ((ImageComponent) component).getImageType();
+                if ("background".equals(imageType)) {
+                    maxSize = MAX_SIZE_BACKGROUND; // 背景图（高清）
+                } else if ("decoration".equals(imageType)) {
+                    maxSize = MAX_SIZE_DECORATION; // 装饰图
+                } else {
+                    maxSize = MAX_SIZE_CONTENT; // 内容图/小图标（提高清晰度）
+                }
+            } else {
+                // 纯色按钮不需要背景图
+                if (imageProcessor.isRegionSolidColor(region)) {
+                    log.debug("按钮为纯色背景，跳过图片提取: 位置=({},{})", x, y);
+                    return null;
+                }
+                maxSize = MAX_SIZE_BUTTON;
+            }
+
+            InlineImage encoded = encodeCrop(region, maxSize, encodedCrops, reused);
+            if (encoded == null) {
+                log.warn("组件图片编码失败: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
+            } else {
+                log.debug("提取组件图片成功: id={}, 位置=({},{}), 尺寸={}x{}",
+                        component.getId(), x, y, width, height);
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * 编码裁剪区域，像素相同且压缩尺寸相同的区域复用已有结果
+     */
+    private InlineImage encodeCrop(Mat region, int maxSize,
+                              ConcurrentMap<String, CompletableFuture<InlineImage>> encodedCrops, AtomicInteger reused) {
+        String hash = imageProcessor.pixelHash(region);
+        if (hash == null) {
+            return encode(region, maxSize);
+        }
+
+        CompletableFuture<InlineImage> mine = new CompletableFuture<>();
+        CompletableFuture<InlineImage> existing = encodedCrops.putIfAbsent(hash + "@" + maxSize, mine);
+        if (existing != null) {
+            // 登记该摘要的任务已在执行中，等待其结果即可
+            reused.incrementAndGet();
+            return existing.join();
+        }
+
+        try {
+            InlineImage encoded = encode(region, maxSize);
+            mine.complete(encoded);
+            return encoded;
+        } catch (RuntimeException e) {
+            mine.complete(null);
+            throw e;
+        }
+    }
+
+    /**
+     * 按内容选择编码格式（UI 图无损、照片有损），并限制在裁剪图字节预算内
+     */
+    private InlineImage encode(Mat region, int maxSize) {
+        ImageCodecSelector.EncodedImage encoded =
+                codecSelector.encode(region, maxSize, appConfig.getImage().getCropByteBudget());
+        return encoded != null ? InlineImage.of(encoded.getData(), encoded.getMimeType()) : null;
+    }
+}
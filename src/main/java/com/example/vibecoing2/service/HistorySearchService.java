@@ -0,0 +1,638 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.TextComponent;
+import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.example.vibecoing2.dto.AnalysisSearchHit;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 设计稿解析历史检索服务
+ * 在保存历史记录时建立倒排索引（文字内容、组件类型、颜色），支持增量更新与删除
+ */
+@Slf4j
+@Service
+public class HistorySearchService {
+
+    // 颜色匹配的最大 RGB 欧氏距离
+    private static final double COLOR_MATCH_DISTANCE = 48.0;
+
+    // 颜色桶：每通道保留高 2 bit（共 64 桶），桶宽 64 > 匹配距离，查询时只需检查相邻桶
+    private static final int COLOR_BUCKET_SHIFT = 6;
+
+    // 每条命中结果最多返回的组件数
+    private static final int MAX_MATCHED_COMPONENTS = 5;
+
+    // 整句命中加权
+    private static final double PHRASE_BOOST = 1.5;
+
+    // 文字词项 -> (historyId -> 词频)
+    private final Map<String, Map<String, Integer>> textPostings = new HashMap<>();
+
+    // 组件类型 -> historyId 集合
+    private final Map<String, Set<String>> typePostings = new HashMap<>();
+
+    // 颜色桶 -> historyId 集合
+    private final Map<Integer, Set<String>> colorPostings = new HashMap<>();
+
+    // historyId -> 索引文档
+    private final Map<String, IndexedDocument> documents = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 索引（或重新索引）一条历史记录
+     */
+    public void index(AnalysisHistoryRecord record) {
+        if (record == null || record.getHistoryId() == null) {
+            return;
+        }
+
+        IndexedDocument document = buildDocument(record);
+        String historyId = record.getHistoryId();
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(historyId);
+            documents.put(historyId, document);
+
+            for (Map.Entry<String, Integer> entry : document.getTermFrequencies().entrySet()) {
+                textPostings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(historyId, entry.getValue());
+            }
+            for (String type : document.getTypeCounts().keySet()) {
+                typePostings.computeIfAbsent(type, k -> new HashSet<>()).add(historyId);
+            }
+            for (Integer bucket : document.getColorBuckets()) {
+                colorPostings.computeIfAbsent(bucket, k -> new HashSet<>()).add(historyId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.debug("历史记录已加入检索索引: historyId={}, terms={}", historyId, document.getTermFrequencies().size());
+    }
+
+    /**
+     * 从索引中删除一条历史记录
+     */
+    public void remove(String historyId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(historyId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            textPostings.clear();
+            typePostings.clear();
+            colorPostings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 已索引的历史记录数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已索引记录的摘要（不含得分与命中组件），不在索引中时返回 null
+     */
+    public AnalysisSearchHit summary(String historyId) {
+        lock.readLock().lock();
+        try {
+            IndexedDocument document = documents.get(historyId);
+            if (document == null) {
+                return null;
+            }
+            return new AnalysisSearchHit(historyId, document.getTimestamp(), null, document.getOriginalImagePath(),
+                    document.getComponentCount(), document.getAnalysisEngine(), Collections.emptyList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索历史记录，多个条件之间为 AND 关系
+     *
+     * @param query 文字内容（可选）
+     * @param type  组件类型（可选）
+     * @param color 颜色，如 #FF6B6B（可选）
+     * @param page  页码（从 1 开始）
+     * @param size  每页数量
+     * @return 按相关度排序的命中结果
+     * @throws IllegalArgumentException 页码或每页数量小于 1
+     */
+    public SearchResult search(String query, String type, String color, int page, int size) {
+        if (page < 1 || size < 1) {
+            throw new IllegalArgumentException("page 与 size 必须大于等于 1");
+        }
+        List<String> queryTerms = query != null ? tokenize(query) : Collections.emptyList();
+        String phrase = query != null ? normalize(query).trim() : "";
+        String typeFilter = type != null && !type.trim().isEmpty() ? type.trim().toLowerCase(Locale.ROOT) : null;
+        int queryColor = color != null ? parseColor(color.startsWith("#") || color.startsWith("rgb") ? color : "#" + color) : -1;
+
+        if (color != null && !color.trim().isEmpty() && queryColor < 0) {
+            throw new IllegalArgumentException("无法解析颜色: " + color);
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<String> candidates = null;
+
+            if (typeFilter != null) {
+                candidates = intersect(candidates, typePostings.getOrDefault(typeFilter, Collections.emptySet()));
+            }
+
+            for (String term : queryTerms) {
+                Map<String, Integer> postings = textPostings.getOrDefault(term, Collections.emptyMap());
+                candidates = intersect(candidates, postings.keySet());
+            }
+
+            if (queryColor >= 0) {
+                candidates = intersect(candidates, colorCandidates(queryColor));
+            }
+
+            if (candidates == null) {
+                return new SearchResult(Collections.emptyList(), 0);
+            }
+
+            int totalDocuments = documents.size();
+            List<AnalysisSearchHit> hits = new ArrayList<>();
+
+            for (String historyId : candidates) {
+                IndexedDocument document = documents.get(historyId);
+                if (document == null) {
+                    continue;
+                }
+
+                double score = 0.0;
+
+                if (!queryTerms.isEmpty()) {
+                    double textScore = 0.0;
+                    for (String term : queryTerms) {
+                        Map<String, Integer> postings = textPostings.get(term);
+                        int tf = postings.get(historyId);
+                        double idf = Math.log(1.0 + (double) totalDocuments / postings.size());
+                        textScore += (1.0 + Math.log(tf)) * idf;
+                    }
+                    if (!phrase.isEmpty() && document.containsPhrase(phrase)) {
+                        textScore *= PHRASE_BOOST;
+                    }
+                    score += textScore;
+                }
+
+                if (typeFilter != null && document.getComponentCount() > 0) {
+                    score += (double) document.getTypeCounts().getOrDefault(typeFilter, 0) / document.getComponentCount();
+                }
+
+                if (queryColor >= 0) {
+                    double distance = document.nearestColorDistance(queryColor);
+                    if (distance > COLOR_MATCH_DISTANCE) {
+                        continue;
+                    }
+                    score += 1.0 - distance / COLOR_MATCH_DISTANCE;
+                }
+
+                hits.add(new AnalysisSearchHit(
+                        historyId,
+                        document.getTimestamp(),
+                        score,
+                        document.getOriginalImagePath(),
+                        document.getComponentCount(),
+                        document.getAnalysisEngine(),
+                        document.matchComponents(queryTerms, phrase, typeFilter, queryColor)
+                ));
+            }
+
+            // 按得分倒序，得分相同按时间倒序
+            hits.sort(Comparator.comparing(AnalysisSearchHit::getScore)
+                    .thenComparing(AnalysisSearchHit::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .reversed());
+
+            // 按 long 计算偏移，避免 page * size 溢出后回到第一页
+            long start = (long) (page - 1) * size;
+            if (start >= hits.size()) {
+                return new SearchResult(Collections.emptyList(), hits.size());
+            }
+            int end = (int) Math.min(start + size, hits.size());
+
+            return new SearchResult(new ArrayList<>(hits.subList((int) start, end)), hits.size());
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(String historyId) {
+        IndexedDocument document = documents.remove(historyId);
+        if (document == null) {
+            return;
+        }
+
+        for (String term : document.getTermFrequencies().keySet()) {
+            Map<String, Integer> postings = textPostings.get(term);
+            if (postings != null) {
+                postings.remove(historyId);
+                if (postings.isEmpty()) {
+                    textPostings.remove(term);
+                }
+            }
+        }
+        for (String type : document.getTypeCounts().keySet()) {
+            removePosting(typePostings, type, historyId);
+        }
+        for (Integer bucket : document.getColorBuckets()) {
+            removePosting(colorPostings, bucket, historyId);
+        }
+    }
+
+    private <K> void removePosting(Map<K, Set<String>> postings, K key, String historyId) {
+        Set<String> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(historyId);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private Set<String> intersect(Set<String> current, Set<String> other) {
+        if (current == null) {
+            return new HashSet<>(other);
+        }
+        current.retainAll(other);
+        return current;
+    }
+
+    /**
+     * 召回颜色相近的历史记录（查询颜色所在桶及相邻桶）
+     */
+    private Set<String> colorCandidates(int rgb) {
+        Set<String> result = new HashSet<>();
+        int maxBucket = 255 >> COLOR_BUCKET_SHIFT;
+        int rb = ((rgb >> 16) & 0xFF) >> COLOR_BUCKET_SHIFT;
+        int gb = ((rgb >> 8) & 0xFF) >> COLOR_BUCKET_SHIFT;
+        int bb = (rgb & 0xFF) >> COLOR_BUCKET_SHIFT;
+
+        for (int r = Math.max(0, rb - 1); r <= Math.min(maxBucket, rb + 1); r++) {
+            for (int g = Math.max(0, gb - 1); g <= Math.min(maxBucket, gb + 1); g++) {
+                for (int b = Math.max(0, bb - 1); b <= Math.min(maxBucket, bb + 1); b++) {
+                    Set<String> ids = colorPostings.get(toBucket(r, g, b));
+                    if (ids != null) {
+                        result.addAll(ids);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int toBucket(int r, int g, int b) {
+        return (r << 4) | (g << 2) | b;
+    }
+
+    private static int colorBucket(int rgb) {
+        return toBucket(((rgb >> 16) & 0xFF) >> COLOR_BUCKET_SHIFT,
+                ((rgb >> 8) & 0xFF) >> COLOR_BUCKET_SHIFT,
+                (rgb & 0xFF) >> COLOR_BUCKET_SHIFT);
+    }
+
+    private static double colorDistance(int c1, int c2) {
+        int dr = ((c1 >> 16) & 0xFF) - ((c2 >> 16) & 0xFF);
+        int dg = ((c1 >> 8) & 0xFF) - ((c2 >> 8) & 0xFF);
+        int db = (c1 & 0xFF) - (c2 & 0xFF);
+        return Math.sqrt(dr * dr + dg * dg + db * db);
+    }
+
+    /**
+     * 构建索引文档
+     */
+    private IndexedDocument buildDocument(AnalysisHistoryRecord record) {
+        IndexedDocument document = new IndexedDocument();
+        document.setTimestamp(record.getTimestamp());
+        document.setOriginalImagePath(record.getOriginalImagePath());
+        document.setAnalysisEngine(record.getAnalysisEngine());
+
+        List<Component> components = record.getTemplate() != null && record.getTemplate().getComponents() != null
+                ? record.getTemplate().getComponents()
+                : Collections.emptyList();
+        document.setComponentCount(components.size());
+
+        for (Component component : components) {
+            IndexedComponent indexed = new IndexedComponent();
+            indexed.setId(component.getId());
+            indexed.setType(component.getType() != null ? component.getType().toLowerCase(Locale.ROOT) : null);
+            indexed.setText(extractText(component));
+            indexed.setColors(extractColors(component));
+
+            if (indexed.getType() != null) {
+                document.getTypeCounts().merge(indexed.getType(), 1, Integer::sum);
+            }
+            if (indexed.getText() != null) {
+                for (String term : tokenize(indexed.getText())) {
+                    document.getTermFrequencies().merge(term, 1, Integer::sum);
+                }
+            }
+            for (int color : indexed.getColors()) {
+                document.getColorBuckets().add(colorBucket(color));
+            }
+
+            document.getComponents().add(indexed);
+        }
+
+        return document;
+    }
+
+    private String extractText(Component component) {
+        if (component instanceof TextComponent) {
+            return ((TextComponent) component).getContent();
+        }
+        if (component instanceof ButtonComponent) {
+            return ((ButtonComponent) component).getText();
+        }
+        return null;
+    }
+
+    private List<Integer> extractColors(Component component) {
+        Set<Integer> colors = new LinkedHashSet<>();
+
+        if (component instanceof TextComponent) {
+            addColor(colors, ((TextComponent) component).getStyle(), "color");
+        } else if (component instanceof ButtonComponent) {
+            Map<String, Object> style = ((ButtonComponent) component).getStyle();
+            addColor(colors, style, "backgroundColor");
+            addColor(colors, style, "textColor");
+        } else if (component instanceof ImageComponent) {
+            Map<String, Object> placeholder = ((ImageComponent) component).getPlaceholder();
+            if (placeholder != null) {
+                addColor(colors, placeholder, "dominantColor");
+            }
+        }
+
+        Map<String, String> cssStyles = component.getCssStyles();
+        if (cssStyles != null) {
+            addColor(colors, cssStyles.get("backgroundColor"));
+            addColor(colors, cssStyles.get("color"));
+        }
+
+        return new ArrayList<>(colors);
+    }
+
+    private void addColor(Set<Integer> colors, Map<String, ?> style, String key) {
+        if (style != null && style.get(key) instanceof String) {
+            addColor(colors, (String) style.get(key));
+        }
+    }
+
+    private void addColor(Set<Integer> colors, String value) {
+        int rgb = parseColor(value);
+        if (rgb >= 0) {
+            colors.add(rgb);
+        }
+    }
+
+    /**
+     * 解析颜色值（#RGB、#RRGGBB、#RRGGBBAA、rgb()、rgba()），失败返回 -1
+     */
+    static int parseColor(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (v.startsWith("#")) {
+                String hex = v.substring(1);
+                if (hex.length() == 3) {
+                    hex = "" + hex.charAt(0) + hex.charAt(0) + hex.charAt(1) + hex.charAt(1) + hex.charAt(2) + hex.charAt(2);
+                } else if (hex.length() == 8) {
+                    hex = hex.substring(0, 6);
+                }
+                return hex.length() == 6 ? Integer.parseInt(hex, 16) : -1;
+            }
+
+            if (v.startsWith("rgb")) {
+                int open = v.indexOf('(');
+                int close = v.indexOf(')');
+                if (open < 0 || close < open) {
+                    return -1;
+                }
+                String[] parts = v.substring(open + 1, close).split(",");
+                if (parts.length < 3) {
+                    return -1;
+                }
+                int r = clampChannel(Double.parseDouble(parts[0].trim()));
+                int g = clampChannel(Double.parseDouble(parts[1].trim()));
+                int b = clampChannel(Double.parseDouble(parts[2].trim()));
+                return (r << 16) | (g << 8) | b;
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        return -1;
+    }
+
+    private static int clampChannel(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static String toHex(int rgb) {
+        return String.format("#%06X", rgb & 0xFFFFFF);
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 分词：拉丁字母/数字按单词切分，中日韩文字按二元组（bigram）切分
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        String normalized = normalize(text);
+        StringBuilder word = new StringBuilder();
+        List<Integer> cjkRun = new ArrayList<>();
+
+        for (int i = 0; i < normalized.length(); ) {
+            int cp = normalized.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                cjkRun.add(cp);
+            } else if (Character.isLetterOrDigit(cp)) {
+                flushCjk(cjkRun, tokens);
+                word.appendCodePoint(cp);
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjkRun, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjkRun, tokens);
+
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(List<Integer> run, List<String> tokens) {
+        if (run.size() == 1) {
+            tokens.add(new String(Character.toChars(run.get(0))));
+        } else {
+            for (int i = 0; i + 1 < run.size(); i++) {
+                tokens.add(new StringBuilder().appendCodePoint(run.get(i)).appendCodePoint(run.get(i + 1)).toString());
+            }
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 检索结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class SearchResult {
+        private List<AnalysisSearchHit> hits;
+        private long total;
+    }
+
+    /**
+     * 索引文档（每条历史记录一份）
+     */
+    @Data
+    private static class IndexedDocument {
+        private LocalDateTime timestamp;
+        private String originalImagePath;
+        private String analysisEngine;
+        private int componentCount;
+        private final Map<String, Integer> termFrequencies = new HashMap<>();
+        private final Map<String, Integer> typeCounts = new HashMap<>();
+        private final Set<Integer> colorBuckets = new HashSet<>();
+        private final List<IndexedComponent> components = new ArrayList<>();
+
+        boolean containsPhrase(String phrase) {
+            for (IndexedComponent component : components) {
+                if (component.getText() != null && normalize(component.getText()).contains(phrase)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        double nearestColorDistance(int rgb) {
+            double best = Double.MAX_VALUE;
+            for (IndexedComponent component : components) {
+                for (int color : component.getColors()) {
+                    best = Math.min(best, colorDistance(color, rgb));
+                }
+            }
+            return best;
+        }
+
+        /**
+         * 挑选命中条件最多的组件（最多 MAX_MATCHED_COMPONENTS 个）
+         */
+        List<AnalysisSearchHit.MatchedComponent> matchComponents(List<String> queryTerms, String phrase,
+                                                                 String type, int queryColor) {
+            List<IndexedComponent> matched = new ArrayList<>();
+            Map<IndexedComponent, Integer> matchCounts = new IdentityHashMap<>();
+
+            for (IndexedComponent component : components) {
+                int count = 0;
+                if (!queryTerms.isEmpty() && component.getText() != null) {
+                    String text = normalize(component.getText());
+                    if (!phrase.isEmpty() && text.contains(phrase)) {
+                        count += 2;
+                    } else if (!Collections.disjoint(tokenize(component.getText()), queryTerms)) {
+                        count++;
+                    }
+                }
+                if (type != null && type.equals(component.getType())) {
+                    count++;
+                }
+                if (queryColor >= 0) {
+                    for (int color : component.getColors()) {
+                        if (colorDistance(color, queryColor) <= COLOR_MATCH_DISTANCE) {
+                            count++;
+                            break;
+                        }
+                    }
+                }
+                if (count > 0) {
+                    matched.add(component);
+                    matchCounts.put(component, count);
+                }
+            }
+
+            matched.sort(Comparator.comparing((IndexedComponent c) -> matchCounts.get(c)).reversed());
+
+            List<AnalysisSearchHit.MatchedComponent> result = new ArrayList<>();
+            for (IndexedComponent component : matched.subList(0, Math.min(MAX_MATCHED_COMPONENTS, matched.size()))) {
+                List<String> colors = new ArrayList<>();
+                for (int color : component.getColors()) {
+                    colors.add(toHex(color));
+                }
+                result.add(new AnalysisSearchHit.MatchedComponent(
+                        component.getId(), component.getType(), component.getText(), colors));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 索引中的组件摘要
+     */
+    @Data
+    private static class IndexedComponent {
+        private String id;
+        private String type;
+        private String text;
+        private List<Integer> colors = new ArrayList<>();
+    }
+}
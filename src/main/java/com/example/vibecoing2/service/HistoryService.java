@@ -1,9 +1,11 @@
 package com.example.vibecoing2.service;
 
 import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.example.vibecoing2.dto.AnalysisSearchHit;
 import com.example.vibecoing2.dto.GenerateImageRequest;
 import com.example.vibecoing2.dto.GenerateImageResponse;
 import com.example.vibecoing2.dto.HistoryRecord;
+import com.example.vibecoing2.dto.NearDuplicateHit;
 import com.example.vibecoing2.dto.TemplateResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -23,6 +25,7 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 历史记录服务
@@ -38,9 +41,14 @@ public class HistoryService {
 
     private final ObjectMapper objectMapper;
     private final OkHttpClient httpClient;
+    private final HistorySearchService historySearchService;
+    private final NearDuplicateService nearDuplicateService;
 
-    public HistoryService(ObjectMapper objectMapper) {
+    public HistoryService(ObjectMapper objectMapper, HistorySearchService historySearchService,
+                          NearDuplicateService nearDuplicateService) {
         this.objectMapper = objectMapper;
+        this.historySearchService = historySearchService;
+        this.nearDuplicateService = nearDuplicateService;
         this.objectMapper.registerModule(new JavaTimeModule());
         this.objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         this.objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
@@ -48,6 +56,9 @@ public class HistoryService {
 
         // 初始化目录
         initDirectories();
+
+        // 重建设计稿解析历史检索索引
+        rebuildAnalysisSearchIndex();
     }
 
     /**
@@ -64,6 +75,40 @@ public class HistoryService {
         }
     }
 
+    /**
+     * 从已保存的设计稿解析历史记录重建检索索引，并与近似重复索引对齐（仅启动时执行一次）
+     */
+    private void rebuildAnalysisSearchIndex() {
+        Path analysisDir = Paths.get(HISTORY_BASE_DIR, ANALYSIS_DIR);
+        if (!Files.exists(analysisDir)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        historySearchService.clear();
+        Map<String, Path> originals = new LinkedHashMap<>();
+
+        try (Stream<Path> paths = Files.list(analysisDir)) {
+            paths.filter(path -> path.toString().endsWith(".json"))
+                    .map(this::readAnalysisHistoryRecord)
+                    .filter(Objects::nonNull)
+                    .forEach(record -> {
+                        historySearchService.index(record);
+                        if (record.getOriginalImagePath() != null) {
+                            originals.put(record.getHistoryId(), resolveHistoryFile(record.getOriginalImagePath()));
+                        }
+                    });
+
+            log.info("设计稿解析历史检索索引重建完成: {} 条记录, 耗时 {}ms",
+                    historySearchService.size(), System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            log.error("重建设计稿解析历史检索索引失败", e);
+            return;
+        }
+
+        nearDuplicateService.reconcile(originals);
+    }
+
     /**
      * 保存历史记录
      *
@@ -396,6 +441,17 @@ public class HistoryService {
      * @param templateResponse  解析响应
      */
     public void saveAnalysisHistory(String originalImageData, TemplateResponse templateResponse) {
+        saveAnalysisHistory(originalImageData, templateResponse, null);
+    }
+
+    /**
+     * 保存设计稿解析历史记录
+     *
+     * @param originalImageData 原始图片的 base64 数据
+     * @param templateResponse  解析响应
+     * @param perceptualHash    预处理图片的感知哈希（为 null 时从保存的原图计算）
+     */
+    public void saveAnalysisHistory(String originalImageData, TemplateResponse templateResponse, Long perceptualHash) {
         try {
             // 生成历史记录 ID
             String historyId = UUID.randomUUID().toString();
@@ -439,6 +495,14 @@ public class HistoryService {
             Path dataPath = Paths.get(HISTORY_BASE_DIR, ANALYSIS_DIR, historyId + ".json");
             objectMapper.writerWithDefaultPrettyPrinter().writeValue(dataPath.toFile(), record);
 
+            // 增量更新检索索引
+            historySearchService.index(record);
+            if (perceptualHash != null) {
+                nearDuplicateService.index(historyId, perceptualHash);
+            } else {
+                nearDuplicateService.indexImage(historyId, imagePath);
+            }
+
             log.info("设计稿解析历史记录保存成功: historyId={}, componentCount={}",
                     historyId, record.getComponentCount());
 
@@ -523,6 +587,26 @@ public class HistoryService {
         }
     }
 
+    /**
+     * 设计稿解析历史记录是否存在（只检查元数据文件，不读取内容）
+     *
+     * @param historyId 历史记录 ID
+     * @return 是否存在
+     */
+    public boolean existsAnalysisHistory(String historyId) {
+        return Files.exists(Paths.get(HISTORY_BASE_DIR, ANALYSIS_DIR, historyId + ".json"));
+    }
+
+    /**
+     * 历史记录中保存的文件路径（如 originalImagePath，相对于历史记录根目录）
+     *
+     * @param relativePath 相对路径
+     * @return 文件路径
+     */
+    public Path resolveHistoryFile(String relativePath) {
+        return Paths.get(HISTORY_BASE_DIR, relativePath);
+    }
+
     /**
      * 删除设计稿解析历史记录
      *
@@ -545,6 +629,10 @@ public class HistoryService {
                 log.debug("删除图片目录: {}", imageDir);
             }
 
+            // 从检索索引中移除
+            historySearchService.remove(historyId);
+            nearDuplicateService.remove(historyId);
+
             log.info("设计稿解析历史记录删除成功: historyId={}", historyId);
             return true;
 
@@ -554,6 +642,52 @@ public class HistoryService {
         }
     }
 
+    /**
+     * 检索设计稿解析历史记录
+     *
+     * @param query 文字内容（可选）
+     * @param type  组件类型（可选）
+     * @param color 颜色（可选）
+     * @param page  页码（从 1 开始）
+     * @param size  每页数量
+     * @return 检索结果
+     */
+    public HistorySearchService.SearchResult searchAnalysisHistory(String query, String type, String color,
+                                                                   int page, int size) {
+        return historySearchService.search(query, type, color, page, size);
+    }
+
+    /**
+     * 按感知哈希查找近似重复的设计稿解析历史记录
+     *
+     * @param perceptualHash 预处理图片的感知哈希
+     * @param maxDistance    汉明距离上限
+     * @param excludeId      排除的历史记录 ID（可选）
+     * @return 按距离升序的历史记录
+     */
+    public List<NearDuplicateHit> findSimilarAnalysisHistory(long perceptualHash, int maxDistance, String excludeId) {
+        List<NearDuplicateHit> hits = new ArrayList<>();
+        for (NearDuplicateService.Match match : nearDuplicateService.findSimilar(perceptualHash, maxDistance)) {
+            if (match.getHistoryId().equals(excludeId)) {
+                continue;
+            }
+            AnalysisSearchHit summary = historySearchService.summary(match.getHistoryId());
+            if (summary == null) {
+                continue;
+            }
+            hits.add(new NearDuplicateHit(match.getHistoryId(), match.getDistance(), summary.getTimestamp(),
+                    summary.getOriginalImagePath(), summary.getComponentCount(), summary.getAnalysisEngine()));
+        }
+        return hits;
+    }
+
+    /**
+     * 历史记录原图的感知哈希（尚未计算时返回 null）
+     */
+    public Long getAnalysisPerceptualHash(String historyId) {
+        return nearDuplicateService.getHash(historyId);
+    }
+
     /**
      * 获取设计稿解析历史记录总数
      *
@@ -5,10 +5,19 @@ import com.example.vibecoing2.domain.Component;
 import com.example.vibecoing2.domain.PageTemplate;
 import com.example.vibecoing2.domain.TextComponent;
 import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.InlineImage;
 import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.example.vibecoing2.dto.DetectorMetric;
+import com.example.vibecoing2.dto.ImageExtractionMetric;
+import com.example.vibecoing2.dto.TemplateDiff;
 import com.example.vibecoing2.dto.TemplateResponse;
+import com.example.vibecoing2.util.FairScheduler;
+import com.example.vibecoing2.util.FieldProjection;
 import com.example.vibecoing2.util.FileUtil;
+import com.example.vibecoing2.util.ImageCodecSelector;
 import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
@@ -16,17 +25,30 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ImageAnalysisService {
 
+    /**
+     * 图片资源返回方式：inline（data URL 内嵌在 JSON 中）或 url（放入短期资源缓存，返回 /api/assets 地址）
+     */
+    public static final String ASSETS_INLINE = "inline";
+    public static final String ASSETS_URL = "url";
+
+    // 自动选择基准时最多尝试的近似重复记录数
+    private static final int MAX_REUSE_CANDIDATES = 3;
+
     private final AppConfig appConfig;
     private final FileUtil fileUtil;
     private final ImageProcessor imageProcessor;
@@ -36,106 +58,278 @@ public class ImageAnalysisService {
     private final TemplateGeneratorService templateGeneratorService;
     private final LayoutAnalysisService layoutAnalysisService;
     private final HistoryService historyService;
+    private final ComponentImageService componentImageService;
+    private final AssetCacheService assetCacheService;
+    private final ImageCodecSelector codecSelector;
+    private final IncrementalAnalysisService incrementalAnalysisService;
+    private final NearDuplicateService nearDuplicateService;
 
     public TemplateResponse analyzeImage(MultipartFile imageFile, Boolean enableAI, Boolean enableOCR, Boolean enableCV) {
-        long startTime = System.currentTimeMillis();
+        return analyzeImage(imageFile, enableAI, enableOCR, enableCV, ASSETS_INLINE);
+    }
+
+    public TemplateResponse analyzeImage(MultipartFile imageFile, Boolean enableAI, Boolean enableOCR, Boolean enableCV,
+                                         String assetsMode) {
+        return analyzeImage(imageFile, enableAI, enableOCR, enableCV, assetsMode, FieldProjection.ALL, null);
+    }
 
+    /**
+     * @param projection    调用方请求的模板字段；未请求的背景图、组件图片与容器树不计算，
+     *                      此时模板不完整，不写入历史记录
+     * @param baseHistoryId 基准历史记录 ID（可选），指定时与其原图做分块差异，只重新分析变化区域；
+     *                      未指定时按感知哈希查找近似重复的历史记录作为基准（app.near-duplicate.auto-reuse）
+     */
+    public TemplateResponse analyzeImage(MultipartFile imageFile, Boolean enableAI, Boolean enableOCR, Boolean enableCV,
+                                         String assetsMode, FieldProjection projection, String baseHistoryId) {
+        byte[] imageBytes;
         try {
-            fileUtil.ensureDirectoryExists(appConfig.getUpload().getDir());
-            fileUtil.ensureDirectoryExists(appConfig.getProcessed().getDir());
+            imageBytes = imageFile.getBytes();
+        } catch (IOException e) {
+            log.error("读取上传图片失败", e);
+            return TemplateResponse.error("图片分析失败: " + e.getMessage());
+        }
+        return analyzeImage(imageBytes, enableAI, enableOCR, enableCV, assetsMode, projection, baseHistoryId);
+    }
+
+    /**
+     * 分析内存中的图片文件内容（上传文件与批量分析的压缩包条目都不落盘，直接解码）
+     */
+    public TemplateResponse analyzeImage(byte[] originalImageBytes, Boolean enableAI, Boolean enableOCR,
+                                         Boolean enableCV, String assetsMode, FieldProjection projection,
+                                         String baseHistoryId) {
+        long startTime = System.currentTimeMillis();
 
-            String uploadedPath = fileUtil.saveUploadedFile(imageFile, appConfig.getUpload().getDir());
-            log.info("图片已上传: {}", uploadedPath);
+        // 指定的基准记录在任何处理之前读取，不存在时直接返回错误
+        AnalysisHistoryRecord base = null;
+        if (baseHistoryId != null) {
+            base = historyService.getAnalysisHistoryDetail(baseHistoryId);
+            if (base == null || base.getTemplate() == null) {
+                return TemplateResponse.error("基准历史记录不存在: " + baseHistoryId);
+            }
+        }
 
-            // 读取原始图片并转换为 base64（用于保存历史记录）
-            byte[] originalImageBytes = Files.readAllBytes(Paths.get(uploadedPath));
+        // 各阶段耗时（毫秒），按执行顺序写入响应元数据
+        Map<String, Long> stageTimings = new LinkedHashMap<>();
+        long stageStart = System.currentTimeMillis();
+
+        // 预处理图片的临时文件（供 AI 调用读取），无论成功与否都在结束时删除
+        String processedPath = null;
+
+        // 本次请求分配的 Mat 在作用域结束时统一释放
+        try (MatScope scope = new MatScope()) {
+            fileUtil.ensureDirectoryExists(appConfig.getProcessed().getDir());
+            log.info("图片已读取: {} KB", originalImageBytes.length / 1024);
+
+            // 原始图片转换为 base64（用于保存历史记录）
             String originalImageBase64 = "data:image/png;base64," + Base64.getEncoder().encodeToString(originalImageBytes);
 
-            Mat originalImage = imageProcessor.loadImage(uploadedPath);
+            Mat originalImage = scope.track(imageProcessor.decodeImage(originalImageBytes));
             int originalWidth = originalImage.cols();
             int originalHeight = originalImage.rows();
 
-            Mat processedImage = imageProcessor.preprocessImage(originalImage, appConfig.getImage().getStandardWidth());
-            String processedPath = appConfig.getProcessed().getDir() + "/processed_" + System.currentTimeMillis() + ".png";
+            Mat processedImage = scope.track(imageProcessor.preprocessImage(originalImage, appConfig.getImage().getStandardWidth()));
+            // 批量分析时多张图片同时处理，文件名不能只依赖时间戳
+            processedPath = appConfig.getProcessed().getDir() + "/processed_" + UUID.randomUUID() + ".png";
             imageProcessor.saveImage(processedImage, processedPath);
-
-            List<Component> aiComponents = new ArrayList<>();
-            if (enableAI) {
-                try {
-                    aiComponents = visionAIService.analyzeImage(processedPath);
-                    log.info("AI 分析完成，识别到 {} 个组件", aiComponents.size());
-                } catch (Exception e) {
-                    log.error("AI 分析失败", e);
+            long perceptualHash = nearDuplicateService.hash(processedImage);
+            stageStart = recordStage(stageTimings, "preprocess", stageStart);
+
+            boolean imageComponents = projection.includes("components.placeholder.url");
+            boolean buttonComponents = projection.includes("components.backgroundImage");
+            boolean backgroundImage = projection.includes("page.backgroundImage");
+            boolean layoutTree = projection.includes("layout.root");
+
+            // 指定（或自动找到近似重复的）基准历史记录时只重新分析变化区域；无法增量时退回整页分析
+            PageTemplate template = null;
+            TemplateDiff diff = null;
+            List<Component> imageTargets = null;
+            List<DetectorMetric> detectorMetrics = new ArrayList<>();
+            IncrementalAnalysisService.Result incremental = null;
+            if (base != null) {
+                incremental = incrementalAnalysisService.reanalyze(
+                        base, processedImage, enableAI, enableOCR, enableCV);
+            } else if (Boolean.TRUE.equals(appConfig.getNearDuplicate().getAutoReuse())) {
+                incremental = reanalyzeNearDuplicate(perceptualHash, processedImage, enableAI, enableOCR, enableCV,
+                        imageComponents || buttonComponents);
+            }
+            if (incremental != null) {
+                diff = incremental.getDiff();
+                if (incremental.getTemplate() != null) {
+                    template = incremental.getTemplate();
+                    imageTargets = incremental.getRefreshedComponents();
+                    detectorMetrics = incremental.getDetectorMetrics();
                 }
+                stageStart = recordStage(stageTimings, "incremental", stageStart);
             }
 
-            List<TextComponent> ocrComponents = new ArrayList<>();
-            if (enableOCR) {
-                try {
-                    ocrComponents = ocrService.extractText(processedPath);
-                    log.info("OCR 识别完成，识别到 {} 个文字", ocrComponents.size());
-                } catch (Exception e) {
-                    log.error("OCR 识别失败", e);
+            if (template == null) {
+                // AI 调用在独立线程上等待上游响应，当前线程同时执行 OCR 与 CV
+                CompletableFuture<List<Component>> aiFuture = enableAI
+                        ? visionAIService.analyzeImageAsync(processedPath)
+                        : null;
+                long aiStart = System.currentTimeMillis();
+
+                List<TextComponent> ocrComponents = new ArrayList<>();
+                if (enableOCR) {
+                    try {
+                        // 直接传入内存中的 Mat，避免 PNG 编码后再解码
+                        ocrComponents = ocrService.extractText(processedImage);
+                        log.info("OCR 识别完成，识别到 {} 个文字", ocrComponents.size());
+                    } catch (Exception e) {
+                        log.error("OCR 识别失败", e);
+                    }
+                    stageStart = recordStage(stageTimings, "ocr", stageStart);
                 }
-            }
 
-            List<Component> cvComponents = new ArrayList<>();
-            if (enableCV) {
-                try {
-                    cvComponents = componentDetectionService.detectComponents(processedPath);
-                    log.info("OpenCV 检测完成，识别到 {} 个组件", cvComponents.size());
-                } catch (Exception e) {
-                    log.error("OpenCV 检测失败", e);
+                List<Component> cvComponents = new ArrayList<>();
+                if (enableCV) {
+                    try {
+                        // 直接传入内存中的 Mat，检测器共享同一份灰度图/边缘图等特征
+                        ComponentDetectionService.DetectionResult detection = componentDetectionService.detect(processedImage);
+                        cvComponents = detection.getComponents();
+                        detectorMetrics = detection.getMetrics();
+                        log.info("OpenCV 检测完成，识别到 {} 个组件", cvComponents.size());
+                    } catch (Exception e) {
+                        log.error("OpenCV 检测失败", e);
+                    }
+                    stageStart = recordStage(stageTimings, "cv", stageStart);
                 }
-            }
 
-            int processedWidth = processedImage.cols();
-            int processedHeight = processedImage.rows();
+                List<Component> aiComponents = new ArrayList<>();
+                if (aiFuture != null) {
+                    try {
+                        // 等待 AI 响应期间交还分析名额，其他任务可以使用 CPU
+                        aiComponents = FairScheduler.releaseWhile(aiFuture::join);
+                        log.info("AI 分析完成，识别到 {} 个组件", aiComponents.size());
+                    } catch (CompletionException e) {
+                        log.error("AI 分析失败", e.getCause() != null ? e.getCause() : e);
+                    }
+                    // 与 OCR / CV 重叠执行，记录从发起到返回的耗时
+                    stageTimings.put("ai", System.currentTimeMillis() - aiStart);
+                    stageStart = System.currentTimeMillis();
+                }
 
-            PageTemplate template = templateGeneratorService.generateTemplate(
-                    aiComponents, cvComponents, ocrComponents, processedWidth, processedHeight
-            );
+                int processedWidth = processedImage.cols();
+                int processedHeight = processedImage.rows();
 
-            layoutAnalysisService.analyzeLayout(template);
+                template = templateGeneratorService.generateTemplate(
+                        aiComponents, cvComponents, ocrComponents, processedWidth, processedHeight
+                );
 
-            // 读取处理后的图像并转换为base64作为背景图
-            try {
-                byte[] imageBytes = Files.readAllBytes(Paths.get(processedPath));
-                String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-                template.getPage().setBackgroundImage("data:image/png;base64," + base64Image);
-                log.info("背景图片已转换为 base64，大小: {} KB", imageBytes.length / 1024);
-            } catch (IOException e) {
-                log.warn("背景图片转换为 base64 失败", e);
+                stageStart = recordStage(stageTimings, "template", stageStart);
             }
 
-            // 提取所有组件的图片数据
-            extractComponentImages(processedImage, template);
+            layoutAnalysisService.analyzeLayout(template, layoutTree);
+            stageStart = recordStage(stageTimings, "layout", stageStart);
+
+            // 处理后的图像作为背景图，按内容选择编码格式（不再直接使用磁盘上的无损 PNG）
+            if (backgroundImage) {
+                ImageCodecSelector.EncodedImage background = codecSelector.encode(
+                        processedImage, Integer.MAX_VALUE, appConfig.getImage().getBackgroundByteBudget());
+                if (background != null) {
+                    template.getPage().setBackgroundImage(InlineImage.of(background.getData(), background.getMimeType()));
+                    log.info("背景图片已编码: 格式={}, 质量={}, 大小: {} KB",
+                            background.getCodec(), background.getQuality(), background.getData().length / 1024);
+                } else {
+                    log.warn("背景图片编码失败");
+                }
+                stageStart = recordStage(stageTimings, "backgroundImage", stageStart);
+            }
+
+            // 提取组件的图片数据（并行裁剪编码）
+            ImageExtractionMetric imageExtraction = null;
+            if (imageComponents || buttonComponents) {
+                imageExtraction = componentImageService.extractComponentImages(processedImage,
+                        imageTargets != null ? imageTargets : template.getComponents(), imageComponents, buttonComponents);
+                recordStage(stageTimings, "imageExtraction", stageStart);
+            }
 
             long processingTime = System.currentTimeMillis() - startTime;
 
             TemplateResponse.AnalysisMetadata metadata = createMetadata(
-                    processingTime, template, enableAI, enableOCR, enableCV
+                    processingTime, template, enableAI, enableOCR, enableCV, detectorMetrics, stageTimings
             );
-
-            fileUtil.deleteFile(uploadedPath);
-            fileUtil.deleteFile(processedPath);
+            metadata.setImageExtraction(imageExtraction);
+            // 沿用指定基准的模板时，未重新裁剪的组件图片来自基准记录（自动选择的基准已要求带有图片）
+            metadata.setComponentImages(imageComponents && buttonComponents
+                    && (imageTargets == null || base == null || hasComponentImages(base)));
 
             // 构建响应
             TemplateResponse response = TemplateResponse.success(template, metadata);
+            response.setDiff(diff);
+
+            // 保存历史记录（历史记录始终内嵌图片，不依赖短期资源缓存）。
+            // 历史记录会被详情、检索、增量分析与近似重复复用，投影跳过了图片或容器树的不完整结果不保存
+            if (backgroundImage && imageComponents && buttonComponents && layoutTree) {
+                historyService.saveAnalysisHistory(originalImageBase64, response, perceptualHash);
+            } else {
+                log.info("字段投影跳过了图片或容器树，本次结果不写入历史记录");
+            }
 
-            // 保存历史记录
-            historyService.saveAnalysisHistory(originalImageBase64, response);
+            if (ASSETS_URL.equals(assetsMode)) {
+                // 资源 ID 为内容哈希，重复条目的相同裁剪图已指向同一资源
+                replaceWithAssetUrls(template);
+            } else if (layoutTree) {
+                shareRepeatedCrops(template);
+            }
 
             return response;
 
         } catch (Exception e) {
             log.error("图片分析失败", e);
             return TemplateResponse.error("图片分析失败: " + e.getMessage());
+        } finally {
+            if (processedPath != null) {
+                fileUtil.deleteFile(processedPath);
+            }
+        }
+    }
+
+    /**
+     * 以感知哈希最接近的历史记录为基准做增量分析；没有可用的近似重复记录时返回 null
+     * 基准须使用相同的分析引擎，需要组件图片时基准记录的 componentImages 标记须为 true（否则沿用的组件缺少图片）
+     */
+    private IncrementalAnalysisService.Result reanalyzeNearDuplicate(long perceptualHash, Mat processedImage,
+                                                                     Boolean enableAI, Boolean enableOCR,
+                                                                     Boolean enableCV, boolean needsImages) {
+        List<NearDuplicateService.Match> matches = nearDuplicateService.findSimilar(
+                perceptualHash, appConfig.getNearDuplicate().getMaxDistance());
+
+        int tried = 0;
+        for (NearDuplicateService.Match match : matches) {
+            if (tried++ >= MAX_REUSE_CANDIDATES) {
+                break;
+            }
+            AnalysisHistoryRecord base = historyService.getAnalysisHistoryDetail(match.getHistoryId());
+            if (base == null || base.getTemplate() == null || base.getMetadata() == null) {
+                continue;
+            }
+            TemplateResponse.AnalysisMetadata metadata = base.getMetadata();
+            if (!Boolean.valueOf(enableAI).equals(Boolean.TRUE.equals(metadata.getAiUsed()))
+                    || !Boolean.valueOf(enableOCR).equals(Boolean.TRUE.equals(metadata.getOcrUsed()))
+                    || !Boolean.valueOf(enableCV).equals(Boolean.TRUE.equals(metadata.getCvUsed()))) {
+                continue;
+            }
+            if (needsImages && !hasComponentImages(base)) {
+                continue;
+            }
+
+            log.info("找到近似重复的历史记录: historyId={}, 汉明距离={}", match.getHistoryId(), match.getDistance());
+            IncrementalAnalysisService.Result result = incrementalAnalysisService.reanalyze(
+                    base, processedImage, enableAI, enableOCR, enableCV);
+            result.getDiff().setHashDistance(match.getDistance());
+            return result;
         }
+        return null;
+    }
+
+    private boolean hasComponentImages(AnalysisHistoryRecord record) {
+        return record.getMetadata() != null && Boolean.TRUE.equals(record.getMetadata().getComponentImages());
     }
 
     private TemplateResponse.AnalysisMetadata createMetadata(
-            long processingTime, PageTemplate template, Boolean aiUsed, Boolean ocrUsed, Boolean cvUsed) {
+            long processingTime, PageTemplate template, Boolean aiUsed, Boolean ocrUsed, Boolean cvUsed,
+            List<DetectorMetric> detectorMetrics, Map<String, Long> stageTimings) {
 
         int textCount = 0;
         int buttonCount = 0;
@@ -163,109 +357,120 @@ public class ImageAnalysisService {
                 "claude-3-5-sonnet-20241022",
                 aiUsed,
                 ocrUsed,
-                cvUsed
+                cvUsed,
+                detectorMetrics,
+                stageTimings,
+                null,
+                null
         );
     }
 
     /**
-     * 提取所有组件的图片数据
+     * 把背景图与组件图片移入短期资源缓存，模板中只保留资源 URL
      */
-    private void extractComponentImages(Mat processedImage, PageTemplate template) {
-        log.info("开始提取组件图片数据...");
-        int imageExtracted = 0;
-        int buttonImageExtracted = 0;
+    private void replaceWithAssetUrls(PageTemplate template) {
+        PageTemplate.PageInfo page = template.getPage();
+        page.setBackgroundImage(assetCacheService.toAssetUrl(page.getBackgroundImage()));
 
+        int converted = 0;
         for (Component component : template.getComponents()) {
-            try {
-                if (component instanceof ImageComponent) {
-                    ImageComponent imageComp = (ImageComponent) component;
-                    extractImageComponentData(processedImage, imageComp);
-                    imageExtracted++;
-                } else if (component instanceof ButtonComponent) {
-                    ButtonComponent buttonComp = (ButtonComponent) component;
-                    extractButtonBackgroundImage(processedImage, buttonComp);
-                    if (buttonComp.getBackgroundImage() != null) {
-                        buttonImageExtracted++;
-                    }
+            if (component instanceof ImageComponent) {
+                ImageComponent imageComp = (ImageComponent) component;
+                if (imageComp.getPlaceholder().get("url") instanceof InlineImage) {
+                    InlineImage image = (InlineImage) imageComp.getPlaceholder().get("url");
+                    imageComp.setPlaceholderImage(assetCacheService.toAssetUrl(image));
+                    converted++;
+                }
+            } else if (component instanceof ButtonComponent) {
+                ButtonComponent buttonComp = (ButtonComponent) component;
+                if (buttonComp.getBackgroundImage() != null) {
+                    buttonComp.setBackgroundImage(assetCacheService.toAssetUrl(buttonComp.getBackgroundImage()));
+                    converted++;
                 }
-            } catch (Exception e) {
-                log.warn("提取组件图片失败: {}", e.getMessage());
             }
         }
 
-        log.info("图片提取完成: ImageComponent={}, ButtonComponent={}", imageExtracted, buttonImageExtracted);
+        log.info("图片已转为资源 URL: 组件图片={}, 缓存={}", converted, assetCacheService.getStats());
     }
 
     /**
-     * 提取图片组件的图片数据
+     * 重复结构中所有条目在同一槽位的裁剪图完全相同时（图标、按钮底图），该图只保留在条目模板的槽位上，
+     * 条目组件不再各自内嵌一份。只作用于响应，历史记录在此之前已保存完整的组件图片
      */
-    private void extractImageComponentData(Mat image, ImageComponent component) {
-        int x = component.getPosition().getX();
-        int y = component.getPosition().getY();
-        int width = component.getSize().getWidth();
-        int height = component.getSize().getHeight();
-
-        // 裁剪图片区域
-        Mat region = imageProcessor.cropImageRegion(image, x, y, width, height);
-
-        // 检查裁剪是否成功
-        if (region == null || region.empty()) {
-            log.warn("图片组件裁剪失败: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
+    private void shareRepeatedCrops(PageTemplate template) {
+        PageTemplate.LayoutNode root = template.getLayout() != null ? template.getLayout().getRoot() : null;
+        if (root == null) {
             return;
         }
+        Map<String, Component> componentsById = new HashMap<>();
+        for (Component component : template.getComponents()) {
+            componentsById.put(component.getId(), component);
+        }
 
-        // 根据图片类型选择压缩尺寸（提高清晰度）
-        int maxSize;
-        String imageType = component.getImageType();
-        if ("background".equals(imageType)) {
-            maxSize = 1920; // 背景图（高清）
-        } else if ("decoration".equals(imageType)) {
-            maxSize = 800; // 装饰图
-        } else {
-            maxSize = 600; // 内容图/小图标（提高清晰度）
+        int shared = 0;
+        List<PageTemplate.LayoutNode> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            PageTemplate.LayoutNode node = pending.remove(pending.size() - 1);
+            pending.addAll(node.getChildren());
+            if (node.getItemTemplate() == null || node.getItems() == null) {
+                continue;
+            }
+
+            List<PageTemplate.Slot> slots = node.getItemTemplate().getSlots();
+            for (int k = 0; k < slots.size(); k++) {
+                List<Component> members = new ArrayList<>(node.getItems().size());
+                InlineImage image = null;
+                for (PageTemplate.RepeatItem item : node.getItems()) {
+                    Component member = k < item.getComponents().size()
+                            ? componentsById.get(item.getComponents().get(k))
+                            : null;
+                    InlineImage memberImage = componentImage(member);
+                    if (memberImage == null || !memberImage.isInline() || (image != null && !image.equals(memberImage))) {
+                        image = null;
+                        break;
+                    }
+                    image = memberImage;
+                    members.add(member);
+                }
+                if (image == null) {
+                    continue;
+                }
+
+                slots.get(k).setImage(image);
+                for (Component member : members) {
+                    if (member instanceof ImageComponent) {
+                        ((ImageComponent) member).getPlaceholder().remove("url");
+                    } else {
+                        ((ButtonComponent) member).setBackgroundImage(null);
+                    }
+                }
+                shared += members.size() - 1;
+            }
         }
 
-        // 转换为base64
-        String base64Data = imageProcessor.matToBase64(region, maxSize);
-        if (base64Data != null) {
-            component.setPlaceholderUrl(base64Data);
-            log.debug("提取图片组件成功: 位置=({},{}), 尺寸={}x{}, 类型={}",
-                    x, y, width, height, imageType);
-        } else {
-            log.warn("图片组件base64转换失败: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
+        if (shared > 0) {
+            log.info("重复条目共用裁剪图: 省去 {} 份内嵌图片", shared);
         }
     }
 
-    /**
-     * 提取按钮的背景图片（如果不是纯色）
-     */
-    private void extractButtonBackgroundImage(Mat image, ButtonComponent component) {
-        int x = component.getPosition().getX();
-        int y = component.getPosition().getY();
-        int width = component.getSize().getWidth();
-        int height = component.getSize().getHeight();
-
-        // 裁剪按钮区域
-        Mat region = imageProcessor.cropImageRegion(image, x, y, width, height);
-
-        // 检查裁剪是否成功
-        if (region == null || region.empty()) {
-            log.warn("按钮区域裁剪失败: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
-            return;
+    private InlineImage componentImage(Component component) {
+        if (component instanceof ImageComponent) {
+            Object url = ((ImageComponent) component).getPlaceholder().get("url");
+            return url instanceof InlineImage ? (InlineImage) url : null;
         }
-
-        // 检测是否为纯色
-        if (!imageProcessor.isRegionSolidColor(region)) {
-            // 不是纯色，提取背景图（提高清晰度）
-            String base64Data = imageProcessor.matToBase64(region, 600);
-            if (base64Data != null) {
-                component.setBackgroundImage(base64Data);
-                log.debug("提取按钮背景图成功: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
-            } else {
-                log.warn("按钮背景图base64转换失败: 位置=({},{}), 尺寸={}x{}", x, y, width, height);
-            }
-        } else {
-            log.debug("按钮为纯色背景，跳过图片提取: 位置=({},{})", x, y);
+        if (component instanceof ButtonComponent) {
+            return ((ButtonComponent) component).getBackgroundImage();
         }
+        return null;
+    }
+
+    /**
+     * 记录一个阶段的耗时，返回下一阶段的起始时间
+     */
+    private long recordStage(Map<String, Long> stageTimings, String stage, long stageStart) {
+        long now = System.currentTimeMillis();
+        stageTimings.put(stage, now - stageStart);
+        return now;
     }
 }
@@ -0,0 +1,483 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.InlineImage;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.domain.TextComponent;
+import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.example.vibecoing2.dto.DetectorMetric;
+import com.example.vibecoing2.dto.TemplateDiff;
+import com.example.vibecoing2.util.FairScheduler;
+import com.example.vibecoing2.util.FileUtil;
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import com.example.vibecoing2.util.RegionDiff;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 修订稿增量分析
+ * 与基准历史记录的原图做分块像素差异，变化区域按基准组件边界扩展后，只在这些区域上重新运行 AI / OCR / CV，
+ * 区域内的旧组件替换为新结果，其余组件（及其已编码的图片）沿用基准模板。
+ * 各区域的 AI 请求同时发出，等待上游响应期间在当前线程依次执行各区域的 OCR / CV。
+ * 新组件与被替换的同类型旧组件位置重叠时沿用旧 ID，便于调用方按 ID 对比。
+ * 尺寸不一致或变化面积过大时返回整页分析的原因，由调用方退回完整流程
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IncrementalAnalysisService {
+
+    // 背景图面积阈值：与布局分析一致，大面积背景图不随区域替换，只重新裁剪图片
+    private static final double BACKGROUND_AREA_THRESHOLD = 0.6;
+
+    // 新旧组件视为同一组件的 IoU 下限
+    private static final double MATCH_IOU = 0.5;
+
+    private final AppConfig appConfig;
+    private final FileUtil fileUtil;
+    private final ImageProcessor imageProcessor;
+    private final RegionDiff regionDiff;
+    private final HistoryService historyService;
+    private final VisionAIService visionAIService;
+    private final OCRService ocrService;
+    private final ComponentDetectionService componentDetectionService;
+    private final TemplateGeneratorService templateGeneratorService;
+
+    /**
+     * 增量分析结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        /**
+         * 合并后的模板；需要整页分析时为 null（原因见 diff.reason）
+         */
+        private PageTemplate template;
+        private TemplateDiff diff;
+
+        /**
+         * 需要重新提取图片的组件（区域内新识别的组件与被变化区域覆盖的背景图）
+         */
+        private List<Component> refreshedComponents;
+        private List<DetectorMetric> detectorMetrics;
+    }
+
+    /**
+     * 按变化区域重新分析（基准记录由调用方读取并确认存在）
+     *
+     * @param base           基准历史记录（须包含模板）
+     * @param processedImage 本次预处理后的图片
+     */
+    public Result reanalyze(AnalysisHistoryRecord base, Mat processedImage,
+                            boolean enableAI, boolean enableOCR, boolean enableCV) {
+        String baseHistoryId = base.getHistoryId();
+        PageTemplate baseTemplate = base.getTemplate();
+        AppConfig.IncrementalConfig config = appConfig.getIncremental();
+
+        Path baseImagePath = historyService.resolveHistoryFile(base.getOriginalImagePath());
+        if (!Files.exists(baseImagePath)) {
+            return fullReanalysis(baseHistoryId, "基准原图不存在");
+        }
+
+        int width = processedImage.cols();
+        int height = processedImage.rows();
+        RegionDiff.Result diffResult;
+        try (MatScope scope = new MatScope()) {
+            Mat baseOriginal = scope.track(imageProcessor.loadImage(baseImagePath.toString()));
+            Mat baseProcessed = scope.track(imageProcessor.preprocessImage(baseOriginal, appConfig.getImage().getStandardWidth()));
+
+            if (baseProcessed.cols() != width || baseProcessed.rows() != height
+                    || !Integer.valueOf(width).equals(baseTemplate.getPage().getWidth())
+                    || !Integer.valueOf(height).equals(baseTemplate.getPage().getHeight())
+                    || baseProcessed.type() != processedImage.type()) {
+                return fullReanalysis(baseHistoryId, "页面尺寸与基准不一致");
+            }
+
+            diffResult = regionDiff.diff(baseProcessed, processedImage,
+                    config.getTileSize(), config.getPixelThreshold(), config.getMinChangedPixels());
+        }
+
+        if ((double) diffResult.getChangedTiles() / diffResult.getTotalTiles() > config.getMaxChangedRatio()) {
+            return fullReanalysis(baseHistoryId, "变化方块占比超过 " + config.getMaxChangedRatio());
+        }
+
+        double pageArea = (double) width * height;
+        List<Component> baseComponents = baseTemplate.getComponents();
+        List<int[]> boxes = new ArrayList<>(baseComponents.size());
+        for (Component component : baseComponents) {
+            if (!isBackground(component, pageArea * BACKGROUND_AREA_THRESHOLD)) {
+                boxes.add(clip(boxOf(component), width, height));
+            }
+        }
+        List<int[]> regions = expandRegions(diffResult.getRegions(), boxes, width, height,
+                config.getRegionMargin(), config.getMaxRegions());
+        if (regions == null) {
+            return fullReanalysis(baseHistoryId, "变化区域扩展未收敛");
+        }
+
+        long regionArea = 0;
+        for (int[] region : regions) {
+            regionArea += (long) (region[2] - region[0]) * (region[3] - region[1]);
+        }
+        if (regionArea > pageArea * config.getMaxChangedRatio()) {
+            return fullReanalysis(baseHistoryId, "按组件扩展后的变化区域面积超过 " + config.getMaxChangedRatio());
+        }
+
+        // 区域内的旧组件被替换；与变化区域相交的背景图保留在模板中，只重新裁剪图片
+        List<Component> kept = new ArrayList<>();
+        List<Component> replaced = new ArrayList<>();
+        List<Component> refreshed = new ArrayList<>();
+        for (Component component : baseComponents) {
+            restoreInlineImages(component);
+            // 区域已裁剪到页面内，超出页面的组件按页面内的部分判断
+            int[] box = clip(boxOf(component), width, height);
+            if (isBackground(component, pageArea * BACKGROUND_AREA_THRESHOLD)) {
+                kept.add(component);
+                if (intersectsAny(box, regions)) {
+                    refreshed.add(component);
+                }
+            } else if (containedInAny(box, regions)) {
+                replaced.add(component);
+            } else {
+                kept.add(component);
+            }
+        }
+
+        // 在变化区域上重新运行各引擎：AI 请求先全部发出，等待期间依次执行各区域的 OCR / CV
+        List<Component> analyzed = new ArrayList<>();
+        List<DetectorMetric> detectorMetrics = new ArrayList<>();
+        List<String> cropPaths = new ArrayList<>();
+        try {
+            List<CompletableFuture<List<Component>>> aiFutures = new ArrayList<>(regions.size());
+            for (int[] region : regions) {
+                aiFutures.add(enableAI ? requestRegionAI(processedImage, region, cropPaths) : null);
+            }
+            for (int i = 0; i < regions.size(); i++) {
+                analyzed.addAll(analyzeRegion(processedImage, regions.get(i), aiFutures.get(i),
+                        enableOCR, enableCV, detectorMetrics));
+            }
+        } finally {
+            cropPaths.forEach(fileUtil::deleteFile);
+        }
+
+        // 去掉与保留组件重复的结果（不论类型）：保留的背景图，以及引擎在区域边缘重新识别出的区域外组件
+        removeDuplicates(analyzed, kept);
+
+        TemplateDiff diff = new TemplateDiff();
+        diff.setBaseHistoryId(baseHistoryId);
+        diff.setIncremental(true);
+        diff.setTileSize(diffResult.getTileSize());
+        diff.setTotalTiles(diffResult.getTotalTiles());
+        diff.setChangedTiles(diffResult.getChangedTiles());
+        for (int[] region : regions) {
+            diff.getRegions().add(new TemplateDiff.Region(region[0], region[1],
+                    region[2] - region[0], region[3] - region[1]));
+        }
+        matchIds(analyzed, replaced, diff);
+        for (Component component : refreshed) {
+            diff.getModified().add(component.getId());
+        }
+        diff.setUnchanged(kept.size() - refreshed.size());
+
+        // 合并模板
+        PageTemplate template = new PageTemplate(width, height);
+        template.getPage().setBackgroundColor(baseTemplate.getPage().getBackgroundColor());
+        template.getPage().setMetadata(baseTemplate.getPage().getMetadata());
+        List<Component> merged = new ArrayList<>(kept.size() + analyzed.size());
+        merged.addAll(kept);
+        merged.addAll(analyzed);
+        merged.sort(Comparator.comparingInt(c -> c.getPosition().getY()));
+        merged.forEach(template::addComponent);
+
+        refreshed.addAll(analyzed);
+
+        log.info("增量分析完成: 基准={}, 区域={}, 沿用={}, 新增={}, 删除={}, 变化={}",
+                baseHistoryId, regions.size(), diff.getUnchanged(), diff.getAdded().size(),
+                diff.getRemoved().size(), diff.getModified().size());
+        return new Result(template, diff, refreshed, detectorMetrics);
+    }
+
+    private Result fullReanalysis(String baseHistoryId, String reason) {
+        log.info("退回整页分析: 基准={}, 原因={}", baseHistoryId, reason);
+        return new Result(null, TemplateDiff.fullReanalysis(baseHistoryId, reason), List.of(), List.of());
+    }
+
+    /**
+     * 变化区域外扩边距后，反复并入与之相交的组件，直到每个组件要么完全在区域内、要么不相交；相交的区域合并。
+     * 区域数超过上限时合并为一个外接区域，并对该区域重新扩展（外接区域会切到原先不相交的组件）
+     *
+     * @param boxes 非背景组件框 [x1, y1, x2, y2]（已裁剪到页面内）
+     * @return [x1, y1, x2, y2]；超过轮数上限仍未收敛时返回 null
+     */
+    static List<int[]> expandRegions(List<Rect> changed, List<int[]> boxes, int width, int height,
+                                     int margin, int maxRegions) {
+        List<int[]> regions = new ArrayList<>();
+        for (Rect rect : changed) {
+            regions.add(new int[]{
+                    Math.max(0, rect.x - margin), Math.max(0, rect.y - margin),
+                    Math.min(width, rect.x + rect.width + margin), Math.min(height, rect.y + rect.height + margin)});
+        }
+
+        if (!expandToFixpoint(regions, boxes)) {
+            return null;
+        }
+
+        if (regions.size() > maxRegions) {
+            int[] bounds = regions.get(0).clone();
+            for (int[] region : regions) {
+                union(bounds, region);
+            }
+            regions = new ArrayList<>(List.of(bounds));
+            if (!expandToFixpoint(regions, boxes)) {
+                return null;
+            }
+        }
+
+        regions.sort(Comparator.<int[]>comparingInt(r -> r[1]).thenComparingInt(r -> r[0]));
+        return regions;
+    }
+
+    /**
+     * 扩展区域直到没有组件跨越区域边界
+     *
+     * @return 是否在轮数上限内收敛
+     */
+    private static boolean expandToFixpoint(List<int[]> regions, List<int[]> boxes) {
+        // 每轮扩展至少使一个组件被区域完全包含（之后一直包含）或合并一对区域，轮数不会超过组件数 + 区域数
+        int maxRounds = boxes.size() + regions.size() + 1;
+        boolean grown = true;
+        for (int round = 0; grown; round++) {
+            if (round == maxRounds) {
+                log.warn("变化区域扩展超过 {} 轮未收敛", maxRounds);
+                return false;
+            }
+            grown = false;
+            for (int[] box : boxes) {
+                for (int[] region : regions) {
+                    if (intersects(box, region) && !contains(region, box)) {
+                        union(region, box);
+                        grown = true;
+                    }
+                }
+            }
+            grown |= mergeOverlapping(regions);
+        }
+        return true;
+    }
+
+    private static boolean mergeOverlapping(List<int[]> regions) {
+        boolean merged = false;
+        for (int i = 0; i < regions.size(); i++) {
+            for (int j = regions.size() - 1; j > i; j--) {
+                if (intersects(regions.get(i), regions.get(j))) {
+                    union(regions.get(i), regions.remove(j));
+                    merged = true;
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 保存区域裁剪图并发出 AI 请求（在 VisionAIService 的线程上等待上游响应），裁剪图路径记入 cropPaths 由调用方删除；
+     * 保存失败时返回 null
+     */
+    private CompletableFuture<List<Component>> requestRegionAI(Mat processedImage, int[] region, List<String> cropPaths) {
+        Rect rect = new Rect(region[0], region[1], region[2] - region[0], region[3] - region[1]);
+        String cropPath = appConfig.getProcessed().getDir() + "/region_" + UUID.randomUUID() + ".png";
+        try (MatScope scope = new MatScope()) {
+            imageProcessor.saveImage(scope.track(processedImage.submat(rect).clone()), cropPath);
+            cropPaths.add(cropPath);
+            return visionAIService.analyzeImageAsync(cropPath);
+        } catch (Exception e) {
+            log.error("区域 AI 分析失败: 区域=({},{},{}x{})", rect.x, rect.y, rect.width, rect.height, e);
+            fileUtil.deleteFile(cropPath);
+            return null;
+        }
+    }
+
+    /**
+     * 在单个区域上运行 OCR / CV 并等待该区域的 AI 结果，融合后坐标换算回整页
+     */
+    private List<Component> analyzeRegion(Mat processedImage, int[] region,
+                                          CompletableFuture<List<Component>> aiFuture, boolean enableOCR,
+                                          boolean enableCV, List<DetectorMetric> detectorMetrics) {
+        int x = region[0];
+        int y = region[1];
+        int w = region[2] - region[0];
+        int h = region[3] - region[1];
+
+        try (MatScope scope = new MatScope()) {
+            // 复制为连续内存，OCR 要求连续数据
+            Mat crop = scope.track(processedImage.submat(new Rect(x, y, w, h)).clone());
+
+            List<TextComponent> ocrComponents = new ArrayList<>();
+            if (enableOCR) {
+                try {
+                    ocrComponents = ocrService.extractText(crop);
+                } catch (Exception e) {
+                    log.error("区域 OCR 识别失败: 区域=({},{},{}x{})", x, y, w, h, e);
+                }
+            }
+
+            List<Component> cvComponents = new ArrayList<>();
+            if (enableCV) {
+                try {
+                    ComponentDetectionService.DetectionResult detection = componentDetectionService.detect(crop);
+                    cvComponents = detection.getComponents();
+                    detectorMetrics.addAll(detection.getMetrics());
+                } catch (Exception e) {
+                    log.error("区域 OpenCV 检测失败: 区域=({},{},{}x{})", x, y, w, h, e);
+                }
+            }
+
+            List<Component> aiComponents = new ArrayList<>();
+            if (aiFuture != null) {
+                try {
+                    aiComponents = FairScheduler.releaseWhile(aiFuture::join);
+                } catch (CompletionException e) {
+                    log.error("区域 AI 分析失败: 区域=({},{},{}x{})", x, y, w, h,
+                            e.getCause() != null ? e.getCause() : e);
+                }
+            }
+
+            List<Component> components = templateGeneratorService
+                    .generateTemplate(aiComponents, cvComponents, ocrComponents, w, h)
+                    .getComponents();
+            for (Component component : components) {
+                component.getPosition().setX(component.getPosition().getX() + x);
+                component.getPosition().setY(component.getPosition().getY() + y);
+            }
+
+            log.info("区域分析完成: 区域=({},{},{}x{}), 组件={}", x, y, w, h, components.size());
+            return components;
+        }
+    }
+
+    /**
+     * 去掉与任一保留组件 IoU 达到 MATCH_IOU 的新结果；类型不同也视为重复（如旧按钮被识别为图片）
+     */
+    static void removeDuplicates(List<Component> analyzed, List<Component> kept) {
+        analyzed.removeIf(component -> kept.stream().anyMatch(k -> iou(boxOf(k), boxOf(component)) >= MATCH_IOU));
+    }
+
+    /**
+     * 新组件与被替换的同类型旧组件按 IoU 从高到低配对，配对成功沿用旧 ID
+     */
+    static void matchIds(List<Component> analyzed, List<Component> replaced, TemplateDiff diff) {
+        boolean[] used = new boolean[replaced.size()];
+        for (Component component : analyzed) {
+            int[] box = boxOf(component);
+            int best = -1;
+            double bestIoU = MATCH_IOU;
+            for (int i = 0; i < replaced.size(); i++) {
+                if (used[i] || !replaced.get(i).getType().equals(component.getType())) {
+                    continue;
+                }
+                double iou = iou(box, boxOf(replaced.get(i)));
+                if (iou >= bestIoU) {
+                    best = i;
+                    bestIoU = iou;
+                }
+            }
+
+            if (best >= 0) {
+                used[best] = true;
+                component.setId(replaced.get(best).getId());
+                diff.getModified().add(component.getId());
+            } else {
+                diff.getAdded().add(component.getId());
+            }
+        }
+
+        for (int i = 0; i < replaced.size(); i++) {
+            if (!used[i]) {
+                diff.getRemoved().add(replaced.get(i).getId());
+            }
+        }
+    }
+
+    /**
+     * 历史记录中图片组件的 placeholder 为 Map，图片反序列化后是 data URL 字符串，还原为原始字节，
+     * 以便 assets=url 模式同样放入资源缓存（按钮背景图字段本身即为 InlineImage）
+     */
+    private void restoreInlineImages(Component component) {
+        if (component instanceof ImageComponent) {
+            Map<String, Object> placeholder = ((ImageComponent) component).getPlaceholder();
+            if (placeholder != null && placeholder.get("url") instanceof String) {
+                ((ImageComponent) component).setPlaceholderImage(InlineImage.parse((String) placeholder.get("url")));
+            }
+        }
+    }
+
+    private boolean isBackground(Component component, double backgroundArea) {
+        if (!(component instanceof ImageComponent)) {
+            return false;
+        }
+        double area = (double) component.getSize().getWidth() * component.getSize().getHeight();
+        return area > backgroundArea || "background".equals(((ImageComponent) component).getImageType());
+    }
+
+    private static int[] boxOf(Component component) {
+        int x = component.getPosition().getX();
+        int y = component.getPosition().getY();
+        return new int[]{x, y, x + component.getSize().getWidth(), y + component.getSize().getHeight()};
+    }
+
+    private static int[] clip(int[] box, int width, int height) {
+        return new int[]{
+                Math.max(0, box[0]), Math.max(0, box[1]), Math.min(width, box[2]), Math.min(height, box[3])};
+    }
+
+    private static boolean intersects(int[] a, int[] b) {
+        return a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+    }
+
+    private static boolean contains(int[] outer, int[] inner) {
+        return outer[0] <= inner[0] && outer[1] <= inner[1] && inner[2] <= outer[2] && inner[3] <= outer[3];
+    }
+
+    private static boolean intersectsAny(int[] box, List<int[]> regions) {
+        return regions.stream().anyMatch(region -> intersects(box, region));
+    }
+
+    private static boolean containedInAny(int[] box, List<int[]> regions) {
+        return regions.stream().anyMatch(region -> contains(region, box));
+    }
+
+    private static void union(int[] target, int[] other) {
+        target[0] = Math.min(target[0], other[0]);
+        target[1] = Math.min(target[1], other[1]);
+        target[2] = Math.max(target[2], other[2]);
+        target[3] = Math.max(target[3], other[3]);
+    }
+
+    private static double iou(int[] a, int[] b) {
+        long iw = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        long ih = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        if (iw <= 0 || ih <= 0) {
+            return 0.0;
+        }
+        double inter = (double) iw * ih;
+        double union = (double) (a[2] - a[0]) * (a[3] - a[1]) + (double) (b[2] - b[0]) * (b[3] - b[1]) - inter;
+        return union <= 0 ? 0.0 : inter / union;
+    }
+}
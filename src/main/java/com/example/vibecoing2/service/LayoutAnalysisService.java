@@ -3,6 +3,10 @@ package com.example.vibecoing2.service;
 import com.example.vibecoing2.domain.Component;
 import com.example.vibecoing2.domain.ImageComponent;
 import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.util.OverlapSweep;
+import com.example.vibecoing2.util.RepeatPatternDetector;
+import com.example.vibecoing2.util.SpatialGrid;
+import com.example.vibecoing2.util.XYCutLayout;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,6 +27,13 @@ public class LayoutAnalysisService {
     private static final int LAYER_DEFAULT = 1;
 
     public void analyzeLayout(PageTemplate template) {
+        analyzeLayout(template, true);
+    }
+
+    /**
+     * @param buildTree 是否构建容器树（调用方未请求 layout.root 时跳过 XY-cut 与重复模式识别）
+     */
+    public void analyzeLayout(PageTemplate template, boolean buildTree) {
         List<Component> components = template.getComponents();
 
         if (components.isEmpty()) {
@@ -38,6 +49,11 @@ public class LayoutAnalysisService {
         // 识别区域
         identifySections(template);
 
+        // 构建容器树
+        if (buildTree) {
+            buildLayoutTree(template);
+        }
+
         log.info("布局分析完成");
     }
 
@@ -74,45 +90,85 @@ public class LayoutAnalysisService {
         // 按面积从小到大排序
         components.sort(Comparator.comparingInt(c -> c.getSize().getWidth() * c.getSize().getHeight()));
 
-        for (int i = 0; i < components.size(); i++) {
+        int n = components.size();
+        int[] boxes = SpatialGrid.toBoxes(components);
+
+        // 扫描线枚举重叠对，按面积顺序记录"前驱"（面积更小、已先分配层次的组件），存为 CSR
+        int[] pairCount = {0};
+        int[][] pairs = {new int[Math.max(16, n * 2)]};
+        int[] predecessorCount = new int[n + 1];
+        OverlapSweep.forEachOverlap(boxes, n, (a, b) -> {
+            int earlier = Math.min(a, b);
+            int later = Math.max(a, b);
+            if (pairCount[0] * 2 == pairs[0].length) {
+                pairs[0] = Arrays.copyOf(pairs[0], pairs[0].length * 2);
+            }
+            pairs[0][pairCount[0] * 2] = later;
+            pairs[0][pairCount[0] * 2 + 1] = earlier;
+            pairCount[0]++;
+            predecessorCount[later + 1]++;
+        });
+
+        for (int i = 0; i < n; i++) {
+            predecessorCount[i + 1] += predecessorCount[i];
+        }
+        int[] predecessors = new int[pairCount[0]];
+        int[] fill = new int[n];
+        for (int p = 0; p < pairCount[0]; p++) {
+            int later = pairs[0][p * 2];
+            predecessors[predecessorCount[later] + fill[later]++] = pairs[0][p * 2 + 1];
+        }
+
+        int[] layers = new int[n];
+        for (int i = 0; i < n; i++) {
             Component component = components.get(i);
 
             // 如果AI已经分配了layer（且不为默认值1），则优先使用AI的layer
             if (component.getLayer() != null && component.getLayer() != LAYER_DEFAULT) {
                 log.debug("组件 {} 使用AI分配的layer: {}", component.getId(), component.getLayer());
+                layers[i] = component.getLayer();
                 continue;
             }
 
-            // 否则，自动计算layer
-            int layer = calculateLayer(component, components.subList(0, i));
+            // 否则，取重叠的前驱组件的最大层次 + 1
+            int layer = LAYER_DEFAULT;
+            for (int p = predecessorCount[i]; p < predecessorCount[i + 1]; p++) {
+                layer = Math.max(layer, layers[predecessors[p]] + 1);
+            }
+            layers[i] = layer;
             component.setLayer(layer);
         }
+
+        log.debug("层次分配完成: {} 个组件，{} 个重叠对", n, pairCount[0]);
     }
 
-    private int calculateLayer(Component component, List<Component> previousComponents) {
-        int maxLayer = 1;
+    /**
+     * 递归 XY-cut 构建 row / column / list / grid / card 容器树，写入 layout.root
+     * 背景层组件不参与切分，直接挂在根节点上；sections 保留给只认三段式分区的调用方
+     */
+    private void buildLayoutTree(PageTemplate template) {
+        List<Component> components = template.getComponents();
+        int n = components.size();
 
-        for (Component prev : previousComponents) {
-            if (isOverlapping(component, prev)) {
-                maxLayer = Math.max(maxLayer, prev.getLayer() + 1);
-            }
+        int[] boxes = SpatialGrid.toBoxes(components);
+        String[] ids = new String[n];
+        String[] types = new String[n];
+        boolean[] background = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            Component component = components.get(i);
+            ids[i] = component.getId();
+            types[i] = component.getType();
+            background[i] = component.getLayer() != null && component.getLayer() == LAYER_BACKGROUND;
         }
 
-        return maxLayer;
-    }
-
-    private boolean isOverlapping(Component c1, Component c2) {
-        int x1 = c1.getPosition().getX();
-        int y1 = c1.getPosition().getY();
-        int x2 = x1 + c1.getSize().getWidth();
-        int y2 = y1 + c1.getSize().getHeight();
+        PageTemplate.LayoutNode root = XYCutLayout.build(boxes, ids, background,
+                template.getPage().getWidth(), template.getPage().getHeight());
 
-        int x3 = c2.getPosition().getX();
-        int y3 = c2.getPosition().getY();
-        int x4 = x3 + c2.getSize().getWidth();
-        int y4 = y3 + c2.getSize().getHeight();
+        // 同构的卡片 / 列表项合并为带共享条目模板的 list / grid
+        int repeatGroups = RepeatPatternDetector.detect(root, boxes, ids, types);
+        template.getLayout().setRoot(root);
 
-        return !(x2 < x3 || x4 < x1 || y2 < y3 || y4 < y1);
+        log.debug("布局树构建完成: {} 个组件，{} 个重复组", n, repeatGroups);
     }
 
     private void identifySections(PageTemplate template) {
@@ -0,0 +1,315 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.util.BkTree;
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import com.example.vibecoing2.util.PerceptualHash;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 设计稿近似重复检索
+ * 对预处理后的图片计算 64 位 dHash，按汉明距离在 BK 树中查找相似的历史记录：
+ * 同一设计稿重新导出、压缩或轻微修改后哈希只差几位，可以作为增量分析的基准直接复用已有结果。
+ * 哈希以追加日志持久化（每行 "ID 哈希"，删除记为 "ID -"），保存、删除时只追加一行；
+ * 启动时回放日志并与历史记录目录对齐，缺失的哈希在后台线程中从原图补算，日志随后压缩重写
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NearDuplicateService {
+
+    private static final Path INDEX_FILE = Paths.get("history", "analysis-phash.log");
+    private static final String REMOVED = "-";
+
+    private final AppConfig appConfig;
+    private final ImageProcessor imageProcessor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BkTree tree = new BkTree();
+    private final Map<String, Long> hashes = new HashMap<>();
+
+    private ExecutorService backfillExecutor;
+
+    /**
+     * 相似记录
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Match {
+        private String historyId;
+        private int distance;
+    }
+
+    /**
+     * 索引统计
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Stats {
+        private int records;
+        private int distinctHashes;
+    }
+
+    /**
+     * 计算预处理后图片的感知哈希
+     */
+    public long hash(Mat processedImage) {
+        return PerceptualHash.dHash(processedImage);
+    }
+
+    /**
+     * 计算图片文件内容的感知哈希（与分析流程相同的预处理）
+     *
+     * @throws IllegalArgumentException 无法解码的图片
+     */
+    public long hashImage(byte[] imageBytes) {
+        try (MatScope scope = new MatScope()) {
+            MatOfByte buffer = scope.track(new MatOfByte(imageBytes));
+            Mat image = scope.track(Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_COLOR));
+            if (image.empty()) {
+                throw new IllegalArgumentException("无法解码图片");
+            }
+            return hashLoaded(image, scope);
+        }
+    }
+
+    /**
+     * 登记历史记录的哈希
+     */
+    public void index(String historyId, long hash) {
+        lock.writeLock().lock();
+        try {
+            Long previous = hashes.put(historyId, hash);
+            if (previous != null) {
+                tree.remove(previous, historyId);
+            }
+            tree.add(hash, historyId);
+            append(historyId, PerceptualHash.toHex(hash));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从原图计算并登记历史记录的哈希
+     */
+    public void indexImage(String historyId, Path imagePath) {
+        try (MatScope scope = new MatScope()) {
+            Mat image = scope.track(imageProcessor.loadImage(imagePath.toString()));
+            index(historyId, hashLoaded(image, scope));
+        }
+    }
+
+    public void remove(String historyId) {
+        lock.writeLock().lock();
+        try {
+            Long previous = hashes.remove(historyId);
+            if (previous != null) {
+                tree.remove(previous, historyId);
+                append(historyId, REMOVED);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Long getHash(String historyId) {
+        lock.readLock().lock();
+        try {
+            return hashes.get(historyId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 配置的近似重复距离上限
+     */
+    public int getDefaultMaxDistance() {
+        return appConfig.getNearDuplicate().getMaxDistance();
+    }
+
+    /**
+     * 查找汉明距离不超过 maxDistance 的历史记录，按距离升序
+     */
+    public List<Match> findSimilar(long hash, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            tree.query(hash, maxDistance, (id, nodeHash, distance) -> matches.add(new Match(id, distance)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingInt(Match::getDistance).thenComparing(Match::getHistoryId));
+        return matches;
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(hashes.size(), (int) hashes.values().stream().distinct().count());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 启动时与历史记录对齐：回放哈希日志，丢弃已不存在的记录并压缩日志，缺失的哈希在后台从原图补算
+     *
+     * @param originals 现有历史记录 ID -> 原图路径
+     */
+    public void reconcile(Map<String, Path> originals) {
+        Map<String, Long> logged = readLog();
+
+        Map<String, Path> missing = new LinkedHashMap<>();
+        lock.writeLock().lock();
+        try {
+            tree.clear();
+            hashes.clear();
+            for (Map.Entry<String, Path> entry : originals.entrySet()) {
+                Long hash = logged.get(entry.getKey());
+                if (hash != null) {
+                    hashes.put(entry.getKey(), hash);
+                    tree.add(hash, entry.getKey());
+                } else {
+                    missing.put(entry.getKey(), entry.getValue());
+                }
+            }
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("近似重复索引加载完成: 已有哈希={}, 待补算={}", hashes.size(), missing.size());
+
+        if (!missing.isEmpty()) {
+            backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "phash-backfill");
+                thread.setDaemon(true);
+                return thread;
+            });
+            backfillExecutor.submit(() -> backfill(missing));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+        }
+    }
+
+    private void backfill(Map<String, Path> missing) {
+        long startTime = System.currentTimeMillis();
+        int indexed = 0;
+        for (Map.Entry<String, Path> entry : missing.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (!Files.exists(entry.getValue())) {
+                continue;
+            }
+            try {
+                indexImage(entry.getKey(), entry.getValue());
+                indexed++;
+            } catch (Exception e) {
+                log.warn("补算感知哈希失败: historyId={}, {}", entry.getKey(), e.getMessage());
+            }
+        }
+        log.info("感知哈希补算完成: {} / {} 条, 耗时 {}ms", indexed, missing.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private long hashLoaded(Mat image, MatScope scope) {
+        Mat processed = scope.track(imageProcessor.preprocessImage(image, appConfig.getImage().getStandardWidth()));
+        return hash(processed);
+    }
+
+    /**
+     * 回放哈希日志，后出现的行覆盖先出现的行
+     */
+    private Map<String, Long> readLog() {
+        Map<String, Long> logged = new HashMap<>();
+        if (!Files.exists(INDEX_FILE)) {
+            return logged;
+        }
+        try (Stream<String> lines = Files.lines(INDEX_FILE, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 2) {
+                    return;
+                }
+                if (REMOVED.equals(parts[1])) {
+                    logged.remove(parts[0]);
+                    return;
+                }
+                try {
+                    logged.put(parts[0], PerceptualHash.fromHex(parts[1]));
+                } catch (NumberFormatException e) {
+                    log.warn("感知哈希日志行无效（已跳过）: {}", line);
+                }
+            });
+        } catch (IOException e) {
+            log.error("读取感知哈希日志失败", e);
+        }
+        return logged;
+    }
+
+    /**
+     * 追加一行日志（调用方持有写锁）
+     */
+    private void append(String historyId, String value) {
+        try {
+            Files.createDirectories(INDEX_FILE.getParent());
+            Files.writeString(INDEX_FILE, historyId + " " + value + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("写入感知哈希日志失败（启动时会重新补算）: historyId={}, {}", historyId, e.getMessage());
+        }
+    }
+
+    /**
+     * 用当前索引重写日志：先写临时文件再原子替换（调用方持有写锁）
+     */
+    private void compact() {
+        try {
+            Files.createDirectories(INDEX_FILE.getParent());
+            Path temp = INDEX_FILE.resolveSibling(INDEX_FILE.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : hashes.entrySet()) {
+                    writer.write(entry.getKey() + " " + PerceptualHash.toHex(entry.getValue()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, INDEX_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("压缩感知哈希日志失败: {}", e.getMessage());
+        }
+    }
+}
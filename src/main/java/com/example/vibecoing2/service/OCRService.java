@@ -4,16 +4,16 @@ import com.example.vibecoing2.config.OCRConfig;
 import com.example.vibecoing2.domain.Position;
 import com.example.vibecoing2.domain.Size;
 import com.example.vibecoing2.domain.TextComponent;
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.TextRegionDetector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.sourceforge.tess4j.ITesseract;
-import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.ITessAPI;
 import net.sourceforge.tess4j.Word;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,59 +23,40 @@ import java.util.List;
 public class OCRService {
 
     private final OCRConfig ocrConfig;
-    private volatile ITesseract tesseract;
-    private volatile boolean initialized = false;
-    private volatile boolean initFailed = false;
+    private final TesseractPool tesseractPool;
+    private final ImageProcessor imageProcessor;
+    private final TextRegionDetector textRegionDetector;
 
-    private synchronized ITesseract getTesseract() {
-        if (initFailed) {
-            return null;
-        }
+    // 结果迭代级别：文本块
+    private static final int PAGE_ITERATOR_LEVEL = ITessAPI.TessPageIteratorLevel.RIL_BLOCK;
 
-        if (tesseract == null && !initialized) {
-            try {
-                log.info("初始化 Tesseract OCR...");
-                tesseract = new Tesseract();
-                tesseract.setDatapath(ocrConfig.getTessdataPath());
-                tesseract.setLanguage(ocrConfig.getLanguage());
-                tesseract.setPageSegMode(ocrConfig.getPageSegmentationMode());
-                initialized = true;
-                log.info("Tesseract OCR 初始化成功");
-            } catch (UnsatisfiedLinkError e) {
-                log.warn("Tesseract 库未安装，OCR 功能不可用。macOS 请使用: brew install tesseract");
-                initFailed = true;
-                return null;
-            } catch (Exception e) {
-                log.error("Tesseract 初始化失败", e);
-                initFailed = true;
-                return null;
-            }
+    public List<TextComponent> extractText(String imagePath) {
+        Mat image = imageProcessor.loadImage(imagePath);
+        try {
+            return extractText(image);
+        } finally {
+            image.release();
         }
-
-        return tesseract;
     }
 
-    public List<TextComponent> extractText(String imagePath) {
+    /**
+     * 直接识别内存中的图像（BGR 或灰度），像素缓冲区直接交给 Tesseract，不经过 PNG 编解码
+     */
+    public List<TextComponent> extractText(Mat image) {
         List<TextComponent> textComponents = new ArrayList<>();
 
-        ITesseract tesseractInstance = getTesseract();
-        if (tesseractInstance == null) {
+        if (!tesseractPool.isAvailable()) {
             log.warn("Tesseract 不可用，跳过 OCR 识别");
             return textComponents;
         }
 
+        Mat gray = null;
         try {
+            gray = toOcrInput(image);
 
-            // 将文件转换为 BufferedImage
-            File imageFile = new File(imagePath);
-            BufferedImage bufferedImage = ImageIO.read(imageFile);
-
-            if (bufferedImage == null) {
-                log.warn("无法读取图片: {}", imagePath);
-                return textComponents;
-            }
-
-            List<Word> words = tesseractInstance.getWords(bufferedImage, 0);
+            List<Word> words = Boolean.TRUE.equals(ocrConfig.getRegionTargeted())
+                    ? recognizeRegions(gray)
+                    : recognizeFullPage(gray);
 
             log.info("OCR 识别到 {} 个文字区域", words.size());
 
@@ -101,11 +82,97 @@ public class OCRService {
 
         } catch (Exception e) {
             log.error("OCR 识别失败", e);
+        } finally {
+            if (gray != null && gray != image) {
+                gray.release();
+            }
         }
 
         return textComponents;
     }
 
+    /**
+     * 转换为 OCR 输入：8 位灰度图，按配置可选 Otsu 二值化
+     */
+    private Mat toOcrInput(Mat image) {
+        Mat gray = image.channels() == 1 ? image : imageProcessor.convertToGray(image);
+        if (!Boolean.TRUE.equals(ocrConfig.getBinarize())) {
+            return gray;
+        }
+
+        Mat binary = imageProcessor.threshold(gray);
+        if (gray != image) {
+            gray.release();
+        }
+        return binary;
+    }
+
+    /**
+     * 整页识别
+     */
+    private List<Word> recognizeFullPage(Mat gray) throws Exception {
+        // 从引擎池借用独立实例，支持多个请求并发识别
+        return tesseractPool.execute(engine -> {
+            engine.setPageSegMode(ocrConfig.getPageSegmentationMode());
+            return engine.recognize(gray, PAGE_ITERATOR_LEVEL);
+        });
+    }
+
+    /**
+     * 只识别候选文字区域：各区域在引擎池上并行识别，再把坐标映射回整图
+     */
+    private List<Word> recognizeRegions(Mat gray) throws Exception {
+        long startTime = System.currentTimeMillis();
+        List<Rect> regions = textRegionDetector.detect(gray);
+
+        double regionArea = 0;
+        for (Rect region : regions) {
+            regionArea += region.area();
+        }
+        double coverage = regionArea / ((double) gray.cols() * gray.rows());
+
+        if (coverage > ocrConfig.getMaxRegionCoverage()) {
+            log.info("候选文字区域覆盖 {}% 的图片，退回整页识别", String.format("%.1f", coverage * 100));
+            return recognizeFullPage(gray);
+        }
+
+        // submat 与整图共享像素内存，按行跨度直接交给引擎
+        List<Mat> crops = new ArrayList<>(regions.size());
+        List<TesseractPool.EngineTask<List<Word>>> tasks = new ArrayList<>(regions.size());
+        for (Rect region : regions) {
+            Mat crop = gray.submat(region);
+            crops.add(crop);
+            tasks.add(engine -> recognizeRegion(engine, crop, region));
+        }
+
+        List<Word> words = new ArrayList<>();
+        try {
+            for (List<Word> regionWords : tesseractPool.executeAll(tasks)) {
+                words.addAll(regionWords);
+            }
+        } finally {
+            crops.forEach(Mat::release);
+        }
+
+        log.info("区域 OCR 完成: {} 个候选区域，覆盖 {}% 的图片，耗时 {}ms",
+                regions.size(), String.format("%.1f", coverage * 100), System.currentTimeMillis() - startTime);
+
+        return words;
+    }
+
+    private List<Word> recognizeRegion(TesseractEngine engine, Mat crop, Rect region) {
+        engine.setPageSegMode(ocrConfig.getRegionPageSegmentationMode());
+
+        List<Word> words = new ArrayList<>();
+        for (Word word : engine.recognize(crop, PAGE_ITERATOR_LEVEL)) {
+            java.awt.Rectangle box = word.getBoundingBox();
+            java.awt.Rectangle mapped = new java.awt.Rectangle(
+                    box.x + region.x, box.y + region.y, box.width, box.height);
+            words.add(new Word(word.getText(), word.getConfidence(), mapped));
+        }
+        return words;
+    }
+
     private int estimateFontSize(int height) {
         return Math.max(12, Math.min(48, height));
     }
@@ -2,10 +2,10 @@ package com.example.vibecoing2.service;
 
 import com.example.vibecoing2.config.AppConfig;
 import com.example.vibecoing2.domain.*;
-import com.example.vibecoing2.util.CoordinateConverter;
+import com.example.vibecoing2.util.SparseAssignment;
+import com.example.vibecoing2.util.SpatialGrid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.opencv.core.Rect;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -17,7 +17,17 @@ import java.util.stream.Collectors;
 public class TemplateGeneratorService {
 
     private final AppConfig appConfig;
-    private final CoordinateConverter coordinateConverter;
+
+    private static final String FUSION_MODE_GLOBAL = "global";
+
+    // 规范顺序：按位置、尺寸、类型、ID 排序，使全局融合结果与输入顺序无关
+    private static final Comparator<Component> CANONICAL_ORDER = Comparator
+            .comparingInt((Component c) -> c.getPosition().getY())
+            .thenComparingInt(c -> c.getPosition().getX())
+            .thenComparingInt(c -> c.getSize().getHeight())
+            .thenComparingInt(c -> c.getSize().getWidth())
+            .thenComparing(Component::getType)
+            .thenComparing(Component::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
 
     public PageTemplate generateTemplate(List<Component> aiComponents, List<Component> cvComponents,
                                          List<TextComponent> ocrComponents, int imageWidth, int imageHeight) {
@@ -51,45 +61,58 @@ public class TemplateGeneratorService {
     }
 
     private List<Component> mergeAIAndCV(List<Component> aiComponents, List<Component> cvComponents) {
+        if (FUSION_MODE_GLOBAL.equalsIgnoreCase(appConfig.getLayout().getFusionMode())) {
+            return mergeAIAndCVGlobal(aiComponents, cvComponents);
+        }
+        return mergeAIAndCVGreedy(aiComponents, cvComponents);
+    }
+
+    /**
+     * 贪心融合：按 AI 组件顺序，每个取剩余 CV 组件中 IoU 最高者
+     */
+    private List<Component> mergeAIAndCVGreedy(List<Component> aiComponents, List<Component> cvComponents) {
         List<Component> merged = new ArrayList<>();
-        Set<Integer> usedCVIndices = new HashSet<>();
+        boolean[] usedCV = new boolean[cvComponents.size()];
+        double iouThreshold = appConfig.getLayout().getIouThreshold();
 
-        for (Component aiComp : aiComponents) {
-            Component bestMatch = null;
-            int bestMatchIndex = -1;
-            double bestIoU = 0.0;
+        // 只与空间上重叠的 CV 组件比较
+        SpatialGrid cvIndex = SpatialGrid.of(cvComponents);
 
-            for (int i = 0; i < cvComponents.size(); i++) {
-                if (usedCVIndices.contains(i)) {
-                    continue;
-                }
+        for (Component aiComp : aiComponents) {
+            int ax = aiComp.getPosition().getX();
+            int ay = aiComp.getPosition().getY();
+            int aw = aiComp.getSize().getWidth();
+            int ah = aiComp.getSize().getHeight();
 
-                Component cvComp = cvComponents.get(i);
+            int[] bestMatchIndex = {-1};
+            double[] bestIoU = {0.0};
 
-                if (!aiComp.getType().equals(cvComp.getType())) {
-                    continue;
+            cvIndex.query(ax, ay, aw, ah, i -> {
+                if (usedCV[i] || !aiComp.getType().equals(cvComponents.get(i).getType())) {
+                    return;
                 }
 
-                double iou = calculateIoU(aiComp, cvComp);
+                double iou = cvIndex.iou(i, ax, ay, aw, ah);
 
-                if (iou > bestIoU && iou > appConfig.getLayout().getIouThreshold()) {
-                    bestIoU = iou;
-                    bestMatch = cvComp;
-                    bestMatchIndex = i;
+                // IoU 相同时取下标较小者，与逐个遍历的结果一致
+                boolean better = iou > bestIoU[0] || (iou == bestIoU[0] && bestMatchIndex[0] >= 0 && i < bestMatchIndex[0]);
+                if (better && iou > iouThreshold) {
+                    bestIoU[0] = iou;
+                    bestMatchIndex[0] = i;
                 }
-            }
+            });
 
-            if (bestMatch != null) {
-                Component mergedComp = mergeTwoComponents(aiComp, bestMatch);
+            if (bestMatchIndex[0] >= 0) {
+                Component mergedComp = mergeTwoComponents(aiComp, cvComponents.get(bestMatchIndex[0]));
                 merged.add(mergedComp);
-                usedCVIndices.add(bestMatchIndex);
+                usedCV[bestMatchIndex[0]] = true;
             } else {
                 merged.add(aiComp);
             }
         }
 
         for (int i = 0; i < cvComponents.size(); i++) {
-            if (!usedCVIndices.contains(i)) {
+            if (!usedCV[i]) {
                 merged.add(cvComponents.get(i));
             }
         }
@@ -97,17 +120,79 @@ public class TemplateGeneratorService {
         return merged;
     }
 
-    private double calculateIoU(Component c1, Component c2) {
-        Rect r1 = toRect(c1);
-        Rect r2 = toRect(c2);
+    /**
+     * 全局融合：在同类型且 IoU 超过阈值的稀疏边上求最大总 IoU 匹配。
+     * 两侧组件先按几何位置排成规范顺序，结果（包括输出顺序）与输入顺序无关
+     */
+    private List<Component> mergeAIAndCVGlobal(List<Component> aiComponents, List<Component> cvComponents) {
+        long startTime = System.nanoTime();
+        double iouThreshold = appConfig.getLayout().getIouThreshold();
+
+        List<Component> ai = new ArrayList<>(aiComponents);
+        List<Component> cv = new ArrayList<>(cvComponents);
+        ai.sort(CANONICAL_ORDER);
+        cv.sort(CANONICAL_ORDER);
+
+        // 构建稀疏 IoU 边（CSR），候选只来自空间索引
+        SpatialGrid cvIndex = SpatialGrid.of(cv);
+        int[] edgeStart = new int[ai.size() + 1];
+        int[] edgeTarget = new int[Math.max(16, ai.size() * 2)];
+        double[] edgeWeight = new double[edgeTarget.length];
+        int edgeCount = 0;
+
+        for (int i = 0; i < ai.size(); i++) {
+            Component aiComp = ai.get(i);
+            int ax = aiComp.getPosition().getX();
+            int ay = aiComp.getPosition().getY();
+            int aw = aiComp.getSize().getWidth();
+            int ah = aiComp.getSize().getHeight();
+
+            edgeStart[i] = edgeCount;
+            List<Integer> targets = new ArrayList<>();
+            cvIndex.query(ax, ay, aw, ah, j -> {
+                if (aiComp.getType().equals(cv.get(j).getType()) && cvIndex.iou(j, ax, ay, aw, ah) > iouThreshold) {
+                    targets.add(j);
+                }
+            });
+            Collections.sort(targets);
 
-        return coordinateConverter.calculateIoU(r1, r2);
-    }
+            for (int j : targets) {
+                if (edgeCount == edgeTarget.length) {
+                    edgeTarget = Arrays.copyOf(edgeTarget, edgeCount * 2);
+                    edgeWeight = Arrays.copyOf(edgeWeight, edgeCount * 2);
+                }
+                edgeTarget[edgeCount] = j;
+                edgeWeight[edgeCount] = cvIndex.iou(j, ax, ay, aw, ah);
+                edgeCount++;
+            }
+        }
+        edgeStart[ai.size()] = edgeCount;
 
-    private Rect toRect(Component component) {
-        Position pos = component.getPosition();
-        Size size = component.getSize();
-        return new Rect(pos.getX(), pos.getY(), size.getWidth(), size.getHeight());
+        int[] assignment = SparseAssignment.maximizeWeight(ai.size(), cv.size(), edgeStart, edgeTarget, edgeWeight);
+
+        List<Component> merged = new ArrayList<>();
+        boolean[] usedCV = new boolean[cv.size()];
+        int matched = 0;
+        for (int i = 0; i < ai.size(); i++) {
+            int j = assignment[i];
+            if (j >= 0) {
+                merged.add(mergeTwoComponents(ai.get(i), cv.get(j)));
+                usedCV[j] = true;
+                matched++;
+            } else {
+                merged.add(ai.get(i));
+            }
+        }
+        for (int j = 0; j < cv.size(); j++) {
+            if (!usedCV[j]) {
+                merged.add(cv.get(j));
+            }
+        }
+
+        log.info("全局融合完成: AI={}, CV={}, 候选边={}, 匹配={}, 耗时 {}ms", ai.size(), cv.size(), edgeCount, matched,
+                String.format("%.2f", (System.nanoTime() - startTime) / 1_000_000.0));
+
+        return merged;
     }
 
     private Component mergeTwoComponents(Component aiComp, Component cvComp) {
@@ -146,21 +231,30 @@ public class TemplateGeneratorService {
 
     private List<TextComponent> mergeTextComponents(List<Component> existingComponents, List<TextComponent> ocrComponents) {
         List<TextComponent> additionalTexts = new ArrayList<>();
+        double iouThreshold = appConfig.getLayout().getIouThreshold();
+
+        List<Component> existingTexts = new ArrayList<>();
+        for (Component existing : existingComponents) {
+            if (existing instanceof TextComponent) {
+                existingTexts.add(existing);
+            }
+        }
+        SpatialGrid textIndex = SpatialGrid.of(existingTexts);
 
         for (TextComponent ocrText : ocrComponents) {
-            boolean matched = false;
-
-            for (Component existing : existingComponents) {
-                if (existing instanceof TextComponent) {
-                    double iou = calculateIoU(existing, ocrText);
-                    if (iou > appConfig.getLayout().getIouThreshold()) {
-                        matched = true;
-                        break;
-                    }
+            int ox = ocrText.getPosition().getX();
+            int oy = ocrText.getPosition().getY();
+            int ow = ocrText.getSize().getWidth();
+            int oh = ocrText.getSize().getHeight();
+
+            boolean[] matched = {false};
+            textIndex.query(ox, oy, ow, oh, i -> {
+                if (!matched[0] && textIndex.iou(i, ox, oy, ow, oh) > iouThreshold) {
+                    matched[0] = true;
                 }
-            }
+            });
 
-            if (!matched) {
+            if (!matched[0]) {
                 additionalTexts.add(ocrText);
             }
         }
@@ -169,28 +263,42 @@ public class TemplateGeneratorService {
     }
 
     private void removeDuplicates(List<Component> components) {
-        List<Component> toRemove = new ArrayList<>();
+        int n = components.size();
+        boolean[] toRemove = new boolean[n];
+        SpatialGrid index = SpatialGrid.of(components);
 
-        for (int i = 0; i < components.size(); i++) {
-            for (int j = i + 1; j < components.size(); j++) {
-                Component c1 = components.get(i);
+        for (int i = 0; i < n; i++) {
+            Component c1 = components.get(i);
+            int finalI = i;
+
+            index.query(index.x(i), index.y(i), index.width(i), index.height(i), j -> {
+                if (j <= finalI) {
+                    return;
+                }
                 Component c2 = components.get(j);
 
                 if (c1.getType().equals(c2.getType())) {
-                    double iou = calculateIoU(c1, c2);
+                    double iou = index.iou(j, index.x(finalI), index.y(finalI), index.width(finalI), index.height(finalI));
                     if (iou > 0.8) {
-                        Component toKeep = c1.getConfidence() > c2.getConfidence() ? c1 : c2;
-                        Component toDelete = toKeep == c1 ? c2 : c1;
-                        if (!toRemove.contains(toDelete)) {
-                            toRemove.add(toDelete);
-                        }
+                        // 置信度高者保留（相同时保留后者）
+                        toRemove[c1.getConfidence() > c2.getConfidence() ? j : finalI] = true;
                     }
                 }
-            }
+            });
         }
 
-        components.removeAll(toRemove);
+        List<Component> kept = new ArrayList<>(n);
+        int removed = 0;
+        for (int i = 0; i < n; i++) {
+            if (toRemove[i]) {
+                removed++;
+            } else {
+                kept.add(components.get(i));
+            }
+        }
+        components.clear();
+        components.addAll(kept);
 
-        log.info("移除 {} 个重复组件", toRemove.size());
+        log.info("移除 {} 个重复组件", removed);
     }
 }
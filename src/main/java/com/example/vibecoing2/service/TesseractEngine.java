@@ -0,0 +1,125 @@
+package com.example.vibecoing2.service;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI;
+import net.sourceforge.tess4j.Word;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预初始化的 Tesseract 本地引擎
+ * 直接持有 TessBaseAPI 句柄（语言包只加载一次），通过 TessBaseAPISetImage 传入像素缓冲区，
+ * 不再经过 BufferedImage / PNG 编解码。实例不是线程安全的，由 {@link TesseractPool} 保证独占使用
+ */
+public class TesseractEngine implements AutoCloseable {
+
+    private final TessAPI api;
+    private final ITessAPI.TessBaseAPI handle;
+    private int pageSegMode = -1;
+
+    public TesseractEngine(String datapath, String language) {
+        this.api = TessAPI.INSTANCE;
+        this.handle = api.TessBaseAPICreate();
+
+        if (api.TessBaseAPIInit3(handle, datapath, language) != 0) {
+            api.TessBaseAPIDelete(handle);
+            throw new IllegalStateException("Tesseract 初始化失败: datapath=" + datapath + ", language=" + language);
+        }
+    }
+
+    /**
+     * 设置页面分割模式（与当前模式相同时跳过本地调用）
+     */
+    public void setPageSegMode(int mode) {
+        if (mode != pageSegMode) {
+            api.TessBaseAPISetPageSegMode(handle, mode);
+            pageSegMode = mode;
+        }
+    }
+
+    /**
+     * 识别 8 位单通道 Mat（可以是 submat）
+     * 通过 Mat 的本地数据地址构造 direct ByteBuffer，按行跨度传给 Tesseract，不做 Java 侧拷贝
+     *
+     * @param gray  8 位灰度或二值图
+     * @param level 结果迭代级别（ITessAPI.TessPageIteratorLevel）
+     */
+    public List<Word> recognize(Mat gray, int level) {
+        if (gray.type() != CvType.CV_8UC1) {
+            throw new IllegalArgumentException("OCR 输入必须是 8 位单通道图像，实际类型: " + CvType.typeToString(gray.type()));
+        }
+
+        int width = gray.cols();
+        int height = gray.rows();
+        long bytesPerLine = gray.step1(0) * gray.elemSize1();
+        long bufferSize = bytesPerLine * (height - 1) + width;
+
+        ByteBuffer buffer = new Pointer(gray.dataAddr()).getByteBuffer(0, bufferSize);
+        return recognize(buffer, width, height, 1, (int) bytesPerLine, level);
+    }
+
+    /**
+     * 识别原始像素缓冲区
+     */
+    public List<Word> recognize(ByteBuffer buffer, int width, int height, int bytesPerPixel, int bytesPerLine,
+                                int level) {
+        List<Word> words = new ArrayList<>();
+
+        api.TessBaseAPISetImage(handle, buffer, width, height, bytesPerPixel, bytesPerLine);
+        try {
+            if (api.TessBaseAPIRecognize(handle, null) != 0) {
+                throw new IllegalStateException("Tesseract 识别失败");
+            }
+
+            ITessAPI.TessResultIterator resultIterator = api.TessBaseAPIGetIterator(handle);
+            if (resultIterator == null) {
+                return words;
+            }
+
+            ITessAPI.TessPageIterator pageIterator = api.TessResultIteratorGetPageIterator(resultIterator);
+            api.TessPageIteratorBegin(pageIterator);
+
+            IntBuffer left = IntBuffer.allocate(1);
+            IntBuffer top = IntBuffer.allocate(1);
+            IntBuffer right = IntBuffer.allocate(1);
+            IntBuffer bottom = IntBuffer.allocate(1);
+
+            try {
+                do {
+                    Pointer textPointer = api.TessResultIteratorGetUTF8Text(resultIterator, level);
+                    if (textPointer == null) {
+                        continue;
+                    }
+                    String text = textPointer.getString(0, "UTF-8");
+                    api.TessDeleteText(textPointer);
+
+                    float confidence = api.TessResultIteratorConfidence(resultIterator, level);
+                    api.TessPageIteratorBoundingBox(pageIterator, level, left, top, right, bottom);
+
+                    int x = left.get(0);
+                    int y = top.get(0);
+                    words.add(new Word(text, confidence, new Rectangle(x, y, right.get(0) - x, bottom.get(0) - y)));
+                } while (api.TessPageIteratorNext(pageIterator, level) == ITessAPI.TRUE);
+            } finally {
+                api.TessResultIteratorDelete(resultIterator);
+            }
+        } finally {
+            api.TessBaseAPIClear(handle);
+        }
+
+        return words;
+    }
+
+    @Override
+    public void close() {
+        api.TessBaseAPIEnd(handle);
+        api.TessBaseAPIDelete(handle);
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.OCRConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tesseract 引擎池
+ * 底层 TessBaseAPI 不是线程安全的，每个请求线程借用独立的引擎实例，用完归还；
+ * 引擎在启动时完成初始化（语言包只加载一次），执行过程中出现本地异常时丢弃并补充新实例；
+ * 启动或替换时创建失败的引擎记为缺口，在之后的借用中按间隔重试补齐
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TesseractPool {
+
+    // 补齐缺失引擎的最小重试间隔
+    private static final long REPLENISH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final OCRConfig ocrConfig;
+
+    private BlockingQueue<TesseractEngine> idleEngines;
+    private ExecutorService executor;
+    private int capacity;
+    private volatile boolean available = false;
+
+    // 统计指标
+    private final AtomicInteger inUse = new AtomicInteger();
+    // 已创建且尚未释放的引擎数（空闲 + 借出）
+    private final AtomicInteger liveEngines = new AtomicInteger();
+    // 下一次允许补齐引擎的时间（System.nanoTime）
+    private final AtomicLong nextReplenishNanos = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong replacedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * 引擎上执行的任务
+     */
+    @FunctionalInterface
+    public interface EngineTask<T> {
+        T run(TesseractEngine engine) throws Exception;
+    }
+
+    @PostConstruct
+    public void init() {
+        capacity = ocrConfig.getPoolSize() != null && ocrConfig.getPoolSize() > 0
+                ? ocrConfig.getPoolSize()
+                : Runtime.getRuntime().availableProcessors();
+        idleEngines = new ArrayBlockingQueue<>(capacity);
+
+        // 并行识别线程数与引擎数一致，保证每个线程都能借到引擎
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(capacity, runnable -> {
+            Thread thread = new Thread(runnable, "tesseract-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long startTime = System.currentTimeMillis();
+        boolean warmUp = Boolean.TRUE.equals(ocrConfig.getWarmUp());
+        for (int i = 0; i < capacity; i++) {
+            TesseractEngine engine = null;
+            try {
+                engine = createEngine();
+                if (warmUp) {
+                    warmUp(engine);
+                }
+                idleEngines.offer(engine);
+            } catch (LinkageError e) {
+                closeQuietly(engine);
+                log.warn("Tesseract 库未安装，OCR 功能不可用。macOS 请使用: brew install tesseract");
+                break;
+            } catch (Exception e) {
+                // 已创建的引擎继续使用，缺少的引擎在之后借用时重试创建
+                closeQuietly(engine);
+                log.error("创建 Tesseract 引擎失败 ({}/{})", i + 1, capacity, e);
+                break;
+            }
+        }
+
+        int created = liveEngines.get();
+        if (created == 0) {
+            log.error("Tesseract 引擎池初始化失败，OCR 功能不可用");
+            return;
+        }
+        nextReplenishNanos.set(System.nanoTime() + REPLENISH_INTERVAL_NANOS);
+        available = true;
+        if (created < capacity) {
+            log.warn("Tesseract 引擎池以 {}/{} 个引擎启动，缺少的引擎稍后重试创建", created, capacity);
+        } else {
+            log.info("Tesseract 引擎池初始化成功: size={}, 预热={}, 耗时 {}ms", capacity, warmUp,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        available = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (idleEngines != null) {
+            TesseractEngine engine;
+            while ((engine = idleEngines.poll()) != null) {
+                closeQuietly(engine);
+            }
+        }
+    }
+
+    /**
+     * 引擎池是否可用
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * 借用一个引擎执行任务，执行完毕后自动归还；任务抛出异常时替换该引擎
+     */
+    public <T> T execute(EngineTask<T> task) throws Exception {
+        TesseractEngine engine = borrow();
+        boolean broken = true;
+        try {
+            T result = task.run(engine);
+            broken = false;
+            return result;
+        } finally {
+            release(engine, broken);
+        }
+    }
+
+    /**
+     * 在引擎池上并行执行一组任务，结果顺序与任务顺序一致
+     */
+    public <T> List<T> executeAll(List<EngineTask<T>> tasks) throws Exception {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (EngineTask<T> task : tasks) {
+            futures.add(executor.submit(() -> execute(task)));
+        }
+
+        // 等待全部任务结束后再返回（任务可能仍在读取调用方持有的本地像素内存，不能提前取消）
+        List<T> results = new ArrayList<>(tasks.size());
+        Exception failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    failure = cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * 引擎池大小
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 借用引擎，超过 borrowTimeoutMs 仍无空闲引擎时抛出异常
+     */
+    public TesseractEngine borrow() throws InterruptedException {
+        if (!available) {
+            throw new IllegalStateException("Tesseract 引擎池不可用");
+        }
+
+        if (liveEngines.get() < capacity) {
+            replenish();
+        }
+
+        long startTime = System.nanoTime();
+        TesseractEngine engine = idleEngines.poll(ocrConfig.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS);
+        long waitNanos = System.nanoTime() - startTime;
+
+        if (engine == null) {
+            timeoutCount.incrementAndGet();
+            throw new IllegalStateException("获取 Tesseract 引擎超时（" + ocrConfig.getBorrowTimeoutMs() + "ms）");
+        }
+
+        inUse.incrementAndGet();
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+        return engine;
+    }
+
+    /**
+     * 归还引擎
+     *
+     * @param broken 引擎执行失败时为 true，此时丢弃该实例并补充新引擎
+     */
+    public void release(TesseractEngine engine, boolean broken) {
+        inUse.decrementAndGet();
+
+        TesseractEngine returned = engine;
+        if (broken) {
+            closeQuietly(engine);
+            try {
+                returned = createEngine();
+                replacedCount.incrementAndGet();
+                log.warn("Tesseract 引擎执行失败，已替换为新实例");
+            } catch (Throwable e) {
+                log.error("替换 Tesseract 引擎失败，当前引擎数 {}/{}，稍后借用时重试创建", liveEngines.get(), capacity, e);
+                return;
+            }
+        }
+
+        if (!idleEngines.offer(returned)) {
+            log.warn("Tesseract 引擎池已满，丢弃归还的实例");
+            closeQuietly(returned);
+        }
+    }
+
+    /**
+     * 补齐缺失的引擎；同一时间只有一个线程尝试，失败后间隔 REPLENISH_INTERVAL_NANOS 再试
+     */
+    private void replenish() {
+        long now = System.nanoTime();
+        long next = nextReplenishNanos.get();
+        if (now - next < 0 || !nextReplenishNanos.compareAndSet(next, now + REPLENISH_INTERVAL_NANOS)) {
+            return;
+        }
+        while (liveEngines.get() < capacity) {
+            TesseractEngine engine;
+            try {
+                engine = createEngine();
+            } catch (Throwable e) {
+                log.warn("补充 Tesseract 引擎失败，当前引擎数 {}/{}: {}", liveEngines.get(), capacity, e.getMessage());
+                return;
+            }
+            if (!idleEngines.offer(engine)) {
+                closeQuietly(engine);
+                return;
+            }
+            replacedCount.incrementAndGet();
+            log.info("已补充 Tesseract 引擎，当前引擎数 {}/{}", liveEngines.get(), capacity);
+        }
+    }
+
+    /**
+     * 引擎池统计信息（size 为配置的容量，live 为实际存活的引擎数）
+     */
+    public Map<String, Object> getStats() {
+        long borrows = borrowCount.get();
+        int busy = inUse.get();
+        int live = liveEngines.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("available", available);
+        stats.put("size", capacity);
+        stats.put("live", live);
+        stats.put("inUse", busy);
+        stats.put("idle", idleEngines != null ? idleEngines.size() : 0);
+        stats.put("utilization", live > 0 ? (double) busy / live : 0.0);
+        stats.put("borrowCount", borrows);
+        stats.put("timeoutCount", timeoutCount.get());
+        stats.put("replacedCount", replacedCount.get());
+        stats.put("avgWaitMs", borrows > 0 ? totalWaitNanos.get() / borrows / 1_000_000.0 : 0.0);
+        stats.put("maxWaitMs", maxWaitNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    private TesseractEngine createEngine() {
+        TesseractEngine engine = new TesseractEngine(ocrConfig.getTessdataPath(), ocrConfig.getLanguage());
+        liveEngines.incrementAndGet();
+        try {
+            engine.setPageSegMode(ocrConfig.getPageSegmentationMode());
+        } catch (RuntimeException | Error e) {
+            closeQuietly(engine);
+            throw e;
+        }
+        return engine;
+    }
+
+    private void closeQuietly(TesseractEngine engine) {
+        if (engine == null) {
+            return;
+        }
+        liveEngines.decrementAndGet();
+        try {
+            engine.close();
+        } catch (Throwable e) {
+            log.warn("释放 Tesseract 引擎失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 预热：引擎在一个空白小图上执行一次识别，提前分配识别所需的内部结构
+     */
+    private void warmUp(TesseractEngine engine) {
+        ByteBuffer blank = ByteBuffer.allocateDirect(32 * 32);
+        for (int i = 0; i < 32 * 32; i++) {
+            blank.put(i, (byte) 0xFF);
+        }
+        engine.recognize(blank, 32, 32, 1, 32, 0);
+    }
+}
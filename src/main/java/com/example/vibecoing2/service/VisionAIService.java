@@ -2,8 +2,11 @@ package com.example.vibecoing2.service;
 
 import com.example.vibecoing2.config.AIConfig;
 import com.example.vibecoing2.domain.*;
+import com.example.vibecoing2.util.FairScheduler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
@@ -15,10 +18,17 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.SocketTimeoutException;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -26,8 +36,15 @@ import java.util.concurrent.TimeUnit;
 public class VisionAIService {
 
     private final AIConfig aiConfig;
+    private final WorkloadScheduler workloadScheduler;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 不在调度任务中发起的 AI 调用使用的客户端 ID
+    private static final String INTERNAL_CLIENT_ID = "internal";
+
+    // 异步调用的线程只等待上游响应，数量由在途请求数决定
+    private ExecutorService asyncExecutor;
+
     // API 端点常量
     private static final String CHAT_COMPLETIONS_ENDPOINT = "/chat/completions";
 
@@ -160,7 +177,47 @@ public class VisionAIService {
             6. 仔细观察设计稿，识别所有可见的组件
             """;
 
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ai-call-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("AI 调用并发上限: {}", workloadScheduler.ai().getStats().getMaxConcurrency());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在独立线程上执行 {@link #analyzeImage(String)}，调用方可以同时进行本地识别
+     * AI 调用按调用方所在调度任务的优先级与客户端排队（在调用线程上取得）；失败时 future 以 {@link CompletionException} 结束
+     */
+    public CompletableFuture<List<Component>> analyzeImageAsync(String imagePath) {
+        FairScheduler.Priority priority = FairScheduler.currentPriority(FairScheduler.Priority.INTERACTIVE);
+        String clientId = FairScheduler.currentClientId(INTERNAL_CLIENT_ID);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return analyzeImage(imagePath, priority, clientId);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+
     public List<Component> analyzeImage(String imagePath) throws IOException {
+        return analyzeImage(imagePath, FairScheduler.currentPriority(FairScheduler.Priority.INTERACTIVE),
+                FairScheduler.currentClientId(INTERNAL_CLIENT_ID));
+    }
+
+    private List<Component> analyzeImage(String imagePath, FairScheduler.Priority priority, String clientId)
+            throws IOException {
         log.info("==========================================");
         log.info("开始使用 AI 分析图片");
         log.info("图片路径: {}", imagePath);
@@ -178,11 +235,30 @@ public class VisionAIService {
         long encodeTime = System.currentTimeMillis() - encodeStartTime;
         log.info("[1/3] 图片编码完成，耗时: {} ms", encodeTime);
 
-        // 2. 调用 AI API
+        // 2. 调用 AI API（按优先级与客户端等待上游调用名额）
         log.info("[2/3] 开始调用 AI API...");
-        long apiStartTime = System.currentTimeMillis();
-        String responseJson = callClaudeVisionAPI(base64Image);
-        long apiTime = System.currentTimeMillis() - apiStartTime;
+        long permitStartTime = System.currentTimeMillis();
+        long[] apiStartTime = {permitStartTime};
+        String responseJson;
+        try {
+            responseJson = workloadScheduler.ai().execute(priority, clientId, () -> {
+                apiStartTime[0] = System.currentTimeMillis();
+                try {
+                    return callClaudeVisionAPI(base64Image);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RejectedExecutionException e) {
+            throw new IOException("等待 AI 调用名额失败: " + e.getMessage(), e);
+        }
+        long permitWaitTime = apiStartTime[0] - permitStartTime;
+        if (permitWaitTime > 0) {
+            log.info("[2/3] 等待 AI 调用名额: {} ms", permitWaitTime);
+        }
+        long apiTime = System.currentTimeMillis() - apiStartTime[0];
         log.info("[2/3] AI API 调用完成，耗时: {} ms", apiTime);
 
         // 3. 解析响应
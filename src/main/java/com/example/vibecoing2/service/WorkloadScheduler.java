@@ -0,0 +1,134 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AIConfig;
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.util.FairScheduler;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 设计稿分析、图片生成与 AI 上游调用的执行调度
+ * 三类资源各有一个 {@link FairScheduler}：交互请求优先，批量请求只能占用部分名额；
+ * 同一优先级内按客户端（配置了权重的 X-Api-Key / 来源地址）加权公平排队。
+ * 分析任务等待 AI 响应时交还分析名额，AI 调用按发起它的分析任务的优先级与客户端在 AI 调度器上排队
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkloadScheduler {
+
+    public static final String API_KEY_HEADER = "X-Api-Key";
+    public static final String WORKLOAD_CLASS_HEADER = "X-Workload-Class";
+
+    // API Key 客户端 ID 的前缀，后接密钥 SHA-256 摘要的前 12 位十六进制
+    private static final String API_KEY_CLIENT_PREFIX = "key-";
+
+    private final AppConfig appConfig;
+    private final AIConfig aiConfig;
+
+    private FairScheduler analysis;
+    private FairScheduler generation;
+    private FairScheduler ai;
+
+    @PostConstruct
+    public void init() {
+        AppConfig.SchedulerConfig config = appConfig.getScheduler();
+        analysis = create("analysis", config.getAnalysis().getMaxConcurrency(),
+                config.getAnalysis().getBatchMaxConcurrency(), config);
+        generation = create("generation", config.getGeneration().getMaxConcurrency(),
+                config.getGeneration().getBatchMaxConcurrency(), config);
+
+        int aiMaxConcurrency = aiConfig.getMaxConcurrency() != null && aiConfig.getMaxConcurrency() > 0
+                ? aiConfig.getMaxConcurrency()
+                : 1;
+        ai = create("ai", aiMaxConcurrency, config.getAiBatchMaxConcurrency(), config);
+        if (config.getAiBatchMaxConcurrency() >= aiMaxConcurrency) {
+            log.warn("批量 AI 调用名额 ({}) 不小于 AI 并发上限 ({})，没有为交互请求预留 AI 调用名额",
+                    config.getAiBatchMaxConcurrency(), aiMaxConcurrency);
+        }
+    }
+
+    private FairScheduler create(String name, int maxConcurrency, int batchMaxConcurrency,
+                                 AppConfig.SchedulerConfig config) {
+        Map<String, Double> clientWeights = config.getClientWeights();
+        FairScheduler scheduler = new FairScheduler(name, maxConcurrency, batchMaxConcurrency, config.getMaxQueued(),
+                config.getInteractiveMaxQueueMs(), config.getBatchMaxQueueMs(),
+                clientId -> clientWeights.getOrDefault(clientId, 1.0));
+        log.info("调度器初始化完成: {}, 名额={}, 批量名额={}", name, maxConcurrency, batchMaxConcurrency);
+        return scheduler;
+    }
+
+    /**
+     * 设计稿分析（单张与批量）
+     */
+    public FairScheduler analysis() {
+        return analysis;
+    }
+
+    /**
+     * 图片生成
+     */
+    public FairScheduler generation() {
+        return generation;
+    }
+
+    /**
+     * AI 上游调用（名额总数为 app.ai.max-concurrency）
+     */
+    public FairScheduler ai() {
+        return ai;
+    }
+
+    /**
+     * 请求的客户端 ID：在 app.scheduler.client-weights 中配置过的 X-Api-Key 取其摘要 key-xxxxxxxxxxxx
+     * （不在统计中暴露原始密钥），其余请求取来源地址。
+     * 调用方可以自由填写的请求头（如 X-Client-Id、未登记的密钥）不参与标识，否则每换一个值就得到一个全新的虚拟时间
+     */
+    public String clientId(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank()) {
+            String keyId = API_KEY_CLIENT_PREFIX + digest(apiKey.trim());
+            if (appConfig.getScheduler().getClientWeights().containsKey(keyId)) {
+                return keyId;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 请求的优先级：调用方可以用 X-Workload-Class: batch 主动降为批量优先级，不能提升
+     */
+    public FairScheduler.Priority priority(HttpServletRequest request, FairScheduler.Priority defaultPriority) {
+        if ("batch".equalsIgnoreCase(request.getHeader(WORKLOAD_CLASS_HEADER))) {
+            return FairScheduler.Priority.BATCH;
+        }
+        return defaultPriority;
+    }
+
+    public Map<String, FairScheduler.Stats> getStats() {
+        Map<String, FairScheduler.Stats> stats = new LinkedHashMap<>();
+        stats.put("analysis", analysis.getStats());
+        stats.put("generation", generation.getStats());
+        stats.put("ai", ai.getStats());
+        return stats;
+    }
+
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
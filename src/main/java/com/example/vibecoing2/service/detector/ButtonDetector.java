@@ -0,0 +1,100 @@
+package com.example.vibecoing2.service.detector;
+
+import com.example.vibecoing2.config.OpenCVConfig;
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.util.ColorExtractor;
+import com.example.vibecoing2.util.CoordinateConverter;
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 按钮检测：Canny 边缘图上的外轮廓，按尺寸与宽高比筛选
+ */
+@Slf4j
+@Service
+@Order(100)
+@RequiredArgsConstructor
+public class ButtonDetector implements ComponentDetector {
+
+    private final OpenCVConfig openCVConfig;
+    private final ImageProcessor imageProcessor;
+    private final ColorExtractor colorExtractor;
+    private final CoordinateConverter coordinateConverter;
+
+    @Override
+    public String getName() {
+        return "button";
+    }
+
+    @Override
+    public List<ButtonComponent> detect(FeatureMaps featureMaps) {
+        Mat image = featureMaps.getImage();
+
+        // 候选框筛选在基本类型数组上完成
+        RectArray candidates = RectArray.fromExternalContours(featureMaps.getEdges()).filter(this::isButtonShape);
+        RegionStatistics stats = featureMaps.regionStatistics(candidates);
+
+        // 颜色提取按候选框并行，结果顺序与候选框一致
+        List<ButtonComponent> buttons = IntStream.range(0, candidates.size())
+                .parallel()
+                .mapToObj(i -> createButtonComponent(image, candidates, stats, i))
+                .toList();
+
+        log.info("检测到 {} 个按钮", buttons.size());
+
+        return buttons;
+    }
+
+    private boolean isButtonShape(int x, int y, int width, int height) {
+        double aspectRatio = (double) width / height;
+
+        boolean widthOk = width >= openCVConfig.getMinButtonWidth();
+        boolean heightOk = height >= openCVConfig.getMinButtonHeight();
+        boolean aspectRatioOk = aspectRatio >= openCVConfig.getButtonAspectRatioMin()
+                && aspectRatio <= openCVConfig.getButtonAspectRatioMax();
+
+        return widthOk && heightOk && aspectRatioOk;
+    }
+
+    private ButtonComponent createButtonComponent(Mat image, RectArray candidates, RegionStatistics stats, int i) {
+        Rect rect = candidates.toRect(i);
+
+        ButtonComponent button = new ButtonComponent();
+        button.setId("button-cv-" + System.nanoTime() + "-" + i);
+        button.setText("按钮");
+        button.setPosition(coordinateConverter.toPosition(rect));
+        button.setSize(coordinateConverter.toSize(rect));
+        button.setConfidence(0.7);
+
+        // 纯色区域的平均色即主色，直接取积分表结果
+        String backgroundColor;
+        if (stats.isSolidColor(i)) {
+            backgroundColor = stats.meanColorHex(i);
+        } else {
+            try (MatScope scope = new MatScope()) {
+                Mat buttonRegion = scope.track(imageProcessor.extractRegion(image, rect));
+                backgroundColor = colorExtractor.extractDominantColor(buttonRegion);
+            }
+        }
+        String textColor = colorExtractor.getContrastColor(backgroundColor);
+
+        button.setBackgroundColor(backgroundColor);
+        button.setTextColor(textColor);
+        button.setBorderRadius(estimateBorderRadius(rect));
+
+        return button;
+    }
+
+    private int estimateBorderRadius(Rect rect) {
+        return Math.min(rect.height / 2, 25);
+    }
+}
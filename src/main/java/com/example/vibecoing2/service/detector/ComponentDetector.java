@@ -0,0 +1,27 @@
+package com.example.vibecoing2.service.detector;
+
+import com.example.vibecoing2.domain.Component;
+
+import java.util.List;
+
+/**
+ * OpenCV 组件检测器
+ * 检测器从 {@link FeatureMaps} 读取共享的灰度图、边缘图等特征，不自行重复转换；
+ * 实现类注册为 Spring Bean 即可被 ComponentDetectionService 自动发现并与其它检测器并行执行，
+ * 因此实现必须是无状态、线程安全的
+ */
+public interface ComponentDetector {
+
+    /**
+     * 检测器名称，用于日志
+     */
+    String getName();
+
+    /**
+     * 检测组件
+     *
+     * @param featureMaps 本次请求共享的特征图
+     * @return 检测到的组件
+     */
+    List<? extends Component> detect(FeatureMaps featureMaps);
+}
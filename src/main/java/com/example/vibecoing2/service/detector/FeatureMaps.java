@@ -0,0 +1,157 @@
+package com.example.vibecoing2.service.detector;
+
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Range;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 单次检测请求的特征图缓存
+ * 灰度图、边缘图、二值图、积分图在第一次使用时计算，之后所有检测器共享同一份结果；
+ * 各特征图独立加锁，多个检测器可以并行读取。
+ * 采用引用计数：每个检测任务 retain() 一次、结束时 close()，超出时间预算仍在运行的检测器
+ * 不会读到已释放的内存；最后一个持有者 close() 时释放全部特征图
+ */
+public class FeatureMaps implements AutoCloseable {
+
+    private final Mat image;
+    private final ImageProcessor imageProcessor;
+    private final MatScope scope = new MatScope();
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private final Lazy<Mat> gray = new Lazy<>();
+    private final Lazy<Mat> edges = new Lazy<>();
+    private final Lazy<Mat> binary = new Lazy<>();
+    private final Lazy<Mat> integral = new Lazy<>();
+    private final Lazy<Mat> squaredIntegral = new Lazy<>();
+    private final Lazy<RegionStatistics.IntegralTable> colorIntegralTable = new Lazy<>();
+
+    public FeatureMaps(Mat image, ImageProcessor imageProcessor) {
+        // 持有一份共享像素的 Mat 头，调用方提前 release() 原图时像素内存仍然有效
+        this.image = scope.track(new Mat(image, Range.all()));
+        this.imageProcessor = imageProcessor;
+    }
+
+    /**
+     * 增加一个持有者，需与 close() 成对调用
+     */
+    public FeatureMaps retain() {
+        if (refCount.getAndIncrement() <= 0) {
+            refCount.decrementAndGet();
+            throw new IllegalStateException("FeatureMaps 已释放");
+        }
+        return this;
+    }
+
+    /**
+     * 原图（BGR）
+     */
+    public Mat getImage() {
+        return image;
+    }
+
+    public int getWidth() {
+        return image.cols();
+    }
+
+    public int getHeight() {
+        return image.rows();
+    }
+
+    /**
+     * 灰度图
+     */
+    public Mat getGray() {
+        return gray.get(() -> image.channels() == 1
+                ? image
+                : scope.track(imageProcessor.convertToGray(image)));
+    }
+
+    /**
+     * Canny 边缘图
+     */
+    public Mat getEdges() {
+        return edges.get(() -> scope.track(imageProcessor.detectEdges(getGray())));
+    }
+
+    /**
+     * Otsu 二值图
+     */
+    public Mat getBinary() {
+        return binary.get(() -> scope.track(imageProcessor.threshold(getGray())));
+    }
+
+    /**
+     * 灰度积分图（CV_64F，尺寸为 (rows + 1) x (cols + 1)），用于 O(1) 计算任意矩形的像素和
+     */
+    public Mat getIntegral() {
+        computeIntegrals();
+        return integral.value;
+    }
+
+    /**
+     * 灰度平方积分图（CV_64F），与 {@link #getIntegral()} 一起计算任意矩形的方差
+     */
+    public Mat getSquaredIntegral() {
+        computeIntegrals();
+        return squaredIntegral.value;
+    }
+
+    private void computeIntegrals() {
+        integral.get(() -> {
+            Mat sum = scope.newMat();
+            Mat sqsum = scope.newMat();
+            Imgproc.integral2(getGray(), sum, sqsum, CvType.CV_64F, CvType.CV_64F);
+            squaredIntegral.value = sqsum;
+            return sum;
+        });
+    }
+
+    /**
+     * 批量计算一组矩形的颜色均值与标准差（基于共享的颜色积分表，每个矩形 O(1)）
+     */
+    public RegionStatistics regionStatistics(RectArray rects) {
+        return RegionStatistics.compute(this, rects);
+    }
+
+    /**
+     * 颜色积分表：原图（大图先按面积缩小）的各通道和与平方和积分图，一次性拷贝到 Java 数组，
+     * 本地 Mat 随即释放
+     */
+    RegionStatistics.IntegralTable getColorIntegralTable() {
+        return colorIntegralTable.get(() -> RegionStatistics.IntegralTable.build(image));
+    }
+
+    @Override
+    public void close() {
+        if (refCount.decrementAndGet() == 0) {
+            scope.close();
+        }
+    }
+
+    /**
+     * 延迟计算的特征，每个实例独立加锁
+     */
+    private static final class Lazy<T> {
+        private volatile T value;
+
+        T get(Supplier<T> supplier) {
+            T result = value;
+            if (result == null) {
+                synchronized (this) {
+                    result = value;
+                    if (result == null) {
+                        result = supplier.get();
+                        value = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
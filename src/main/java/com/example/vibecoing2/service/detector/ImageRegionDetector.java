@@ -0,0 +1,94 @@
+package com.example.vibecoing2.service.detector;
+
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.util.ColorExtractor;
+import com.example.vibecoing2.util.CoordinateConverter;
+import com.example.vibecoing2.util.ImageProcessor;
+import com.example.vibecoing2.util.MatScope;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 图片区域检测：Otsu 二值图上的外轮廓，按面积与宽高比筛选
+ */
+@Slf4j
+@Service
+@Order(200)
+@RequiredArgsConstructor
+public class ImageRegionDetector implements ComponentDetector {
+
+    private final ImageProcessor imageProcessor;
+    private final ColorExtractor colorExtractor;
+    private final CoordinateConverter coordinateConverter;
+
+    @Override
+    public String getName() {
+        return "image";
+    }
+
+    @Override
+    public List<ImageComponent> detect(FeatureMaps featureMaps) {
+        Mat image = featureMaps.getImage();
+        double imageArea = (double) featureMaps.getWidth() * featureMaps.getHeight();
+
+        // 候选框筛选在基本类型数组上完成
+        RectArray candidates = RectArray.fromExternalContours(featureMaps.getBinary())
+                .filter((x, y, width, height) -> isImageRegion(width, height, imageArea));
+        RegionStatistics stats = featureMaps.regionStatistics(candidates);
+
+        // 颜色提取按候选框并行，结果顺序与候选框一致
+        List<ImageComponent> imageComponents = IntStream.range(0, candidates.size())
+                .parallel()
+                .mapToObj(i -> createImageComponent(image, candidates, stats, i))
+                .toList();
+
+        log.info("检测到 {} 个图片区域", imageComponents.size());
+
+        return imageComponents;
+    }
+
+    private boolean isImageRegion(int width, int height, double imageArea) {
+        double areaRatio = (double) width * height / imageArea;
+
+        boolean largeEnough = width > 100 && height > 100;
+        boolean notTooLarge = areaRatio < 0.8;
+        boolean aspectRatioOk = (double) width / height > 0.5 && (double) width / height < 3.0;
+
+        return largeEnough && notTooLarge && aspectRatioOk;
+    }
+
+    private ImageComponent createImageComponent(Mat image, RectArray candidates, RegionStatistics stats, int i) {
+        Rect rect = candidates.toRect(i);
+
+        ImageComponent imageComponent = new ImageComponent();
+        imageComponent.setId("image-cv-" + System.nanoTime() + "-" + i);
+        imageComponent.setPosition(coordinateConverter.toPosition(rect));
+        imageComponent.setSize(coordinateConverter.toSize(rect));
+        imageComponent.setConfidence(0.7);
+
+        // 纯色区域的平均色即主色，直接取积分表结果
+        String dominantColor;
+        if (stats.isSolidColor(i)) {
+            dominantColor = stats.meanColorHex(i);
+        } else {
+            try (MatScope scope = new MatScope()) {
+                Mat imageRegion = scope.track(imageProcessor.extractRegion(image, rect));
+                dominantColor = colorExtractor.extractDominantColor(imageRegion);
+            }
+        }
+
+        imageComponent.setPlaceholderUrl("https://placehold.co/" + rect.width + "x" + rect.height);
+        imageComponent.setPlaceholderAlt("图片占位符");
+        imageComponent.setDominantColor(dominantColor);
+        imageComponent.setObjectFit("cover");
+
+        return imageComponent;
+    }
+}
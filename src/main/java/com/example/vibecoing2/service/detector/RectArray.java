@@ -0,0 +1,104 @@
+package com.example.vibecoing2.service.detector;
+
+import com.example.vibecoing2.util.MatScope;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 紧凑的矩形数组（x, y, width, height 连续存放在 int[] 中）
+ * 候选框筛选直接在基本类型数组上进行，不再为每个轮廓保留 Rect / MatOfPoint 对象
+ */
+public final class RectArray {
+
+    private int[] data;
+    private int size;
+
+    public RectArray() {
+        this(16);
+    }
+
+    public RectArray(int capacity) {
+        this.data = new int[Math.max(1, capacity) * 4];
+    }
+
+    /**
+     * 二值图（或边缘图）外轮廓的外接矩形；轮廓 Mat 读取后立即释放
+     */
+    public static RectArray fromExternalContours(Mat binary) {
+        List<MatOfPoint> contours = new ArrayList<>();
+        RectArray rects;
+        try (MatScope scope = new MatScope()) {
+            Mat hierarchy = scope.newMat();
+            Imgproc.findContours(binary, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+            scope.trackAll(contours);
+
+            rects = new RectArray(contours.size());
+            for (MatOfPoint contour : contours) {
+                Rect rect = Imgproc.boundingRect(contour);
+                rects.add(rect.x, rect.y, rect.width, rect.height);
+            }
+        }
+        return rects;
+    }
+
+    public void add(int x, int y, int width, int height) {
+        if (size * 4 == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        int offset = size * 4;
+        data[offset] = x;
+        data[offset + 1] = y;
+        data[offset + 2] = width;
+        data[offset + 3] = height;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int x(int i) {
+        return data[i * 4];
+    }
+
+    public int y(int i) {
+        return data[i * 4 + 1];
+    }
+
+    public int width(int i) {
+        return data[i * 4 + 2];
+    }
+
+    public int height(int i) {
+        return data[i * 4 + 3];
+    }
+
+    public Rect toRect(int i) {
+        return new Rect(x(i), y(i), width(i), height(i));
+    }
+
+    /**
+     * 按条件筛选，返回新数组
+     */
+    public RectArray filter(RectPredicate predicate) {
+        RectArray result = new RectArray(size);
+        for (int i = 0; i < size; i++) {
+            int offset = i * 4;
+            if (predicate.test(data[offset], data[offset + 1], data[offset + 2], data[offset + 3])) {
+                result.add(data[offset], data[offset + 1], data[offset + 2], data[offset + 3]);
+            }
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    public interface RectPredicate {
+        boolean test(int x, int y, int width, int height);
+    }
+}
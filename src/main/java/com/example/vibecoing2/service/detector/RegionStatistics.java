@@ -0,0 +1,249 @@
+package com.example.vibecoing2.service.detector;
+
+import com.example.vibecoing2.util.MatScope;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Rect;
+
+import java.util.Arrays;
+
+/**
+ * 一组矩形区域的颜色均值与标准差
+ * 基于颜色积分表：每个矩形只需 4 次数组查找，不再对每个候选区域单独裁剪并调用 JNI。
+ * 小图的积分表逐像素构建，结果是精确值。大图的积分表按 k x k 像素块聚合，块内累加的是原图像素的
+ * 和与平方和（不是缩小后的像素），纹理不会被缩放平均掉；但矩形要向内取整到块边界，
+ * 统计的是去掉四周不完整块之后的内部区域，结果是近似值。
+ * 内部区域不足矩形面积 MIN_INTERIOR_COVERAGE 的矩形（小矩形或窄条）回退到原图上的 meanStdDev，
+ * 因此被忽略的边缘像素不超过矩形面积的 1 - MIN_INTERIOR_COVERAGE
+ */
+public final class RegionStatistics {
+
+    // 标准差低于该值视为纯色（与 ImageProcessor.isRegionSolidColor 一致）
+    private static final double SOLID_STDDEV_THRESHOLD = 5.0;
+
+    // 按块统计的内部区域至少覆盖矩形面积的比例，否则回退到逐像素统计
+    private static final double MIN_INTERIOR_COVERAGE = 0.95;
+
+    private final int channels;
+    private final double[] means;
+    private final double[] maxStdDevs;
+
+    private RegionStatistics(int count, int channels) {
+        this.channels = channels;
+        this.means = new double[count * channels];
+        this.maxStdDevs = new double[count];
+    }
+
+    static RegionStatistics compute(FeatureMaps featureMaps, RectArray rects) {
+        IntegralTable table = featureMaps.getColorIntegralTable();
+        int channels = table.channels;
+        int block = table.block;
+        RegionStatistics stats = new RegionStatistics(rects.size(), channels);
+
+        double[] sum = new double[channels];
+        double[] sqsum = new double[channels];
+
+        for (int i = 0; i < rects.size(); i++) {
+            int left = Math.max(0, rects.x(i));
+            int top = Math.max(0, rects.y(i));
+            int right = Math.min(table.imageWidth, rects.x(i) + rects.width(i));
+            int bottom = Math.min(table.imageHeight, rects.y(i) + rects.height(i));
+
+            // 向内取整到块边界；贴住图片右 / 下边缘的矩形包含最后一个不完整的块
+            int x0 = ceilDiv(left, block);
+            int y0 = ceilDiv(top, block);
+            int x1 = right == table.imageWidth ? table.width : right / block;
+            int y1 = bottom == table.imageHeight ? table.height : bottom / block;
+
+            double area = x1 > x0 && y1 > y0
+                    ? (double) (Math.min(table.imageWidth, x1 * block) - x0 * block)
+                            * (Math.min(table.imageHeight, y1 * block) - y0 * block)
+                    : 0;
+            if (area <= 0 || area < (double) (right - left) * (bottom - top) * MIN_INTERIOR_COVERAGE) {
+                stats.computeExact(i, featureMaps.getImage(), rects.toRect(i));
+                continue;
+            }
+
+            table.rectSums(x0, y0, x1, y1, sum, sqsum);
+            double maxStdDev = 0;
+            for (int c = 0; c < channels; c++) {
+                double mean = sum[c] / area;
+                double variance = Math.max(0, sqsum[c] / area - mean * mean);
+                stats.means[i * channels + c] = mean;
+                maxStdDev = Math.max(maxStdDev, Math.sqrt(variance));
+            }
+            stats.maxStdDevs[i] = maxStdDev;
+        }
+
+        return stats;
+    }
+
+    private void computeExact(int i, Mat image, Rect rect) {
+        Rect clipped = clip(rect, image.cols(), image.rows());
+        if (clipped.width <= 0 || clipped.height <= 0) {
+            return;
+        }
+
+        try (MatScope scope = new MatScope()) {
+            MatOfDouble mean = scope.track(new MatOfDouble());
+            MatOfDouble stddev = scope.track(new MatOfDouble());
+            Core.meanStdDev(scope.track(image.submat(clipped)), mean, stddev);
+
+            double[] meanArray = mean.toArray();
+            double[] stddevArray = stddev.toArray();
+            double maxStdDev = 0;
+            for (int c = 0; c < channels; c++) {
+                means[i * channels + c] = meanArray[c];
+                maxStdDev = Math.max(maxStdDev, stddevArray[c]);
+            }
+            maxStdDevs[i] = maxStdDev;
+        }
+    }
+
+    public int size() {
+        return maxStdDevs.length;
+    }
+
+    /**
+     * 各通道标准差的最大值
+     */
+    public double maxStdDev(int i) {
+        return maxStdDevs[i];
+    }
+
+    public boolean isSolidColor(int i) {
+        return maxStdDevs[i] < SOLID_STDDEV_THRESHOLD;
+    }
+
+    /**
+     * 区域平均色（#RRGGBB）
+     */
+    public String meanColorHex(int i) {
+        int offset = i * channels;
+        int b = (int) Math.round(means[offset]);
+        int g = channels >= 3 ? (int) Math.round(means[offset + 1]) : b;
+        int r = channels >= 3 ? (int) Math.round(means[offset + 2]) : b;
+        return String.format("#%02X%02X%02X", r, g, b);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static Rect clip(Rect rect, int width, int height) {
+        int x = Math.max(0, rect.x);
+        int y = Math.max(0, rect.y);
+        int x2 = Math.min(width, rect.x + rect.width);
+        int y2 = Math.min(height, rect.y + rect.height);
+        return new Rect(x, y, x2 - x, y2 - y);
+    }
+
+    /**
+     * 颜色积分表（Java 数组），尺寸 (height + 1) x (width + 1) x channels；
+     * 每个格子对应原图 block x block 像素块，存放块内原图像素的和与平方和
+     */
+    static final class IntegralTable {
+
+        // 积分表格子数上限，大图按块聚合，限制积分表内存
+        private static final long MAX_CELLS = 512L * 1024;
+
+        private final int imageWidth;
+        private final int imageHeight;
+        private final int block;
+        private final int width;
+        private final int height;
+        private final int channels;
+        private final long[] sum;
+        private final long[] sqsum;
+
+        private IntegralTable(int imageWidth, int imageHeight, int block, int channels) {
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+            this.block = block;
+            this.width = ceilDiv(imageWidth, block);
+            this.height = ceilDiv(imageHeight, block);
+            this.channels = channels;
+            this.sum = new long[(width + 1) * (height + 1) * channels];
+            this.sqsum = new long[sum.length];
+        }
+
+        static IntegralTable build(Mat image) {
+            try (MatScope scope = new MatScope()) {
+                Mat source = image;
+                if (image.depth() != CvType.CV_8U) {
+                    source = scope.newMat();
+                    image.convertTo(source, CvType.CV_8U);
+                }
+
+                int imageWidth = source.cols();
+                int imageHeight = source.rows();
+                int channels = source.channels();
+                long pixels = (long) imageWidth * imageHeight;
+                int block = pixels > MAX_CELLS ? (int) Math.ceil(Math.sqrt((double) pixels / MAX_CELLS)) : 1;
+                IntegralTable table = new IntegralTable(imageWidth, imageHeight, block, channels);
+
+                // 按行批量拷贝像素，逐块累加原图像素的和与平方和
+                byte[] row = new byte[imageWidth * channels];
+                long[] blockSum = new long[table.width * channels];
+                long[] blockSqsum = new long[blockSum.length];
+                for (int y = 0; y < imageHeight; y++) {
+                    source.get(y, 0, row);
+                    for (int x = 0; x < imageWidth; x++) {
+                        int cell = (x / block) * channels;
+                        for (int c = 0; c < channels; c++) {
+                            int value = row[x * channels + c] & 0xFF;
+                            blockSum[cell + c] += value;
+                            blockSqsum[cell + c] += value * value;
+                        }
+                    }
+
+                    if ((y + 1) % block == 0 || y == imageHeight - 1) {
+                        table.appendRow(y / block, blockSum, blockSqsum);
+                        Arrays.fill(blockSum, 0);
+                        Arrays.fill(blockSqsum, 0);
+                    }
+                }
+
+                return table;
+            }
+        }
+
+        /**
+         * 用一行块的累加值写入积分表的第 gy + 1 行
+         */
+        private void appendRow(int gy, long[] blockSum, long[] blockSqsum) {
+            int stride = (width + 1) * channels;
+            int above = gy * stride;
+            int current = (gy + 1) * stride;
+            for (int c = 0; c < channels; c++) {
+                long rowSum = 0;
+                long rowSqsum = 0;
+                for (int gx = 0; gx < width; gx++) {
+                    rowSum += blockSum[gx * channels + c];
+                    rowSqsum += blockSqsum[gx * channels + c];
+                    int offset = (gx + 1) * channels + c;
+                    sum[current + offset] = sum[above + offset] + rowSum;
+                    sqsum[current + offset] = sqsum[above + offset] + rowSqsum;
+                }
+            }
+        }
+
+        /**
+         * 计算格子 [x0, x1) x [y0, y1) 范围内各通道的和与平方和
+         */
+        void rectSums(int x0, int y0, int x1, int y1, double[] sumOut, double[] sqsumOut) {
+            int stride = (width + 1) * channels;
+            int topLeft = y0 * stride + x0 * channels;
+            int topRight = y0 * stride + x1 * channels;
+            int bottomLeft = y1 * stride + x0 * channels;
+            int bottomRight = y1 * stride + x1 * channels;
+
+            for (int c = 0; c < channels; c++) {
+                sumOut[c] = sum[bottomRight + c] - sum[topRight + c] - sum[bottomLeft + c] + sum[topLeft + c];
+                sqsumOut[c] = sqsum[bottomRight + c] - sqsum[topRight + c] - sqsum[bottomLeft + c] + sqsum[topLeft + c];
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.vibecoing2.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 64 位哈希的 BK 树（汉明距离）
+ * 每个节点按与父节点的距离挂在父节点的 children[距离] 上；查询半径 r 时由三角不等式，
+ * 只需进入距离在 [d - r, d + r] 内的子树。相同哈希的多个 ID 共用一个节点。
+ * 删除只清空节点上的 ID（节点仍用于路由），空节点超过一半时整体重建。非线程安全，由调用方加锁
+ */
+public class BkTree {
+
+    private static final int MAX_DISTANCE = 64;
+
+    private static final class Node {
+        private final long hash;
+        private final Set<String> ids = new LinkedHashSet<>(2);
+        private Node[] children;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 查询结果访问器
+     */
+    @FunctionalInterface
+    public interface MatchConsumer {
+        void accept(String id, long hash, int distance);
+    }
+
+    private Node root;
+    private int liveNodes;
+    private int emptyNodes;
+    private int size;
+
+    public void add(long hash, String id) {
+        if (root == null) {
+            root = new Node(hash);
+            root.ids.add(id);
+            liveNodes++;
+            size++;
+            return;
+        }
+
+        Node node = root;
+        while (true) {
+            int distance = PerceptualHash.distance(node.hash, hash);
+            if (distance == 0) {
+                if (node.ids.isEmpty()) {
+                    emptyNodes--;
+                    liveNodes++;
+                }
+                if (node.ids.add(id)) {
+                    size++;
+                }
+                return;
+            }
+            if (node.children == null) {
+                node.children = new Node[MAX_DISTANCE + 1];
+            }
+            Node child = node.children[distance];
+            if (child == null) {
+                child = new Node(hash);
+                child.ids.add(id);
+                node.children[distance] = child;
+                liveNodes++;
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public boolean remove(long hash, String id) {
+        Node node = root;
+        while (node != null) {
+            int distance = PerceptualHash.distance(node.hash, hash);
+            if (distance == 0) {
+                if (!node.ids.remove(id)) {
+                    return false;
+                }
+                size--;
+                if (node.ids.isEmpty()) {
+                    liveNodes--;
+                    emptyNodes++;
+                    if (emptyNodes > liveNodes) {
+                        rebuild();
+                    }
+                }
+                return true;
+            }
+            node = node.children != null ? node.children[distance] : null;
+        }
+        return false;
+    }
+
+    /**
+     * 查询汉明距离不超过 radius 的所有 ID
+     */
+    public void query(long hash, int radius, MatchConsumer consumer) {
+        if (root == null) {
+            return;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int distance = PerceptualHash.distance(node.hash, hash);
+            if (distance <= radius) {
+                for (String id : node.ids) {
+                    consumer.accept(id, node.hash, distance);
+                }
+            }
+            if (node.children == null) {
+                continue;
+            }
+            int from = Math.max(1, distance - radius);
+            int to = Math.min(MAX_DISTANCE, distance + radius);
+            for (int d = from; d <= to; d++) {
+                if (node.children[d] != null) {
+                    stack.push(node.children[d]);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        liveNodes = 0;
+        emptyNodes = 0;
+        size = 0;
+    }
+
+    /**
+     * 只用非空节点重新建树
+     */
+    private void rebuild() {
+        List<Node> live = new ArrayList<>(liveNodes);
+        Deque<Node> stack = new ArrayDeque<>();
+        if (root != null) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (!node.ids.isEmpty()) {
+                live.add(node);
+            }
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+
+        clear();
+        for (Node node : live) {
+            for (String id : node.ids) {
+                add(node.hash, id);
+            }
+        }
+    }
+}
@@ -11,44 +11,103 @@ import java.util.*;
 @Component
 public class ColorExtractor {
 
+    // 直方图抽样像素上限，超过时按步长抽样
+    private static final int MAX_SAMPLES = 64 * 1024;
+
+    // 每通道量化位数
+    private static final int BITS = 5;
+    private static final int LEVELS = 1 << BITS;
+    private static final int SHIFT = 8 - BITS;
+
+    // 直方图缓冲区按线程复用，只清理用到的桶
+    private static final ThreadLocal<ColorHistogram> HISTOGRAM = ThreadLocal.withInitial(ColorHistogram::new);
+
+    /**
+     * 提取主色：5 bit/通道颜色量化直方图
+     * 像素按行批量拷贝到 byte[]，大区域按步长抽样，取邻域（3x3x3 个桶）计数最高的桶，
+     * 返回该桶内像素的平均色
+     */
     public String extractDominantColor(Mat region) {
         if (region.empty() || region.rows() < 1 || region.cols() < 1) {
             return "#FFFFFF";
         }
 
-        Mat reshapedImage = region.reshape(1, region.rows() * region.cols());
-        Mat reshapedImageFloat = new Mat();
-        reshapedImage.convertTo(reshapedImageFloat, CvType.CV_32F);
+        int channels = region.channels();
+        if (region.depth() != CvType.CV_8U || (channels != 1 && channels != 3 && channels != 4)) {
+            return extractDominantColorKMeans(region);
+        }
 
-        int clusterCount = 3;
-        Mat labels = new Mat();
-        TermCriteria criteria = new TermCriteria(TermCriteria.EPS + TermCriteria.MAX_ITER, 100, 0.2);
-        Mat centers = new Mat();
+        int rows = region.rows();
+        int cols = region.cols();
+        int step = (int) Math.max(1, Math.ceil(Math.sqrt((double) rows * cols / MAX_SAMPLES)));
+
+        ColorHistogram histogram = HISTOGRAM.get();
+        histogram.reset();
+
+        byte[] row = new byte[cols * channels];
+        for (int y = 0; y < rows; y += step) {
+            region.get(y, 0, row);
+            for (int x = 0; x < cols; x += step) {
+                int offset = x * channels;
+                int b = row[offset] & 0xFF;
+                int g = channels == 1 ? b : row[offset + 1] & 0xFF;
+                int r = channels == 1 ? b : row[offset + 2] & 0xFF;
+                histogram.add(b, g, r);
+            }
+        }
 
-        Core.kmeans(reshapedImageFloat, clusterCount, labels, criteria, 3, Core.KMEANS_PP_CENTERS, centers);
+        return histogram.dominantColor();
+    }
 
-        int[] labelCounts = new int[clusterCount];
-        for (int i = 0; i < labels.rows(); i++) {
-            int label = (int) labels.get(i, 0)[0];
-            labelCounts[label]++;
+    /**
+     * k-means 主色提取（3 个聚类），结果与直方图版本基本一致但耗时高出一个数量级，
+     * 保留作为精度对照（见 ColorExtractorTest）
+     */
+    public String extractDominantColorKMeans(Mat region) {
+        if (region.empty() || region.rows() < 1 || region.cols() < 1) {
+            return "#FFFFFF";
         }
 
-        int dominantCluster = 0;
-        int maxCount = labelCounts[0];
-        for (int i = 1; i < clusterCount; i++) {
-            if (labelCounts[i] > maxCount) {
-                maxCount = labelCounts[i];
-                dominantCluster = i;
+        try (MatScope scope = new MatScope()) {
+            // reshape 要求连续内存，submat 先拷贝为连续矩阵
+            Mat continuous = region.isContinuous() ? region : scope.track(region.clone());
+            Mat reshapedImage = scope.track(continuous.reshape(1, region.rows() * region.cols()));
+            Mat reshapedImageFloat = scope.newMat();
+            reshapedImage.convertTo(reshapedImageFloat, CvType.CV_32F);
+
+            int clusterCount = 3;
+            Mat labels = scope.newMat();
+            TermCriteria criteria = new TermCriteria(TermCriteria.EPS + TermCriteria.MAX_ITER, 100, 0.2);
+            Mat centers = scope.newMat();
+
+            Core.kmeans(reshapedImageFloat, clusterCount, labels, criteria, 3, Core.KMEANS_PP_CENTERS, centers);
+
+            // 一次性拷贝全部标签，避免逐个 JNI 调用
+            int[] labelArray = new int[labels.rows()];
+            labels.get(0, 0, labelArray);
+
+            int[] labelCounts = new int[clusterCount];
+            for (int label : labelArray) {
+                labelCounts[label]++;
+            }
+
+            int dominantCluster = 0;
+            int maxCount = labelCounts[0];
+            for (int i = 1; i < clusterCount; i++) {
+                if (labelCounts[i] > maxCount) {
+                    maxCount = labelCounts[i];
+                    dominantCluster = i;
+                }
             }
-        }
 
-        double[] dominantColor = centers.get(dominantCluster, 0);
+            double[] dominantColor = centers.get(dominantCluster, 0);
 
-        int b = (int) dominantColor[0];
-        int g = (int) dominantColor[1];
-        int r = (int) dominantColor[2];
+            int b = (int) dominantColor[0];
+            int g = (int) dominantColor[1];
+            int r = (int) dominantColor[2];
 
-        return String.format("#%02X%02X%02X", r, g, b);
+            return String.format("#%02X%02X%02X", r, g, b);
+        }
     }
 
     public String extractCenterColor(Mat region) {
@@ -101,4 +160,89 @@ public class ColorExtractor {
     public String getContrastColor(String hexColor) {
         return isLightColor(hexColor) ? "#000000" : "#FFFFFF";
     }
+
+    /**
+     * 两个十六进制颜色在 RGB 空间中的欧氏距离
+     */
+    public double colorDistance(String hexColor1, String hexColor2) {
+        int dr = Integer.parseInt(hexColor1.substring(1, 3), 16) - Integer.parseInt(hexColor2.substring(1, 3), 16);
+        int dg = Integer.parseInt(hexColor1.substring(3, 5), 16) - Integer.parseInt(hexColor2.substring(3, 5), 16);
+        int db = Integer.parseInt(hexColor1.substring(5, 7), 16) - Integer.parseInt(hexColor2.substring(5, 7), 16);
+        return Math.sqrt(dr * dr + dg * dg + db * db);
+    }
+
+    /**
+     * 量化颜色直方图（32x32x32 个桶），记录每个桶的像素数与通道累加值
+     */
+    private static final class ColorHistogram {
+        private final int[] counts = new int[LEVELS * LEVELS * LEVELS];
+        private final int[] sumB = new int[counts.length];
+        private final int[] sumG = new int[counts.length];
+        private final int[] sumR = new int[counts.length];
+        private final int[] touched = new int[counts.length];
+        private int touchedCount;
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                int bin = touched[i];
+                counts[bin] = 0;
+                sumB[bin] = 0;
+                sumG[bin] = 0;
+                sumR[bin] = 0;
+            }
+            touchedCount = 0;
+        }
+
+        void add(int b, int g, int r) {
+            int bin = index(b >> SHIFT, g >> SHIFT, r >> SHIFT);
+            if (counts[bin]++ == 0) {
+                touched[touchedCount++] = bin;
+            }
+            sumB[bin] += b;
+            sumG[bin] += g;
+            sumR[bin] += r;
+        }
+
+        String dominantColor() {
+            if (touchedCount == 0) {
+                return "#FFFFFF";
+            }
+
+            // 渐变色会分散到相邻的桶，用邻域计数选桶，避免被量化边界切碎
+            int bestBin = touched[0];
+            long bestScore = -1;
+            for (int i = 0; i < touchedCount; i++) {
+                int bin = touched[i];
+                long score = neighbourhoodCount(bin);
+                if (score > bestScore || (score == bestScore && counts[bin] > counts[bestBin])) {
+                    bestScore = score;
+                    bestBin = bin;
+                }
+            }
+
+            int count = counts[bestBin];
+            return String.format("#%02X%02X%02X",
+                    sumR[bestBin] / count, sumG[bestBin] / count, sumB[bestBin] / count);
+        }
+
+        private long neighbourhoodCount(int bin) {
+            int qb = bin / (LEVELS * LEVELS);
+            int qg = (bin / LEVELS) % LEVELS;
+            int qr = bin % LEVELS;
+
+            long total = 0;
+            for (int db = Math.max(0, qb - 1); db <= Math.min(LEVELS - 1, qb + 1); db++) {
+                for (int dg = Math.max(0, qg - 1); dg <= Math.min(LEVELS - 1, qg + 1); dg++) {
+                    for (int dr = Math.max(0, qr - 1); dr <= Math.min(LEVELS - 1, qr + 1); dr++) {
+                        total += counts[index(db, dg, dr)];
+                    }
+                }
+            }
+            return total;
+        }
+
+        private static int index(int qb, int qg, int qr) {
+            return (qb * LEVELS + qg) * LEVELS + qr;
+        }
+    }
 }
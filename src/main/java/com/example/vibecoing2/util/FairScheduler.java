@@ -0,0 +1,405 @@
+package com.example.vibecoing2.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 带优先级与按客户端加权公平排队的执行名额调度
+ * 任务在调用线程上执行，执行前先取得名额：
+ * <ul>
+ *     <li>交互请求（INTERACTIVE）严格优先于批量请求（BATCH）；批量请求最多占用 batchMaxConcurrency 个名额，
+ *     其余名额只留给交互请求，批量任务占满时新的交互请求仍能立即开始（任务不可抢占，预留是尾延迟稳定的前提）</li>
+ *     <li>同一优先级内按客户端做加权公平排队：每个任务的虚拟开始时间 =
+ *     max(队列虚拟时间, 该客户端上一个任务的虚拟完成时间)，虚拟完成时间 = 开始时间 + 1 / 权重，
+ *     按虚拟完成时间从小到大出队（出队时队列虚拟时间推进到该任务的开始时间），
+ *     单个客户端提交大量任务时只占用与权重成比例的份额</li>
+ * </ul>
+ * 任务执行中需要等待外部资源（如 AI 上游响应）时，可以用 {@link #releaseWhile(Supplier)} 暂时交还名额。
+ * 记录每个优先级最近 {@value #WAIT_WINDOW} 次排队时间的分位数；统计只包含汇总数字，不包含客户端 ID
+ */
+public class FairScheduler {
+
+    /**
+     * 优先级
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    // 排队时间分位数统计窗口
+    private static final int WAIT_WINDOW = 1024;
+
+    // 权重下限，避免配置为 0 时虚拟时间无穷大
+    private static final double MIN_WEIGHT = 0.01;
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int batchMaxConcurrency;
+    private final int maxQueued;
+    private final long[] maxQueueMs;
+    private final ToDoubleFunction<String> weights;
+
+    // 当前线程在 execute 中持有的名额
+    private static final ThreadLocal<Held> HELD = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lane[] lanes = {new Lane(Priority.INTERACTIVE), new Lane(Priority.BATCH)};
+    private int running;
+    private long sequence;
+
+    /**
+     * @param name                 调度器名称（日志与统计）
+     * @param maxConcurrency       同时执行的任务数上限
+     * @param batchMaxConcurrency  批量任务同时执行数上限（小于 maxConcurrency 时其余名额为交互请求预留）
+     * @param maxQueued            每个优先级的排队数上限，超过时拒绝
+     * @param interactiveMaxQueueMs 交互请求最长排队时间（<= 0 不限制）
+     * @param batchMaxQueueMs      批量请求最长排队时间（<= 0 不限制）
+     * @param weights              客户端 ID -> 权重
+     */
+    public FairScheduler(String name, int maxConcurrency, int batchMaxConcurrency, int maxQueued,
+                         long interactiveMaxQueueMs, long batchMaxQueueMs, ToDoubleFunction<String> weights) {
+        this.name = name;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.batchMaxConcurrency = Math.max(1, Math.min(batchMaxConcurrency, this.maxConcurrency));
+        this.maxQueued = Math.max(1, maxQueued);
+        this.maxQueueMs = new long[]{interactiveMaxQueueMs, batchMaxQueueMs};
+        this.weights = weights;
+    }
+
+    /**
+     * 调度统计
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Stats {
+        private String name;
+        private int maxConcurrency;
+        private int batchMaxConcurrency;
+        private int running;
+        private List<LaneStats> lanes;
+    }
+
+    /**
+     * 单个优先级的统计；排队时间为最近 {@value #WAIT_WINDOW} 次的分位数
+     */
+    @Data
+    @AllArgsConstructor
+    public static class LaneStats {
+        private String priority;
+        private int queued;
+        private int running;
+        private long submitted;
+        private long completed;
+        private long rejected;
+        private long queueP50Ms;
+        private long queueP95Ms;
+        private long queueP99Ms;
+        private long queueMaxMs;
+
+        /**
+         * 当前排队或执行中的客户端数
+         */
+        private int activeClients;
+    }
+
+    /**
+     * 排队中的任务
+     */
+    private static final class Ticket {
+        private final Lane lane;
+        private final String clientId;
+        private final double startTag;
+        private final double finishTag;
+        private final long sequence;
+        private final long enqueuedAt = System.nanoTime();
+        private final CountDownLatch granted = new CountDownLatch(1);
+        private boolean dispatched;
+
+        Ticket(Lane lane, String clientId, double startTag, double finishTag, long sequence) {
+            this.lane = lane;
+            this.clientId = clientId;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * execute 期间持有的名额；releaseWhile 交还后 ticket 为 null，直到重新取得
+     */
+    private static final class Held {
+        private final FairScheduler scheduler;
+        private final Priority priority;
+        private final String clientId;
+        private Ticket ticket;
+
+        Held(FairScheduler scheduler, Priority priority, String clientId, Ticket ticket) {
+            this.scheduler = scheduler;
+            this.priority = priority;
+            this.clientId = clientId;
+            this.ticket = ticket;
+        }
+    }
+
+    /**
+     * 单个优先级的队列与统计（由 lock 保护）
+     */
+    private static final class Lane {
+        private final Priority priority;
+        private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+                Comparator.comparingDouble((Ticket t) -> t.finishTag).thenComparingLong(t -> t.sequence));
+        private final Map<String, Double> lastFinish = new HashMap<>();
+        private final Map<String, int[]> clients = new HashMap<>();
+        private double virtualTime;
+        private int running;
+        private long submitted;
+        private long completed;
+        private long rejected;
+        private final long[] waits = new long[WAIT_WINDOW];
+        private long waitCount;
+
+        Lane(Priority priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * 客户端计数：[排队数, 执行数]
+         */
+        int[] client(String clientId) {
+            return clients.computeIfAbsent(clientId, key -> new int[2]);
+        }
+
+        void releaseClient(String clientId) {
+            int[] counts = clients.get(clientId);
+            if (counts != null && counts[0] == 0 && counts[1] == 0) {
+                clients.remove(clientId);
+            }
+            // 整个优先级空闲时重置虚拟时间
+            if (queue.isEmpty() && running == 0) {
+                virtualTime = 0;
+                lastFinish.clear();
+            }
+        }
+    }
+
+    /**
+     * 取得名额后在当前线程执行任务
+     *
+     * @throws RejectedExecutionException 队列已满、排队超时或等待时被中断
+     */
+    public <T> T execute(Priority priority, String clientId, Supplier<T> task) {
+        Held held = new Held(this, priority, clientId, acquire(priority, clientId, true));
+        Held outer = HELD.get();
+        HELD.set(held);
+        try {
+            return task.get();
+        } finally {
+            HELD.set(outer);
+            if (held.ticket != null) {
+                release(held.ticket, true);
+            }
+        }
+    }
+
+    /**
+     * 在当前线程等待外部资源期间交还 execute 持有的名额，等待结束后重新排队取得名额
+     * 重新排队不受排队数与排队时间上限限制（任务已被接纳）；不在 execute 中调用时直接执行
+     *
+     * @throws RejectedExecutionException 重新排队时被中断
+     */
+    public static <T> T releaseWhile(Supplier<T> wait) {
+        Held held = HELD.get();
+        if (held == null || held.ticket == null) {
+            return wait.get();
+        }
+        held.scheduler.release(held.ticket, false);
+        held.ticket = null;
+        try {
+            return wait.get();
+        } finally {
+            held.ticket = held.scheduler.acquire(held.priority, held.clientId, false);
+        }
+    }
+
+    /**
+     * 当前线程所在任务的优先级，不在 execute 中时返回 defaultPriority
+     */
+    public static Priority currentPriority(Priority defaultPriority) {
+        Held held = HELD.get();
+        return held != null ? held.priority : defaultPriority;
+    }
+
+    /**
+     * 当前线程所在任务的客户端 ID，不在 execute 中时返回 defaultClientId
+     */
+    public static String currentClientId(String defaultClientId) {
+        Held held = HELD.get();
+        return held != null ? held.clientId : defaultClientId;
+    }
+
+    /**
+     * 排队取得名额
+     *
+     * @param bounded 是否受排队数与排队时间上限限制（releaseWhile 重新排队时为 false）
+     */
+    private Ticket acquire(Priority priority, String clientId, boolean bounded) {
+        Lane lane = lanes[priority.ordinal()];
+        Ticket ticket;
+
+        lock.lock();
+        try {
+            if (bounded) {
+                lane.submitted++;
+                if (lane.queue.size() >= maxQueued) {
+                    lane.rejected++;
+                    throw new RejectedExecutionException(name + " 排队任务数已达上限 " + maxQueued);
+                }
+            }
+            double weight = Math.max(MIN_WEIGHT, weights.applyAsDouble(clientId));
+            double start = Math.max(lane.virtualTime, lane.lastFinish.getOrDefault(clientId, 0.0));
+            ticket = new Ticket(lane, clientId, start, start + 1.0 / weight, sequence++);
+            lane.lastFinish.put(clientId, ticket.finishTag);
+            lane.queue.add(ticket);
+            lane.client(clientId)[0]++;
+
+            dispatch();
+            if (ticket.dispatched) {
+                return ticket;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long timeoutMs = bounded ? maxQueueMs[priority.ordinal()] : 0;
+        boolean granted;
+        boolean interrupted = false;
+        try {
+            if (timeoutMs > 0) {
+                granted = ticket.granted.await(timeoutMs, TimeUnit.MILLISECONDS);
+            } else {
+                ticket.granted.await();
+                granted = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            granted = false;
+            interrupted = true;
+        }
+
+        if (!granted) {
+            lock.lock();
+            try {
+                // 超时与分配可能同时发生，已分配的名额照常使用
+                if (!ticket.dispatched) {
+                    lane.queue.remove(ticket);
+                    lane.client(clientId)[0]--;
+                    lane.rejected++;
+                    lane.releaseClient(clientId);
+                    throw new RejectedExecutionException(interrupted
+                            ? name + " 排队时被中断"
+                            : name + " 排队超过 " + timeoutMs + "ms");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return ticket;
+    }
+
+    /**
+     * 交还名额
+     *
+     * @param completed 任务是否已结束（releaseWhile 暂时交还时为 false）
+     */
+    private void release(Ticket ticket, boolean completed) {
+        lock.lock();
+        try {
+            Lane lane = ticket.lane;
+            running--;
+            lane.running--;
+            if (completed) {
+                lane.completed++;
+            }
+            lane.client(ticket.clientId)[1]--;
+            lane.releaseClient(ticket.clientId);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按优先级与虚拟完成时间分配空闲名额（调用方持有锁）
+     */
+    private void dispatch() {
+        Lane interactive = lanes[Priority.INTERACTIVE.ordinal()];
+        Lane batch = lanes[Priority.BATCH.ordinal()];
+        while (running < maxConcurrency) {
+            Lane lane;
+            if (!interactive.queue.isEmpty()) {
+                lane = interactive;
+            } else if (!batch.queue.isEmpty() && batch.running < batchMaxConcurrency) {
+                lane = batch;
+            } else {
+                break;
+            }
+
+            Ticket ticket = lane.queue.poll();
+            lane.virtualTime = Math.max(lane.virtualTime, ticket.startTag);
+            ticket.dispatched = true;
+            running++;
+            lane.running++;
+            int[] counts = lane.client(ticket.clientId);
+            counts[0]--;
+            counts[1]++;
+
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ticket.enqueuedAt);
+            lane.waits[(int) (lane.waitCount % WAIT_WINDOW)] = waitMs;
+            lane.waitCount++;
+
+            ticket.granted.countDown();
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            List<LaneStats> laneStats = new ArrayList<>(lanes.length);
+            for (Lane lane : lanes) {
+                long[] waits = Arrays.copyOf(lane.waits, (int) Math.min(lane.waitCount, WAIT_WINDOW));
+                Arrays.sort(waits);
+
+                laneStats.add(new LaneStats(lane.priority.name().toLowerCase(), lane.queue.size(), lane.running,
+                        lane.submitted, lane.completed, lane.rejected,
+                        percentile(waits, 0.50), percentile(waits, 0.95), percentile(waits, 0.99),
+                        waits.length > 0 ? waits[waits.length - 1] : 0, lane.clients.size()));
+            }
+            return new Stats(name, maxConcurrency, batchMaxConcurrency, running, laneStats);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.vibecoing2.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模板字段投影（fields= 参数）
+ * 语法：逗号分隔的字段路径，路径相对于模板（template），数组元素不占路径层级：
+ * <ul>
+ *     <li>{@code components.id,components.position} —— 只保留列出的字段（及其祖先）</li>
+ *     <li>{@code components(id,position,size)} —— 括号内为同一父路径下的字段，可嵌套</li>
+ *     <li>{@code -page.backgroundImage} —— 以 - 开头表示排除；只有排除项时保留其余全部字段</li>
+ * </ul>
+ * 选中某个字段即选中其全部子字段；Map 字段（如 cssStyles、placeholder）可以按键继续选择。
+ * 分析流程据此跳过未被请求的内容（图片编码、容器树），序列化时按同一投影过滤输出
+ */
+public final class FieldProjection {
+
+    /**
+     * 不做投影，输出全部字段
+     */
+    public static final FieldProjection ALL = new FieldProjection(new Node(), new Node());
+
+    private final Node includes;
+    private final Node excludes;
+
+    private FieldProjection(Node includes, Node excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * 字段路径前缀树，terminal 表示该路径本身被列出
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean terminal;
+
+        Node child(String name) {
+            return children.computeIfAbsent(name, key -> new Node());
+        }
+    }
+
+    /**
+     * 解析 fields 参数，为空时返回 {@link #ALL}
+     *
+     * @throws IllegalArgumentException 语法错误
+     */
+    public static FieldProjection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+
+        List<String> paths = new ArrayList<>();
+        int end = expand(fields, 0, "", paths);
+        if (end != fields.length()) {
+            throw new IllegalArgumentException("fields 参数括号不匹配: " + fields);
+        }
+
+        Node includes = new Node();
+        Node excludes = new Node();
+        for (String path : paths) {
+            boolean exclude = path.startsWith("-");
+            String[] names = (exclude ? path.substring(1) : path).split("\\.");
+            Node node = exclude ? excludes : includes;
+            for (String name : names) {
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("fields 参数包含空字段名: " + fields);
+                }
+                node = node.child(name);
+            }
+            node.terminal = true;
+        }
+        return new FieldProjection(includes, excludes);
+    }
+
+    /**
+     * 展开一层逗号分隔列表，返回结束位置（字符串末尾或与调用方匹配的右括号）
+     */
+    private static int expand(String text, int start, String prefix, List<String> paths) {
+        StringBuilder token = new StringBuilder();
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                String parent = token.toString().trim();
+                if (parent.isEmpty() || parent.equals("-")) {
+                    throw new IllegalArgumentException("fields 参数括号前缺少字段名: " + text);
+                }
+                // 排除标记写在父路径前时作用于括号内的每个字段
+                String childPrefix = parent.startsWith("-")
+                        ? "-" + prefix + parent.substring(1) + "."
+                        : prefix + parent + ".";
+                i = expand(text, i + 1, childPrefix, paths);
+                if (i >= text.length() || text.charAt(i) != ')') {
+                    throw new IllegalArgumentException("fields 参数括号不匹配: " + text);
+                }
+                token.setLength(0);
+                i++;
+                // 括号后只能是逗号或列表结束
+                while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                if (i < text.length() && text.charAt(i) == ',') {
+                    i++;
+                }
+                continue;
+            }
+            if (c == ')') {
+                break;
+            }
+            if (c == ',') {
+                addPath(token, prefix, paths);
+                i++;
+                continue;
+            }
+            token.append(c);
+            i++;
+        }
+        addPath(token, prefix, paths);
+        return i;
+    }
+
+    private static void addPath(StringBuilder token, String prefix, List<String> paths) {
+        String name = token.toString().trim();
+        token.setLength(0);
+        if (name.isEmpty()) {
+            return;
+        }
+        if (name.startsWith("-") && !prefix.startsWith("-")) {
+            paths.add("-" + prefix + name.substring(1));
+        } else {
+            paths.add(prefix + name);
+        }
+    }
+
+    public boolean isAll() {
+        return includes.children.isEmpty() && excludes.children.isEmpty();
+    }
+
+    /**
+     * 字段是否需要输出（也用于判断是否需要计算该字段）
+     *
+     * @param path 相对于模板的字段路径，如 "page.backgroundImage"
+     */
+    public boolean includes(String path) {
+        return includes(path.split("\\."), 0);
+    }
+
+    /**
+     * 同 {@link #includes(String)}，路径为 names[from..]
+     */
+    public boolean includes(String[] names, int from) {
+        // 排除项是路径自身或祖先
+        Node node = excludes;
+        for (int i = from; i < names.length; i++) {
+            node = node.children.get(names[i]);
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                return false;
+            }
+        }
+
+        if (includes.children.isEmpty()) {
+            return true;
+        }
+        // 列出的是路径自身、祖先（整棵子树）或后代（需要保留路径作为容器）
+        node = includes;
+        for (int i = from; i < names.length; i++) {
+            node = node.children.get(names[i]);
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return true;
+    }
+}
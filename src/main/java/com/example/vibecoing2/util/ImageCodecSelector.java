@@ -0,0 +1,254 @@
+package com.example.vibecoing2.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 图片编码格式自适应选择
+ * 抽样统计颜色数与相邻像素的平坦比例：颜色少、大面积平坦的 UI 图（图标、按钮、纯色卡片）
+ * 使用无损编码（WebP lossless，不支持时 PNG），避免 JPEG 块状与振铃伪影；
+ * 照片类图片使用有损编码（WebP，不支持时 JPEG），质量随平坦比例调整。
+ * 编码结果超出字节预算时逐级降低质量（无损先改为有损）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageCodecSelector {
+
+    public static final String CODEC_PNG = "png";
+    public static final String CODEC_JPEG = "jpeg";
+    public static final String CODEC_WEBP = "webp";
+    public static final String CODEC_WEBP_LOSSLESS = "webp-lossless";
+
+    // 统计抽样像素上限
+    private static final int MAX_SAMPLES = 16 * 1024;
+
+    // 相邻像素三通道差值之和不超过该值视为平坦
+    private static final int FLAT_DIFF = 6;
+
+    // 无损编码条件：平坦比例与量化颜色数
+    private static final double GRAPHIC_FLAT_RATIO = 0.6;
+    private static final int GRAPHIC_MAX_COLORS = 256;
+
+    // 有损编码质量：照片 / 图文混合
+    private static final int PHOTO_QUALITY = 80;
+    private static final int MIXED_QUALITY = 85;
+    private static final int MIXED_FLAT_RATIO_PERCENT = 40;
+
+    // 超出预算时的质量下限与步长
+    private static final int MIN_QUALITY = 40;
+    private static final int QUALITY_STEP = 10;
+
+    private final ImageProcessor imageProcessor;
+
+    private boolean webpSupported;
+
+    /**
+     * 编码结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class EncodedImage {
+        private byte[] data;
+        private String mimeType;
+        private String codec;
+        private int quality;
+        private long encodeNanos;
+    }
+
+    /**
+     * 图片内容统计
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ImageStats {
+        private int distinctColors;
+        private double flatRatio;
+        private boolean alpha;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 部分 OpenCV 构建不带 WebP 编码器，启动时探测一次
+        try (MatScope scope = new MatScope()) {
+            Mat probe = scope.track(new Mat(2, 2, CvType.CV_8UC3, new Scalar(0, 0, 0)));
+            MatOfByte buffer = scope.track(new MatOfByte());
+            webpSupported = Imgcodecs.imencode(".webp", probe, buffer) && buffer.total() > 0;
+        } catch (Exception e) {
+            webpSupported = false;
+        }
+        log.info("图片编码器初始化完成: WebP={}", webpSupported ? "可用" : "不可用，使用 JPEG/PNG");
+    }
+
+    public boolean isWebpSupported() {
+        return webpSupported;
+    }
+
+    /**
+     * 缩放到最大尺寸后按内容选择编码格式
+     *
+     * @param image      原始图片（BGR / BGRA / 灰度，8 位）
+     * @param maxSize    最大边长
+     * @param byteBudget 字节预算，<= 0 表示不限制
+     * @return 编码结果，失败返回 null
+     */
+    public EncodedImage encode(Mat image, int maxSize, long byteBudget) {
+        if (image == null || image.empty()) {
+            log.warn("图片为空，无法编码");
+            return null;
+        }
+
+        try (MatScope scope = new MatScope()) {
+            // 压缩图片尺寸（未压缩时返回原图，由调用方负责释放）
+            Mat compressed = imageProcessor.compressImage(image, maxSize);
+            if (compressed != image) {
+                scope.track(compressed);
+            }
+
+            ImageStats stats = analyze(compressed);
+            boolean lossless = stats.isAlpha()
+                    || (stats.getFlatRatio() >= GRAPHIC_FLAT_RATIO && stats.getDistinctColors() <= GRAPHIC_MAX_COLORS);
+
+            EncodedImage encoded;
+            int nextQuality;
+            if (lossless) {
+                encoded = encodeWith(compressed, webpSupported ? CODEC_WEBP_LOSSLESS : CODEC_PNG, 100);
+                nextQuality = MIXED_QUALITY;
+            } else {
+                int quality = stats.getFlatRatio() * 100 >= MIXED_FLAT_RATIO_PERCENT ? MIXED_QUALITY : PHOTO_QUALITY;
+                encoded = encodeWith(compressed, lossyCodec(), quality);
+                nextQuality = quality - QUALITY_STEP;
+            }
+
+            // 超出预算：无损改为有损，再逐级降低质量（JPEG 不支持透明通道，带 alpha 时不降级为 JPEG）
+            String lossyCodec = lossyCodec();
+            boolean canDowngrade = !(stats.isAlpha() && CODEC_JPEG.equals(lossyCodec));
+            while (encoded != null && canDowngrade && byteBudget > 0
+                    && encoded.getData().length > byteBudget && nextQuality >= MIN_QUALITY) {
+                EncodedImage smaller = encodeWith(compressed, lossyCodec, nextQuality);
+                if (smaller != null && smaller.getData().length < encoded.getData().length) {
+                    smaller.setEncodeNanos(smaller.getEncodeNanos() + encoded.getEncodeNanos());
+                    encoded = smaller;
+                }
+                nextQuality -= QUALITY_STEP;
+            }
+
+            if (encoded != null) {
+                log.debug("图片编码: 尺寸={}x{}, 颜色数={}, 平坦比例={}, 格式={}, 质量={}, 大小={} KB",
+                        compressed.cols(), compressed.rows(), stats.getDistinctColors(),
+                        String.format("%.2f", stats.getFlatRatio()), encoded.getCodec(), encoded.getQuality(),
+                        encoded.getData().length / 1024);
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * 使用指定格式编码（不缩放），失败返回 null
+     */
+    public EncodedImage encodeWith(Mat image, String codec, int quality) {
+        String extension;
+        MatOfInt params;
+        String mimeType;
+        switch (codec) {
+            case CODEC_JPEG:
+                extension = ".jpg";
+                mimeType = "image/jpeg";
+                params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, quality, Imgcodecs.IMWRITE_JPEG_OPTIMIZE, 1);
+                break;
+            case CODEC_WEBP:
+                extension = ".webp";
+                mimeType = "image/webp";
+                params = new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, Math.min(quality, 100));
+                break;
+            case CODEC_WEBP_LOSSLESS:
+                // WebP 质量大于 100 时为无损模式
+                extension = ".webp";
+                mimeType = "image/webp";
+                params = new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, 101);
+                break;
+            default:
+                extension = ".png";
+                mimeType = "image/png";
+                params = new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, 6);
+                break;
+        }
+
+        try (MatScope scope = new MatScope()) {
+            scope.track(params);
+            MatOfByte buffer = scope.track(new MatOfByte());
+
+            long start = System.nanoTime();
+            boolean success = Imgcodecs.imencode(extension, image, buffer, params);
+            byte[] bytes = success ? buffer.toArray() : null;
+            long elapsed = System.nanoTime() - start;
+
+            if (bytes == null || bytes.length == 0) {
+                log.warn("图片编码失败: 格式={}", codec);
+                return null;
+            }
+            int effectiveQuality = CODEC_PNG.equals(codec) || CODEC_WEBP_LOSSLESS.equals(codec) ? 100 : quality;
+            return new EncodedImage(bytes, mimeType, codec, effectiveQuality, elapsed);
+        }
+    }
+
+    /**
+     * 抽样统计量化颜色数（5 bit/通道）与水平相邻像素的平坦比例
+     */
+    public ImageStats analyze(Mat image) {
+        int channels = image.channels();
+        int rows = image.rows();
+        int cols = image.cols();
+        boolean alpha = channels == 4;
+        if (image.depth() != CvType.CV_8U || rows < 1 || cols < 2) {
+            return new ImageStats(0, 0.0, alpha);
+        }
+
+        // 按 2 像素一组抽样，保证每个样本都有右侧相邻像素
+        int step = (int) Math.max(1, Math.ceil(Math.sqrt((double) rows * cols / MAX_SAMPLES)));
+        long[] seen = new long[(1 << 15) / 64];
+        int distinct = 0;
+        int pairs = 0;
+        int flat = 0;
+
+        byte[] row = new byte[cols * channels];
+        for (int y = 0; y < rows; y += step) {
+            image.get(y, 0, row);
+            for (int x = 0; x + 1 < cols; x += step) {
+                int offset = x * channels;
+                int b = row[offset] & 0xFF;
+                int g = channels == 1 ? b : row[offset + 1] & 0xFF;
+                int r = channels == 1 ? b : row[offset + 2] & 0xFF;
+
+                int bucket = ((b >> 3) << 10) | ((g >> 3) << 5) | (r >> 3);
+                long bit = 1L << (bucket & 63);
+                if ((seen[bucket >> 6] & bit) == 0) {
+                    seen[bucket >> 6] |= bit;
+                    distinct++;
+                }
+
+                int next = offset + channels;
+                int nb = row[next] & 0xFF;
+                int ng = channels == 1 ? nb : row[next + 1] & 0xFF;
+                int nr = channels == 1 ? nb : row[next + 2] & 0xFF;
+                if (Math.abs(b - nb) + Math.abs(g - ng) + Math.abs(r - nr) <= FLAT_DIFF) {
+                    flat++;
+                }
+                pairs++;
+            }
+        }
+
+        return new ImageStats(distinct, pairs == 0 ? 0.0 : (double) flat / pairs, alpha);
+    }
+
+    private String lossyCodec() {
+        return webpSupported ? CODEC_WEBP : CODEC_JPEG;
+    }
+}
@@ -7,7 +7,10 @@ import org.opencv.imgproc.Imgproc;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.HexFormat;
 
 @Slf4j
 @Component
@@ -24,6 +27,20 @@ public class ImageProcessor {
         return image;
     }
 
+    /**
+     * 从内存中的图片文件内容解码（与 {@link #loadImage(String)} 结果一致，不经过磁盘）
+     */
+    public Mat decodeImage(byte[] imageBytes) {
+        MatOfByte buffer = new MatOfByte(imageBytes);
+        Mat image = Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_COLOR);
+        buffer.release();
+        if (image.empty()) {
+            image.release();
+            throw new RuntimeException("无法解码图片");
+        }
+        return image;
+    }
+
     public Mat preprocessImage(Mat source, int targetWidth) {
         Mat processed = new Mat();
 
@@ -183,39 +200,70 @@ public class ImageProcessor {
             return null;
         }
 
-        // 压缩图片尺寸
-        Mat compressed = compressImage(image, maxSize);
-
-        // 编码为JPEG（更高压缩比）
-        MatOfByte buffer = new MatOfByte();
-        MatOfInt params = new MatOfInt(
-            Imgcodecs.IMWRITE_JPEG_QUALITY, quality,  // JPEG质量
-            Imgcodecs.IMWRITE_JPEG_OPTIMIZE, 1        // 优化编码
-        );
-        boolean success = Imgcodecs.imencode(".jpg", compressed, buffer, params);
-
-        if (!success) {
-            log.warn("图片编码失败");
-            return null;
+        try (MatScope scope = new MatScope()) {
+            // 压缩图片尺寸（未压缩时返回原图，由调用方负责释放）
+            Mat compressed = compressImage(image, maxSize);
+            if (compressed != image) {
+                scope.track(compressed);
+            }
+
+            // 编码为JPEG（更高压缩比）
+            MatOfByte buffer = scope.track(new MatOfByte());
+            MatOfInt params = scope.track(new MatOfInt(
+                Imgcodecs.IMWRITE_JPEG_QUALITY, quality,  // JPEG质量
+                Imgcodecs.IMWRITE_JPEG_OPTIMIZE, 1        // 优化编码
+            ));
+            boolean success = Imgcodecs.imencode(".jpg", compressed, buffer, params);
+
+            if (!success) {
+                log.warn("图片编码失败");
+                return null;
+            }
+
+            // 转换为base64
+            byte[] bytes = buffer.toArray();
+            if (bytes == null || bytes.length == 0) {
+                log.warn("图片编码结果为空");
+                return null;
+            }
+
+            String base64 = Base64.getEncoder().encodeToString(bytes);
+
+            // 计算压缩率
+            int originalSize = image.cols() * image.rows() * 3; // 估算原始大小
+            double compressionRatio = (1 - (double) bytes.length / originalSize) * 100;
+
+            log.debug("图片转base64完成: 尺寸={}x{}, 质量={}, 大小={} KB, 压缩率={:.1f}%",
+                compressed.cols(), compressed.rows(), quality, bytes.length / 1024, compressionRatio);
+
+            return "data:image/jpeg;base64," + base64;
         }
+    }
 
-        // 转换为base64
-        byte[] bytes = buffer.toArray();
-        if (bytes == null || bytes.length == 0) {
-            log.warn("图片编码结果为空");
+    /**
+     * 计算区域像素内容的摘要（尺寸 + 像素 SHA-256），像素完全相同的区域得到相同的值
+     * 用于同一请求内相同裁剪图只编码一次，摘要相同即直接复用编码结果，因此使用抗碰撞的摘要；
+     * 非 8 位图像返回 null
+     */
+    public String pixelHash(Mat region) {
+        if (region == null || region.empty() || region.depth() != CvType.CV_8U) {
             return null;
         }
 
-        String base64 = Base64.getEncoder().encodeToString(bytes);
-
-        // 计算压缩率
-        int originalSize = image.cols() * image.rows() * 3; // 估算原始大小
-        double compressionRatio = (1 - (double) bytes.length / originalSize) * 100;
-
-        log.debug("图片转base64完成: 尺寸={}x{}, 质量={}, 大小={} KB, 压缩率={:.1f}%",
-            compressed.cols(), compressed.rows(), quality, bytes.length / 1024, compressionRatio);
-
-        return "data:image/jpeg;base64," + base64;
+        int rowBytes = region.cols() * region.channels();
+        byte[] row = new byte[rowBytes];
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (int y = 0; y < region.rows(); y++) {
+            region.get(y, 0, row);
+            digest.update(row, 0, rowBytes);
+        }
+        return region.cols() + "x" + region.rows() + "x" + region.channels()
+                + "-" + HexFormat.of().formatHex(digest.digest());
     }
 
     /**
@@ -224,12 +272,15 @@ public class ImageProcessor {
      */
     public boolean isRegionSolidColor(Mat region) {
         // 计算标准差来判断是否为纯色
-        MatOfDouble mean = new MatOfDouble();
-        MatOfDouble stddev = new MatOfDouble();
-        Core.meanStdDev(region, mean, stddev);
+        double[] stddevArray;
+        try (MatScope scope = new MatScope()) {
+            MatOfDouble mean = scope.track(new MatOfDouble());
+            MatOfDouble stddev = scope.track(new MatOfDouble());
+            Core.meanStdDev(region, mean, stddev);
+            stddevArray = stddev.toArray();
+        }
 
         // 如果所有通道的标准差都很小，说明是纯色
-        double[] stddevArray = stddev.toArray();
         double maxStddev = 0;
         for (double std : stddevArray) {
             maxStddev = Math.max(maxStddev, std);
@@ -0,0 +1,329 @@
+package com.example.vibecoing2.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片文件响应工具
+ * 为内容不可变的历史图片提供强 ETag（内容哈希）、Cache-Control: immutable、304 协商缓存、
+ * 单区间 Range 请求；容器支持 sendfile 时大文件以零拷贝输出
+ */
+@Slf4j
+@Component
+public class ImageResourceResponder {
+
+    // 超过该大小的文件在容器支持时使用 sendfile 输出
+    private static final long ZERO_COPY_THRESHOLD = 64 * 1024;
+
+    // 元数据缓存上限，超过后整体清空
+    private static final int MAX_METADATA_ENTRIES = 4096;
+
+    private static final String DEFAULT_CONTENT_TYPE = "image/png";
+
+    // Tomcat sendfile 请求属性
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE_CACHE_CONTROL =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
+
+    // 文件路径 -> 元数据（以文件大小 + 修改时间校验是否过期）
+    private final Map<Path, FileMetadata> metadataCache = new ConcurrentHashMap<>();
+
+    // 扩展名 -> MIME 类型
+    private final Map<String, String> contentTypeCache = new ConcurrentHashMap<>();
+
+    /**
+     * 输出 baseDir 下的图片文件
+     *
+     * @param baseDir  允许访问的根目录
+     * @param file     目标文件
+     * @param filename 响应中的文件名
+     */
+    public void serve(Path baseDir, Path file, String filename,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path root = baseDir.toAbsolutePath().normalize();
+        Path target = file.toAbsolutePath().normalize();
+
+        if (!target.startsWith(root) || !Files.isRegularFile(target)) {
+            log.warn("图片文件不存在: {}", file);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        FileMetadata metadata = resolveMetadata(target);
+
+        response.setHeader(HttpHeaders.ETAG, metadata.getEtag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, metadata.getLastModified());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (isNotModified(request, metadata)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = metadata.getSize();
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, metadata)) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                partial = true;
+            }
+        }
+
+        long length = end - start + 1;
+
+        response.setContentType(metadata.getContentType());
+        // 文件名按 RFC 6266 转义（引号、反斜杠）并附带 filename* 编码，避免注入响应头
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.inline().filename(filename, StandardCharsets.UTF_8).build().toString());
+        response.setContentLengthLong(length);
+        if (partial) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (length >= ZERO_COPY_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // 交给容器 sendfile（内核态零拷贝），由容器在请求结束后写出
+            request.setAttribute(SENDFILE_FILENAME_ATTR, target.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            log.debug("使用 sendfile 返回图片文件: {} [{}-{}]", target, start, end);
+            return;
+        }
+
+        transfer(target, start, length, response);
+        log.debug("返回图片文件: {} [{}-{}]", target, start, end);
+    }
+
+    /**
+     * 不支持 sendfile 时按区间写出文件。目标是 Servlet 输出流（既不是文件也不是 Socket 通道），
+     * transferTo 在 JDK 内部仍经由堆缓冲区复制，这里只是省去手写的读写循环，并非零拷贝
+     */
+    private void transfer(Path file, long start, long length, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    private boolean isNotModified(HttpServletRequest request, FileMetadata metadata) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagMatches(ifNoneMatch, metadata.getEtag());
+        }
+
+        long ifModifiedSince = parseDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && metadata.getLastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, FileMetadata metadata) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.trim().equals(metadata.getEtag());
+        }
+        long date = parseDateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && metadata.getLastModified() / 1000 == date / 1000;
+    }
+
+    private long parseDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private boolean etagMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析 Range 头
+     *
+     * @return {start, end}；空数组表示忽略 Range 返回完整内容（多区间或非 bytes 单位）；null 表示区间不可满足
+     */
+    private long[] parseRange(String header, long size) {
+        String value = header.trim().toLowerCase(Locale.ROOT);
+        if (!value.startsWith("bytes=")) {
+            return new long[0];
+        }
+
+        String spec = value.substring("bytes=".length()).trim();
+        if (spec.contains(",")) {
+            return new long[0];
+        }
+
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                // 后缀区间：bytes=-N
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * 获取文件元数据（内容哈希 ETag、MIME 类型），文件未变化时直接命中缓存
+     */
+    private FileMetadata resolveMetadata(Path file) throws IOException {
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        FileMetadata cached = metadataCache.get(file);
+        if (cached != null && cached.getSize() == size && cached.getLastModified() == lastModified) {
+            return cached;
+        }
+
+        FileMetadata metadata = new FileMetadata(
+                "\"" + hashContent(file) + "\"",
+                resolveContentType(file),
+                size,
+                lastModified
+        );
+
+        if (metadataCache.size() >= MAX_METADATA_ENTRIES) {
+            metadataCache.clear();
+        }
+        metadataCache.put(file, metadata);
+
+        return metadata;
+    }
+
+    private String resolveContentType(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+
+        return contentTypeCache.computeIfAbsent(extension, ext -> {
+            try {
+                String probed = Files.probeContentType(file);
+                return probed != null ? probed : DEFAULT_CONTENT_TYPE;
+            } catch (IOException e) {
+                return DEFAULT_CONTENT_TYPE;
+            }
+        });
+    }
+
+    private String hashContent(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        // 取前 128 bit 作为 ETag
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    /**
+     * 文件元数据
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class FileMetadata {
+        private final String etag;
+        private final String contentType;
+        private final long size;
+        private final long lastModified;
+    }
+}
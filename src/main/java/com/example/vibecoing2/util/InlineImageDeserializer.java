@@ -0,0 +1,33 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.InlineImage;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * {@link InlineImage} 反序列化
+ * 字符串按 data URL / 资源 URL 解析；CBOR / Smile 中的原始字节串直接作为图片数据，MIME 类型按文件头识别
+ */
+public class InlineImageDeserializer extends StdDeserializer<InlineImage> {
+
+    public InlineImageDeserializer() {
+        super(InlineImage.class);
+    }
+
+    @Override
+    public InlineImage deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return InlineImage.parse(p.getText());
+        }
+        if (token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+            byte[] data = p.getBinaryValue();
+            return InlineImage.of(data, InlineImage.detectMimeType(data));
+        }
+        return (InlineImage) ctxt.handleUnexpectedToken(InlineImage.class, p);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.InlineImage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+/**
+ * {@link InlineImage} 流式序列化
+ * data URL 前缀作为原始值开头写出，base64 按块从原始字节编码到固定大小的 char 缓冲区，
+ * 再通过 writeRaw 直接追加到生成器输出，不构造完整的 base64 字符串。
+ * （JsonGenerator.writeBinary 只能输出不带 data: 前缀的纯 base64，前端依赖 data URL 格式，故按块写出）
+ * CBOR / Smile 等支持原生二进制的格式直接写出原始字节串，MIME 类型由读取方按文件头识别
+ */
+public class InlineImageSerializer extends StdSerializer<InlineImage> {
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // 每块 3 KB 原始字节，编码后 4 KB 字符
+    private static final int CHUNK_BYTES = 3 * 1024;
+
+    // 编码缓冲区按线程复用
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[CHUNK_BYTES / 3 * 4]);
+
+    public InlineImageSerializer() {
+        super(InlineImage.class);
+    }
+
+    /**
+     * 注册了该序列化器与 {@link InlineImageDeserializer} 的 Jackson 模块
+     */
+    public static SimpleModule module() {
+        SimpleModule module = new SimpleModule("InlineImageModule");
+        module.addSerializer(InlineImage.class, new InlineImageSerializer());
+        module.addDeserializer(InlineImage.class, new InlineImageDeserializer());
+        return module;
+    }
+
+    @Override
+    public void serialize(InlineImage value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (!value.isInline()) {
+            gen.writeString(value.getUrl());
+            return;
+        }
+
+        // TokenBuffer（convertValue / valueToTree）不支持 writeRaw，且结果可能再写成 JSON，按完整 data URL 写出
+        if (gen instanceof TokenBuffer) {
+            gen.writeString(value.toDataUrl());
+            return;
+        }
+
+        if (gen.canWriteBinaryNatively()) {
+            gen.writeBinary(value.getData());
+            return;
+        }
+
+        // writeRawValue 负责写出字段分隔符并更新生成器状态，之后的 writeRaw 只追加内容
+        gen.writeRawValue("\"" + value.dataUrlPrefix());
+
+        byte[] data = value.getData();
+        char[] buffer = BUFFER.get();
+        for (int offset = 0; offset < data.length; offset += CHUNK_BYTES) {
+            int length = Math.min(CHUNK_BYTES, data.length - offset);
+            int written = encode(data, offset, length, buffer);
+            gen.writeRaw(buffer, 0, written);
+        }
+        gen.writeRaw('"');
+    }
+
+    /**
+     * 标准 base64 编码（带填充），块长度为 3 的倍数时中间块不会产生填充
+     */
+    private static int encode(byte[] src, int offset, int length, char[] dst) {
+        int end = offset + length;
+        int full = offset + length / 3 * 3;
+        int out = 0;
+        int i = offset;
+        while (i < full) {
+            int bits = (src[i++] & 0xFF) << 16 | (src[i++] & 0xFF) << 8 | (src[i++] & 0xFF);
+            dst[out++] = ALPHABET[(bits >>> 18) & 0x3F];
+            dst[out++] = ALPHABET[(bits >>> 12) & 0x3F];
+            dst[out++] = ALPHABET[(bits >>> 6) & 0x3F];
+            dst[out++] = ALPHABET[bits & 0x3F];
+        }
+
+        int remaining = end - full;
+        if (remaining > 0) {
+            int b0 = src[i] & 0xFF;
+            dst[out++] = ALPHABET[b0 >>> 2];
+            if (remaining == 1) {
+                dst[out++] = ALPHABET[(b0 << 4) & 0x3F];
+                dst[out++] = '=';
+            } else {
+                int b1 = src[i + 1] & 0xFF;
+                dst[out++] = ALPHABET[((b0 << 4) | (b1 >>> 4)) & 0x3F];
+                dst[out++] = ALPHABET[(b1 << 2) & 0x3F];
+            }
+            dst[out++] = '=';
+        }
+        return out;
+    }
+}
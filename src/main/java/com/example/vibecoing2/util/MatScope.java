@@ -0,0 +1,135 @@
+package com.example.vibecoing2.util;
+
+import org.opencv.core.Mat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mat 作用域（arena）
+ * 记录某个处理阶段内分配的所有 Mat，在作用域结束时统一 release()，
+ * 不再依赖 GC finalize 回收本地内存。用法：
+ * <pre>
+ * try (MatScope scope = new MatScope()) {
+ *     Mat gray = scope.track(imageProcessor.convertToGray(image));
+ *     ...
+ * }
+ * </pre>
+ * 同时提供全局统计：当前仍被作用域持有的本地内存字节数等
+ */
+public class MatScope implements AutoCloseable {
+
+    // 当前存活的作用域
+    private static final Set<MatScope> LIVE_SCOPES = ConcurrentHashMap.newKeySet();
+
+    // 累计统计
+    private static final AtomicLong TOTAL_SCOPES = new AtomicLong();
+    private static final AtomicLong TOTAL_RELEASED_MATS = new AtomicLong();
+    private static final AtomicLong TOTAL_RELEASED_BYTES = new AtomicLong();
+
+    private final Queue<Mat> mats = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    public MatScope() {
+        LIVE_SCOPES.add(this);
+        TOTAL_SCOPES.incrementAndGet();
+    }
+
+    /**
+     * 登记一个 Mat（包括 MatOfPoint 等子类），作用域结束时释放
+     */
+    public <T extends Mat> T track(T mat) {
+        if (mat != null) {
+            if (closed) {
+                throw new IllegalStateException("MatScope 已关闭");
+            }
+            mats.add(mat);
+        }
+        return mat;
+    }
+
+    /**
+     * 登记一组 Mat
+     */
+    public <T extends Mat> Iterable<T> trackAll(Iterable<T> list) {
+        for (T mat : list) {
+            track(mat);
+        }
+        return list;
+    }
+
+    /**
+     * 分配一个新的空 Mat 并登记
+     */
+    public Mat newMat() {
+        return track(new Mat());
+    }
+
+    /**
+     * 当前作用域持有的本地内存字节数（子矩阵与父矩阵共享内存，不重复计算）
+     */
+    public long nativeBytes() {
+        long bytes = 0;
+        for (Mat mat : mats) {
+            bytes += nativeBytes(mat);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LIVE_SCOPES.remove(this);
+
+        long releasedBytes = 0;
+        long releasedMats = 0;
+        Mat mat;
+        while ((mat = mats.poll()) != null) {
+            releasedBytes += nativeBytes(mat);
+            mat.release();
+            releasedMats++;
+        }
+
+        TOTAL_RELEASED_MATS.addAndGet(releasedMats);
+        TOTAL_RELEASED_BYTES.addAndGet(releasedBytes);
+    }
+
+    private static long nativeBytes(Mat mat) {
+        if (mat.empty() || mat.isSubmatrix()) {
+            return 0;
+        }
+        return mat.total() * mat.elemSize();
+    }
+
+    /**
+     * 当前所有存活作用域持有的本地内存字节数
+     */
+    public static long outstandingBytes() {
+        long bytes = 0;
+        for (MatScope scope : LIVE_SCOPES) {
+            bytes += scope.nativeBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 全局统计信息
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("liveScopes", LIVE_SCOPES.size());
+        stats.put("nativeBytesOutstanding", outstandingBytes());
+        stats.put("totalScopes", TOTAL_SCOPES.get());
+        stats.put("releasedMats", TOTAL_RELEASED_MATS.get());
+        stats.put("releasedBytes", TOTAL_RELEASED_BYTES.get());
+        return stats;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.vibecoing2.util;
+
+import java.util.Arrays;
+
+/**
+ * 扫描线求矩形重叠对
+ * 沿 y 轴扫描：矩形按上边排序依次进入活动集，下边已在扫描线之上的矩形从活动集移除。
+ * 活动集是按左边排序的静态线段树（叶子为矩形，节点保存子树内活动矩形右边的最大值），
+ * 新矩形只访问左边不超过其右边、且子树最大右边不小于其左边的节点，每个节点都通向至少一个重叠矩形。
+ * 插入、移除与每个命中各 O(log n)，总代价 O((n + k) log n)，k 为重叠对数，
+ * 与活动集大小无关（同一列中大量互相重叠的矩形不再退化为逐个比较）。
+ * 区间按闭区间处理（边缘相接也算重叠），与原先的逐对判断一致
+ */
+public final class OverlapSweep {
+
+    // 空叶子（矩形不在活动集中）的右边
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private OverlapSweep() {
+    }
+
+    @FunctionalInterface
+    public interface PairConsumer {
+        void accept(int a, int b);
+    }
+
+    /**
+     * 枚举所有重叠的矩形对，每对只回调一次（a、b 顺序不保证）
+     *
+     * @param boxes 紧凑矩形数组（每 4 个 int 为 x, y, width, height）
+     * @param size  矩形数量
+     */
+    public static void forEachOverlap(int[] boxes, int size, PairConsumer consumer) {
+        if (size < 2) {
+            return;
+        }
+
+        // 按上边排序（高 32 位为 y，低 32 位为下标）
+        long[] byTop = new long[size];
+        // 按左边排序，决定每个矩形在线段树中的叶子位置
+        long[] byLeft = new long[size];
+        for (int i = 0; i < size; i++) {
+            byTop[i] = ((long) boxes[i * 4 + 1] << 32) | i;
+            byLeft[i] = ((long) boxes[i * 4] << 32) | i;
+        }
+        Arrays.sort(byTop);
+        Arrays.sort(byLeft);
+
+        int[] slotOf = new int[size];
+        int[] boxAt = new int[size];
+        int[] sortedLeft = new int[size];
+        for (int slot = 0; slot < size; slot++) {
+            int i = (int) byLeft[slot];
+            slotOf[i] = slot;
+            boxAt[slot] = i;
+            sortedLeft[slot] = boxes[i * 4];
+        }
+
+        int leaves = Integer.highestOneBit(size - 1) << 1;
+        int[] maxRight = new int[leaves * 2];
+        Arrays.fill(maxRight, EMPTY);
+
+        // 按下边排序的小顶堆，用于移除已离开扫描带的矩形
+        long[] heap = new long[size];
+        int heapSize = 0;
+
+        for (long key : byTop) {
+            int i = (int) key;
+            int top = boxes[i * 4 + 1];
+            int left = boxes[i * 4];
+            int right = left + boxes[i * 4 + 2];
+
+            // 移除下边在当前上边之上的矩形
+            while (heapSize > 0 && (int) (heap[0] >> 32) < top) {
+                int expired = (int) heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, 0);
+                update(maxRight, leaves, slotOf[expired], EMPTY);
+            }
+
+            // 左边 <= right 的叶子是前缀 [0, limit)，其中右边 >= left 的活动矩形与当前矩形重叠
+            int limit = upperBound(sortedLeft, right);
+            if (limit > 0 && maxRight[1] >= left) {
+                report(maxRight, 1, 0, leaves, limit, left, boxAt, i, consumer);
+            }
+
+            update(maxRight, leaves, slotOf[i], right);
+
+            int bottom = top + boxes[i * 4 + 3];
+            heap[heapSize] = ((long) bottom << 32) | i;
+            siftUp(heap, heapSize++);
+        }
+    }
+
+    /**
+     * 回调节点 [nodeStart, nodeStart + nodeSize) 内下标小于 limit、右边不小于 left 的活动矩形
+     */
+    private static void report(int[] maxRight, int node, int nodeStart, int nodeSize, int limit, int left,
+                               int[] boxAt, int current, PairConsumer consumer) {
+        if (nodeStart >= limit || maxRight[node] < left) {
+            return;
+        }
+        if (nodeSize == 1) {
+            consumer.accept(boxAt[nodeStart], current);
+            return;
+        }
+        int half = nodeSize >> 1;
+        report(maxRight, node * 2, nodeStart, half, limit, left, boxAt, current, consumer);
+        report(maxRight, node * 2 + 1, nodeStart + half, half, limit, left, boxAt, current, consumer);
+    }
+
+    private static void update(int[] maxRight, int leaves, int slot, int right) {
+        int node = leaves + slot;
+        maxRight[node] = right;
+        for (node >>= 1; node > 0; node >>= 1) {
+            maxRight[node] = Math.max(maxRight[node * 2], maxRight[node * 2 + 1]);
+        }
+    }
+
+    /**
+     * 第一个大于 value 的下标
+     */
+    private static int upperBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= heap[index]) {
+                break;
+            }
+            long tmp = heap[parent];
+            heap[parent] = heap[index];
+            heap[index] = tmp;
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size, int index) {
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left + 1 < size && heap[left + 1] < heap[left] ? left + 1 : left;
+            if (heap[index] <= heap[smallest]) {
+                break;
+            }
+            long tmp = heap[smallest];
+            heap[smallest] = heap[index];
+            heap[index] = tmp;
+            index = smallest;
+        }
+    }
+}
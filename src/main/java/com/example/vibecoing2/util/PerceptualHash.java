@@ -0,0 +1,70 @@
+package com.example.vibecoing2.util;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 感知哈希（dHash）
+ * 灰度图缩小到 9x8（区域平均），每行相邻像素比较亮度得到 64 位哈希：
+ * 重新导出、压缩质量变化、轻微缩放只会翻转少量位，用汉明距离衡量相似度
+ */
+public final class PerceptualHash {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * 计算 dHash
+     *
+     * @param image BGR / BGRA / 灰度图（8 位）
+     */
+    public static long dHash(Mat image) {
+        try (MatScope scope = new MatScope()) {
+            Mat gray = image;
+            if (image.channels() == 3) {
+                gray = scope.newMat();
+                Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+            } else if (image.channels() == 4) {
+                gray = scope.newMat();
+                Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGRA2GRAY);
+            }
+
+            // 用浮点结果保留区域平均的精度，避免平坦区域取整后全部相等
+            Mat grayFloat = scope.newMat();
+            gray.convertTo(grayFloat, CvType.CV_32F);
+            Mat small = scope.newMat();
+            Imgproc.resize(grayFloat, small, new Size(HASH_WIDTH, HASH_HEIGHT), 0, 0, Imgproc.INTER_AREA);
+
+            float[] pixels = new float[HASH_WIDTH * HASH_HEIGHT];
+            small.get(0, 0, pixels);
+
+            long hash = 0;
+            for (int y = 0; y < HASH_HEIGHT; y++) {
+                for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                    hash <<= 1;
+                    if (pixels[y * HASH_WIDTH + x] > pixels[y * HASH_WIDTH + x + 1]) {
+                        hash |= 1;
+                    }
+                }
+            }
+            return hash;
+        }
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    public static long fromHex(String hex) {
+        return Long.parseUnsignedLong(hex, 16);
+    }
+}
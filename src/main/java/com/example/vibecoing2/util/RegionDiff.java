@@ -0,0 +1,149 @@
+package com.example.vibecoing2.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分块像素差异
+ * 两张同尺寸图片逐像素取三通道差值的最大值，超过阈值的像素按方块计数，计数达到下限的方块视为变化；
+ * 变化方块外扩一圈后按连通域合并为矩形区域（像素坐标）
+ */
+@Slf4j
+@Component
+public class RegionDiff {
+
+    /**
+     * 差异结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        private int tileSize;
+        private int totalTiles;
+        private int changedTiles;
+
+        /**
+         * 变化区域（已外扩、合并），按从上到下、从左到右排序
+         */
+        private List<Rect> regions;
+    }
+
+    /**
+     * 计算变化区域
+     *
+     * @param base             基准图片
+     * @param current          当前图片（尺寸与类型须与基准一致）
+     * @param tileSize         方块边长（像素）
+     * @param pixelThreshold   像素差值阈值，用于过滤重新压缩带来的噪声
+     * @param minChangedPixels 方块内变化像素数下限
+     */
+    public Result diff(Mat base, Mat current, int tileSize, int pixelThreshold, int minChangedPixels) {
+        if (base.size().width != current.size().width || base.size().height != current.size().height
+                || base.type() != current.type()) {
+            throw new IllegalArgumentException("图片尺寸或类型不一致: " + base.size() + " / " + current.size());
+        }
+
+        int width = current.cols();
+        int height = current.rows();
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+
+        try (MatScope scope = new MatScope()) {
+            Mat diff = scope.newMat();
+            Core.absdiff(base, current, diff);
+
+            // 三通道取最大差值，纯蓝色等单通道变化不会被灰度加权削弱
+            Mat maxDiff = diff;
+            if (diff.channels() > 1) {
+                List<Mat> channels = new ArrayList<>();
+                Core.split(diff, channels);
+                scope.trackAll(channels);
+                maxDiff = scope.newMat();
+                Core.max(channels.get(0), channels.get(1), maxDiff);
+                for (int c = 2; c < channels.size(); c++) {
+                    Core.max(maxDiff, channels.get(c), maxDiff);
+                }
+            }
+
+            // 0/1 掩码
+            Mat mask = scope.newMat();
+            Imgproc.threshold(maxDiff, mask, pixelThreshold, 1, Imgproc.THRESH_BINARY);
+
+            Mat tiles = scope.track(Mat.zeros(tilesY, tilesX, CvType.CV_8U));
+            int changed = 0;
+            if (Core.countNonZero(mask) > 0) {
+                changed = countTiles(mask, tiles, tileSize, minChangedPixels, scope);
+            }
+
+            List<Rect> regions = new ArrayList<>();
+            if (changed > 0) {
+                // 外扩一圈方块，覆盖跨越方块边界的组件边缘
+                Mat dilated = scope.newMat();
+                Mat kernel = scope.track(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3)));
+                Imgproc.dilate(tiles, dilated, kernel);
+
+                Mat labels = scope.newMat();
+                Mat stats = scope.newMat();
+                Mat centroids = scope.newMat();
+                int count = Imgproc.connectedComponentsWithStats(dilated, labels, stats, centroids, 8, CvType.CV_32S);
+
+                int[] row = new int[5];
+                for (int label = 1; label < count; label++) {
+                    stats.get(label, 0, row);
+                    int x = row[Imgproc.CC_STAT_LEFT] * tileSize;
+                    int y = row[Imgproc.CC_STAT_TOP] * tileSize;
+                    int w = Math.min(row[Imgproc.CC_STAT_WIDTH] * tileSize, width - x);
+                    int h = Math.min(row[Imgproc.CC_STAT_HEIGHT] * tileSize, height - y);
+                    regions.add(new Rect(x, y, w, h));
+                }
+                regions.sort((a, b) -> a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x));
+            }
+
+            log.info("分块差异完成: 方块={}x{} ({}px), 变化方块={}, 区域={}", tilesX, tilesY, tileSize, changed, regions.size());
+            return new Result(tileSize, tilesX * tilesY, changed, regions);
+        }
+    }
+
+    /**
+     * 逐行方块统计变化像素数（每条方块行按列求和，再按方块宽度累加），标记到 tiles 中，返回变化方块数
+     */
+    private int countTiles(Mat mask, Mat tiles, int tileSize, int minChangedPixels, MatScope scope) {
+        int width = mask.cols();
+        int height = mask.rows();
+        int tilesX = tiles.cols();
+
+        int[] columnSums = new int[width];
+        byte[] tileRow = new byte[tilesX];
+        Mat sums = scope.newMat();
+        int changed = 0;
+
+        for (int ty = 0; ty < tiles.rows(); ty++) {
+            int y = ty * tileSize;
+            Mat strip = mask.submat(y, Math.min(y + tileSize, height), 0, width);
+            Core.reduce(strip, sums, 0, Core.REDUCE_SUM, CvType.CV_32S);
+            strip.release();
+            sums.get(0, 0, columnSums);
+
+            for (int tx = 0; tx < tilesX; tx++) {
+                int count = 0;
+                int end = Math.min((tx + 1) * tileSize, width);
+                for (int x = tx * tileSize; x < end; x++) {
+                    count += columnSums[x];
+                }
+                tileRow[tx] = (byte) (count >= minChangedPixels ? 1 : 0);
+                if (count >= minChangedPixels) {
+                    changed++;
+                }
+            }
+            tiles.put(ty, 0, tileRow);
+        }
+        return changed;
+    }
+}
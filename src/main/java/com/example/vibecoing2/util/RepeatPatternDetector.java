@@ -0,0 +1,335 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.PageTemplate.ItemTemplate;
+import com.example.vibecoing2.domain.PageTemplate.LayoutNode;
+import com.example.vibecoing2.domain.PageTemplate.RepeatItem;
+import com.example.vibecoing2.domain.PageTemplate.Slot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 重复结构检测（列表 / 网格）
+ * 在 XY-cut 布局树上自底向上检查 row / column / list 节点：若所有子节点内的组件
+ * 按相对位置排序后类型一致、相对几何在容差内，则视为同构条目，
+ * 节点改写为 list，附带共享的条目模板（只含槽位几何，不复制条目子树）和按槽位排列的组件 ID。
+ * 由同构横向列表组成的纵向容器进一步合并为 grid
+ */
+public final class RepeatPatternDetector {
+
+    // 组成列表所需的最少条目数
+    private static final int MIN_LIST_ITEMS = 3;
+
+    // 组成网格所需的最少条目总数（如 2 列 x 2 行）
+    private static final int MIN_GRID_ITEMS = 4;
+
+    // 相对几何的容差：取绝对像素与条目尺寸比例中的较大者
+    private static final int ABSOLUTE_TOLERANCE = 4;
+    private static final double RELATIVE_TOLERANCE = 0.1;
+
+    // 排序时纵向坐标的分桶大小，避免同一行内微小错位导致槽位顺序不同
+    private static final int ROW_BUCKET = 8;
+
+    private final int[] boxes;
+    private final String[] ids;
+    private final String[] types;
+    private final Map<String, Integer> indexById;
+
+    private RepeatPatternDetector(int[] boxes, String[] ids, String[] types) {
+        this.boxes = boxes;
+        this.ids = ids;
+        this.types = types;
+        this.indexById = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            indexById.put(ids[i], i);
+        }
+    }
+
+    /**
+     * 检测并改写布局树中的重复结构
+     *
+     * @param root  XY-cut 布局树
+     * @param boxes 紧凑矩形数组（每 4 个 int 为 x, y, width, height）
+     * @param ids   组件 ID，与 boxes 下标对应
+     * @param types 组件类型，与 boxes 下标对应
+     * @return 检测到的重复组数量
+     */
+    public static int detect(LayoutNode root, int[] boxes, String[] ids, String[] types) {
+        return new RepeatPatternDetector(boxes, ids, types).visit(root);
+    }
+
+    private int visit(LayoutNode node) {
+        int groups = 0;
+        for (LayoutNode child : node.getChildren()) {
+            groups += visit(child);
+        }
+
+        int listsBefore = 0;
+        for (LayoutNode child : node.getChildren()) {
+            listsBefore += child.getItemTemplate() != null ? 1 : 0;
+        }
+        if (mergeGrid(node)) {
+            return groups - listsBefore + 1;
+        }
+        if (mergeList(node)) {
+            return groups + 1;
+        }
+        return groups;
+    }
+
+    private boolean mergeList(LayoutNode node) {
+        String type = node.getType();
+        if (!"row".equals(type) && !"column".equals(type) && !"list".equals(type)) {
+            return false;
+        }
+        LayoutNode pattern = repeat(node, MIN_LIST_ITEMS);
+        if (pattern == null) {
+            return false;
+        }
+
+        node.setType("list");
+        node.setItemTemplate(pattern.getItemTemplate());
+        node.setItems(pattern.getItems());
+        node.setChildren(new ArrayList<>());
+        return true;
+    }
+
+    /**
+     * 纵向容器的每个子节点都是同构条目组成的横向行、且各行条目彼此同构时合并为网格。
+     * 单行只需 2 个条目（两列商品卡片），由行数补足网格的最少条目数
+     */
+    private boolean mergeGrid(LayoutNode node) {
+        String type = node.getType();
+        if (!"column".equals(type) && !"list".equals(type)) {
+            return false;
+        }
+        List<LayoutNode> rows = node.getChildren();
+        if (rows.size() < 2) {
+            return false;
+        }
+
+        List<LayoutNode> patterns = new ArrayList<>(rows.size());
+        int total = 0;
+        int columns = 0;
+        for (LayoutNode row : rows) {
+            if (!"horizontal".equals(row.getDirection())) {
+                return false;
+            }
+            LayoutNode pattern = row.getItemTemplate() != null ? row : repeat(row, 2);
+            if (pattern == null) {
+                return false;
+            }
+            patterns.add(pattern);
+            total += pattern.getItems().size();
+            columns = Math.max(columns, pattern.getItems().size());
+        }
+        if (total < MIN_GRID_ITEMS) {
+            return false;
+        }
+
+        int[] reference = slotSignature(patterns.get(0).getItemTemplate());
+        for (int k = 1; k < patterns.size(); k++) {
+            if (!isomorphic(reference, slotSignature(patterns.get(k).getItemTemplate()))) {
+                return false;
+            }
+        }
+
+        List<RepeatItem> items = new ArrayList<>(total);
+        for (LayoutNode pattern : patterns) {
+            items.addAll(pattern.getItems());
+        }
+        node.setType("grid");
+        node.setItemTemplate(patterns.get(0).getItemTemplate());
+        node.setItems(items);
+        node.setColumns(columns);
+        node.setGap(rows.get(0).getGap());
+        node.setChildren(new ArrayList<>());
+        return true;
+    }
+
+    /**
+     * 子节点全部同构时返回只带条目模板和条目的临时节点（不修改原节点），否则返回 null
+     */
+    private LayoutNode repeat(LayoutNode node, int minItems) {
+        List<LayoutNode> children = node.getChildren();
+        if (children.size() < minItems) {
+            return null;
+        }
+
+        List<int[]> signatures = new ArrayList<>(children.size());
+        for (LayoutNode child : children) {
+            signatures.add(signature(child));
+        }
+        int[] reference = signatures.get(0);
+        for (int k = 1; k < signatures.size(); k++) {
+            if (!isomorphic(reference, signatures.get(k))) {
+                return null;
+            }
+        }
+
+        LayoutNode pattern = new LayoutNode();
+        pattern.setItemTemplate(template(reference));
+        pattern.setItems(items(children, signatures));
+        return pattern;
+    }
+
+    /**
+     * 条目签名：[条目宽, 条目高, 组件数, 然后每个组件 (下标, 相对 x, 相对 y, 宽, 高)]，组件按相对位置排序
+     */
+    private int[] signature(LayoutNode item) {
+        List<Integer> members = new ArrayList<>();
+        collect(item, members);
+
+        int originX = item.getX();
+        int originY = item.getY();
+        members.sort((a, b) -> {
+            int rowA = (boxes[a * 4 + 1] - originY) / ROW_BUCKET;
+            int rowB = (boxes[b * 4 + 1] - originY) / ROW_BUCKET;
+            if (rowA != rowB) {
+                return Integer.compare(rowA, rowB);
+            }
+            return Integer.compare(boxes[a * 4], boxes[b * 4]);
+        });
+
+        int[] signature = new int[3 + members.size() * 5];
+        signature[0] = item.getWidth();
+        signature[1] = item.getHeight();
+        signature[2] = members.size();
+        for (int k = 0; k < members.size(); k++) {
+            int i = members.get(k);
+            int base = 3 + k * 5;
+            signature[base] = i;
+            signature[base + 1] = boxes[i * 4] - originX;
+            signature[base + 2] = boxes[i * 4 + 1] - originY;
+            signature[base + 3] = boxes[i * 4 + 2];
+            signature[base + 4] = boxes[i * 4 + 3];
+        }
+        return signature;
+    }
+
+    /**
+     * 模板的槽位签名，用于比较两个列表的条目是否同构
+     */
+    private int[] slotSignature(ItemTemplate template) {
+        List<Slot> slots = template.getSlots();
+        int[] signature = new int[3 + slots.size() * 5];
+        signature[0] = template.getWidth();
+        signature[1] = template.getHeight();
+        signature[2] = slots.size();
+        for (int k = 0; k < slots.size(); k++) {
+            Slot slot = slots.get(k);
+            int base = 3 + k * 5;
+            signature[base] = -1 - typeCode(slot.getType());
+            signature[base + 1] = slot.getX();
+            signature[base + 2] = slot.getY();
+            signature[base + 3] = slot.getWidth();
+            signature[base + 4] = slot.getHeight();
+        }
+        return signature;
+    }
+
+    private boolean isomorphic(int[] a, int[] b) {
+        if (a[2] != b[2] || a[2] == 0) {
+            return false;
+        }
+        int toleranceX = Math.max(ABSOLUTE_TOLERANCE, (int) (Math.max(a[0], b[0]) * RELATIVE_TOLERANCE));
+        int toleranceY = Math.max(ABSOLUTE_TOLERANCE, (int) (Math.max(a[1], b[1]) * RELATIVE_TOLERANCE));
+        if (Math.abs(a[0] - b[0]) > toleranceX || Math.abs(a[1] - b[1]) > toleranceY) {
+            return false;
+        }
+        for (int k = 0; k < a[2]; k++) {
+            int base = 3 + k * 5;
+            if (typeCodeAt(a, base) != typeCodeAt(b, base)) {
+                return false;
+            }
+            if (Math.abs(a[base + 1] - b[base + 1]) > toleranceX
+                    || Math.abs(a[base + 2] - b[base + 2]) > toleranceY
+                    || Math.abs(a[base + 3] - b[base + 3]) > toleranceX
+                    || Math.abs(a[base + 4] - b[base + 4]) > toleranceY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 签名中的组件位：非负为组件下标，负数为已编码的类型（来自模板槽位）
+     */
+    private int typeCodeAt(int[] signature, int base) {
+        int value = signature[base];
+        return value >= 0 ? typeCode(types[value]) : -1 - value;
+    }
+
+    private int typeCode(String type) {
+        if (type == null) {
+            return 0;
+        }
+        switch (type) {
+            case "text":
+                return 1;
+            case "button":
+                return 2;
+            case "image":
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    private ItemTemplate template(int[] signature) {
+        ItemTemplate template = new ItemTemplate();
+        template.setWidth(signature[0]);
+        template.setHeight(signature[1]);
+        for (int k = 0; k < signature[2]; k++) {
+            int base = 3 + k * 5;
+            template.getSlots().add(new Slot(types[signature[base]],
+                    signature[base + 1], signature[base + 2], signature[base + 3], signature[base + 4]));
+        }
+        return template;
+    }
+
+    private List<RepeatItem> items(List<LayoutNode> children, List<int[]> signatures) {
+        List<RepeatItem> items = new ArrayList<>(children.size());
+        for (int k = 0; k < children.size(); k++) {
+            int[] signature = signatures.get(k);
+            List<String> components = new ArrayList<>(signature[2]);
+            for (int s = 0; s < signature[2]; s++) {
+                components.add(ids[signature[3 + s * 5]]);
+            }
+            LayoutNode child = children.get(k);
+            items.add(new RepeatItem(child.getX(), child.getY(), components));
+        }
+        return items;
+    }
+
+    /**
+     * 收集子树内的全部组件下标（包括已合并的重复条目和 card 容器）
+     */
+    private void collect(LayoutNode node, List<Integer> members) {
+        if (node.getContainerId() != null) {
+            add(node.getContainerId(), members);
+        }
+        for (String id : node.getComponents()) {
+            add(id, members);
+        }
+        if (node.getItems() != null) {
+            for (RepeatItem item : node.getItems()) {
+                for (String id : item.getComponents()) {
+                    add(id, members);
+                }
+            }
+        }
+        for (LayoutNode child : node.getChildren()) {
+            collect(child, members);
+        }
+    }
+
+    private void add(String id, List<Integer> members) {
+        Integer index = indexById.get(id);
+        if (index != null) {
+            members.add(index);
+        }
+    }
+}
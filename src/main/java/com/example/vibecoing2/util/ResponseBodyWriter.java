@@ -0,0 +1,324 @@
+package com.example.vibecoing2.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式响应输出（按 Accept 协商格式）
+ * 直接把对象序列化到 Servlet 输出流（生成器内部只有固定大小的缓冲区，写满即刷出）：
+ * <ul>
+ *     <li>application/json（默认）：{@link com.example.vibecoing2.domain.InlineImage} 由 {@link InlineImageSerializer}
+ *     从原始字节分块写出 base64 data URL；请求声明 Accept-Encoding 时按 gzip / deflate 压缩输出</li>
+ *     <li>application/cbor、application/x-jackson-smile：图片直接写为二进制字节串，没有 base64 膨胀；
+ *     图片本身已是压缩格式，不再做传输压缩</li>
+ * </ul>
+ * 传入 {@link FieldProjection} 时，响应中 data.template 下的字段在序列化过程中按投影过滤
+ */
+@Component
+public class ResponseBodyWriter {
+
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_CBOR = "cbor";
+    public static final String FORMAT_SMILE = "smile";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+
+    // 压缩输出缓冲区大小
+    private static final int COMPRESS_BUFFER = 8 * 1024;
+
+    // 所有 Bean 与 Map 字段共用的过滤器 ID，默认过滤器输出全部字段
+    private static final String PROJECTION_FILTER = "projection";
+
+    // 投影作用的模板在响应中的路径（ApiResponse.data.template）
+    private static final String[] TEMPLATE_PATH = {"data", "template"};
+
+    private final ObjectMapper jsonMapper = configure(new ObjectMapper());
+    private final ObjectMapper cborMapper = configure(new ObjectMapper(new CBORFactory()));
+    // Smile 默认把二进制转成 7 位编码（体积 +14%），关闭后按原始字节写出
+    private final ObjectMapper smileMapper = configure(new ObjectMapper(
+            SmileFactory.builder().disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT).build()));
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        return mapper.registerModule(InlineImageSerializer.module())
+                .registerModule(new JavaTimeModule())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+                .setAnnotationIntrospector(new ProjectionIntrospector())
+                .setFilterProvider(new SimpleFilterProvider()
+                        .addFilter(PROJECTION_FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    /**
+     * 指定格式的 ObjectMapper（json / cbor / smile）
+     */
+    public ObjectMapper mapper(String format) {
+        switch (format) {
+            case FORMAT_CBOR:
+                return cborMapper;
+            case FORMAT_SMILE:
+                return smileMapper;
+            default:
+                return jsonMapper;
+        }
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response, Object body) throws IOException {
+        write(request, response, body, FieldProjection.ALL);
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response, Object body,
+                      FieldProjection projection) throws IOException {
+        String format = negotiateFormat(request.getHeader(HttpHeaders.ACCEPT));
+        String encoding = FORMAT_JSON.equals(format)
+                ? negotiateEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING))
+                : null;
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+        switch (format) {
+            case FORMAT_CBOR:
+                response.setContentType(MediaType.APPLICATION_CBOR_VALUE);
+                break;
+            case FORMAT_SMILE:
+                response.setContentType(APPLICATION_SMILE.toString());
+                break;
+            default:
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                break;
+        }
+        // 已设置 Content-Encoding 的响应不会再被容器的 server.compression 重复压缩
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+
+        // 压缩流关闭时写出尾部，Servlet 输出流本身由容器负责关闭
+        OutputStream target = new NonClosingOutputStream(response.getOutputStream());
+        Deflater deflater = null;
+        if (ENCODING_GZIP.equals(encoding)) {
+            target = new GZIPOutputStream(target, COMPRESS_BUFFER);
+        } else if (ENCODING_DEFLATE.equals(encoding)) {
+            // HTTP 的 deflate 指 zlib 格式（带头部与校验）
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            target = new DeflaterOutputStream(target, deflater, COMPRESS_BUFFER);
+        }
+
+        ObjectMapper mapper = mapper(format);
+        try (OutputStream stream = target;
+             JsonGenerator generator = mapper.getFactory().createGenerator(stream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writer(mapper, projection).writeValue(generator, body);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * 以 JSON 写出一行（NDJSON），写完换行并刷出，不关闭输出流
+     * 投影作用于该行的 data.template 字段
+     */
+    public void writeJsonLine(OutputStream out, Object value, FieldProjection projection) throws IOException {
+        try (JsonGenerator generator = jsonMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writer(jsonMapper, projection).writeValue(generator, value);
+        }
+        out.write('\n');
+        out.flush();
+    }
+
+    private ObjectWriter writer(ObjectMapper mapper, FieldProjection projection) {
+        return projection.isAll()
+                ? mapper.writer()
+                : mapper.writer(new SimpleFilterProvider().addFilter(PROJECTION_FILTER, new ProjectionFilter(projection)));
+    }
+
+    /**
+     * 按 Accept 中的质量值选择格式，未声明或不支持的类型使用 JSON
+     */
+    static String negotiateFormat(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return FORMAT_JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (Exception e) {
+            return FORMAT_JSON;
+        }
+
+        String best = FORMAT_JSON;
+        double bestQuality = -1;
+        for (MediaType mediaType : mediaTypes) {
+            String format = null;
+            if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+                format = FORMAT_CBOR;
+            } else if (APPLICATION_SMILE.equalsTypeAndSubtype(mediaType)) {
+                format = FORMAT_SMILE;
+            } else if (MediaType.APPLICATION_JSON.isCompatibleWith(mediaType)) {
+                format = FORMAT_JSON;
+            }
+            if (format != null && mediaType.getQualityValue() > bestQuality) {
+                best = format;
+                bestQuality = mediaType.getQualityValue();
+            }
+        }
+        return bestQuality > 0 ? best : FORMAT_JSON;
+    }
+
+    /**
+     * 按 Accept-Encoding 选择压缩方式，gzip 优先；不支持时返回 null
+     */
+    static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        double gzip = 0;
+        double deflate = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double quality = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (ENCODING_GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = quality;
+            } else if (ENCODING_DEFLATE.equals(coding)) {
+                deflate = quality;
+            } else if ("*".equals(coding)) {
+                gzip = Math.max(gzip, quality);
+            }
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return ENCODING_GZIP;
+        }
+        return deflate > 0 ? ENCODING_DEFLATE : null;
+    }
+
+    /**
+     * 关闭时只刷出、不关闭底层流
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * 为所有 Bean 与 Map 类型字段指定投影过滤器（已有 @JsonFilter 的保持不变）
+     */
+    private static class ProjectionIntrospector extends JacksonAnnotationIntrospector {
+
+        @Override
+        public Object findFilterId(Annotated annotated) {
+            Object filterId = super.findFilterId(annotated);
+            if (filterId != null) {
+                return filterId;
+            }
+            if (annotated instanceof AnnotatedClass
+                    || (annotated instanceof AnnotatedMember && Map.class.isAssignableFrom(annotated.getRawType()))) {
+                return PROJECTION_FILTER;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 按输出上下文还原当前字段路径，只过滤模板下的字段，响应外层字段全部输出
+     */
+    private static class ProjectionFilter extends SimpleBeanPropertyFilter {
+
+        private final FieldProjection projection;
+
+        ProjectionFilter(FieldProjection projection) {
+            this.projection = projection;
+        }
+
+        @Override
+        public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider,
+                                     PropertyWriter writer) throws Exception {
+            if (include(gen.getOutputContext(), writer.getName())) {
+                writer.serializeAsField(pojo, gen, provider);
+            } else if (!gen.canOmitFields()) {
+                writer.serializeAsOmittedField(pojo, gen, provider);
+            }
+        }
+
+        private boolean include(JsonStreamContext context, String name) {
+            // 当前对象所在的字段名逐级向上收集（数组层不计入路径）
+            int depth = 1;
+            for (JsonStreamContext c = context.getParent(); c != null; c = c.getParent()) {
+                if (c.inObject()) {
+                    depth++;
+                }
+            }
+            String[] path = new String[depth];
+            path[depth - 1] = name;
+            int index = depth - 1;
+            for (JsonStreamContext c = context.getParent(); c != null; c = c.getParent()) {
+                if (c.inObject()) {
+                    path[--index] = c.getCurrentName();
+                }
+            }
+
+            for (int i = 0; i < TEMPLATE_PATH.length; i++) {
+                if (i >= path.length - 1 || !TEMPLATE_PATH[i].equals(path[i])) {
+                    return true;
+                }
+            }
+            return projection.includes(path, TEMPLATE_PATH.length);
+        }
+    }
+}
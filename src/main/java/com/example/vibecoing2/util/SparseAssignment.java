@@ -0,0 +1,155 @@
+package com.example.vibecoing2.util;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * 稀疏二分图最大权匹配（带势函数的最短增广路 Hungarian / Jonker-Volgenant）
+ * 边以 CSR 形式给出，只有存在的边参与计算；每个左顶点额外有一个权重为 0 的私有虚拟右顶点，
+ * 表示"不匹配"，因此求得的是最大权匹配而不要求完美匹配。
+ * 每轮增广只在 Dijkstra 可达的局部范围内搜索，稀疏图上的代价远低于稠密 O(n³)
+ */
+public final class SparseAssignment {
+
+    private SparseAssignment() {
+    }
+
+    /**
+     * 求最大权匹配
+     *
+     * @param leftCount  左顶点数
+     * @param rightCount 右顶点数
+     * @param edgeStart  CSR 偏移，长度 leftCount + 1，左顶点 i 的边为 [edgeStart[i], edgeStart[i + 1])
+     * @param edgeTarget 边的右顶点下标
+     * @param edgeWeight 边的权重（正数）
+     * @return 每个左顶点匹配的右顶点下标，未匹配为 -1
+     */
+    public static int[] maximizeWeight(int leftCount, int rightCount,
+                                       int[] edgeStart, int[] edgeTarget, double[] edgeWeight) {
+        int totalRight = rightCount + leftCount;
+
+        // 代价 = -权重；势函数满足 cost(i, j) - u[i] - v[j] >= 0，已匹配边取等号
+        double[] u = new double[leftCount];
+        double[] v = new double[totalRight];
+        int[] matchLeft = new int[leftCount];
+        int[] matchRight = new int[totalRight];
+        double[] matchCost = new double[leftCount];
+        Arrays.fill(matchLeft, -1);
+        Arrays.fill(matchRight, -1);
+
+        for (int i = 0; i < leftCount; i++) {
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                u[i] = Math.min(u[i], -edgeWeight[e]);
+            }
+        }
+
+        double[] dist = new double[totalRight];
+        int[] prevLeft = new int[totalRight];
+        double[] prevCost = new double[totalRight];
+        boolean[] done = new boolean[totalRight];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+        int[] touched = new int[totalRight];
+        int[] finalized = new int[totalRight];
+        PriorityQueue<long[]> heap = new PriorityQueue<>((a, b) -> a[0] != b[0]
+                ? Double.compare(Double.longBitsToDouble(a[0]), Double.longBitsToDouble(b[0]))
+                : Long.compare(a[1], b[1]));
+
+        for (int s = 0; s < leftCount; s++) {
+            int touchedCount = 0;
+            int finalizedCount = 0;
+            heap.clear();
+
+            // 从 s 出发的 Dijkstra，遇到第一个空闲右顶点即停止
+            touchedCount = relax(s, 0.0, rightCount, edgeStart, edgeTarget, edgeWeight,
+                    u, v, dist, prevLeft, prevCost, done, touched, touchedCount, heap);
+
+            int end = -1;
+            while (!heap.isEmpty()) {
+                long[] top = heap.poll();
+                int j = (int) top[1];
+                if (done[j] || Double.longBitsToDouble(top[0]) > dist[j]) {
+                    continue;
+                }
+                done[j] = true;
+                finalized[finalizedCount++] = j;
+
+                if (matchRight[j] == -1) {
+                    end = j;
+                    break;
+                }
+                touchedCount = relax(matchRight[j], dist[j], rightCount, edgeStart, edgeTarget, edgeWeight,
+                        u, v, dist, prevLeft, prevCost, done, touched, touchedCount, heap);
+            }
+
+            // 虚拟右顶点总是可达，end 一定存在
+            double delta = dist[end];
+            for (int k = 0; k < finalizedCount; k++) {
+                int j = finalized[k];
+                v[j] += dist[j] - delta;
+            }
+
+            // 沿最短路翻转匹配
+            int j = end;
+            while (true) {
+                int i = prevLeft[j];
+                int previous = matchLeft[i];
+                matchLeft[i] = j;
+                matchRight[j] = i;
+                matchCost[i] = prevCost[j];
+                if (i == s) {
+                    break;
+                }
+                j = previous;
+            }
+
+            // 已匹配边的约简代价保持为 0
+            for (int k = 0; k < finalizedCount; k++) {
+                int i = matchRight[finalized[k]];
+                if (i >= 0) {
+                    u[i] = matchCost[i] - v[matchLeft[i]];
+                }
+            }
+
+            for (int k = 0; k < touchedCount; k++) {
+                int t = touched[k];
+                dist[t] = Double.POSITIVE_INFINITY;
+                done[t] = false;
+            }
+        }
+
+        int[] result = new int[leftCount];
+        for (int i = 0; i < leftCount; i++) {
+            result[i] = matchLeft[i] < rightCount ? matchLeft[i] : -1;
+        }
+        return result;
+    }
+
+    private static int relax(int i, double base, int rightCount,
+                             int[] edgeStart, int[] edgeTarget, double[] edgeWeight,
+                             double[] u, double[] v, double[] dist, int[] prevLeft, double[] prevCost,
+                             boolean[] done, int[] touched, int touchedCount, PriorityQueue<long[]> heap) {
+        for (int e = edgeStart[i]; e <= edgeStart[i + 1]; e++) {
+            // 最后一次迭代对应左顶点 i 的虚拟右顶点（代价 0）
+            boolean dummy = e == edgeStart[i + 1];
+            int k = dummy ? rightCount + i : edgeTarget[e];
+            double cost = dummy ? 0.0 : -edgeWeight[e];
+
+            if (done[k]) {
+                continue;
+            }
+            double reduced = Math.max(0.0, cost - u[i] - v[k]);
+            double candidate = base + reduced;
+            if (candidate < dist[k]) {
+                if (dist[k] == Double.POSITIVE_INFINITY) {
+                    touched[touchedCount++] = k;
+                }
+                dist[k] = candidate;
+                prevLeft[k] = i;
+                prevCost[k] = cost;
+                heap.add(new long[]{Double.doubleToLongBits(candidate), k});
+            }
+        }
+        return touchedCount;
+    }
+}
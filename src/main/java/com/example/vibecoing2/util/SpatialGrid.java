@@ -0,0 +1,222 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 均匀网格空间索引
+ * 矩形以 int[] 紧凑存放（x, y, width, height），按覆盖的网格单元建立 CSR 形式的倒排表；
+ * 查询只访问与查询框所在单元相交的候选，用于 IoU 匹配时跳过明显不重叠的组件对。
+ * 查询使用内部的访问标记数组去重，实例不是线程安全的
+ */
+public final class SpatialGrid {
+
+    // 网格单元数上限（相对矩形数量），避免大量小矩形时网格过细
+    private static final int MAX_CELLS_PER_ITEM = 4;
+    private static final int MIN_CELL_SIZE = 8;
+
+    private final int[] boxes;
+    private final int size;
+
+    private final int originX;
+    private final int originY;
+    private final int cellSize;
+    private final int cols;
+    private final int rows;
+
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    private final int[] visitStamp;
+    private int stamp;
+
+    private SpatialGrid(int[] boxes, int size) {
+        this.boxes = boxes;
+        this.size = size;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        long extentSum = 0;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, x(i));
+            minY = Math.min(minY, y(i));
+            maxX = Math.max(maxX, x(i) + Math.max(1, width(i)));
+            maxY = Math.max(maxY, y(i) + Math.max(1, height(i)));
+            extentSum += Math.max(width(i), height(i));
+        }
+        if (size == 0) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+
+        // 单元大小取矩形平均边长，网格过细时放大单元
+        int cell = Math.max(MIN_CELL_SIZE, size > 0 ? (int) (extentSum / size) : MIN_CELL_SIZE);
+        long spanX = (long) maxX - minX;
+        long spanY = (long) maxY - minY;
+        long maxCells = Math.max(1, (long) size * MAX_CELLS_PER_ITEM);
+        while ((spanX / cell + 1) * (spanY / cell + 1) > maxCells) {
+            cell *= 2;
+        }
+
+        this.originX = minX;
+        this.originY = minY;
+        this.cellSize = cell;
+        this.cols = (int) (spanX / cell + 1);
+        this.rows = (int) (spanY / cell + 1);
+
+        // 两遍构建 CSR：先统计每个单元的矩形数，再填充
+        int cellCount = cols * rows;
+        int[] counts = new int[cellCount + 1];
+        for (int i = 0; i < size; i++) {
+            int cx0 = cellX(x(i)), cx1 = cellX(x(i) + Math.max(1, width(i)) - 1);
+            int cy0 = cellY(y(i)), cy1 = cellY(y(i) + Math.max(1, height(i)) - 1);
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    counts[cy * cols + cx + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cellCount; c++) {
+            counts[c + 1] += counts[c];
+        }
+        this.cellStart = counts;
+        this.cellItems = new int[counts[cellCount]];
+
+        int[] fill = new int[cellCount];
+        for (int i = 0; i < size; i++) {
+            int cx0 = cellX(x(i)), cx1 = cellX(x(i) + Math.max(1, width(i)) - 1);
+            int cy0 = cellY(y(i)), cy1 = cellY(y(i) + Math.max(1, height(i)) - 1);
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    int cellIndex = cy * cols + cx;
+                    cellItems[cellStart[cellIndex] + fill[cellIndex]++] = i;
+                }
+            }
+        }
+
+        this.visitStamp = new int[size];
+    }
+
+    /**
+     * 由紧凑矩形数组（每 4 个 int 为 x, y, width, height）构建索引
+     */
+    public static SpatialGrid build(int[] boxes, int size) {
+        return new SpatialGrid(boxes, size);
+    }
+
+    /**
+     * 由组件的位置与尺寸构建索引，下标与列表下标一致
+     */
+    public static SpatialGrid of(List<? extends Component> components) {
+        return build(toBoxes(components), components.size());
+    }
+
+    /**
+     * 组件列表转换为紧凑矩形数组
+     */
+    public static int[] toBoxes(List<? extends Component> components) {
+        int[] boxes = new int[components.size() * 4];
+        for (int i = 0; i < components.size(); i++) {
+            Component component = components.get(i);
+            boxes[i * 4] = component.getPosition().getX();
+            boxes[i * 4 + 1] = component.getPosition().getY();
+            boxes[i * 4 + 2] = component.getSize().getWidth();
+            boxes[i * 4 + 3] = component.getSize().getHeight();
+        }
+        return boxes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int x(int i) {
+        return boxes[i * 4];
+    }
+
+    public int y(int i) {
+        return boxes[i * 4 + 1];
+    }
+
+    public int width(int i) {
+        return boxes[i * 4 + 2];
+    }
+
+    public int height(int i) {
+        return boxes[i * 4 + 3];
+    }
+
+    /**
+     * 访问所有与查询框所在网格单元相交的矩形（每个矩形最多访问一次，顺序不保证）
+     */
+    public void query(int qx, int qy, int qw, int qh, IntConsumer visitor) {
+        if (size == 0) {
+            return;
+        }
+
+        int cx0 = cellX(qx), cx1 = cellX(qx + Math.max(1, qw) - 1);
+        int cy0 = cellY(qy), cy1 = cellY(qy + Math.max(1, qh) - 1);
+        if (cx1 < 0 || cy1 < 0 || cx0 >= cols || cy0 >= rows) {
+            return;
+        }
+        cx0 = Math.max(0, cx0);
+        cy0 = Math.max(0, cy0);
+        cx1 = Math.min(cols - 1, cx1);
+        cy1 = Math.min(rows - 1, cy1);
+
+        if (++stamp == 0) {
+            Arrays.fill(visitStamp, 0);
+            stamp = 1;
+        }
+
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int cellIndex = cy * cols + cx;
+                for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                    int item = cellItems[k];
+                    if (visitStamp[item] != stamp) {
+                        visitStamp[item] = stamp;
+                        visitor.accept(item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 下标 i 的矩形与给定矩形的 IoU
+     */
+    public double iou(int i, int bx, int by, int bw, int bh) {
+        return iou(x(i), y(i), width(i), height(i), bx, by, bw, bh);
+    }
+
+    /**
+     * 两个矩形的 IoU（与 CoordinateConverter.calculateIoU 计算方式一致，不分配 Rect）
+     */
+    public static double iou(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        int x1 = Math.max(ax, bx);
+        int y1 = Math.max(ay, by);
+        int x2 = Math.min(ax + aw, bx + bw);
+        int y2 = Math.min(ay + ah, by + bh);
+
+        long intersectionArea = (long) Math.max(0, x2 - x1) * Math.max(0, y2 - y1);
+        long unionArea = (long) aw * ah + (long) bw * bh - intersectionArea;
+
+        if (unionArea == 0) {
+            return 0.0;
+        }
+
+        return (double) intersectionArea / unionArea;
+    }
+
+    private int cellX(int x) {
+        return Math.floorDiv(x - originX, cellSize);
+    }
+
+    private int cellY(int y) {
+        return Math.floorDiv(y - originY, cellSize);
+    }
+}
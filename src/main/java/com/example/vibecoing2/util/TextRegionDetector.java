@@ -0,0 +1,165 @@
+package com.example.vibecoing2.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 文字候选区域检测
+ * 形态学梯度 + Otsu 二值化 + 水平闭运算连通字符，再用轮廓外接矩形作为候选文字框，
+ * 供 OCR 只识别包含文字的区域
+ */
+@Slf4j
+@Component
+public class TextRegionDetector {
+
+    // 候选框的最小尺寸
+    private static final int MIN_REGION_WIDTH = 8;
+    private static final int MIN_REGION_HEIGHT = 8;
+
+    // 普通文字行的高度上限（占图片宽度的比例），不超过该高度的候选框不做形状限制
+    private static final double LINE_HEIGHT_RATIO = 0.1;
+
+    // 候选框高度的硬上限（占图片宽度的比例），大号标题字也不会超过
+    private static final double MAX_REGION_HEIGHT_RATIO = 0.25;
+
+    // 高于普通文字行的候选框须呈横向长条（宽 / 高不低于该值）才视为标题文字，否则多为图片或色块
+    private static final double MIN_TALL_LINE_ASPECT = 1.5;
+
+    // 候选框内前景像素占比下限
+    private static final double MIN_FILL_RATIO = 0.1;
+
+    // 候选框外扩像素，避免裁掉字符边缘
+    private static final int REGION_PADDING = 4;
+
+    /**
+     * 检测候选文字区域
+     *
+     * @param gray 灰度图
+     * @return 候选文字框（已外扩并合并重叠区域），按从上到下、从左到右排序
+     */
+    public List<Rect> detect(Mat gray) {
+        int width = gray.cols();
+        int height = gray.rows();
+
+        int lineHeight = (int) Math.max(MIN_REGION_HEIGHT * 4, width * LINE_HEIGHT_RATIO);
+        int maxRegionHeight = (int) Math.max(lineHeight, width * MAX_REGION_HEIGHT_RATIO);
+        List<Rect> regions = new ArrayList<>();
+
+        try (MatScope scope = new MatScope()) {
+            Mat gradient = scope.newMat();
+            Mat binary = scope.newMat();
+            Mat connected = scope.newMat();
+            Mat hierarchy = scope.newMat();
+
+            // 形态学梯度突出笔画边缘
+            Mat gradientKernel = scope.track(Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3)));
+            Imgproc.morphologyEx(gray, gradient, Imgproc.MORPH_GRADIENT, gradientKernel);
+
+            Imgproc.threshold(gradient, binary, 0, 255, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+
+            // 水平闭运算把同一行的字符连成一个连通域
+            int closeWidth = Math.max(9, width / 120);
+            Mat closeKernel = scope.track(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(closeWidth, 3)));
+            Imgproc.morphologyEx(binary, connected, Imgproc.MORPH_CLOSE, closeKernel);
+
+            List<MatOfPoint> contours = new ArrayList<>();
+            Imgproc.findContours(connected, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+            scope.trackAll(contours);
+
+            for (MatOfPoint contour : contours) {
+                Rect rect = Imgproc.boundingRect(contour);
+
+                if (rect.width < MIN_REGION_WIDTH || rect.height < MIN_REGION_HEIGHT || rect.height > maxRegionHeight) {
+                    continue;
+                }
+                if (rect.height > lineHeight && rect.width < rect.height * MIN_TALL_LINE_ASPECT) {
+                    continue;
+                }
+
+                Mat roi = scope.track(binary.submat(rect));
+                double fillRatio = (double) Core.countNonZero(roi) / rect.area();
+                if (fillRatio < MIN_FILL_RATIO) {
+                    continue;
+                }
+
+                regions.add(pad(rect, width, height));
+            }
+        }
+
+        List<Rect> merged = mergeOverlapping(regions);
+        log.debug("检测到 {} 个候选文字区域（合并前 {} 个）", merged.size(), regions.size());
+        return merged;
+    }
+
+    private Rect pad(Rect rect, int width, int height) {
+        int x = Math.max(0, rect.x - REGION_PADDING);
+        int y = Math.max(0, rect.y - REGION_PADDING);
+        int x2 = Math.min(width, rect.x + rect.width + REGION_PADDING);
+        int y2 = Math.min(height, rect.y + rect.height + REGION_PADDING);
+        return new Rect(x, y, x2 - x, y2 - y);
+    }
+
+    /**
+     * 合并外扩后相互重叠的候选框，避免同一段文字被重复识别
+     */
+    private List<Rect> mergeOverlapping(List<Rect> regions) {
+        regions.sort(Comparator.comparingInt((Rect r) -> r.y).thenComparingInt(r -> r.x));
+
+        List<Rect> merged = new ArrayList<>();
+        boolean changed = true;
+        List<Rect> current = regions;
+
+        while (changed) {
+            changed = false;
+            merged = new ArrayList<>();
+            boolean[] consumed = new boolean[current.size()];
+
+            for (int i = 0; i < current.size(); i++) {
+                if (consumed[i]) {
+                    continue;
+                }
+                Rect base = current.get(i);
+                for (int j = i + 1; j < current.size(); j++) {
+                    if (consumed[j]) {
+                        continue;
+                    }
+                    Rect other = current.get(j);
+                    if (other.y >= base.y + base.height) {
+                        // 已按 y 排序，后续候选框不可能与 base 相交
+                        break;
+                    }
+                    if (intersects(base, other)) {
+                        base = union(base, other);
+                        consumed[j] = true;
+                        changed = true;
+                    }
+                }
+                merged.add(base);
+            }
+
+            merged.sort(Comparator.comparingInt((Rect r) -> r.y).thenComparingInt(r -> r.x));
+            current = merged;
+        }
+
+        return merged;
+    }
+
+    private boolean intersects(Rect a, Rect b) {
+        return a.x < b.x + b.width && b.x < a.x + a.width
+                && a.y < b.y + b.height && b.y < a.y + a.height;
+    }
+
+    private Rect union(Rect a, Rect b) {
+        int x = Math.min(a.x, b.x);
+        int y = Math.min(a.y, b.y);
+        int x2 = Math.max(a.x + a.width, b.x + b.width);
+        int y2 = Math.max(a.y + a.height, b.y + b.height);
+        return new Rect(x, y, x2 - x, y2 - y);
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.PageTemplate.LayoutNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 递归 XY-cut 布局分析
+ * 对当前组件集合分别沿 y、x 轴做投影：用差分数组 + 前缀和得到每个坐标上的覆盖数，
+ * 覆盖数为 0 的连续区间即为可切分的空隙（单个节点 O(n + 跨度)）。
+ * 取最宽空隙所在的轴切分（相同宽度优先按行切），递归处理每一段：
+ * 沿 y 切分得到 column，沿 x 切分得到 row；两轴都无法切分时，
+ * 若存在包含其它所有组件的容器组件则生成 card，否则生成 stack。
+ * 组件数较多的子树通过 ForkJoin 并行递归
+ */
+public final class XYCutLayout {
+
+    // 小于该宽度（像素）的空隙视为噪声，不切分
+    private static final int MIN_GAP = 2;
+
+    // 组件数不少于该值的子树才拆分成并行任务
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    // 判定"容器组件包含其它组件"时允许的越界像素
+    private static final int CONTAIN_TOLERANCE = 2;
+
+    // list 判定：子项宽高与中位数的最大相对偏差
+    private static final double LIST_SIZE_TOLERANCE = 0.2;
+    private static final int LIST_MIN_ITEMS = 3;
+
+    private XYCutLayout() {
+    }
+
+    /**
+     * 构建布局树
+     *
+     * @param boxes        紧凑矩形数组（每 4 个 int 为 x, y, width, height）
+     * @param ids          组件 ID，与 boxes 下标对应
+     * @param background   为 true 的组件不参与切分，直接挂在根节点上
+     * @param pageWidth    页面宽度
+     * @param pageHeight   页面高度
+     * @return 类型为 page 的根节点
+     */
+    public static LayoutNode build(int[] boxes, String[] ids, boolean[] background, int pageWidth, int pageHeight) {
+        LayoutNode root = new LayoutNode("page", 0, 0, pageWidth, pageHeight);
+
+        int[] foreground = new int[ids.length];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (background[i]) {
+                root.getComponents().add(ids[i]);
+            } else {
+                foreground[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return root;
+        }
+
+        LayoutNode tree = ForkJoinPool.commonPool().invoke(new CutTask(boxes, ids, Arrays.copyOf(foreground, count)));
+        root.getChildren().add(tree);
+        return root;
+    }
+
+    private static final class CutTask extends RecursiveTask<LayoutNode> {
+
+        private final int[] boxes;
+        private final String[] ids;
+        private final int[] members;
+
+        CutTask(int[] boxes, String[] ids, int[] members) {
+            this.boxes = boxes;
+            this.ids = ids;
+            this.members = members;
+        }
+
+        @Override
+        protected LayoutNode compute() {
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int i : members) {
+                minX = Math.min(minX, left(i));
+                minY = Math.min(minY, top(i));
+                maxX = Math.max(maxX, right(i));
+                maxY = Math.max(maxY, bottom(i));
+            }
+
+            if (members.length == 1) {
+                LayoutNode leaf = new LayoutNode("leaf", minX, minY, maxX - minX, maxY - minY);
+                leaf.getComponents().add(ids[members[0]]);
+                return leaf;
+            }
+
+            int[] rowGaps = findGaps(true, minY, maxY);
+            int[] columnGaps = findGaps(false, minX, maxX);
+            int rowWidest = widest(rowGaps);
+            int columnWidest = widest(columnGaps);
+
+            if (rowWidest > 0 && rowWidest >= columnWidest) {
+                return split(true, rowGaps, minX, minY, maxX, maxY);
+            }
+            if (columnWidest > 0) {
+                return split(false, columnGaps, minX, minY, maxX, maxY);
+            }
+            return group(minX, minY, maxX, maxY);
+        }
+
+        /**
+         * 投影轮廓上覆盖数为 0 的区间，返回 [start0, end0, start1, end1, ...]（已按坐标排序）
+         */
+        private int[] findGaps(boolean vertical, int lo, int hi) {
+            int span = hi - lo;
+            if (span <= 0) {
+                return new int[0];
+            }
+
+            // 差分数组：区间起点 +1，终点 -1，前缀和即为每个坐标的覆盖数
+            int[] coverage = new int[span + 1];
+            for (int i : members) {
+                int start = (vertical ? top(i) : left(i)) - lo;
+                int end = (vertical ? bottom(i) : right(i)) - lo;
+                if (end > start) {
+                    coverage[start]++;
+                    coverage[end]--;
+                }
+            }
+
+            int[] gaps = new int[8];
+            int gapCount = 0;
+            int running = 0;
+            int gapStart = -1;
+            for (int p = 0; p < span; p++) {
+                running += coverage[p];
+                if (running == 0) {
+                    if (gapStart < 0) {
+                        gapStart = p;
+                    }
+                } else if (gapStart >= 0) {
+                    if (p - gapStart >= MIN_GAP) {
+                        if (gapCount * 2 == gaps.length) {
+                            gaps = Arrays.copyOf(gaps, gaps.length * 2);
+                        }
+                        gaps[gapCount * 2] = gapStart + lo;
+                        gaps[gapCount * 2 + 1] = p + lo;
+                        gapCount++;
+                    }
+                    gapStart = -1;
+                }
+            }
+            return Arrays.copyOf(gaps, gapCount * 2);
+        }
+
+        private LayoutNode split(boolean vertical, int[] gaps, int minX, int minY, int maxX, int maxY) {
+            int segmentCount = gaps.length / 2 + 1;
+
+            // 每个组件按起点落在哪两个空隙之间归入对应分段
+            int[] segmentOf = new int[members.length];
+            int[] segmentSize = new int[segmentCount];
+            for (int k = 0; k < members.length; k++) {
+                int start = vertical ? top(members[k]) : left(members[k]);
+                int segment = 0;
+                while (segment < segmentCount - 1 && start >= gaps[segment * 2 + 1]) {
+                    segment++;
+                }
+                segmentOf[k] = segment;
+                segmentSize[segment]++;
+            }
+
+            List<CutTask> tasks = new ArrayList<>(segmentCount);
+            int[][] segments = new int[segmentCount][];
+            for (int s = 0; s < segmentCount; s++) {
+                segments[s] = new int[segmentSize[s]];
+            }
+            int[] fill = new int[segmentCount];
+            for (int k = 0; k < members.length; k++) {
+                int s = segmentOf[k];
+                segments[s][fill[s]++] = members[k];
+            }
+            for (int[] segment : segments) {
+                if (segment.length > 0) {
+                    tasks.add(new CutTask(boxes, ids, segment));
+                }
+            }
+
+            List<LayoutNode> children = new ArrayList<>(tasks.size());
+            if (members.length >= PARALLEL_THRESHOLD) {
+                invokeAll(tasks);
+                for (CutTask task : tasks) {
+                    children.add(task.join());
+                }
+            } else {
+                for (CutTask task : tasks) {
+                    children.add(task.compute());
+                }
+            }
+
+            int minGap = Integer.MAX_VALUE;
+            for (int g = 0; g < gaps.length; g += 2) {
+                minGap = Math.min(minGap, gaps[g + 1] - gaps[g]);
+            }
+
+            String direction = vertical ? "vertical" : "horizontal";
+            String type = isList(children, vertical) ? "list" : (vertical ? "column" : "row");
+            LayoutNode node = new LayoutNode(type, minX, minY, maxX - minX, maxY - minY);
+            node.setDirection(direction);
+            node.setGap(minGap);
+            node.setChildren(children);
+            return node;
+        }
+
+        /**
+         * 两轴都无法切分：有包含其余组件的容器时生成 card 并递归处理内部组件，否则生成 stack
+         */
+        private LayoutNode group(int minX, int minY, int maxX, int maxY) {
+            int container = -1;
+            long containerArea = -1;
+            for (int i : members) {
+                long area = (long) boxes[i * 4 + 2] * boxes[i * 4 + 3];
+                if (area > containerArea) {
+                    containerArea = area;
+                    container = i;
+                }
+            }
+
+            boolean containsAll = true;
+            for (int i : members) {
+                if (i != container && !contains(container, i)) {
+                    containsAll = false;
+                    break;
+                }
+            }
+
+            if (!containsAll) {
+                LayoutNode stack = new LayoutNode("stack", minX, minY, maxX - minX, maxY - minY);
+                for (int i : members) {
+                    stack.getComponents().add(ids[i]);
+                }
+                return stack;
+            }
+
+            int[] inner = new int[members.length - 1];
+            int count = 0;
+            for (int i : members) {
+                if (i != container) {
+                    inner[count++] = i;
+                }
+            }
+
+            LayoutNode card = new LayoutNode("card", minX, minY, maxX - minX, maxY - minY);
+            card.setContainerId(ids[container]);
+            card.getChildren().add(new CutTask(boxes, ids, inner).compute());
+            return card;
+        }
+
+        /**
+         * 子项数不少于 3 且宽高都接近中位数时视为列表
+         */
+        private boolean isList(List<LayoutNode> children, boolean vertical) {
+            if (children.size() < LIST_MIN_ITEMS) {
+                return false;
+            }
+            int[] widths = new int[children.size()];
+            int[] heights = new int[children.size()];
+            for (int k = 0; k < children.size(); k++) {
+                widths[k] = children.get(k).getWidth();
+                heights[k] = children.get(k).getHeight();
+            }
+            return similar(widths) && similar(heights);
+        }
+
+        private boolean similar(int[] values) {
+            int[] sorted = values.clone();
+            Arrays.sort(sorted);
+            int median = sorted[sorted.length / 2];
+            if (median <= 0) {
+                return false;
+            }
+            for (int value : values) {
+                if (Math.abs(value - median) > median * LIST_SIZE_TOLERANCE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean contains(int outer, int inner) {
+            return left(inner) >= left(outer) - CONTAIN_TOLERANCE
+                    && top(inner) >= top(outer) - CONTAIN_TOLERANCE
+                    && right(inner) <= right(outer) + CONTAIN_TOLERANCE
+                    && bottom(inner) <= bottom(outer) + CONTAIN_TOLERANCE;
+        }
+
+        private int widest(int[] gaps) {
+            int widest = 0;
+            for (int g = 0; g < gaps.length; g += 2) {
+                widest = Math.max(widest, gaps[g + 1] - gaps[g]);
+            }
+            return widest;
+        }
+
+        private int left(int i) {
+            return boxes[i * 4];
+        }
+
+        private int top(int i) {
+            return boxes[i * 4 + 1];
+        }
+
+        private int right(int i) {
+            return boxes[i * 4] + Math.max(0, boxes[i * 4 + 2]);
+        }
+
+        private int bottom(int i) {
+            return boxes[i * 4 + 1] + Math.max(0, boxes[i * 4 + 3]);
+        }
+    }
+}
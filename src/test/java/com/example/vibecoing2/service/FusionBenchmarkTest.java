@@ -0,0 +1,122 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.config.AppConfig;
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.domain.Position;
+import com.example.vibecoing2.domain.Size;
+import com.example.vibecoing2.domain.TextComponent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * AI / CV 组件融合耗时对照（greedy 与 global），组件数 100 / 1000 / 5000
+ * 默认跳过，运行方式：mvn test -Dtest=FusionBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FusionBenchmarkTest {
+
+    private static final int[] COMPONENT_COUNTS = {100, 1000, 5000};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int PAGE_WIDTH = 750;
+
+    @Test
+    void compareFusionModes() {
+        System.out.printf("%-8s %-8s %12s %12s%n", "组件数", "模式", "平均(ms)", "最大(ms)");
+        for (int count : COMPONENT_COUNTS) {
+            for (String mode : new String[]{"greedy", "global"}) {
+                TemplateGeneratorService service = new TemplateGeneratorService(config(mode));
+                Random random = new Random(count);
+                List<Component> ai = randomComponents(random, count, 0);
+                List<Component> cv = jitter(random, ai);
+
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    run(service, ai, cv);
+                }
+                long total = 0;
+                long max = 0;
+                for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                    long elapsed = run(service, ai, cv);
+                    total += elapsed;
+                    max = Math.max(max, elapsed);
+                }
+                System.out.printf("%-8d %-8s %12.2f %12.2f%n", count, mode,
+                        total / 1e6 / MEASURED_ROUNDS, max / 1e6);
+            }
+        }
+    }
+
+    private static long run(TemplateGeneratorService service, List<Component> ai, List<Component> cv) {
+        int pageHeight = ai.size() * 20;
+        long start = System.nanoTime();
+        PageTemplate template = service.generateTemplate(copy(ai), copy(cv), Collections.emptyList(),
+                PAGE_WIDTH, pageHeight);
+        long elapsed = System.nanoTime() - start;
+        // 每个 AI 组件都与对应的 CV 组件重合，融合后数量等于 AI 组件数
+        assertEquals(ai.size(), template.getComponents().size());
+        return elapsed;
+    }
+
+    private static AppConfig config(String fusionMode) {
+        AppConfig config = new AppConfig();
+        config.getLayout().setIouThreshold(0.5);
+        config.getLayout().setConfidenceThreshold(0.5);
+        config.getLayout().setFusionMode(fusionMode);
+        return config;
+    }
+
+    /**
+     * 按行排布的组件，每行 3 个，类型轮换
+     */
+    private static List<Component> randomComponents(Random random, int count, int idOffset) {
+        List<Component> components = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int row = i / 3;
+            int column = i % 3;
+            int width = 120 + random.nextInt(100);
+            int height = 12 + random.nextInt(6);
+            components.add(component(i % 3, "c" + (i + idOffset),
+                    column * 250 + random.nextInt(10), row * 20 + random.nextInt(2), width, height));
+        }
+        return components;
+    }
+
+    /**
+     * 对 AI 组件的位置与尺寸加少量扰动，模拟 CV 检测结果
+     */
+    private static List<Component> jitter(Random random, List<Component> source) {
+        List<Component> components = new ArrayList<>(source.size());
+        for (int i = 0; i < source.size(); i++) {
+            Component original = source.get(i);
+            components.add(component(i % 3, "cv" + i,
+                    original.getPosition().getX() + random.nextInt(5) - 2,
+                    original.getPosition().getY() + random.nextInt(3) - 1,
+                    original.getSize().getWidth() + random.nextInt(5) - 2,
+                    original.getSize().getHeight()));
+        }
+        Collections.shuffle(components, random);
+        return components;
+    }
+
+    private static Component component(int kind, String id, int x, int y, int width, int height) {
+        Component component = kind == 0 ? new TextComponent() : kind == 1 ? new ButtonComponent() : new ImageComponent();
+        component.setId(id);
+        component.setPosition(new Position(x, y));
+        component.setSize(new Size(width, height));
+        return component;
+    }
+
+    private static List<Component> copy(List<Component> components) {
+        return new ArrayList<>(components);
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.domain.TextComponent;
+import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.example.vibecoing2.dto.AnalysisSearchHit;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 倒排索引检索与逐条扫描的对照，以及分词、增量更新与排序
+ */
+class HistorySearchServiceTest {
+
+    private static final String[] WORDS = {"立即购买", "加入购物车", "Buy now", "Sign in", "登录", "免费试用",
+            "Product title", "限时优惠", "Download", "购买"};
+    private static final String[] COLORS = {"#FF6B6B", "#1E88E5", "#FFFFFF", "#333333", "#4CAF50", "#FF7070"};
+    private static final String[] TYPES = {"text", "button", "image"};
+
+    @Test
+    void tokenizesLatinWordsAndCjkBigrams() {
+        assertEquals(List.of("buy", "now"), HistorySearchService.tokenize("Buy  NOW!"));
+        assertEquals(List.of("立即", "即购", "购买"), HistorySearchService.tokenize("立即购买"));
+        assertEquals(List.of("登"), HistorySearchService.tokenize("登"));
+        assertEquals(List.of("vip", "会员", "专享"), HistorySearchService.tokenize("VIP会员 专享"));
+        // 全角字符按 NFKC 归一化
+        assertEquals(List.of("abc123"), HistorySearchService.tokenize("ＡＢＣ１２３"));
+    }
+
+    @Test
+    void matchesLinearScanOnRandomFixture() {
+        Random random = new Random(26);
+        HistorySearchService service = new HistorySearchService();
+        List<AnalysisHistoryRecord> records = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            AnalysisHistoryRecord record = randomRecord(random, "h" + i, i);
+            records.add(record);
+            service.index(record);
+        }
+
+        String[] queries = {null, "购买", "立即购买", "buy", "sign in", "限时", "download now", "不存在"};
+        String[] types = {null, "button", "image", "TEXT"};
+        String[] colors = {null, "#FF6B6B", "#1e88e5", "rgb(250, 250, 250)", "#000"};
+        for (String query : queries) {
+            for (String type : types) {
+                for (String color : colors) {
+                    if (query == null && type == null && color == null) {
+                        continue;
+                    }
+                    HistorySearchService.SearchResult result = service.search(query, type, color, 1, 1000);
+                    Set<String> actual = result.getHits().stream()
+                            .map(AnalysisSearchHit::getHistoryId).collect(Collectors.toSet());
+                    Set<String> expected = linearScan(records, query, type, color);
+                    String label = query + " / " + type + " / " + color;
+                    assertEquals(expected, actual, label);
+                    assertEquals(expected.size(), result.getTotal(), label);
+                }
+            }
+        }
+    }
+
+    @Test
+    void reindexReplacesAndRemoveDeletes() {
+        HistorySearchService service = new HistorySearchService();
+        service.index(record("h1", 0, text("t1", "立即购买", "#333333")));
+        service.index(record("h2", 1, button("b1", "Sign in", "#1E88E5")));
+        assertEquals(Set.of("h1"), ids(service.search("购买", null, null, 1, 10)));
+
+        // 同一 ID 重新保存：旧词项与颜色不应残留
+        service.index(record("h1", 2, text("t1", "免费试用", "#4CAF50")));
+        assertEquals(Set.of(), ids(service.search("购买", null, null, 1, 10)));
+        assertEquals(Set.of(), ids(service.search(null, null, "#333333", 1, 10)));
+        assertEquals(Set.of("h1"), ids(service.search("试用", null, "#4CAF50", 1, 10)));
+        assertEquals(2, service.size());
+
+        service.remove("h2");
+        assertEquals(Set.of(), ids(service.search("sign", null, null, 1, 10)));
+        assertEquals(Set.of(), ids(service.search(null, "button", null, 1, 10)));
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    void ranksByTermFrequencyAndPhrase() {
+        HistorySearchService service = new HistorySearchService();
+        // h1 含完整短语，h2 的词项分散在两个组件中（没有整句），h3 整句出现两次
+        service.index(record("h1", 0, text("t1", "立即购买", "#333333")));
+        service.index(record("h2", 1, text("t1", "立即购", "#333333"), text("t2", "即购买", "#333333")));
+        service.index(record("h3", 2, text("t1", "立即购买", "#333333"), text("t2", "立即购买", "#333333")));
+        service.index(record("h4", 3, text("t1", "登录", "#333333")));
+
+        List<AnalysisSearchHit> hits = service.search("立即购买", null, null, 1, 10).getHits();
+        assertEquals(List.of("h3", "h1", "h2"), hits.stream().map(AnalysisSearchHit::getHistoryId).toList());
+        assertEquals("t1", hits.get(0).getMatches().get(0).getComponentId());
+    }
+
+    @Test
+    void ranksCloserColorsFirstAndPages() {
+        HistorySearchService service = new HistorySearchService();
+        service.index(record("exact", 0, button("b1", "A", "#FF6B6B")));
+        service.index(record("near", 1, button("b1", "B", "#FF7070")));
+        service.index(record("far", 2, button("b1", "C", "#1E88E5")));
+
+        HistorySearchService.SearchResult first = service.search(null, null, "#FF6B6B", 1, 1);
+        assertEquals(2, first.getTotal());
+        assertEquals(List.of("exact"), first.getHits().stream().map(AnalysisSearchHit::getHistoryId).toList());
+        assertEquals(List.of("near"), service.search(null, null, "#FF6B6B", 2, 1).getHits().stream()
+                .map(AnalysisSearchHit::getHistoryId).toList());
+        assertTrue(service.search(null, null, "#FF6B6B", 3, 1).getHits().isEmpty());
+        assertTrue(service.search(null, null, "#FF6B6B", Integer.MAX_VALUE, Integer.MAX_VALUE).getHits().isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        HistorySearchService service = new HistorySearchService();
+        assertThrows(IllegalArgumentException.class, () -> service.search("a", null, null, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> service.search("a", null, null, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.search(null, null, "not-a-color", 1, 10));
+    }
+
+    /**
+     * 逐条扫描：每个条件分别检查记录内的组件，条件之间为 AND
+     */
+    private static Set<String> linearScan(List<AnalysisHistoryRecord> records, String query, String type, String color) {
+        List<String> terms = query != null ? HistorySearchService.tokenize(query) : List.of();
+        int queryColor = color != null ? HistorySearchService.parseColor(color) : -1;
+        Set<String> result = new HashSet<>();
+        for (AnalysisHistoryRecord record : records) {
+            List<Component> components = record.getTemplate().getComponents();
+            Set<String> recordTerms = new HashSet<>();
+            boolean typeMatched = type == null;
+            boolean colorMatched = color == null;
+            for (Component component : components) {
+                String text = component instanceof TextComponent ? ((TextComponent) component).getContent()
+                        : component instanceof ButtonComponent ? ((ButtonComponent) component).getText() : null;
+                recordTerms.addAll(HistorySearchService.tokenize(text));
+                typeMatched |= component.getType().equalsIgnoreCase(type);
+                for (String componentColor : colorsOf(component)) {
+                    colorMatched |= distance(HistorySearchService.parseColor(componentColor), queryColor) <= 48.0;
+                }
+            }
+            if (typeMatched && colorMatched && recordTerms.containsAll(terms)) {
+                result.add(record.getHistoryId());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> colorsOf(Component component) {
+        List<String> colors = new ArrayList<>();
+        if (component instanceof TextComponent) {
+            colors.add((String) ((TextComponent) component).getStyle().get("color"));
+        } else if (component instanceof ButtonComponent) {
+            colors.add((String) ((ButtonComponent) component).getStyle().get("backgroundColor"));
+        } else if (component instanceof ImageComponent) {
+            colors.add((String) ((ImageComponent) component).getPlaceholder().get("dominantColor"));
+        }
+        return colors;
+    }
+
+    private static double distance(int c1, int c2) {
+        int dr = ((c1 >> 16) & 0xFF) - ((c2 >> 16) & 0xFF);
+        int dg = ((c1 >> 8) & 0xFF) - ((c2 >> 8) & 0xFF);
+        int db = (c1 & 0xFF) - (c2 & 0xFF);
+        return Math.sqrt(dr * dr + dg * dg + db * db);
+    }
+
+    private static AnalysisHistoryRecord randomRecord(Random random, String historyId, int index) {
+        int count = 1 + random.nextInt(5);
+        Component[] components = new Component[count];
+        for (int i = 0; i < count; i++) {
+            String id = "c" + i;
+            String word = WORDS[random.nextInt(WORDS.length)];
+            String color = COLORS[random.nextInt(COLORS.length)];
+            switch (TYPES[random.nextInt(TYPES.length)]) {
+                case "text":
+                    components[i] = text(id, word, color);
+                    break;
+                case "button":
+                    components[i] = button(id, word, color);
+                    break;
+                default:
+                    components[i] = image(id, color);
+                    break;
+            }
+        }
+        return record(historyId, index, components);
+    }
+
+    private static AnalysisHistoryRecord record(String historyId, int index, Component... components) {
+        PageTemplate template = new PageTemplate(750, 1334);
+        for (Component component : components) {
+            template.getComponents().add(component);
+        }
+        AnalysisHistoryRecord record = new AnalysisHistoryRecord();
+        record.setHistoryId(historyId);
+        record.setTimestamp(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(index));
+        record.setOriginalImagePath("analysis/" + historyId + "/original.png");
+        record.setTemplate(template);
+        record.setComponentCount(components.length);
+        return record;
+    }
+
+    private static TextComponent text(String id, String content, String color) {
+        TextComponent text = new TextComponent();
+        text.setId(id);
+        text.setContent(content);
+        text.setColor(color);
+        return text;
+    }
+
+    private static ButtonComponent button(String id, String label, String color) {
+        ButtonComponent button = new ButtonComponent();
+        button.setId(id);
+        button.setText(label);
+        button.setBackgroundColor(color);
+        return button;
+    }
+
+    private static ImageComponent image(String id, String color) {
+        ImageComponent image = new ImageComponent();
+        image.setId(id);
+        image.getPlaceholder().put("dominantColor", color);
+        return image;
+    }
+
+    private static Set<String> ids(HistorySearchService.SearchResult result) {
+        return result.getHits().stream().map(AnalysisSearchHit::getHistoryId).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.vibecoing2.service;
+
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.Component;
+import com.example.vibecoing2.domain.ImageComponent;
+import com.example.vibecoing2.domain.Position;
+import com.example.vibecoing2.domain.Size;
+import com.example.vibecoing2.domain.TextComponent;
+import com.example.vibecoing2.dto.TemplateDiff;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量分析的区域扩展、重复结果去除与 ID 沿用
+ */
+class IncrementalAnalysisServiceTest {
+
+    private static final int WIDTH = 750;
+    private static final int HEIGHT = 1334;
+
+    @Test
+    void expandsOverStraddlingComponentsTransitively() {
+        // 区域切到 A，并入 A 后又切到 B
+        List<int[]> boxes = List.of(box(120, 80, 200, 130), box(190, 120, 260, 300), box(400, 400, 450, 450));
+
+        List<int[]> regions = IncrementalAnalysisService.expandRegions(
+                List.of(new Rect(100, 100, 50, 50)), boxes, WIDTH, HEIGHT, 0, 8);
+
+        assertEquals(1, regions.size());
+        assertArrayEquals(box(100, 80, 260, 300), regions.get(0));
+    }
+
+    @Test
+    void marginIsClippedToPage() {
+        List<int[]> regions = IncrementalAnalysisService.expandRegions(
+                List.of(new Rect(0, 1320, 20, 14)), List.of(), WIDTH, HEIGHT, 16, 8);
+
+        assertArrayEquals(box(0, 1304, 36, 1334), regions.get(0));
+    }
+
+    @Test
+    void reexpandsAfterMergingTooManyRegions() {
+        // 两个区域各自不与组件相交，合并后的外接区域切到中间的长条组件
+        List<int[]> boxes = List.of(box(50, 5, 60, 200));
+
+        List<int[]> regions = IncrementalAnalysisService.expandRegions(
+                List.of(new Rect(0, 0, 10, 10), new Rect(100, 100, 10, 10)), boxes, WIDTH, HEIGHT, 0, 1);
+
+        assertEquals(1, regions.size());
+        assertArrayEquals(box(0, 0, 110, 200), regions.get(0));
+    }
+
+    @Test
+    void randomLayoutsReachFixpoint() {
+        Random random = new Random(47);
+        for (int trial = 0; trial < 200; trial++) {
+            List<int[]> boxes = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                int x = random.nextInt(WIDTH - 40);
+                int y = random.nextInt(HEIGHT - 40);
+                boxes.add(box(x, y, Math.min(WIDTH, x + 10 + random.nextInt(200)),
+                        Math.min(HEIGHT, y + 10 + random.nextInt(120))));
+            }
+            List<Rect> changed = new ArrayList<>();
+            for (int i = 0, n = 1 + random.nextInt(6); i < n; i++) {
+                changed.add(new Rect(random.nextInt(WIDTH - 32), random.nextInt(HEIGHT - 32), 32, 32));
+            }
+            int maxRegions = 1 + random.nextInt(4);
+
+            List<int[]> regions = IncrementalAnalysisService.expandRegions(changed, boxes, WIDTH, HEIGHT, 8, maxRegions);
+
+            assertNotNull(regions);
+            assertTrue(regions.size() <= maxRegions, "trial " + trial);
+            for (int[] b : boxes) {
+                for (int[] region : regions) {
+                    assertTrue(!intersects(b, region) || contains(region, b), "trial " + trial);
+                }
+            }
+            for (int i = 0; i < regions.size(); i++) {
+                for (int j = i + 1; j < regions.size(); j++) {
+                    assertTrue(!intersects(regions.get(i), regions.get(j)), "trial " + trial);
+                }
+            }
+            for (Rect rect : changed) {
+                int[] r = box(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height);
+                assertTrue(regions.stream().anyMatch(region -> contains(region, r)), "trial " + trial);
+            }
+        }
+    }
+
+    @Test
+    void removesDuplicatesOfKeptComponentsRegardlessOfType() {
+        List<Component> kept = List.of(button("b1", 0, 50, 100, 40));
+        List<Component> analyzed = new ArrayList<>(List.of(
+                image("new1", 2, 50, 100, 40),
+                text("new2", 0, 200, 100, 20)));
+
+        IncrementalAnalysisService.removeDuplicates(analyzed, kept);
+
+        assertEquals(List.of("new2"), analyzed.stream().map(Component::getId).toList());
+    }
+
+    @Test
+    void reusesIdsOfOverlappingSameTypeComponents() {
+        List<Component> replaced = List.of(
+                text("t1", 0, 0, 100, 20),
+                button("b1", 0, 50, 100, 40),
+                text("t2", 0, 400, 100, 20));
+        List<Component> analyzed = List.of(
+                text("new1", 2, 0, 100, 20),
+                image("new2", 0, 50, 100, 40),
+                text("new3", 300, 400, 100, 20));
+        TemplateDiff diff = new TemplateDiff();
+
+        IncrementalAnalysisService.matchIds(analyzed, replaced, diff);
+
+        assertEquals("t1", analyzed.get(0).getId());
+        assertEquals(List.of("t1"), diff.getModified());
+        assertEquals(List.of("new2", "new3"), diff.getAdded());
+        assertEquals(List.of("b1", "t2"), diff.getRemoved());
+    }
+
+    private static int[] box(int x1, int y1, int x2, int y2) {
+        return new int[]{x1, y1, x2, y2};
+    }
+
+    private static boolean intersects(int[] a, int[] b) {
+        return a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+    }
+
+    private static boolean contains(int[] outer, int[] inner) {
+        return outer[0] <= inner[0] && outer[1] <= inner[1] && inner[2] <= outer[2] && inner[3] <= outer[3];
+    }
+
+    private static <T extends Component> T place(T component, String id, int x, int y, int width, int height) {
+        component.setId(id);
+        component.setPosition(new Position(x, y));
+        component.setSize(new Size(width, height));
+        return component;
+    }
+
+    private static TextComponent text(String id, int x, int y, int width, int height) {
+        return place(new TextComponent(), id, x, y, width, height);
+    }
+
+    private static ButtonComponent button(String id, int x, int y, int width, int height) {
+        return place(new ButtonComponent(), id, x, y, width, height);
+    }
+
+    private static ImageComponent image(String id, int x, int y, int width, int height) {
+        return place(new ImageComponent(), id, x, y, width, height);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.vibecoing2.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BK 树半径查询与逐条比较的对照，以及插入、惰性删除和重建
+ */
+class BkTreeTest {
+
+    @Test
+    void matchesBruteForceOnClusteredHashes() {
+        Random random = new Random(48);
+        BkTree tree = new BkTree();
+        Map<String, Long> hashes = new HashMap<>();
+        for (int i = 0; i < 600; i++) {
+            // 一半是随机哈希，一半是在已有哈希上翻转少量位的近似重复
+            long hash = i < 300 || hashes.isEmpty()
+                    ? random.nextLong()
+                    : flip(hashes.get("h" + random.nextInt(300)), random.nextInt(9), random);
+            hashes.put("h" + i, hash);
+            tree.add(hash, "h" + i);
+        }
+        assertEquals(600, tree.size());
+
+        assertMatchesBruteForce(tree, hashes, random);
+    }
+
+    @Test
+    void sameHashSharesNodeAndDuplicatesAreIgnored() {
+        BkTree tree = new BkTree();
+        tree.add(0xF0F0L, "a");
+        tree.add(0xF0F0L, "b");
+        tree.add(0xF0F0L, "a");
+        tree.add(0xF0F1L, "c");
+
+        assertEquals(3, tree.size());
+        assertEquals(Set.of("a", "b"), query(tree, 0xF0F0L, 0).keySet());
+        assertEquals(Map.of("a", 0, "b", 0, "c", 1), query(tree, 0xF0F0L, 1));
+    }
+
+    @Test
+    void removeIsLazyAndReaddRevivesNode() {
+        BkTree tree = new BkTree();
+        tree.add(0L, "root");
+        tree.add(0xFFL, "child");
+        // 与根的距离同为 8，挂在 child 之下
+        tree.add(0xFF00L, "grandchild");
+
+        // 删除中间节点后，其子树仍可通过该节点路由到
+        assertTrue(tree.remove(0xFFL, "child"));
+        assertFalse(tree.remove(0xFFL, "child"));
+        assertFalse(tree.remove(0x1234L, "root"));
+        assertEquals(2, tree.size());
+        assertEquals(Map.of("root", 0, "grandchild", 8), query(tree, 0L, 8));
+
+        tree.add(0xFFL, "child");
+        assertEquals(3, tree.size());
+        assertEquals(Map.of("child", 0, "root", 8), query(tree, 0xFFL, 8));
+        assertEquals(Map.of("child", 0, "root", 8, "grandchild", 16), query(tree, 0xFFL, 16));
+    }
+
+    @Test
+    void rebuildKeepsRemainingEntries() {
+        Random random = new Random(480);
+        BkTree tree = new BkTree();
+        Map<String, Long> hashes = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            long hash = random.nextLong() & 0xFFFFFL;
+            hashes.put("h" + i, hash);
+            tree.add(hash, "h" + i);
+        }
+
+        // 删除超过一半的条目，期间多次触发重建
+        List<String> ids = new ArrayList<>(hashes.keySet());
+        ids.sort(null);
+        for (int i = 0; i < 300; i++) {
+            String id = ids.get(i);
+            assertTrue(tree.remove(hashes.remove(id), id));
+        }
+        assertEquals(100, tree.size());
+        assertMatchesBruteForce(tree, hashes, random);
+
+        // 重建后继续插入与删除
+        for (int i = 400; i < 500; i++) {
+            long hash = random.nextLong() & 0xFFFFFL;
+            hashes.put("h" + i, hash);
+            tree.add(hash, "h" + i);
+        }
+        assertEquals(200, tree.size());
+        assertMatchesBruteForce(tree, hashes, random);
+
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertTrue(query(tree, 0L, 64).isEmpty());
+    }
+
+    private static void assertMatchesBruteForce(BkTree tree, Map<String, Long> hashes, Random random) {
+        List<Long> probes = new ArrayList<>(new HashSet<>(hashes.values()));
+        probes.sort(null);
+        for (int i = 0; i < 40; i++) {
+            probes.add(i % 2 == 0 ? random.nextLong() : flip(probes.get(random.nextInt(probes.size())), 3, random));
+        }
+        for (long probe : probes.subList(Math.max(0, probes.size() - 80), probes.size())) {
+            for (int radius : new int[]{0, 1, 3, 6, 10, 20}) {
+                Map<String, Integer> expected = new HashMap<>();
+                hashes.forEach((id, hash) -> {
+                    int distance = PerceptualHash.distance(hash, probe);
+                    if (distance <= radius) {
+                        expected.put(id, distance);
+                    }
+                });
+                assertEquals(expected, query(tree, probe, radius), PerceptualHash.toHex(probe) + " r=" + radius);
+            }
+        }
+    }
+
+    private static Map<String, Integer> query(BkTree tree, long hash, int radius) {
+        Map<String, Integer> result = new HashMap<>();
+        tree.query(hash, radius, (id, nodeHash, distance) -> {
+            assertEquals(PerceptualHash.distance(nodeHash, hash), distance);
+            assertFalse(result.containsKey(id), id);
+            result.put(id, distance);
+        });
+        return result;
+    }
+
+    /**
+     * 随机翻转 bits 个不同的位
+     */
+    private static long flip(long hash, int bits, Random random) {
+        long mask = 0;
+        while (Long.bitCount(mask) < bits) {
+            mask |= 1L << random.nextInt(64);
+        }
+        return hash ^ mask;
+    }
+}
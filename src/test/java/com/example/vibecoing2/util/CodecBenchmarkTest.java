@@ -0,0 +1,180 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.config.AppConfig;
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片编码格式对比
+ * 对固定生成的样本设计稿（UI 页面、照片、图文混合）分别按整页背景和组件裁剪图两种用途，
+ * 统计各编码方式的总字节数与编码耗时，并与原有方式（背景 PNG、裁剪图 JPEG q75）对比。
+ * 默认跳过，运行方式：mvn test -Dtest=CodecBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CodecBenchmarkTest {
+
+    private static final String ROLE_BACKGROUND = "background";
+    private static final String ROLE_CROP = "crop";
+    private static final String ADAPTIVE = "adaptive";
+    private static final String JPEG_75 = "jpeg-75";
+
+    // 裁剪图样本：在设计稿上按网格截取的区块
+    private static final int CROP_TILE = 320;
+    private static final int MAX_CROPS_PER_FILE = 16;
+    private static final int CROP_MAX_SIZE = 600;
+
+    private static final int PAGE_WIDTH = 750;
+    private static final int PAGE_HEIGHT = 1334;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @Test
+    void compareCodecs() {
+        ImageProcessor imageProcessor = new ImageProcessor();
+        ImageCodecSelector codecSelector = new ImageCodecSelector(imageProcessor);
+        codecSelector.init();
+        AppConfig.ImageConfig config = new AppConfig().getImage();
+
+        // 用途 -> 编码方式 -> [样本数, 字节数, 耗时纳秒]
+        Map<String, Map<String, long[]>> totals = new LinkedHashMap<>();
+        totals.put(ROLE_BACKGROUND, new LinkedHashMap<>());
+        totals.put(ROLE_CROP, new LinkedHashMap<>());
+
+        try (MatScope scope = new MatScope()) {
+            for (Mat image : List.of(scope.track(uiPage()), scope.track(photo()), scope.track(mixedPage()))) {
+                measure(codecSelector, image, totals.get(ROLE_BACKGROUND), config.getBackgroundByteBudget(), Integer.MAX_VALUE);
+
+                int crops = 0;
+                for (int y = 0; y + CROP_TILE <= image.rows() && crops < MAX_CROPS_PER_FILE; y += CROP_TILE * 2) {
+                    for (int x = 0; x + CROP_TILE <= image.cols() && crops < MAX_CROPS_PER_FILE; x += CROP_TILE) {
+                        Mat tile = scope.track(imageProcessor.cropImageRegion(image, x, y, CROP_TILE, CROP_TILE));
+                        measure(codecSelector, tile, totals.get(ROLE_CROP), config.getCropByteBudget(), CROP_MAX_SIZE);
+                        crops++;
+                    }
+                }
+            }
+        }
+
+        System.out.printf("WebP=%s%n", codecSelector.isWebpSupported());
+        System.out.printf("%-12s %-16s %8s %12s %10s %10s%n", "用途", "编码", "样本", "字节", "耗时(ms)", "节省(%)");
+        for (Map.Entry<String, Map<String, long[]>> role : totals.entrySet()) {
+            String baseline = ROLE_BACKGROUND.equals(role.getKey()) ? ImageCodecSelector.CODEC_PNG : JPEG_75;
+            long[] baselineTotals = role.getValue().get(baseline);
+            for (Map.Entry<String, long[]> codec : role.getValue().entrySet()) {
+                long[] values = codec.getValue();
+                double saved = baselineTotals != null && baselineTotals[1] > 0
+                        ? (1 - (double) values[1] / baselineTotals[1]) * 100
+                        : 0;
+                System.out.printf("%-12s %-16s %8d %12d %10d %10.1f%n", role.getKey(), codec.getKey(),
+                        values[0], values[1], TimeUnit.NANOSECONDS.toMillis(values[2]), saved);
+            }
+        }
+    }
+
+    private static void measure(ImageCodecSelector codecSelector, Mat image, Map<String, long[]> totals,
+                                long byteBudget, int maxSize) {
+        record(totals, ImageCodecSelector.CODEC_PNG, codecSelector.encodeWith(image, ImageCodecSelector.CODEC_PNG, 100));
+        record(totals, JPEG_75, codecSelector.encodeWith(image, ImageCodecSelector.CODEC_JPEG, 75));
+        record(totals, "jpeg-85", codecSelector.encodeWith(image, ImageCodecSelector.CODEC_JPEG, 85));
+        if (codecSelector.isWebpSupported()) {
+            record(totals, "webp-80", codecSelector.encodeWith(image, ImageCodecSelector.CODEC_WEBP, 80));
+            record(totals, ImageCodecSelector.CODEC_WEBP_LOSSLESS,
+                    codecSelector.encodeWith(image, ImageCodecSelector.CODEC_WEBP_LOSSLESS, 100));
+        }
+
+        // 自适应选择的耗时包含内容统计与超预算时的重新编码
+        long start = System.nanoTime();
+        ImageCodecSelector.EncodedImage adaptive = codecSelector.encode(image, maxSize, byteBudget);
+        if (adaptive != null) {
+            adaptive.setEncodeNanos(System.nanoTime() - start);
+        }
+        record(totals, ADAPTIVE, adaptive);
+    }
+
+    private static void record(Map<String, long[]> totals, String codec, ImageCodecSelector.EncodedImage encoded) {
+        if (encoded == null) {
+            return;
+        }
+        long[] values = totals.computeIfAbsent(codec, key -> new long[3]);
+        values[0]++;
+        values[1] += encoded.getData().length;
+        values[2] += encoded.getEncodeNanos();
+    }
+
+    /**
+     * UI 页面：纯色背景、卡片、按钮与文字
+     */
+    private static Mat uiPage() {
+        Mat page = new Mat(PAGE_HEIGHT, PAGE_WIDTH, CvType.CV_8UC3, new Scalar(245, 245, 245));
+        for (int i = 0; i < 6; i++) {
+            int top = 120 + i * 200;
+            Imgproc.rectangle(page, new Rect(30, top, PAGE_WIDTH - 60, 170), new Scalar(255, 255, 255), -1);
+            Imgproc.rectangle(page, new Rect(50, top + 20, 130, 130), new Scalar(200 - i * 20, 140, 60 + i * 25), -1);
+            Imgproc.putText(page, "Product title " + i, new Point(200, top + 55),
+                    Imgproc.FONT_HERSHEY_SIMPLEX, 0.9, new Scalar(33, 33, 33), 2);
+            Imgproc.putText(page, "Short description line", new Point(200, top + 95),
+                    Imgproc.FONT_HERSHEY_SIMPLEX, 0.6, new Scalar(117, 117, 117), 1);
+            Imgproc.rectangle(page, new Rect(PAGE_WIDTH - 200, top + 110, 140, 44), new Scalar(229, 136, 30), -1);
+            Imgproc.putText(page, "BUY", new Point(PAGE_WIDTH - 155, top + 140),
+                    Imgproc.FONT_HERSHEY_SIMPLEX, 0.8, new Scalar(255, 255, 255), 2);
+        }
+        return page;
+    }
+
+    /**
+     * 照片：平滑渐变叠加固定种子的噪声后模糊
+     */
+    private static Mat photo() {
+        Mat photo = new Mat(PAGE_HEIGHT, PAGE_WIDTH, CvType.CV_8UC3);
+        byte[] pixels = new byte[PAGE_HEIGHT * PAGE_WIDTH * 3];
+        Random random = new Random(43);
+        for (int y = 0; y < PAGE_HEIGHT; y++) {
+            for (int x = 0; x < PAGE_WIDTH; x++) {
+                int offset = (y * PAGE_WIDTH + x) * 3;
+                double wave = Math.sin(x / 40.0) * Math.cos(y / 55.0);
+                pixels[offset] = clamp(90 + 60 * wave + random.nextGaussian() * 18);
+                pixels[offset + 1] = clamp(130 + 50 * Math.sin((x + y) / 70.0) + random.nextGaussian() * 18);
+                pixels[offset + 2] = clamp(170 - 70 * wave + random.nextGaussian() * 18);
+            }
+        }
+        photo.put(0, 0, pixels);
+        Imgproc.GaussianBlur(photo, photo, new Size(3, 3), 0);
+        return photo;
+    }
+
+    /**
+     * 图文混合：顶部三分之一为照片横幅，其余为 UI 页面
+     */
+    private static Mat mixedPage() {
+        Mat page = uiPage();
+        Mat banner = photo();
+        try (MatScope scope = new MatScope()) {
+            scope.track(banner);
+            Rect top = new Rect(0, 0, PAGE_WIDTH, PAGE_HEIGHT / 3);
+            scope.track(banner.submat(top)).copyTo(scope.track(page.submat(top)));
+        }
+        return page;
+    }
+
+    private static byte clamp(double value) {
+        return (byte) Math.max(0, Math.min(255, (int) Math.round(value)));
+    }
+}
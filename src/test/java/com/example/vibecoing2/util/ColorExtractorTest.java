@@ -0,0 +1,133 @@
+package com.example.vibecoing2.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 直方图主色与 k-means 主色的精度对照（固定图片、固定随机种子）
+ */
+class ColorExtractorTest {
+
+    // 直方图结果与 k-means 结果允许的 RGB 距离
+    private static final double MAX_DISTANCE = 24.0;
+
+    private final ColorExtractor colorExtractor = new ColorExtractor();
+    private final List<Mat> mats = new ArrayList<>();
+
+    @BeforeAll
+    static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @AfterEach
+    void release() {
+        mats.forEach(Mat::release);
+        mats.clear();
+    }
+
+    @Test
+    void solidColor() {
+        Mat image = track(new Mat(120, 200, CvType.CV_8UC3, bgr("#FF6B6B")));
+
+        assertEquals("#FF6B6B", colorExtractor.extractDominantColor(image));
+        assertMatchesKMeans(image);
+    }
+
+    @Test
+    void buttonWithLabel() {
+        // 按钮底色占大部分面积，中间一行白色文字
+        Mat image = track(new Mat(48, 160, CvType.CV_8UC3, bgr("#1E88E5")));
+        Imgproc.putText(image, "BUY NOW", new Point(30, 32), Imgproc.FONT_HERSHEY_SIMPLEX, 0.8,
+                bgr("#FFFFFF"), 2);
+
+        assertMatchesKMeans(image);
+        assertTrue(colorExtractor.colorDistance("#1E88E5", colorExtractor.extractDominantColor(image)) <= 4);
+    }
+
+    @Test
+    void twoColorSplit() {
+        // 70% 浅灰背景 + 30% 红色区块
+        Mat image = track(new Mat(100, 100, CvType.CV_8UC3, bgr("#F5F5F5")));
+        image.submat(new Rect(70, 0, 30, 100)).setTo(bgr("#E53935"));
+
+        assertEquals("#F5F5F5", colorExtractor.extractDominantColor(image));
+        assertMatchesKMeans(image);
+    }
+
+    @Test
+    void noisyPhotoLikeRegion() {
+        // 底色加高斯噪声，模拟照片或压缩后的纯色区域
+        Mat image = track(new Mat(300, 400, CvType.CV_8UC3));
+        Random random = new Random(42);
+        byte[] pixels = new byte[image.rows() * image.cols() * 3];
+        int[] base = {0x4C, 0xAF, 0x50};
+        for (int i = 0; i < pixels.length; i++) {
+            int value = (int) Math.round(base[i % 3] + random.nextGaussian() * 6);
+            pixels[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+        image.put(0, 0, pixels);
+
+        assertMatchesKMeans(image);
+    }
+
+    @Test
+    void verticalGradient() {
+        // 渐变色跨越相邻的量化桶
+        Mat image = track(new Mat(256, 64, CvType.CV_8UC3));
+        for (int y = 0; y < image.rows(); y++) {
+            int value = 96 + y / 16;
+            image.row(y).setTo(new Scalar(value, value, 255 - value));
+        }
+
+        assertMatchesKMeans(image);
+    }
+
+    @Test
+    void submatRegion() {
+        // submat 不连续，结果应与拷贝后的连续矩阵一致
+        Mat image = track(new Mat(200, 300, CvType.CV_8UC3, bgr("#FFFFFF")));
+        Mat region = track(image.submat(new Rect(50, 40, 120, 80)));
+        region.setTo(bgr("#8E24AA"));
+
+        assertEquals(colorExtractor.extractDominantColor(track(region.clone())),
+                colorExtractor.extractDominantColor(region));
+        assertMatchesKMeans(region);
+    }
+
+    private void assertMatchesKMeans(Mat image) {
+        Core.setRNGSeed(42);
+        String histogramColor = colorExtractor.extractDominantColor(image);
+        String kmeansColor = colorExtractor.extractDominantColorKMeans(image);
+        double distance = colorExtractor.colorDistance(histogramColor, kmeansColor);
+        assertTrue(distance <= MAX_DISTANCE,
+                "histogram=" + histogramColor + ", kmeans=" + kmeansColor + ", 距离=" + distance);
+    }
+
+    private Mat track(Mat mat) {
+        mats.add(mat);
+        return mat;
+    }
+
+    private static Scalar bgr(String hexColor) {
+        int r = Integer.parseInt(hexColor.substring(1, 3), 16);
+        int g = Integer.parseInt(hexColor.substring(3, 5), 16);
+        int b = Integer.parseInt(hexColor.substring(5, 7), 16);
+        return new Scalar(b, g, r);
+    }
+}
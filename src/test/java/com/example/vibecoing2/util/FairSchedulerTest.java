@@ -0,0 +1,188 @@
+package com.example.vibecoing2.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 优先级、批量名额上限、按权重公平排队，以及等待外部资源时交还名额
+ */
+class FairSchedulerTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void joinThreads() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    void interactiveTasksRunBeforeQueuedBatchTasks() throws InterruptedException {
+        FairScheduler scheduler = scheduler(1, 1, Map.of());
+        CountDownLatch blocker = block(scheduler, FairScheduler.Priority.INTERACTIVE, "x");
+
+        submit(scheduler, FairScheduler.Priority.BATCH, "a", "batch");
+        awaitQueued(scheduler, FairScheduler.Priority.BATCH, 1);
+        submit(scheduler, FairScheduler.Priority.INTERACTIVE, "b", "interactive");
+        awaitQueued(scheduler, FairScheduler.Priority.INTERACTIVE, 1);
+
+        blocker.countDown();
+        joinThreads();
+        assertEquals(List.of("interactive", "batch"), order);
+    }
+
+    @Test
+    void batchTasksLeaveReservedSlotsToInteractive() throws InterruptedException {
+        FairScheduler scheduler = scheduler(3, 1, Map.of());
+        CountDownLatch blocker = block(scheduler, FairScheduler.Priority.BATCH, "a");
+        submit(scheduler, FairScheduler.Priority.BATCH, "a", "batch-2");
+        submit(scheduler, FairScheduler.Priority.BATCH, "a", "batch-3");
+        awaitQueued(scheduler, FairScheduler.Priority.BATCH, 2);
+
+        // 批量任务只占用 1 个名额，其余名额空闲，交互请求立即在当前线程执行
+        assertEquals(1, scheduler.getStats().getRunning());
+        assertEquals("done", scheduler.execute(FairScheduler.Priority.INTERACTIVE, "b", () -> "done"));
+        assertEquals(2, lane(scheduler, FairScheduler.Priority.BATCH).getQueued());
+
+        blocker.countDown();
+        joinThreads();
+        assertEquals(List.of("batch-2", "batch-3"), order);
+        assertEquals(3, lane(scheduler, FairScheduler.Priority.BATCH).getCompleted());
+    }
+
+    @Test
+    void clientsShareSlotsByWeight() throws InterruptedException {
+        FairScheduler scheduler = scheduler(1, 1, Map.of("heavy", 3.0));
+        CountDownLatch blocker = block(scheduler, FairScheduler.Priority.INTERACTIVE, "x");
+
+        // 权重 3 的客户端先提交 6 个任务，权重 1 的客户端随后提交 6 个
+        for (int i = 0; i < 6; i++) {
+            submit(scheduler, FairScheduler.Priority.INTERACTIVE, "heavy", "heavy");
+            awaitQueued(scheduler, FairScheduler.Priority.INTERACTIVE, i + 1);
+        }
+        for (int i = 0; i < 6; i++) {
+            submit(scheduler, FairScheduler.Priority.INTERACTIVE, "light", "light");
+            awaitQueued(scheduler, FairScheduler.Priority.INTERACTIVE, 7 + i);
+        }
+        // 统计只给出客户端数：执行中的 x 与排队中的 heavy、light
+        assertEquals(3, lane(scheduler, FairScheduler.Priority.INTERACTIVE).getActiveClients());
+
+        blocker.countDown();
+        joinThreads();
+        // 前 8 个名额按 3:1 分配，而不是按提交顺序先执行完 heavy
+        assertEquals(6, Collections.frequency(order.subList(0, 8), "heavy"));
+        assertEquals(2, Collections.frequency(order.subList(0, 8), "light"));
+        assertEquals(12, order.size());
+    }
+
+    @Test
+    void releaseWhileLetsOtherTasksRun() throws InterruptedException {
+        FairScheduler scheduler = scheduler(1, 1, Map.of());
+        CountDownLatch otherDone = new CountDownLatch(1);
+
+        String result = scheduler.execute(FairScheduler.Priority.BATCH, "a", () -> {
+            assertEquals(FairScheduler.Priority.BATCH, FairScheduler.currentPriority(FairScheduler.Priority.INTERACTIVE));
+            assertEquals("a", FairScheduler.currentClientId("internal"));
+            // 唯一的名额交还后，另一个任务可以在等待期间执行完
+            return FairScheduler.releaseWhile(() -> {
+                Thread thread = new Thread(() -> {
+                    scheduler.execute(FairScheduler.Priority.INTERACTIVE, "b", () -> null);
+                    otherDone.countDown();
+                });
+                thread.start();
+                try {
+                    return otherDone.await(TIMEOUT_MS, TimeUnit.MILLISECONDS) ? "released" : "blocked";
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        });
+
+        assertEquals("released", result);
+        assertEquals(FairScheduler.Priority.INTERACTIVE, FairScheduler.currentPriority(FairScheduler.Priority.INTERACTIVE));
+        assertEquals(0, scheduler.getStats().getRunning());
+        // 暂时交还不计为完成
+        assertEquals(1, lane(scheduler, FairScheduler.Priority.BATCH).getCompleted());
+        assertEquals(1, lane(scheduler, FairScheduler.Priority.BATCH).getSubmitted());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler("test", 1, 1, 1, 0, 0, clientId -> 1.0);
+        CountDownLatch blocker = block(scheduler, FairScheduler.Priority.INTERACTIVE, "x");
+        submit(scheduler, FairScheduler.Priority.INTERACTIVE, "a", "queued");
+        awaitQueued(scheduler, FairScheduler.Priority.INTERACTIVE, 1);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> scheduler.execute(FairScheduler.Priority.INTERACTIVE, "b", () -> null));
+        assertEquals(1, lane(scheduler, FairScheduler.Priority.INTERACTIVE).getRejected());
+
+        blocker.countDown();
+        joinThreads();
+        assertEquals(List.of("queued"), order);
+    }
+
+    private static FairScheduler scheduler(int maxConcurrency, int batchMaxConcurrency, Map<String, Double> weights) {
+        return new FairScheduler("test", maxConcurrency, batchMaxConcurrency, 64, 0, 0,
+                clientId -> weights.getOrDefault(clientId, 1.0));
+    }
+
+    /**
+     * 占用一个名额直到返回的 latch 被释放
+     */
+    private CountDownLatch block(FairScheduler scheduler, FairScheduler.Priority priority, String clientId)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        start(() -> scheduler.execute(priority, clientId, () -> {
+            started.countDown();
+            try {
+                blocker.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        return blocker;
+    }
+
+    private void submit(FairScheduler scheduler, FairScheduler.Priority priority, String clientId, String label) {
+        start(() -> scheduler.execute(priority, clientId, () -> order.add(label)));
+    }
+
+    private void start(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private static void awaitQueued(FairScheduler scheduler, FairScheduler.Priority priority, int queued)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (lane(scheduler, priority).getQueued() < queued) {
+            assertTrue(System.currentTimeMillis() < deadline, "排队数未达到 " + queued);
+            Thread.sleep(1);
+        }
+    }
+
+    private static FairScheduler.LaneStats lane(FairScheduler scheduler, FairScheduler.Priority priority) {
+        return scheduler.getStats().getLanes().get(priority.ordinal());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.InlineImage;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.domain.Position;
+import com.example.vibecoing2.domain.Size;
+import com.example.vibecoing2.dto.ApiResponse;
+import com.example.vibecoing2.dto.TemplateResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * fields 参数的解析，以及按投影过滤响应中 data.template 下的字段
+ */
+class FieldProjectionTest {
+
+    private final ResponseBodyWriter responseBodyWriter = new ResponseBodyWriter();
+
+    @Test
+    void blankMeansAll() {
+        assertSame(FieldProjection.ALL, FieldProjection.parse(null));
+        assertSame(FieldProjection.ALL, FieldProjection.parse("  "));
+        assertTrue(FieldProjection.ALL.isAll());
+        assertTrue(FieldProjection.ALL.includes("page.backgroundImage"));
+    }
+
+    @Test
+    void includesListedPathsTheirAncestorsAndSubtrees() {
+        FieldProjection projection = FieldProjection.parse("components.id, page.width");
+
+        assertFalse(projection.isAll());
+        assertTrue(projection.includes("components"));
+        assertTrue(projection.includes("components.id"));
+        assertTrue(projection.includes("page"));
+        assertTrue(projection.includes("page.width"));
+        assertFalse(projection.includes("page.backgroundImage"));
+        assertFalse(projection.includes("components.position"));
+        assertFalse(projection.includes("layout"));
+
+        // 选中字段即选中其全部子字段
+        FieldProjection subtree = FieldProjection.parse("components");
+        assertTrue(subtree.includes("components.position.x"));
+        assertTrue(subtree.includes("components.placeholder.url"));
+    }
+
+    @Test
+    void parenthesesExpandUnderTheirParent() {
+        FieldProjection projection = FieldProjection.parse("components(id,position(x),cssStyles.color),version");
+
+        assertTrue(projection.includes("components.id"));
+        assertTrue(projection.includes("components.position.x"));
+        assertFalse(projection.includes("components.position.y"));
+        assertTrue(projection.includes("components.cssStyles.color"));
+        assertFalse(projection.includes("components.cssStyles.fontSize"));
+        assertTrue(projection.includes("version"));
+        assertFalse(projection.includes("page"));
+    }
+
+    @Test
+    void exclusionsKeepEverythingElse() {
+        FieldProjection projection = FieldProjection.parse("-page.backgroundImage,-components(placeholder.url,backgroundImage)");
+
+        assertTrue(projection.includes("page"));
+        assertTrue(projection.includes("page.width"));
+        assertFalse(projection.includes("page.backgroundImage"));
+        assertFalse(projection.includes("components.placeholder.url"));
+        assertTrue(projection.includes("components.placeholder.alt"));
+        assertFalse(projection.includes("components.backgroundImage"));
+        assertTrue(projection.includes("layout.root"));
+
+        // 排除项优先于包含项
+        FieldProjection mixed = FieldProjection.parse("components,-components.position");
+        assertTrue(mixed.includes("components.id"));
+        assertFalse(mixed.includes("components.position"));
+        assertFalse(mixed.includes("components.position.x"));
+        assertFalse(mixed.includes("page"));
+    }
+
+    @Test
+    void exclusionInsideParenthesesAppliesToThatChild() {
+        FieldProjection projection = FieldProjection.parse("components(id,-position)");
+
+        assertTrue(projection.includes("components.id"));
+        assertFalse(projection.includes("components.position"));
+        assertFalse(projection.includes("components.size"));
+    }
+
+    @Test
+    void rejectsMalformedFields() {
+        assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse("components(id"));
+        assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse("components)id"));
+        assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse("(id)"));
+        assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse("-(id)"));
+        assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse("components..id"));
+    }
+
+    @Test
+    void filtersTemplateFieldsOnly() throws IOException {
+        JsonNode body = write("components(id,position),page.width");
+
+        // 模板外层字段不受投影影响
+        assertEquals(200, body.path("code").asInt());
+        assertTrue(body.path("data").has("success"));
+
+        JsonNode template = body.path("data").path("template");
+        assertEquals(750, template.path("page").path("width").asInt());
+        assertFalse(template.path("page").has("backgroundImage"));
+        assertFalse(template.has("layout"));
+        assertFalse(template.has("version"));
+
+        JsonNode button = template.path("components").get(0);
+        assertEquals("button_1", button.path("id").asText());
+        assertEquals(24, button.path("position").path("x").asInt());
+        assertFalse(button.has("size"));
+        assertFalse(button.has("text"));
+        assertFalse(button.has("backgroundImage"));
+    }
+
+    @Test
+    void excludesImagesFromTemplate() throws IOException {
+        JsonNode template = write("-page.backgroundImage,-components.backgroundImage").path("data").path("template");
+
+        assertFalse(template.path("page").has("backgroundImage"));
+        assertEquals(1334, template.path("page").path("height").asInt());
+        JsonNode button = template.path("components").get(0);
+        assertFalse(button.has("backgroundImage"));
+        assertEquals("BUY", button.path("text").asText());
+        assertEquals(44, button.path("size").path("height").asInt());
+    }
+
+    private JsonNode write(String fields) throws IOException {
+        PageTemplate template = new PageTemplate(750, 1334);
+        template.getPage().setBackgroundImage(InlineImage.ofUrl("/api/assets/page"));
+        ButtonComponent button = new ButtonComponent();
+        button.setId("button_1");
+        button.setText("BUY");
+        button.setPosition(new Position(24, 600));
+        button.setSize(new Size(140, 44));
+        button.setBackgroundImage(InlineImage.ofUrl("/api/assets/button"));
+        template.getComponents().add(button);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        responseBodyWriter.writeJsonLine(out, ApiResponse.success(TemplateResponse.success(template, null)),
+                FieldProjection.parse(fields));
+        return responseBodyWriter.mapper(ResponseBodyWriter.FORMAT_JSON).readTree(out.toByteArray());
+    }
+}
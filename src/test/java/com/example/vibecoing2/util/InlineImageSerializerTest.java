@@ -0,0 +1,117 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.InlineImage;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link InlineImage} 在 JSON（data URL）、CBOR / Smile（原始字节串）响应中的往返
+ */
+class InlineImageSerializerTest {
+
+    private static final String ASSET_URL = "/api/assets/3f2a9c";
+
+    private final ResponseBodyWriter responseBodyWriter = new ResponseBodyWriter();
+
+    @Test
+    void jsonRoundTrip() throws IOException {
+        assertRoundTrip(ResponseBodyWriter.FORMAT_JSON);
+    }
+
+    @Test
+    void cborRoundTrip() throws IOException {
+        assertRoundTrip(ResponseBodyWriter.FORMAT_CBOR);
+    }
+
+    @Test
+    void smileRoundTrip() throws IOException {
+        assertRoundTrip(ResponseBodyWriter.FORMAT_SMILE);
+    }
+
+    @Test
+    void jsonWritesDataUrl() throws IOException {
+        byte[] png = encode(noise(8, 8, 1), "png");
+        String json = responseBodyWriter.mapper(ResponseBodyWriter.FORMAT_JSON)
+                .writeValueAsString(InlineImage.of(png, "image/png"));
+
+        assertEquals("\"" + InlineImage.of(png, "image/png").toDataUrl() + "\"", json);
+    }
+
+    @Test
+    void unknownBinaryFallsBackToOctetStream() throws IOException {
+        ObjectMapper mapper = responseBodyWriter.mapper(ResponseBodyWriter.FORMAT_CBOR);
+        byte[] data = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13};
+
+        InlineImage decoded = mapper.readValue(mapper.writeValueAsBytes(InlineImage.of(data, "image/png")),
+                InlineImage.class);
+
+        assertArrayEquals(data, decoded.getData());
+        assertEquals("application/octet-stream", decoded.getMimeType());
+    }
+
+    private void assertRoundTrip(String format) throws IOException {
+        // 超过一个编码块（3 KB）的 PNG，覆盖 JSON 分块写出
+        byte[] png = encode(noise(64, 64, 7), "png");
+        byte[] jpeg = encode(noise(32, 32, 11), "jpg");
+        assertTrue(png.length > 3 * 1024);
+
+        PageTemplate template = new PageTemplate(750, 1334);
+        template.getPage().setBackgroundImage(InlineImage.of(jpeg, "image/jpeg"));
+        template.getComponents().add(button("button_1", InlineImage.of(png, "image/png")));
+        template.getComponents().add(button("button_2", InlineImage.ofUrl(ASSET_URL)));
+
+        ObjectMapper mapper = responseBodyWriter.mapper(format);
+        PageTemplate decoded = mapper.readValue(mapper.writeValueAsBytes(template), PageTemplate.class);
+
+        InlineImage background = decoded.getPage().getBackgroundImage();
+        assertArrayEquals(jpeg, background.getData(), format);
+        assertEquals("image/jpeg", background.getMimeType(), format);
+
+        InlineImage inline = assertInstanceOf(ButtonComponent.class, decoded.getComponents().get(0)).getBackgroundImage();
+        assertArrayEquals(png, inline.getData(), format);
+        assertEquals("image/png", inline.getMimeType(), format);
+
+        InlineImage url = assertInstanceOf(ButtonComponent.class, decoded.getComponents().get(1)).getBackgroundImage();
+        assertFalse(url.isInline(), format);
+        assertEquals(ASSET_URL, url.getUrl(), format);
+    }
+
+    private static ButtonComponent button(String id, InlineImage backgroundImage) {
+        ButtonComponent button = new ButtonComponent();
+        button.setId(id);
+        button.setText("BUY");
+        button.setBackgroundImage(backgroundImage);
+        return button;
+    }
+
+    private static BufferedImage noise(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
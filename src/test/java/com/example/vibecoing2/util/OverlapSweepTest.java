@@ -0,0 +1,87 @@
+package com.example.vibecoing2.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 扫描线重叠对与逐对判断的对照
+ */
+class OverlapSweepTest {
+
+    @Test
+    void matchesPairwiseScanOnRandomBoxes() {
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            int size = random.nextInt(40);
+            int[] boxes = new int[size * 4];
+            for (int i = 0; i < size; i++) {
+                boxes[i * 4] = random.nextInt(60) - 10;
+                boxes[i * 4 + 1] = random.nextInt(60) - 10;
+                boxes[i * 4 + 2] = random.nextInt(20);
+                boxes[i * 4 + 3] = random.nextInt(20);
+            }
+
+            Set<Long> expected = new HashSet<>();
+            for (int a = 0; a < size; a++) {
+                for (int b = a + 1; b < size; b++) {
+                    if (overlaps(boxes, a, b)) {
+                        expected.add(pairKey(a, b));
+                    }
+                }
+            }
+
+            Set<Long> actual = new HashSet<>();
+            int[] callbacks = {0};
+            OverlapSweep.forEachOverlap(boxes, size, (a, b) -> {
+                callbacks[0]++;
+                actual.add(pairKey(a, b));
+            });
+
+            assertEquals(expected, actual, "round " + round);
+            assertEquals(expected.size(), callbacks[0], "每对只回调一次, round " + round);
+        }
+    }
+
+    @Test
+    void touchingEdgesOverlap() {
+        int[] boxes = {0, 0, 10, 10, 10, 10, 5, 5};
+        Set<Long> actual = new HashSet<>();
+        OverlapSweep.forEachOverlap(boxes, 2, (a, b) -> actual.add(pairKey(a, b)));
+        assertTrue(actual.contains(pairKey(0, 1)));
+    }
+
+    @Test
+    void tallDisjointColumnsReportNothing() {
+        // 所有矩形同时处于扫描带内但 x 互不相交，不应逐个比较活动集
+        int size = 20000;
+        int[] boxes = new int[size * 4];
+        for (int i = 0; i < size; i++) {
+            boxes[i * 4] = i * 10;
+            boxes[i * 4 + 1] = i % 7;
+            boxes[i * 4 + 2] = 5;
+            boxes[i * 4 + 3] = 100000;
+        }
+        int[] callbacks = {0};
+        OverlapSweep.forEachOverlap(boxes, size, (a, b) -> callbacks[0]++);
+        assertEquals(0, callbacks[0]);
+    }
+
+    private static boolean overlaps(int[] boxes, int a, int b) {
+        int ax = boxes[a * 4];
+        int ay = boxes[a * 4 + 1];
+        int bx = boxes[b * 4];
+        int by = boxes[b * 4 + 1];
+        return !(ax + boxes[a * 4 + 2] < bx || bx + boxes[b * 4 + 2] < ax)
+                && !(ay + boxes[a * 4 + 3] < by || by + boxes[b * 4 + 3] < ay);
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+}
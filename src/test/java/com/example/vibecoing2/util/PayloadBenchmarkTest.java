@@ -0,0 +1,220 @@
+package com.example.vibecoing2.util;
+
+import com.example.vibecoing2.domain.ButtonComponent;
+import com.example.vibecoing2.domain.InlineImage;
+import com.example.vibecoing2.domain.PageTemplate;
+import com.example.vibecoing2.domain.Position;
+import com.example.vibecoing2.domain.Size;
+import com.example.vibecoing2.domain.TextComponent;
+import com.example.vibecoing2.dto.AnalysisHistoryRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 响应格式对比
+ * 对固定生成的设计稿解析历史记录分别按 JSON（base64 图片）、JSON + gzip / deflate、CBOR、Smile（原始字节图片）
+ * 统计序列化后的字节数与编码、解码耗时（预热一轮后取 ROUNDS 轮平均），并与 JSON 对比。
+ * 默认跳过，运行方式：mvn test -Dtest=PayloadBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PayloadBenchmarkTest {
+
+    private static final String FORMAT_JSON_GZIP = "json+gzip";
+    private static final String FORMAT_JSON_DEFLATE = "json+deflate";
+
+    private static final int ROUNDS = 5;
+    private static final int RECORDS = 20;
+    private static final int BUTTONS_PER_RECORD = 12;
+
+    private static final int PAGE_WIDTH = 750;
+    private static final int PAGE_HEIGHT = 1334;
+
+    private final ResponseBodyWriter responseBodyWriter = new ResponseBodyWriter();
+
+    @Test
+    void compareFormats() throws IOException {
+        List<AnalysisHistoryRecord> records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            records.add(record(new Random(45 + i), i));
+        }
+
+        String[] formats = {ResponseBodyWriter.FORMAT_JSON, FORMAT_JSON_GZIP, FORMAT_JSON_DEFLATE,
+                ResponseBodyWriter.FORMAT_CBOR, ResponseBodyWriter.FORMAT_SMILE};
+        long baselineBytes = 0;
+        System.out.printf("%-14s %12s %12s %12s %10s%n", "格式", "字节", "编码(ms)", "解码(ms)", "节省(%)");
+        for (String format : formats) {
+            measure(format, records);
+
+            long bytes = 0;
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long[] totals = measure(format, records);
+                bytes = totals[0];
+                encodeNanos += totals[1];
+                decodeNanos += totals[2];
+            }
+
+            if (ResponseBodyWriter.FORMAT_JSON.equals(format)) {
+                baselineBytes = bytes;
+            }
+            double saved = baselineBytes > 0 ? (1 - (double) bytes / baselineBytes) * 100 : 0;
+            System.out.printf("%-14s %12d %12.2f %12.2f %10.1f%n", format, bytes,
+                    encodeNanos / 1e6 / ROUNDS, decodeNanos / 1e6 / ROUNDS, saved);
+        }
+    }
+
+    /**
+     * 编码并解码所有记录一次，返回 [总字节数, 编码耗时纳秒, 解码耗时纳秒]
+     */
+    private long[] measure(String format, List<AnalysisHistoryRecord> records) throws IOException {
+        ObjectMapper mapper = responseBodyWriter.mapper(baseFormat(format));
+        long[] totals = new long[3];
+        for (AnalysisHistoryRecord record : records) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (OutputStream out = wrap(format, buffer)) {
+                mapper.writeValue(out, record);
+            }
+            byte[] encoded = buffer.toByteArray();
+            totals[1] += System.nanoTime() - start;
+            totals[0] += encoded.length;
+
+            start = System.nanoTime();
+            AnalysisHistoryRecord decoded;
+            try (InputStream in = unwrap(format, new ByteArrayInputStream(encoded))) {
+                decoded = mapper.readValue(in, AnalysisHistoryRecord.class);
+            }
+            totals[2] += System.nanoTime() - start;
+            assertEquals(record.getTemplate().getComponents().size(), decoded.getTemplate().getComponents().size());
+        }
+        return totals;
+    }
+
+    /**
+     * 一条历史记录：JPEG 整页背景、带 PNG 背景图的按钮与文字组件
+     */
+    private static AnalysisHistoryRecord record(Random random, int index) throws IOException {
+        PageTemplate template = new PageTemplate(PAGE_WIDTH, PAGE_HEIGHT);
+        template.getPage().setBackgroundImage(InlineImage.of(encode(photo(random, PAGE_WIDTH, PAGE_HEIGHT), "jpg"),
+                "image/jpeg"));
+        for (int i = 0; i < BUTTONS_PER_RECORD; i++) {
+            int top = 120 + i * 100;
+
+            TextComponent text = new TextComponent();
+            text.setId("text_" + i);
+            text.setContent("Product title " + i);
+            text.setPosition(new Position(40, top));
+            text.setSize(new Size(400, 32));
+            template.getComponents().add(text);
+
+            ButtonComponent button = new ButtonComponent();
+            button.setId("button_" + i);
+            button.setText("BUY");
+            button.setPosition(new Position(PAGE_WIDTH - 200, top));
+            button.setSize(new Size(140, 44));
+            button.setBackgroundColor("#1E88E5");
+            button.setBackgroundImage(InlineImage.of(encode(buttonCrop(random, 140, 44), "png"), "image/png"));
+            template.getComponents().add(button);
+        }
+
+        AnalysisHistoryRecord record = new AnalysisHistoryRecord();
+        record.setHistoryId("benchmark-" + index);
+        record.setTimestamp(LocalDateTime.of(2024, 1, 1, 12, 0).plusMinutes(index));
+        record.setOriginalImagePath("analysis/benchmark-" + index + "/original.png");
+        record.setTemplate(template);
+        record.setComponentCount(template.getComponents().size());
+        record.setAnalysisEngine("AI+OCR+CV");
+        return record;
+    }
+
+    /**
+     * 照片：平滑渐变叠加固定种子的噪声
+     */
+    private static BufferedImage photo(Random random, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double wave = Math.sin(x / 40.0) * Math.cos(y / 55.0);
+                int r = clamp(170 - 70 * wave + random.nextGaussian() * 12);
+                int g = clamp(130 + 50 * Math.sin((x + y) / 70.0) + random.nextGaussian() * 12);
+                int b = clamp(90 + 60 * wave + random.nextGaussian() * 12);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 按钮裁剪图：纯色圆角底与文字
+     */
+    private static BufferedImage buttonCrop(Random random, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(245, 245, 245));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(new Color(30 + random.nextInt(40), 136, 229));
+        graphics.fillRoundRect(0, 0, width, height, 12, 12);
+        graphics.setColor(Color.WHITE);
+        graphics.drawString("BUY", width / 2 - 12, height / 2 + 5);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static int clamp(double value) {
+        return Math.max(0, Math.min(255, (int) Math.round(value)));
+    }
+
+    private static String baseFormat(String format) {
+        return FORMAT_JSON_GZIP.equals(format) || FORMAT_JSON_DEFLATE.equals(format)
+                ? ResponseBodyWriter.FORMAT_JSON
+                : format;
+    }
+
+    private static OutputStream wrap(String format, OutputStream out) throws IOException {
+        if (FORMAT_JSON_GZIP.equals(format)) {
+            return new GZIPOutputStream(out, 8 * 1024);
+        }
+        if (FORMAT_JSON_DEFLATE.equals(format)) {
+            return new DeflaterOutputStream(out);
+        }
+        return out;
+    }
+
+    private static InputStream unwrap(String format, InputStream in) throws IOException {
+        if (FORMAT_JSON_GZIP.equals(format)) {
+            return new GZIPInputStream(in, 8 * 1024);
+        }
+        if (FORMAT_JSON_DEFLATE.equals(format)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.vibecoing2.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * dHash 的位定义、汉明距离，以及重新导出 / 缩放与不同设计稿之间的距离
+ */
+class PerceptualHashTest {
+
+    // 与 app.near-duplicate.max-distance 默认值一致
+    private static final int NEAR_DUPLICATE_DISTANCE = 6;
+
+    // 同一行相邻格子的最小亮度差
+    private static final int MIN_LEVEL_GAP = 30;
+
+    private final List<Mat> mats = new ArrayList<>();
+
+    @BeforeAll
+    static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @AfterEach
+    void release() {
+        mats.forEach(Mat::release);
+        mats.clear();
+    }
+
+    @Test
+    void hammingDistanceAndHex() {
+        assertEquals(0, PerceptualHash.distance(0x1234L, 0x1234L));
+        assertEquals(1, PerceptualHash.distance(0L, 1L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+        assertEquals(32, PerceptualHash.distance(0x00000000FFFFFFFFL, -1L));
+        assertEquals("00000000000000ff", PerceptualHash.toHex(0xFFL));
+        assertEquals(-1L, PerceptualHash.fromHex(PerceptualHash.toHex(-1L)));
+        assertEquals(0x8000000000000001L, PerceptualHash.fromHex("8000000000000001"));
+    }
+
+    @Test
+    void bitsCompareHorizontalNeighbours() {
+        // 纯色：相邻像素相等，没有位被置位
+        assertEquals(0L, PerceptualHash.dHash(track(new Mat(200, 180, CvType.CV_8UC3, new Scalar(90, 120, 200)))));
+
+        // 从左到右变暗：每一位都是左侧更亮
+        Mat gradient = track(new Mat(80, 90, CvType.CV_8UC1));
+        for (int x = 0; x < gradient.cols(); x++) {
+            Imgproc.line(gradient, new Point(x, 0), new Point(x, gradient.rows() - 1), new Scalar(255 - x * 2));
+        }
+        assertEquals(-1L, PerceptualHash.dHash(gradient));
+
+        // 灰度图、BGR 与 BGRA 得到相同的哈希
+        Mat bgr = track(new Mat());
+        Mat bgra = track(new Mat());
+        Imgproc.cvtColor(gradient, bgr, Imgproc.COLOR_GRAY2BGR);
+        Imgproc.cvtColor(gradient, bgra, Imgproc.COLOR_GRAY2BGRA);
+        assertEquals(-1L, PerceptualHash.dHash(bgr));
+        assertEquals(-1L, PerceptualHash.dHash(bgra));
+    }
+
+    @Test
+    void hashFollowsCellLayout() {
+        int[][] levels = levels(new Random(48));
+        assertEquals(expectedHash(levels), PerceptualHash.dHash(mosaic(levels, 750, 1334)));
+    }
+
+    @Test
+    void reexportedDesignIsNearDuplicate() {
+        Mat design = mosaic(levels(new Random(48)), 750, 1334);
+        long hash = PerceptualHash.dHash(design);
+
+        // JPEG 重新压缩
+        MatOfByte jpeg = new MatOfByte();
+        Imgcodecs.imencode(".jpg", design, jpeg, new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 70));
+        Mat decoded = track(Imgcodecs.imdecode(jpeg, Imgcodecs.IMREAD_COLOR));
+        jpeg.release();
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(decoded)) <= NEAR_DUPLICATE_DISTANCE);
+
+        // 按不同倍率导出
+        Mat scaled = track(new Mat());
+        Imgproc.resize(design, scaled, new Size(1125, 2001), 0, 0, Imgproc.INTER_LINEAR);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(scaled)) <= NEAR_DUPLICATE_DISTANCE);
+    }
+
+    @Test
+    void differentDesignsAreFarApart() {
+        long hash = PerceptualHash.dHash(mosaic(levels(new Random(48)), 750, 1334));
+        long other = PerceptualHash.dHash(mosaic(levels(new Random(4800)), 750, 1334));
+
+        assertTrue(PerceptualHash.distance(hash, other) > NEAR_DUPLICATE_DISTANCE);
+    }
+
+    /**
+     * 9x8 个格子的亮度，同一行相邻格子至少相差 MIN_LEVEL_GAP，压缩噪声不会翻转比较结果
+     */
+    private static int[][] levels(Random random) {
+        int[][] levels = new int[8][9];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 9; x++) {
+                do {
+                    levels[y][x] = 20 + random.nextInt(216);
+                } while (x > 0 && Math.abs(levels[y][x] - levels[y][x - 1]) < MIN_LEVEL_GAP);
+            }
+        }
+        return levels;
+    }
+
+    private static long expectedHash(int[][] levels) {
+        long hash = 0;
+        for (int[] row : levels) {
+            for (int x = 0; x < 8; x++) {
+                hash = (hash << 1) | (row[x] > row[x + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 按格子铺色块的页面（格子边界与 dHash 缩小后的像素对齐）
+     */
+    private Mat mosaic(int[][] levels, int width, int height) {
+        Mat page = track(new Mat(height, width, CvType.CV_8UC3));
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 9; x++) {
+                int level = levels[y][x];
+                Imgproc.rectangle(page,
+                        new Point(Math.round(x * width / 9.0), Math.round(y * height / 8.0)),
+                        new Point(Math.round((x + 1) * width / 9.0) - 1, Math.round((y + 1) * height / 8.0) - 1),
+                        new Scalar(level, level, level), -1);
+            }
+        }
+        return page;
+    }
+
+    private Mat track(Mat mat) {
+        mats.add(mat);
+        return mat;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.vibecoing2.util;
+
+import nu.pattern.OpenCV;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分块像素差异：噪声过滤、变化方块计数与区域合并
+ */
+class RegionDiffTest {
+
+    private static final int TILE = 32;
+
+    private final RegionDiff regionDiff = new RegionDiff();
+    private final List<Mat> mats = new ArrayList<>();
+
+    @BeforeAll
+    static void loadOpenCV() {
+        OpenCV.loadLocally();
+    }
+
+    @AfterEach
+    void release() {
+        mats.forEach(Mat::release);
+        mats.clear();
+    }
+
+    @Test
+    void identicalImagesHaveNoRegions() {
+        Mat base = page();
+        RegionDiff.Result result = regionDiff.diff(base, track(base.clone()), TILE, 24, 16);
+
+        assertEquals(0, result.getChangedTiles());
+        assertTrue(result.getRegions().isEmpty());
+        assertEquals(24 * 42, result.getTotalTiles());
+    }
+
+    @Test
+    void ignoresRecompressionNoiseBelowThreshold() {
+        Mat base = page();
+        Mat noisy = track(base.clone());
+        Random random = new Random(47);
+        byte[] row = new byte[noisy.cols() * 3];
+        for (int y = 0; y < noisy.rows(); y++) {
+            noisy.get(y, 0, row);
+            for (int i = 0; i < row.length; i++) {
+                int value = (row[i] & 0xFF) + random.nextInt(11) - 5;
+                row[i] = (byte) Math.max(0, Math.min(255, value));
+            }
+            noisy.put(y, 0, row);
+        }
+
+        RegionDiff.Result result = regionDiff.diff(base, noisy, TILE, 24, 16);
+
+        assertEquals(0, result.getChangedTiles());
+        assertTrue(result.getRegions().isEmpty());
+    }
+
+    @Test
+    void changedBlocksBecomeDilatedRegions() {
+        Mat base = page();
+        Mat current = track(base.clone());
+        // 两处相距较远的修改：按钮换色、底部新增文字
+        Imgproc.rectangle(current, new Point(96, 224), new Point(159, 255), new Scalar(30, 60, 200), -1);
+        Imgproc.putText(current, "NEW", new Point(520, 1250), Imgproc.FONT_HERSHEY_SIMPLEX, 1.0,
+                new Scalar(0, 0, 0), 2);
+
+        RegionDiff.Result result = regionDiff.diff(base, current, TILE, 24, 16);
+
+        assertEquals(2, result.getRegions().size());
+        assertTrue(result.getChangedTiles() > 2);
+        // 按钮修改正好占满 2x1 个方块，外扩一圈方块后为 4x3 个方块
+        assertEquals(new Rect(64, 192, 128, 96), result.getRegions().get(0));
+        Rect text = result.getRegions().get(1);
+        assertTrue(text.contains(new Point(520, 1240)) && text.y > 1100);
+        assertTrue(text.x + text.width <= 750 && text.y + text.height <= 1334);
+    }
+
+    @Test
+    void regionsAreClippedToPartialEdgeTiles() {
+        Mat base = page();
+        Mat current = track(base.clone());
+        // 右下角不完整的方块（750 = 23 * 32 + 14，1334 = 41 * 32 + 22）
+        Imgproc.rectangle(current, new Point(740, 1320), new Point(749, 1333), new Scalar(0, 0, 255), -1);
+
+        RegionDiff.Result result = regionDiff.diff(base, current, TILE, 24, 16);
+
+        assertEquals(1, result.getChangedTiles());
+        assertEquals(new Rect(22 * TILE, 40 * TILE, 750 - 22 * TILE, 1334 - 40 * TILE), result.getRegions().get(0));
+    }
+
+    @Test
+    void rejectsMismatchedImages() {
+        Mat base = page();
+        Mat smaller = track(new Mat(100, 750, CvType.CV_8UC3, new Scalar(255, 255, 255)));
+
+        assertThrows(IllegalArgumentException.class, () -> regionDiff.diff(base, smaller, TILE, 24, 16));
+    }
+
+    /**
+     * 750x1334 白底页面：一个按钮和一行标题
+     */
+    private Mat page() {
+        Mat page = track(new Mat(1334, 750, CvType.CV_8UC3, new Scalar(255, 255, 255)));
+        Imgproc.rectangle(page, new Point(96, 224), new Point(159, 255), new Scalar(229, 136, 30), -1);
+        Imgproc.putText(page, "Title", new Point(40, 100), Imgproc.FONT_HERSHEY_SIMPLEX, 1.2,
+                new Scalar(40, 40, 40), 2);
+        return page;
+    }
+
+    private Mat track(Mat mat) {
+        mats.add(mat);
+        return mat;
+    }
+}
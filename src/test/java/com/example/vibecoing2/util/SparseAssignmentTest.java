@@ -0,0 +1,179 @@
+package com.example.vibecoing2.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 稀疏最大权匹配与穷举结果的对照
+ */
+class SparseAssignmentTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void matchesBruteForceOnRandomSmallGraphs() {
+        Random random = new Random(37);
+        for (int round = 0; round < 3000; round++) {
+            int leftCount = random.nextInt(7);
+            int rightCount = random.nextInt(7);
+            Graph graph = Graph.random(random, leftCount, rightCount, random.nextDouble());
+
+            int[] assignment = SparseAssignment.maximizeWeight(leftCount, rightCount,
+                    graph.edgeStart, graph.edgeTarget, graph.edgeWeight);
+
+            double expected = bruteForce(graph, 0, new boolean[rightCount]);
+            assertEquals(expected, graph.totalWeight(assignment), EPSILON, "round " + round);
+        }
+    }
+
+    @Test
+    void prefersGlobalOptimumOverGreedyChoice() {
+        // 左 0 贪心会取权重 0.9 的右 0，使左 1 无法匹配；全局最优为 0.8 + 0.7
+        Graph graph = new Graph(2, 2);
+        graph.addEdges(0, new int[]{0, 1}, new double[]{0.9, 0.8});
+        graph.addEdges(1, new int[]{0}, new double[]{0.7});
+
+        int[] assignment = SparseAssignment.maximizeWeight(2, 2, graph.edgeStart, graph.edgeTarget, graph.edgeWeight);
+
+        assertArrayEquals(new int[]{1, 0}, assignment);
+    }
+
+    @Test
+    void leavesVerticesWithoutEdgesUnmatched() {
+        Graph graph = new Graph(3, 1);
+        graph.addEdges(0, new int[0], new double[0]);
+        graph.addEdges(1, new int[]{0}, new double[]{0.6});
+        graph.addEdges(2, new int[0], new double[0]);
+
+        int[] assignment = SparseAssignment.maximizeWeight(3, 1, graph.edgeStart, graph.edgeTarget, graph.edgeWeight);
+
+        assertArrayEquals(new int[]{-1, 0, -1}, assignment);
+    }
+
+    @Test
+    void solvesLargeSparseGraph() {
+        // 近对角的稀疏图：每个左顶点连接附近 3 个右顶点
+        int size = 5000;
+        Random random = new Random(5);
+        Graph graph = new Graph(size, size);
+        for (int i = 0; i < size; i++) {
+            List<Integer> targets = new ArrayList<>();
+            for (int j = Math.max(0, i - 1); j <= Math.min(size - 1, i + 1); j++) {
+                targets.add(j);
+            }
+            double[] weights = new double[targets.size()];
+            for (int k = 0; k < weights.length; k++) {
+                weights[k] = 0.5 + random.nextDouble() / 2;
+            }
+            graph.addEdges(i, targets.stream().mapToInt(Integer::intValue).toArray(), weights);
+        }
+
+        int[] assignment = SparseAssignment.maximizeWeight(size, size, graph.edgeStart, graph.edgeTarget, graph.edgeWeight);
+
+        // 对角线本身是一个合法匹配，最优解的总权重不低于它
+        int[] diagonal = new int[size];
+        Arrays.setAll(diagonal, i -> i);
+        assertTrue(graph.totalWeight(assignment) >= graph.totalWeight(diagonal) - EPSILON);
+    }
+
+    /**
+     * 穷举：依次为每个左顶点选择不匹配或一条未占用的边
+     */
+    private static double bruteForce(Graph graph, int left, boolean[] used) {
+        if (left == graph.leftCount) {
+            return 0;
+        }
+        double best = bruteForce(graph, left + 1, used);
+        for (int e = graph.edgeStart[left]; e < graph.edgeStart[left + 1]; e++) {
+            int right = graph.edgeTarget[e];
+            if (!used[right]) {
+                used[right] = true;
+                best = Math.max(best, graph.edgeWeight[e] + bruteForce(graph, left + 1, used));
+                used[right] = false;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * CSR 形式的测试图
+     */
+    private static final class Graph {
+        private final int leftCount;
+        private final int rightCount;
+        private final int[] edgeStart;
+        private int[] edgeTarget = new int[0];
+        private double[] edgeWeight = new double[0];
+
+        Graph(int leftCount, int rightCount) {
+            this.leftCount = leftCount;
+            this.rightCount = rightCount;
+            this.edgeStart = new int[leftCount + 1];
+        }
+
+        static Graph random(Random random, int leftCount, int rightCount, double density) {
+            Graph graph = new Graph(leftCount, rightCount);
+            for (int i = 0; i < leftCount; i++) {
+                List<Integer> targets = new ArrayList<>();
+                List<Double> weights = new ArrayList<>();
+                for (int j = 0; j < rightCount; j++) {
+                    if (random.nextDouble() < density) {
+                        targets.add(j);
+                        // 少量相同权重，覆盖并列的情况
+                        weights.add(random.nextInt(4) == 0 ? 0.5 : 0.01 + random.nextDouble());
+                    }
+                }
+                graph.addEdges(i, targets.stream().mapToInt(Integer::intValue).toArray(),
+                        weights.stream().mapToDouble(Double::doubleValue).toArray());
+            }
+            return graph;
+        }
+
+        /**
+         * 按左顶点顺序追加边
+         */
+        void addEdges(int left, int[] targets, double[] weights) {
+            int start = edgeStart[left];
+            edgeTarget = Arrays.copyOf(edgeTarget, start + targets.length);
+            edgeWeight = Arrays.copyOf(edgeWeight, start + weights.length);
+            System.arraycopy(targets, 0, edgeTarget, start, targets.length);
+            System.arraycopy(weights, 0, edgeWeight, start, weights.length);
+            edgeStart[left + 1] = start + targets.length;
+        }
+
+        /**
+         * 校验匹配合法（只用存在的边、右顶点不重复）并返回总权重
+         */
+        double totalWeight(int[] assignment) {
+            assertEquals(leftCount, assignment.length);
+            boolean[] used = new boolean[rightCount];
+            double total = 0;
+            for (int i = 0; i < leftCount; i++) {
+                int right = assignment[i];
+                if (right < 0) {
+                    continue;
+                }
+                assertTrue(!used[right], "右顶点 " + right + " 被重复匹配");
+                used[right] = true;
+
+                int edge = -1;
+                for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                    if (edgeTarget[e] == right) {
+                        edge = e;
+                    }
+                }
+                assertTrue(edge >= 0, "左顶点 " + i + " 与右顶点 " + right + " 之间没有边");
+                total += edgeWeight[edge];
+            }
+            return total;
+        }
+    }
+}